@@ -0,0 +1,64 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http;
+
+import com.intuit.payments.http.testing.StubServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a complete GET through Hystrix, the connection pool and Http client against an in-process
+ * {@link StubServer} that answers immediately, so the result is the overhead of this library and the loopback
+ * socket.
+ *
+ * @author saung
+ * @since 5/14/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionBenchmark {
+    private StubServer server;
+
+    private Client client;
+
+    @Setup
+    public void setUp() {
+        server = new StubServer().start();
+        client = new Client(server.baseUrl()).maxConcurrentConnection(8);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Benchmark
+    public Response get() {
+        return client.Request("BenchGet", "BenchGroup", "/v1/users/{0}", 123).GET().execute();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Response get_4_threads() {
+        return client.Request("BenchGet", "BenchGroup", "/v1/users/{0}", 123).GET().execute();
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http;
+
+import org.apache.http.client.methods.HttpGet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building a {@link Request} from a {@link Client} and setting its Http request headers, including
+ * the X-Request-Sent-At timestamp.
+ *
+ * @author saung
+ * @since 5/14/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBenchmark {
+    private Client client;
+
+    private Request request;
+
+    @Setup
+    public void setUp() {
+        client = new Client("http://localhost:8080").privateAuthPlus("app-id", "app-secret");
+        request = client.Request("GetUser", "UsersGroup", "/v1/users/{0}", 123)
+                .GET()
+                .header("intuit_tid", "tid-123")
+                .header("intuit_realmid", "1234567890");
+    }
+
+    @Benchmark
+    public Request construct() {
+        return client.Request("GetUser", "UsersGroup", "/v1/users/{0}", 123)
+                .GET()
+                .header("intuit_tid", "tid-123");
+    }
+
+    @Benchmark
+    public HttpGet setRequestHeaders() {
+        HttpGet httpGet = new HttpGet("http://localhost:8080/v1/users/123");
+        request.setRequestHeaders(httpGet);
+        return httpGet;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.message.BasicHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Response} construction with header collection, and JSON decoding by {@link Response#map()}
+ * and {@link Response#json(Class)} at several payload sizes.
+ *
+ * @author saung
+ * @since 5/14/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBenchmark {
+    /** Number of items in the JSON array of the body; 1 item is about 100 bytes */
+    @Param({"1", "100", "10000"})
+    public int items;
+
+    private Header[] headers;
+
+    private String body;
+
+    private Response response;
+
+    /** Body type for {@link Response#json(Class)} */
+    public static class Users {
+        public List<User> users;
+    }
+
+    /** An item of {@link Users} */
+    public static class User {
+        public String id;
+        public String name;
+        public String email;
+        public long balance;
+        public boolean active;
+    }
+
+    @Setup
+    public void setUp() {
+        headers = new Header[] {
+                new BasicHeader(HttpHeaders.CONTENT_TYPE, "application/json;charset=UTF-8"),
+                new BasicHeader(HttpHeaders.CONTENT_LENGTH, "1024"),
+                new BasicHeader(HttpHeaders.DATE, "Mon, 14 May 2018 10:00:00 GMT"),
+                new BasicHeader(HttpHeaders.CACHE_CONTROL, "no-cache"),
+                new BasicHeader("intuit_tid", "tid-123"),
+                new BasicHeader("Set-Cookie", "a=1"),
+                new BasicHeader("Set-Cookie", "b=2"),
+        };
+        StringBuilder sb = new StringBuilder("{\"users\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":\"").append(i).append("\",\"name\":\"User ").append(i)
+                    .append("\",\"email\":\"user").append(i).append("@example.com\",\"balance\":")
+                    .append(i * 100).append(",\"active\":true}");
+        }
+        body = sb.append("]}").toString();
+        response = new Response(200, "OK", body, headers);
+    }
+
+    @Benchmark
+    public Response construct() {
+        return new Response(200, "OK", body, headers);
+    }
+
+    @Benchmark
+    public Map<String, Object> map() {
+        return response.map();
+    }
+
+    @Benchmark
+    public Users json() {
+        return response.json(Users.class);
+    }
+}
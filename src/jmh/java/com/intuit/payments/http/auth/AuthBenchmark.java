@@ -0,0 +1,65 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.auth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks per-request auth header generation of {@link PrivateAuthPlus} and {@link OfflineTicket}.
+ *
+ * @author saung
+ * @since 5/14/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthBenchmark {
+    private static final String TICKET = "V1-123-X3n8bw9c0hq2u7mbg1tj0rlf";
+
+    private PrivateAuthPlus privateAuthPlus;
+
+    private OfflineTicket offlineTicket;
+
+    @Setup
+    public void setUp() {
+        privateAuthPlus = new PrivateAuthPlus("Intuit.payments.benchmark", "preprdBenchmarkAppSecret0123456789");
+        offlineTicket = new OfflineTicket("Intuit.payments.benchmark", "preprdBenchmarkAppSecret0123456789");
+    }
+
+    @Benchmark
+    public String privateAuthPlus_app_only() {
+        return privateAuthPlus.getAuthHeader();
+    }
+
+    @Benchmark
+    public String privateAuthPlus_ticket_user() {
+        return privateAuthPlus.getAuthHeader(TICKET, "123145836734512");
+    }
+
+    @Benchmark
+    public String privateAuthPlus_token_type_ticket_user() {
+        return privateAuthPlus.getAuthHeader("IAM-Ticket", TICKET, "123145836734512");
+    }
+
+    @Benchmark
+    public String offlineTicket() {
+        return offlineTicket.getAuthHeader(TICKET);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.cache;
+
+import com.intuit.payments.http.Response;
+import org.apache.http.Header;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link StaleResponseCache} puts, which every successful GET with stale-if-error does, and lookups
+ * from several threads, with and without evictions.
+ *
+ * @author saung
+ * @since 5/14/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class StaleResponseCacheBenchmark {
+    private static final int KEYS = 1024;
+
+    private final String[] keys = new String[KEYS];
+
+    private final Response response = new Response(200, "OK", "{}", new Header[] { });
+
+    /** Holds every key */
+    private final StaleResponseCache cache = new StaleResponseCache(KEYS, 60000);
+
+    /** Holds a quarter of the keys, so most puts evict */
+    private final StaleResponseCache evictingCache = new StaleResponseCache(KEYS / 4, 60000);
+
+    public StaleResponseCacheBenchmark() {
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "https://payments.api.intuit.com/v1/users/" + i;
+            cache.put(keys[i], response);
+        }
+    }
+
+    @Benchmark
+    public void put() {
+        cache.put(randomKey(), response);
+    }
+
+    @Benchmark
+    public void put_evicting() {
+        evictingCache.put(randomKey(), response);
+    }
+
+    @Benchmark
+    public Response get() {
+        return cache.get(randomKey());
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(KEYS)];
+    }
+}
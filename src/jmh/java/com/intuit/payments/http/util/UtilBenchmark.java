@@ -0,0 +1,49 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks URL template expansion by {@link Util#getFullURL(String, String, Object...)}.
+ *
+ * @author saung
+ * @since 5/14/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+    private static final String HOST = "https://payments.api.intuit.com";
+
+    @Benchmark
+    public String getFullURL_no_template() {
+        return Util.getFullURL(HOST, "/v1/users");
+    }
+
+    @Benchmark
+    public String getFullURL_one_value() {
+        return Util.getFullURL(HOST, "/v1/users/{0}", "123");
+    }
+
+    @Benchmark
+    public String getFullURL_three_values() {
+        return Util.getFullURL(HOST, "/v1/companies/{0}/users/{1}/charges/{2}", "9130347", "123", "EMU482");
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http;
+
+import com.intuit.payments.http.exception.HCResponseTooLargeException;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads a response entity into memory, or into a temp file once it exceeds a threshold, with a hard size cap.
+ * Package-level access only.
+ *
+ * @author saung
+ * @since 6/25/18
+ */
+final class BodyBuffer {
+    /** Prefix of the temp file names */
+    private static final String SPILL_FILE_PREFIX = "hc-body-";
+
+    /** Body text if it was read into memory; null if it was spilled */
+    final String text;
+
+    /** Temp file of a spilled body; null if it was read into memory */
+    final Path file;
+
+    /** Body size in bytes */
+    final long length;
+
+    /** Charset of the body */
+    final Charset charset;
+
+    private BodyBuffer(String text, Path file, long length, Charset charset) {
+        this.text = text;
+        this.file = file;
+        this.length = length;
+        this.charset = charset;
+    }
+
+    /**
+     * Reads an entity. The caller closes the connection if this throws.
+     *
+     * @param entity - a Http response entity.
+     * @param spillThresholdBytes - body size above which it is written to a temp file; 0 to never spill.
+     * @param maxBytes - maximum body size; 0 for unlimited.
+     * @return new {@link BodyBuffer} instance.
+     * @throws HCResponseTooLargeException if the body exceeds maxBytes; before it is read if Content-Length says so.
+     * @throws IOException if the entity cannot be read or the temp file cannot be written.
+     */
+    static BodyBuffer read(HttpEntity entity, long spillThresholdBytes, long maxBytes) throws IOException {
+        Charset charset = ContentType.getOrDefault(entity).getCharset();
+        if (charset == null) {
+            charset = StandardCharsets.UTF_8;
+        }
+        long contentLength = entity.getContentLength();
+        if (maxBytes > 0 && contentLength > maxBytes) {
+            throw new HCResponseTooLargeException(maxBytes, contentLength);
+        }
+        long threshold = spillThresholdBytes > 0 ? spillThresholdBytes : Long.MAX_VALUE;
+        int initialSize = (int) Math.min(contentLength > 0 ? contentLength : 4096, Math.min(threshold, 1 << 20));
+        ByteArrayOutputStream memory = new ByteArrayOutputStream(initialSize);
+        Path file = null;
+        OutputStream out = memory;
+        long length = 0;
+        boolean completed = false;
+        // not closed on failure: closing an entity stream reads it to the end, while the caller aborts instead
+        InputStream in = entity.getContent();
+        try {
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                length += n;
+                if (maxBytes > 0 && length > maxBytes) {
+                    throw new HCResponseTooLargeException(maxBytes, length);
+                }
+                if (file == null && length > threshold) {
+                    file = Files.createTempFile(SPILL_FILE_PREFIX, ".tmp");
+                    out = Files.newOutputStream(file);
+                    memory.writeTo(out);
+                    memory = null;
+                }
+                out.write(buffer, 0, n);
+            }
+            in.close();
+            if (file != null) {
+                out.close();
+            }
+            completed = true;
+        } finally {
+            if (file != null && !completed) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // already failing; the temp file is deleted below
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        return file == null
+                ? new BodyBuffer(new String(memory.toByteArray(), charset), null, length, charset)
+                : new BodyBuffer(null, file, length, charset);
+    }
+}
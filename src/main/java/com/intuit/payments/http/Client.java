@@ -6,15 +6,30 @@
 package com.intuit.payments.http;
 
 import com.intuit.payments.http.auth.*;
+import com.intuit.payments.http.batch.Batch;
+import com.intuit.payments.http.batch.BatchResult;
+import com.intuit.payments.http.cache.StaleResponseCache;
+import com.intuit.payments.http.metrics.MetricsRegistry;
+import com.intuit.payments.http.metrics.TimingSocketFactories;
+import com.intuit.payments.http.pool.PoolStatsSampler;
+import com.intuit.payments.http.trace.Tracer;
+import com.intuit.payments.http.ratelimit.TokenBucket;
+import com.intuit.payments.http.record.TrafficRecorder;
+import com.intuit.payments.http.shedding.LoadShedder;
+import com.intuit.payments.http.stream.MetricsStreamServer;
+import com.netflix.hystrix.HystrixCircuitBreaker;
+import com.netflix.hystrix.HystrixCommandKey;
 import org.apache.http.config.Registry;
-import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLContext;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.intuit.payments.http.util.Util.checkStringIsNotBlank;
 import static com.intuit.payments.http.util.Util.getFullURL;
@@ -49,6 +64,9 @@ public class Client {
     /** target host URL */
     private final String serverBaseUrl;
 
+    /** Host of the target URL, parsed once for the request metrics */
+    private final String serverHost;
+
     /** Http Auth interface */
     private AuthInterface authInterface;
 
@@ -58,6 +76,42 @@ public class Client {
     /** Time to wait to send a request and receive a response */
     private int socketTimeoutInMilliSec;
 
+    /** Time to wait to lease a connection from the pool; -1 if unset */
+    private int connectionRequestTimeoutInMilliSec = -1;
+
+    /** Optional stale-if-error cache shared by all GET requests of this client */
+    private StaleResponseCache staleResponseCache;
+
+    /** Request headers besides Authorization that stale responses vary by */
+    private String[] staleVaryHeaders = new String[0];
+
+    /** Client-side rate limiters per Hystrix command group */
+    private final Map<String, TokenBucket> rateLimiters = new ConcurrentHashMap<>();
+
+    /** Priority-aware admission control per Hystrix command group */
+    private final Map<String, LoadShedder> loadShedders = new ConcurrentHashMap<>();
+
+    /** Optional per-route connection pool stats sampler */
+    private volatile PoolStatsSampler poolStatsSampler;
+
+    /** Optional tracer to record a client span per request */
+    private Tracer tracer;
+
+    /** Optional recorder of the traffic shape of all requests */
+    private TrafficRecorder trafficRecorder;
+
+    /** Response body size above which it is written to a temp file; 0 to never spill */
+    private long spillThresholdBytes;
+
+    /** Maximum response body size; 0 for unlimited */
+    private long maxResponseBytes;
+
+    /** Whether requests ask for compressed responses */
+    private boolean acceptCompressed = true;
+
+    /** JSON request body size from which it is gzip compressed; 0 to never compress */
+    private int compressThresholdBytes;
+
     /**
      * Default constructor
      *
@@ -76,6 +130,7 @@ public class Client {
     public Client(String serverBaseUrl, SSLContext sslContext) {
         checkStringIsNotBlank(serverBaseUrl, "serverBaseUrl must not be null or empty");
         this.serverBaseUrl = serverBaseUrl;
+        this.serverHost = MetricsRegistry.hostOf(serverBaseUrl);
         /** Default is no auth! */
         this.authInterface = (x) -> null;
         /** Default 10 seconds timeout to get a network connection to server. */
@@ -84,8 +139,7 @@ public class Client {
         /** Default 60 seconds timeout to receive individual packets */
         this.socketTimeoutInMilliSec = 60000;
         boolean isSSLContextNull = null == sslContext;
-        this.connectionManager = isSSLContextNull ?
-                new PoolingHttpClientConnectionManager() : new PoolingHttpClientConnectionManager(getRegistryBuilder(sslContext));
+        this.connectionManager = new PoolingHttpClientConnectionManager(getRegistryBuilder(sslContext));
         this.connectionManager.setValidateAfterInactivity(DEFAULT_CONNECTION_POOL_VALIDATE_AFTER_INACTIVITY);
         log.info("type=init;".concat("host={};isSSLContextNull={};default_conn_timeout={};default_socket_timeout={}"),
                 this.serverBaseUrl, isSSLContextNull, this.connectionTimeoutInMilliSec, this.socketTimeoutInMilliSec);
@@ -173,6 +227,19 @@ public class Client {
         return this;
     }
 
+    /**
+     * Sets the time to wait to lease a connection from the pool. When the pool of a route is exhausted,
+     * a request fails with {@link com.intuit.payments.http.exception.HCPoolExhaustedException} after this timeout
+     * instead of a generic Hystrix timeout. The lease timeout is added to the Hystrix timeout.
+     *
+     * @param connectionRequestTimeoutInMilliSec - the timeout in milliseconds. Default is -1, i.e. unset.
+     * @return {@link Client} instance.
+     */
+    public Client connectionRequestTimeoutInMilliSec(int connectionRequestTimeoutInMilliSec) {
+        this.connectionRequestTimeoutInMilliSec = connectionRequestTimeoutInMilliSec;
+        return this;
+    }
+
     /**
      * Defines period of inactivity in milliseconds after which persistent connections
      * must be re-validated prior to being leased to the consumer.
@@ -200,9 +267,227 @@ public class Client {
         return this;
     }
 
+    /**
+     * Enables the built-in stale-if-error fallback for all GET requests created by this client.
+     * The last successful response per endpoint, URL and credentials is kept and returned marked as stale when a
+     * call fails, times out or the circuit is open. See {@link Request#staleIfError(StaleResponseCache, String...)}.
+     *
+     * @param maxEntries - maximum number of responses to keep.
+     * @param ttlInMilliSec - how long a response may be served as stale after it was received.
+     * @param varyHeaderNames - optional request header names besides Authorization responses vary by.
+     * @return {@link Client} instance.
+     */
+    public Client staleIfError(int maxEntries, long ttlInMilliSec, String... varyHeaderNames) {
+        this.staleResponseCache = new StaleResponseCache(maxEntries, ttlInMilliSec);
+        this.staleVaryHeaders = (varyHeaderNames == null) ? new String[0] : varyHeaderNames;
+        return this;
+    }
+
+    /**
+     * Gets the stale-if-error cache to read its hit rate and staleness age.
+     *
+     * @return the {@link StaleResponseCache} instance; null if {@link #staleIfError(int, long, String...)} is not enabled.
+     */
+    public StaleResponseCache staleResponseCache() {
+        return staleResponseCache;
+    }
+
+    /**
+     * Enables a client-side token-bucket rate limiter for all requests of a command group. The rate is
+     * lowered automatically from the server's "Retry-After" and "X-RateLimit-*" response headers.
+     *
+     * @param endpointGroup - API endpoint group a.k.a. Hystrix command group name. E.g. "UsersGroup"
+     * @param permitsPerSecond - steady request rate allowed by the server.
+     * @param burst - number of requests that may be sent back-to-back.
+     * @param maxWaitInMilliSec - time a request waits for a permit before it is rejected into the fallback.
+     *                          0 rejects immediately.
+     * @return {@link Client} instance.
+     */
+    public Client rateLimit(String endpointGroup, double permitsPerSecond, int burst, long maxWaitInMilliSec) {
+        rateLimiters.put(endpointGroup, new TokenBucket(permitsPerSecond, burst, maxWaitInMilliSec));
+        return this;
+    }
+
+    /**
+     * Gets the rate limiter of a command group to read its throttled and waiting request counts.
+     *
+     * @param endpointGroup - API endpoint group a.k.a. Hystrix command group name.
+     * @return the {@link TokenBucket} instance; null if the group is not rate limited.
+     */
+    public TokenBucket rateLimiter(String endpointGroup) {
+        return rateLimiters.get(endpointGroup);
+    }
+
+    /**
+     * Enables priority-aware load shedding for all requests of a command group. See {@link LoadShedder} for the
+     * default thresholds; they can be tuned through {@link #loadShedder(String)}.
+     *
+     * @param endpointGroup - API endpoint group a.k.a. Hystrix command group name. E.g. "UsersGroup"
+     * @param capacity - number of concurrent requests the group can serve, usually its Hystrix thread pool size.
+     * @return {@link Client} instance.
+     */
+    public Client loadShedding(String endpointGroup, int capacity) {
+        loadShedders.put(endpointGroup, new LoadShedder(capacity));
+        return this;
+    }
+
+    /**
+     * Gets the load shedder of a command group to tune its thresholds or read shed counts per priority.
+     *
+     * @param endpointGroup - API endpoint group a.k.a. Hystrix command group name.
+     * @return the {@link LoadShedder} instance; null if load shedding is not enabled for the group.
+     */
+    public LoadShedder loadShedder(String endpointGroup) {
+        return loadShedders.get(endpointGroup);
+    }
+
+    /**
+     * Starts sampling leased, available, pending and max connections per route of this client's pool, and
+     * records the time each request waits to lease a connection. A route is reported as saturated, logged at
+     * WARN level and passed to the listener, when lease requests stay pending longer than the threshold.
+     * Calling it again replaces the running sampler.
+     *
+     * @param periodInMilliSec - sampling period.
+     * @param saturationThresholdInMilliSec - how long lease requests may be pending before a route is saturated.
+     * @param listener - an optional {@link PoolStatsSampler.SaturationListener}.
+     * @return {@link Client} instance.
+     */
+    public synchronized Client samplePoolStats(long periodInMilliSec, long saturationThresholdInMilliSec,
+                                               PoolStatsSampler.SaturationListener listener) {
+        stopPoolStats();
+        this.poolStatsSampler = new PoolStatsSampler(connectionManager, saturationThresholdInMilliSec, listener)
+                .start(periodInMilliSec);
+        return this;
+    }
+
+    /**
+     * Stops the connection pool stats sampler. Requests created afterwards no longer record lease waits.
+     *
+     * @return {@link Client} instance.
+     */
+    public synchronized Client stopPoolStats() {
+        if (poolStatsSampler != null) {
+            poolStatsSampler.stop();
+            poolStatsSampler = null;
+        }
+        return this;
+    }
+
+    /**
+     * Gets the connection pool stats sampler to read the statistics per route.
+     *
+     * @return the {@link PoolStatsSampler} instance; null if {@link #samplePoolStats} is not started.
+     */
+    public PoolStatsSampler poolStatsSampler() {
+        return poolStatsSampler;
+    }
+
+    /**
+     * Enables client spans for all requests created by this client. The W3C "traceparent" and "tracestate"
+     * headers are propagated from the {@link com.intuit.payments.http.trace.TraceContext} of the thread that
+     * creates each request, with or without a tracer.
+     *
+     * @param tracer - a {@link Tracer} with head and tail sampling and a span sink.
+     * @return {@link Client} instance.
+     */
+    public Client tracing(Tracer tracer) {
+        this.tracer = tracer;
+        return this;
+    }
+
+    /**
+     * Writes response bodies bigger than a threshold to a temp file instead of a String for all requests created by
+     * this client. See {@link Request#spillToDisk(long)}.
+     *
+     * @param thresholdBytes - body size above which it is spilled; 0 to always keep it in memory.
+     * @return {@link Client} instance.
+     */
+    public Client spillToDisk(long thresholdBytes) {
+        this.spillThresholdBytes = thresholdBytes;
+        return this;
+    }
+
+    /**
+     * Fails requests created by this client whose response body exceeds a size.
+     * See {@link Request#maxResponseBytes(long)}.
+     *
+     * @param maxBytes - maximum body size; 0 for unlimited.
+     * @return {@link Client} instance.
+     */
+    public Client maxResponseBytes(long maxBytes) {
+        this.maxResponseBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * Sets whether requests created by this client ask for gzip or deflate compressed responses. It is on by
+     * default. See {@link Request#acceptCompressed(boolean)}.
+     *
+     * @param acceptCompressed - false to not send Accept-Encoding.
+     * @return {@link Client} instance.
+     */
+    public Client acceptCompressed(boolean acceptCompressed) {
+        this.acceptCompressed = acceptCompressed;
+        return this;
+    }
+
+    /**
+     * Sends JSON bodies of requests created by this client gzip compressed once they reach a size.
+     * See {@link Request#compressRequestsAbove(int)}.
+     *
+     * @param thresholdBytes - body size in bytes from which it is compressed; 0 to never compress.
+     * @return {@link Client} instance.
+     */
+    public Client compressRequestsAbove(int thresholdBytes) {
+        this.compressThresholdBytes = thresholdBytes;
+        return this;
+    }
+
+    /**
+     * Records the shape of all requests created by this client to a traffic trace, with URL path templates such
+     * as "/v1/users/{0}" instead of the expanded paths, e.g. to replay production traffic against a new build.
+     *
+     * @param trafficRecorder - a {@link TrafficRecorder}; null to stop recording.
+     * @return {@link Client} instance.
+     */
+    public Client recordTraffic(TrafficRecorder trafficRecorder) {
+        this.trafficRecorder = trafficRecorder;
+        return this;
+    }
+
+    /**
+     * Adds the connection pool, stale cache, rate limiter and load shedder stats of this client to an embedded
+     * Hystrix metrics stream, which always streams the Hystrix command and thread pool metrics of the whole JVM.
+     * Several clients can share one stream; they are named by their server base URL.
+     *
+     * @param server - a {@link MetricsStreamServer}, e.g. from {@link MetricsStreamServer#start(int)}.
+     * @return {@link Client} instance.
+     */
+    public Client metricsStream(MetricsStreamServer server) {
+        server.monitor(serverBaseUrl, connectionManager, this::poolStatsSampler, this::staleResponseCache)
+                .monitorRateLimiters(serverBaseUrl, rateLimiters)
+                .monitorLoadShedders(serverBaseUrl, loadShedders);
+        return this;
+    }
+
+    /**
+     * Checks whether the Hystrix circuit breaker of a given endpoint is open. Callers can use it to skip
+     * building a {@link Request} at all while the downstream server is failing.
+     *
+     * @param endpointName - API endpoint name a.k.a. Hystrix command name. E.g. "GetUsers"
+     * @return true if the circuit is open; false if it is closed or the endpoint has never been called.
+     */
+    public boolean isCircuitOpen(String endpointName) {
+        HystrixCircuitBreaker circuitBreaker = HystrixCircuitBreaker.Factory
+                .getInstance(HystrixCommandKey.Factory.asKey(endpointName));
+        return circuitBreaker != null && circuitBreaker.isOpen();
+    }
+
     /**
      * Creates new {@link Request} instance.
      *
+     * NOTE: The auth header is computed when the request is sent, so it is skipped if the circuit is open.
+     *
      * @param endpointName - API endpoint name a.k.a. Hystrix command name. E.g. "GetUsers"
      * @param endpointGroup - API endpoint group a.k.a. Hystrix command group name. E.g. "UsersGroup"
      * @param urlPath - an API Name a.k.a. a mapping key to a path: "users" -> "/v1/users/{0}"
@@ -211,13 +496,59 @@ public class Client {
      */
     public Request Request(String endpointName, String endpointGroup,
                            String urlPath, Object... urlPathValues) {
+        final AuthInterface auth = authInterface;
         return new Request(connectionManager,
                 getFullURL(serverBaseUrl, urlPath, urlPathValues),
+                serverHost,
                 endpointName,
                 endpointGroup,
                 connectionTimeoutInMilliSec,
-                socketTimeoutInMilliSec)
-                .header(AUTHORIZATION, authInterface.getAuthHeader());
+                socketTimeoutInMilliSec,
+                connectionRequestTimeoutInMilliSec)
+                .header(AUTHORIZATION, () -> auth.getAuthHeader())
+                .staleIfError(staleResponseCache, staleVaryHeaders)
+                .rateLimiter(rateLimiters.get(endpointGroup))
+                .loadShedder(loadShedders.get(endpointGroup))
+                .poolStatsSampler(poolStatsSampler)
+                .tracer(tracer)
+                .recorder(trafficRecorder)
+                .pathTemplate(urlPath)
+                .spillToDisk(spillThresholdBytes)
+                .maxResponseBytes(maxResponseBytes)
+                .acceptCompressed(acceptCompressed)
+                .compressRequestsAbove(compressThresholdBytes);
+    }
+
+    /**
+     * Creates a scatter-gather {@link Batch} of requests with bounded concurrency, an optional deadline and
+     * fail-fast, e.g. for the calls of an aggregation endpoint.
+     *
+     * @param requests - requests created by this client.
+     * @return new {@link Batch} instance.
+     */
+    public Batch batch(Collection<Request> requests) {
+        return new Batch(requests);
+    }
+
+    /**
+     * Executes requests with at most {@link Batch#DEFAULT_MAX_CONCURRENCY} in flight and waits for all of them.
+     *
+     * @param requests - requests created by this client.
+     * @return the {@link BatchResult} in submission order.
+     */
+    public BatchResult executeAll(Collection<Request> requests) {
+        return new Batch(requests).execute();
+    }
+
+    /**
+     * Executes requests with at most {@link Batch#DEFAULT_MAX_CONCURRENCY} in flight without blocking the calling
+     * thread. Cancelling the returned future aborts the requests in flight.
+     *
+     * @param requests - requests created by this client.
+     * @return a {@link CompletableFuture} completed with the {@link BatchResult} in submission order.
+     */
+    public CompletableFuture<BatchResult> executeAllAsync(Collection<Request> requests) {
+        return new Batch(requests).executeAsync();
     }
 
     /**
@@ -233,15 +564,12 @@ public class Client {
     }
 
     /**
-     * Build registry for sslContext
-     * @param sslContext
-     * @return Register with SSLConnectionSocketFactory
+     * Build registry for sslContext. The socket factories record connect and TLS handshake time of
+     * new connections in the request's {@link com.intuit.payments.http.metrics.PhaseTimings}.
+     * @param sslContext - sslContext for certificate setup; null to use the default one.
+     * @return Register with "http" and "https" connection socket factories
      */
     public Registry<ConnectionSocketFactory> getRegistryBuilder (SSLContext sslContext) {
-        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder
-                .<ConnectionSocketFactory> create()
-                .register("https", new SSLConnectionSocketFactory(sslContext))
-                .build();
-        return socketFactoryRegistry;
+        return TimingSocketFactories.registry(sslContext);
     }
 }
@@ -5,17 +5,55 @@
  */
 package com.intuit.payments.http;
 
+import com.intuit.payments.http.body.ByteBufferEntity;
+import com.intuit.payments.http.body.MultipartBody;
+import com.intuit.payments.http.body.PathEntity;
+import com.intuit.payments.http.cache.StaleResponseCache;
+import com.intuit.payments.http.compression.CodecPool;
+import com.intuit.payments.http.compression.DecompressingEntity;
+import com.intuit.payments.http.compression.Gzip;
+import com.intuit.payments.http.exception.HCCircuitOpenException;
+import com.intuit.payments.http.exception.HCLoadShedException;
+import com.intuit.payments.http.exception.HCPoolExhaustedException;
+import com.intuit.payments.http.exception.HCRateLimitedException;
+import com.intuit.payments.http.exception.HCResponseTooLargeException;
+import com.intuit.payments.http.jfr.FallbackEvent;
+import com.intuit.payments.http.json.JsonElementIterator;
+import com.intuit.payments.http.jfr.HttpRequestEvent;
+import com.intuit.payments.http.log.AsyncLogSink;
+import com.intuit.payments.http.log.LogEvent;
+import com.intuit.payments.http.metrics.MetricsRegistry;
+import com.intuit.payments.http.metrics.Phase;
+import com.intuit.payments.http.metrics.PhaseTimings;
+import com.intuit.payments.http.metrics.RequestMetrics;
+import com.intuit.payments.http.metrics.TimingRequestExecutor;
+import com.intuit.payments.http.metrics.TimingSocketFactories;
+import com.intuit.payments.http.pool.PoolStatsSampler;
+import com.intuit.payments.http.ratelimit.TokenBucket;
+import com.intuit.payments.http.record.TrafficRecord;
+import com.intuit.payments.http.record.TrafficRecorder;
+import com.intuit.payments.http.shedding.LoadShedder;
+import com.intuit.payments.http.shedding.Priority;
+import com.intuit.payments.http.trace.TraceContext;
+import com.intuit.payments.http.trace.Tracer;
 import com.intuit.payments.http.util.Util;
 import com.netflix.hystrix.HystrixCommand;
 import com.netflix.hystrix.HystrixCommandGroupKey;
 import com.netflix.hystrix.HystrixCommandKey;
 import com.netflix.hystrix.exception.HystrixTimeoutException;
-import org.apache.http.Header;
+import com.netflix.hystrix.strategy.concurrency.HystrixRequestContext;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.*;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
@@ -24,20 +62,45 @@ import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.observables.SyncOnSubscribe;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.SerialSubscription;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.intuit.payments.http.util.Util.isNullOrBlank;
 import static com.intuit.payments.http.util.Util.toNameValuePairList;
 import static com.netflix.hystrix.HystrixCommandProperties.Setter;
 import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.apache.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.apache.http.HttpHeaders.AUTHORIZATION;
 import static org.apache.http.HttpHeaders.CONTENT_TYPE;
 import static org.apache.http.entity.ContentType.APPLICATION_JSON;
 
@@ -65,6 +128,12 @@ public class Request extends HystrixCommand<Response> {
      */
     private static final int TIMEOUT_BUFFER_BETWEEN_HTTP_CLEINT_AND_HYSTRIX = 10;
 
+    /** Http client timeout value that means the timeout is not set */
+    private static final int UNSET_TIMEOUT = -1;
+
+    /** Body entity size from which "Expect: 100-continue" is sent by default */
+    public static final long EXPECT_CONTINUE_THRESHOLD_BYTES = 1024 * 1024;
+
     /**
      * Date format to return in the X_REQUEST_SENT_AT header
      */
@@ -76,6 +145,17 @@ public class Request extends HystrixCommand<Response> {
      */
     private static final int DEFAULT_CONNECTION_POOL_VALIDATE_AFTER_INACTIVITY = 60000;
 
+    /**
+     * Stateless request executor that records send and time-to-first-byte marks in {@link PhaseTimings}.
+     */
+    private static final TimingRequestExecutor REQUEST_EXECUTOR = new TimingRequestExecutor();
+
+    /**
+     * Asynchronous writer of the "type=http_hystrix;..." request log lines to {@link #LOG}. Its writer thread is
+     * started by the first logged request and drained by a JVM shutdown hook.
+     */
+    private static final AsyncLogSink LOG_SINK = new AsyncLogSink(LOG, 8192);
+
     /**
      * The request URL string.
      */
@@ -87,9 +167,84 @@ public class Request extends HystrixCommand<Response> {
     /** timeout to receive individual packets after connection handshake. */
     private final int socketTimeout;
 
+    /** timeout to lease a connection from the pool; -1 if unset. */
+    private final int connectionRequestTimeout;
+
     /** Hystrix fallback function */
     private Function<Throwable, Response> fallback;
 
+    /** Optional stale-if-error cache of last successful GET responses */
+    private StaleResponseCache staleResponseCache;
+
+    /** Request headers besides Authorization that a stale response varies by */
+    private String[] staleVaryHeaders = new String[0];
+
+    /** Stale cache key, built once */
+    private volatile String staleCacheKey;
+
+    /** Request header names included in the Hystrix request cache key; null if request caching is off */
+    private String[] cacheKeyHeaders;
+
+    /** Optional client-side rate limiter shared by the command group */
+    private TokenBucket rateLimiter;
+
+    /** System.nanoTime() from which the rate limiter permit reserved before submission may be used */
+    private volatile long permitAtNanos;
+
+    /** Request priority for load shedding */
+    private Priority priority = Priority.DEFAULT;
+
+    /** Optional admission control shared by the command group */
+    private LoadShedder loadShedder;
+
+    /** System.nanoTime() when this request was admitted by the loadShedder */
+    private volatile long admittedAtNanos;
+
+    /** A response with a spilled or streamed body returned by run(), until Hystrix delivers it or it times out */
+    private final AtomicReference<Response> undeliveredResponse = new AtomicReference<>();
+
+    /** Optional per-route connection pool stats shared by the client */
+    private PoolStatsSampler poolStatsSampler;
+
+    /** Trace context of the thread that created this request; null if none */
+    private final TraceContext parentTraceContext;
+
+    /** Optional tracer to record a client span per execution */
+    private Tracer tracer;
+
+    /** Trace context propagated in the "traceparent" header; the client span if a tracer is set */
+    private TraceContext traceContext;
+
+    /** Optional recorder of the traffic shape of this request */
+    private TrafficRecorder trafficRecorder;
+
+    /** URL path template such as "/v1/users/{0}" to be recorded instead of the expanded URL path */
+    private String pathTemplate;
+
+    /** Http request being executed by {@link #run()}; null if none */
+    private volatile HttpUriRequest inFlightRequest;
+
+    /** Set by {@link #abort()} to abort the Http request as soon as it is created */
+    private volatile boolean aborted;
+
+    /** true to leave a successful response body unread in the {@link Response} to be streamed */
+    private boolean streamBody;
+
+    /** Time budget to read a streamed body after the response headers; 0 if unbounded */
+    private long transferTimeoutInMilliSec;
+
+    /** Body size above which it is written to a temp file instead of a String; 0 to never spill */
+    private long spillThresholdBytes;
+
+    /** Maximum response body size; 0 for unlimited */
+    private long maxResponseBytes;
+
+    /** Whether to send "Accept-Encoding: gzip, deflate" */
+    private boolean acceptCompressed = true;
+
+    /** JSON body size from which it is sent gzip compressed; 0 to never compress */
+    private int compressThresholdBytes;
+
     /**
      * HttpVerb method of the request.
      */
@@ -100,16 +255,41 @@ public class Request extends HystrixCommand<Response> {
      */
     private Map<String, String> headerMap = new HashMap<>();
 
+    /**
+     * Optional request headers whose values are computed in {@link #run()}, such as the auth header.
+     * A header with the same name in headerMap takes precedence.
+     */
+    private Map<String, Supplier<String>> lazyHeaderMap;
+
+    /** Lazy header values once computed; "" for a null or blank value */
+    private Map<String, String> resolvedLazyHeaders;
+
     /**
      * JSON key-value pairs in a String format.
      */
     private String jsonBody;
 
+    /**
+     * Request payload object. It is converted to jsonBody in {@link #run()} so that a short-circuited
+     * request never pays for the JSON serialization.
+     */
+    private Object bodyObject;
+
     /**
      * {@link UrlEncodedFormEntity} to store HTML Form POST name-value pairs body.
      */
     private UrlEncodedFormEntity urlEncodedFormEntity;
 
+    /**
+     * A file, buffer, stream or multipart request body sent as is instead of jsonBody. POST, PUT, and PATCH only!
+     */
+    private HttpEntity bodyEntity;
+
+    /**
+     * Whether to send "Expect: 100-continue"; null to send it for body entities of unknown or large size.
+     */
+    private Boolean expectContinue;
+
     /**
      * Any HttpVerb Response code greater than or equal to this value will throw a @{@link RuntimeException}.
      * Default value is 500.
@@ -117,14 +297,14 @@ public class Request extends HystrixCommand<Response> {
     private int failedStatusCode = 500;
 
     /**
-     * Log string builder
+     * Connection pool manager instance.
      */
-    private StringBuilder logStr = new StringBuilder("type=http_hystrix;");
+    private final PoolingHttpClientConnectionManager connectionManager;
 
     /**
-     * Connection pool manager instance.
+     * Latency, byte and status code metrics of this command key, group and host.
      */
-    private final PoolingHttpClientConnectionManager connectionManager;
+    private final RequestMetrics metrics;
 
     /**
      * A constructor that takes a custom {@PoolingHttpClientConnectionManager} instance.
@@ -146,12 +326,64 @@ public class Request extends HystrixCommand<Response> {
             String hystrixGroupName,
             int connectionTimeoutInMilliSec,
             int socketTimeoutInMilliSec) {
+        this(connectionManager, url, hystrixCommandName, hystrixGroupName, connectionTimeoutInMilliSec,
+                socketTimeoutInMilliSec, UNSET_TIMEOUT);
+    }
+
+    /**
+     * A constructor that takes a custom {@PoolingHttpClientConnectionManager} instance and a connection
+     * request timeout. Package-level access only.
+     *
+     * @param connectionManager - Http client Connection Pool Manager instance.
+     * @param url - URL to be called.
+     * @param hystrixCommandName - Hystrix command name.
+     * @param hystrixGroupName - Hystrix command group name.
+     * @param connectionTimeoutInMilliSec - Time to wait to get a connection.
+     * @param socketTimeoutInMilliSec - Time to wait to send a request and receive a response.
+     * @param connectionRequestTimeoutInMilliSec - Time to wait to lease a connection from the pool. -1 is unset.
+     *
+     * Hystrix Timeout = (Connection Request Timeout + Connection Timeout + Socket Timeout) + 10 milliseconds buffer.
+     */
+    Request(
+            PoolingHttpClientConnectionManager connectionManager,
+            String url,
+            String hystrixCommandName,
+            String hystrixGroupName,
+            int connectionTimeoutInMilliSec,
+            int socketTimeoutInMilliSec,
+            int connectionRequestTimeoutInMilliSec) {
+        this(connectionManager, url, MetricsRegistry.hostOf(url), hystrixCommandName, hystrixGroupName,
+                connectionTimeoutInMilliSec, socketTimeoutInMilliSec, connectionRequestTimeoutInMilliSec);
+    }
+
+    /**
+     * Constructor for a shared connection pool with the host of the URL already parsed, e.g. once per
+     * {@link Client}. Package-level access only.
+     *
+     * @param connectionManager - Http client Connection Pool Manager instance.
+     * @param url - URL to be called.
+     * @param host - host of the URL, used as the metrics label.
+     * @param hystrixCommandName - Hystrix command name.
+     * @param hystrixGroupName - Hystrix command group name.
+     * @param connectionTimeoutInMilliSec - Time to wait to get a connection.
+     * @param socketTimeoutInMilliSec - Time to wait to send a request and receive a response.
+     * @param connectionRequestTimeoutInMilliSec - Time to wait to lease a connection from the pool. -1 is unset.
+     */
+    Request(
+            PoolingHttpClientConnectionManager connectionManager,
+            String url,
+            String host,
+            String hystrixCommandName,
+            String hystrixGroupName,
+            int connectionTimeoutInMilliSec,
+            int socketTimeoutInMilliSec,
+            int connectionRequestTimeoutInMilliSec) {
         super(Setter.withGroupKey(HystrixCommandGroupKey.Factory
                 .asKey(hystrixGroupName))
                 .andCommandKey(HystrixCommandKey.Factory.asKey(hystrixCommandName))
                 .andCommandPropertiesDefaults(Setter()
-                        .withExecutionTimeoutInMilliseconds(connectionTimeoutInMilliSec + socketTimeoutInMilliSec
-                        + TIMEOUT_BUFFER_BETWEEN_HTTP_CLEINT_AND_HYSTRIX)));
+                        .withExecutionTimeoutInMilliseconds(hystrixTimeout(connectionTimeoutInMilliSec,
+                                socketTimeoutInMilliSec, connectionRequestTimeoutInMilliSec))));
         if (connectionManager == null) {
             throw new IllegalArgumentException("connectionManager must not be NULL");
         }
@@ -159,7 +391,9 @@ public class Request extends HystrixCommand<Response> {
         this.url = url;
         this.socketTimeout = socketTimeoutInMilliSec;
         this.connectionTimeout = connectionTimeoutInMilliSec;
-        this.logStr.append("outURL=").append(url);
+        this.connectionRequestTimeout = connectionRequestTimeoutInMilliSec;
+        this.parentTraceContext = TraceContext.current();
+        this.metrics = MetricsRegistry.getInstance().forRequest(hystrixCommandName, hystrixGroupName, host);
     }
 
     /**
@@ -179,18 +413,63 @@ public class Request extends HystrixCommand<Response> {
             String hystrixGroupName,
             int connectionTimeoutInMilliSec,
             int socketTimeoutInMilliSec) {
+        this(url, hystrixCommandName, hystrixGroupName, connectionTimeoutInMilliSec, socketTimeoutInMilliSec,
+                UNSET_TIMEOUT);
+    }
+
+    /**
+     * Constructor for per-request Http client config with a connection request timeout.
+     *
+     * @param url - URL to be called.
+     * @param hystrixCommandName - Hystrix command name.
+     * @param hystrixGroupName - Hystrix command group name.
+     * @param connectionTimeoutInMilliSec - Time to wait to get a connection.
+     * @param socketTimeoutInMilliSec - Time to wait to send a request and receive a response.
+     * @param connectionRequestTimeoutInMilliSec - Time to wait to lease a connection from the pool. -1 is unset.
+     *
+     * Hystrix Timeout = (Connection Request Timeout + Connection Timeout + Socket Timeout) + 10 milliseconds buffer.
+     */
+    public Request(
+            String url,
+            String hystrixCommandName,
+            String hystrixGroupName,
+            int connectionTimeoutInMilliSec,
+            int socketTimeoutInMilliSec,
+            int connectionRequestTimeoutInMilliSec) {
         super(Setter.withGroupKey(HystrixCommandGroupKey.Factory
                 .asKey(hystrixGroupName))
                 .andCommandKey(HystrixCommandKey.Factory.asKey(hystrixCommandName))
                 .andCommandPropertiesDefaults(Setter()
-                        .withExecutionTimeoutInMilliseconds(connectionTimeoutInMilliSec + socketTimeoutInMilliSec
-                                + TIMEOUT_BUFFER_BETWEEN_HTTP_CLEINT_AND_HYSTRIX)));
-        this.connectionManager = new PoolingHttpClientConnectionManager();
+                        .withExecutionTimeoutInMilliseconds(hystrixTimeout(connectionTimeoutInMilliSec,
+                                socketTimeoutInMilliSec, connectionRequestTimeoutInMilliSec))));
+        this.connectionRequestTimeout = connectionRequestTimeoutInMilliSec;
+        this.connectionManager = new PoolingHttpClientConnectionManager(TimingSocketFactories.registry(null));
         this.connectionManager.setValidateAfterInactivity(DEFAULT_CONNECTION_POOL_VALIDATE_AFTER_INACTIVITY);
         this.url = url;
         this.socketTimeout = socketTimeoutInMilliSec;
         this.connectionTimeout = connectionTimeoutInMilliSec;
-        this.logStr.append("outURL=").append(url);
+        this.parentTraceContext = TraceContext.current();
+        this.metrics = MetricsRegistry.getInstance().forUrl(hystrixCommandName, hystrixGroupName, url);
+    }
+
+    /**
+     * Gets the asynchronous request log writer to tune success sampling and body capture, or to read its
+     * dropped and written counts. Request log lines go to this class' logger. Applications that stop logging
+     * before the JVM exits can drain it with {@link AsyncLogSink#shutdown(long)}.
+     *
+     * @return the shared {@link AsyncLogSink} instance.
+     */
+    public static AsyncLogSink logSink() {
+        return LOG_SINK;
+    }
+
+    /**
+     * Computes the Hystrix execution timeout so that it covers the connection lease, connect and socket timeouts.
+     */
+    private static int hystrixTimeout(int connectionTimeoutInMilliSec, int socketTimeoutInMilliSec,
+                                      int connectionRequestTimeoutInMilliSec) {
+        return Math.max(0, connectionRequestTimeoutInMilliSec) + connectionTimeoutInMilliSec
+                + socketTimeoutInMilliSec + TIMEOUT_BUFFER_BETWEEN_HTTP_CLEINT_AND_HYSTRIX;
     }
 
     /**
@@ -204,6 +483,426 @@ public class Request extends HystrixCommand<Response> {
         return this;
     }
 
+    /**
+     * Enables the stale-if-error fallback for a GET request. A successful response is kept in the given cache
+     * and the last one is returned marked as stale when the call fails, times out or the circuit is open.
+     * A custom {@link #fallback(Function)} takes precedence.
+     *
+     * Responses are keyed by command name, verb, URL, the Authorization header and the given vary headers, so a
+     * response is only ever served to a request with the same credentials.
+     *
+     * @param staleResponseCache - a cache of last-known-good responses.
+     * @param varyHeaderNames - optional request header names the response also varies by, such as "Company-Id".
+     * @return this {@link Request} instance.
+     */
+    public Request staleIfError(StaleResponseCache staleResponseCache, String... varyHeaderNames) {
+        this.staleResponseCache = staleResponseCache;
+        this.staleVaryHeaders = (varyHeaderNames == null) ? new String[0] : varyHeaderNames;
+        this.staleCacheKey = null;
+        return this;
+    }
+
+    /**
+     * Sets a client-side rate limiter. A permit is reserved before the request is submitted to the Hystrix thread
+     * pool. If none is available within the limiter's maximum wait, the request is not submitted; it gets the
+     * custom or stale-if-error fallback if any, or fails with {@link HCRateLimitedException}, so throttling never
+     * counts toward the circuit breaker. Otherwise the request waits for its permit in the Hystrix thread, and the
+     * wait counts toward the Hystrix timeout.
+     *
+     * @param rateLimiter - a {@link TokenBucket} instance, usually shared by a command group.
+     * @return this {@link Request} instance.
+     */
+    public Request rateLimiter(TokenBucket rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    /**
+     * Sets the request priority. When the command group's {@link LoadShedder} is saturated,
+     * SHEDDABLE requests are shed first, then DEFAULT ones. CRITICAL requests are never shed.
+     *
+     * @param priority - a request {@link Priority}. Default is DEFAULT.
+     * @return this {@link Request} instance.
+     */
+    public Request priority(Priority priority) {
+        this.priority = (priority == null) ? Priority.DEFAULT : priority;
+        return this;
+    }
+
+    /**
+     * Sets a priority-aware admission control. A shed request is not submitted to the Hystrix thread pool;
+     * it gets the custom or stale-if-error fallback if any, or fails with {@link HCLoadShedException}.
+     *
+     * @param loadShedder - a {@link LoadShedder} instance, usually shared by a command group.
+     * @return this {@link Request} instance.
+     */
+    public Request loadShedder(LoadShedder loadShedder) {
+        this.loadShedder = loadShedder;
+        return this;
+    }
+
+    /**
+     * Sets the per-route connection pool stats to record the time this request waited to lease a connection.
+     *
+     * @param poolStatsSampler - a {@link PoolStatsSampler} of the connection pool, usually shared by a client.
+     * @return this {@link Request} instance.
+     */
+    public Request poolStatsSampler(PoolStatsSampler poolStatsSampler) {
+        this.poolStatsSampler = poolStatsSampler;
+        return this;
+    }
+
+    /**
+     * Sets a tracer to record a client span of this request. The span is a child of the trace context of the
+     * thread that created this request, or the root of a new trace if there is none.
+     *
+     * NOTE: Without a tracer, the creating thread's trace context is still propagated as is.
+     *
+     * @param tracer - a {@link Tracer} instance, usually shared by a client.
+     * @return this {@link Request} instance.
+     */
+    public Request tracer(Tracer tracer) {
+        this.tracer = tracer;
+        return this;
+    }
+
+    /**
+     * Sets a recorder to write the shape of this request's execution to a traffic trace: verb, URL path template,
+     * header names, body sizes, status and latency. Header values are never recorded.
+     *
+     * @param trafficRecorder - a {@link TrafficRecorder} instance, usually shared by a client.
+     * @return this {@link Request} instance.
+     */
+    public Request recorder(TrafficRecorder trafficRecorder) {
+        this.trafficRecorder = trafficRecorder;
+        return this;
+    }
+
+    /**
+     * Sets the URL path template to be recorded by a {@link TrafficRecorder}. Package-level access only.
+     *
+     * @param pathTemplate - a URL path template such as "/v1/users/{0}".
+     * @return this {@link Request} instance.
+     */
+    Request pathTemplate(String pathTemplate) {
+        this.pathTemplate = pathTemplate;
+        return this;
+    }
+
+    /**
+     * Admits this request through the {@link LoadShedder} and reserves a {@link TokenBucket} permit before it is
+     * submitted to the Hystrix thread pool. A rejected request never runs, so it does not count toward the circuit
+     * breaker. A stream body is closed when the command terminates, even if it was never sent.
+     *
+     * @return an {@link Observable} that executes the command when subscribed.
+     */
+    @Override
+    public Observable<Response> toObservable() {
+        Observable<Response> observable = (loadShedder == null && rateLimiter == null) ? super.toObservable() : admit();
+        if (bodyEntity == null || bodyEntity.isRepeatable()) {
+            return observable;
+        }
+        final Action0 closeBody = this::closeBody;
+        return observable.doOnTerminate(closeBody).doOnUnsubscribe(closeBody);
+    }
+
+    /**
+     * Executes this request through the {@link LoadShedder} and {@link TokenBucket}, or gets the fallback of a
+     * rejected request.
+     */
+    private Observable<Response> admit() {
+        return Observable.defer(() -> {
+            if (loadShedder != null) {
+                if (!loadShedder.tryAdmit(priority)) {
+                    metrics.recordShed(priority);
+                    return rejectedFallback(HCLoadShedException.INSTANCE, FallbackEvent.SHED);
+                }
+                metrics.recordAdmitted(priority);
+            }
+            if (rateLimiter != null) {
+                permitAtNanos = rateLimiter.tryReserve();
+                if (permitAtNanos == TokenBucket.REJECTED) {
+                    if (loadShedder != null) {
+                        loadShedder.release();
+                    }
+                    metrics.recordRateLimited();
+                    LOG.debug("type=http_hystrix;outURL={};http={};ex=rate_limited", url, httpVerb);
+                    return rejectedFallback(HCRateLimitedException.INSTANCE, FallbackEvent.RATE_LIMITED);
+                }
+            }
+            if (loadShedder == null) {
+                return super.toObservable();
+            }
+            admittedAtNanos = System.nanoTime();
+            final AtomicBoolean released = new AtomicBoolean();
+            final Action0 release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    loadShedder.release();
+                }
+            };
+            return super.toObservable().doOnTerminate(release).doOnUnsubscribe(release);
+        });
+    }
+
+    /**
+     * Executes this request without blocking the calling thread.
+     *
+     * Cancelling the returned future unsubscribes from the command and aborts the Http request, which closes its
+     * pooled connection instead of waiting for the response.
+     *
+     * @return a {@link CompletableFuture} completed with the {@link Response}, or exceptionally with the same
+     * exception {@link #execute()} would throw.
+     */
+    public CompletableFuture<Response> executeAsync() {
+        return executeAsync(response -> response);
+    }
+
+    /**
+     * Executes this request without blocking the calling thread and de-serializes the response body via Gson on
+     * the Hystrix thread.
+     *
+     * @param clazz - a Class to be de-serialized.
+     * @param <T> - a generic Type <T> of the given class.
+     * @return a {@link CompletableFuture} completed with the instance of the given clazz, or null if the body is
+     * not JSON. See {@link #executeAsync()}.
+     */
+    public <T> CompletableFuture<T> executeAsync(Class<T> clazz) {
+        return executeAsync(response -> response.json(clazz));
+    }
+
+    private <T> CompletableFuture<T> executeAsync(Func1<Response, T> decoder) {
+        final SerialSubscription subscription = new SerialSubscription();
+        final CompletableFuture<T> future = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                if (cancelled) {
+                    subscription.unsubscribe();
+                    abort();
+                }
+                return cancelled;
+            }
+        };
+        subscription.set(toObservable().map(decoder).subscribe(future::complete,
+                e -> future.completeExceptionally(e instanceof Exception ? decomposeException((Exception) e) : e)));
+        return future;
+    }
+
+    /**
+     * Writes a response body bigger than a threshold to a temp file instead of a String, to protect the heap from
+     * unexpectedly large payloads. See {@link Response#isSpilled()}.
+     *
+     * NOTE: A request that may spill is not cached by {@link #requestCache(String...)}.
+     *
+     * @param thresholdBytes - body size above which it is spilled; 0 to always keep it in memory.
+     * @return this {@link Request} instance.
+     */
+    public Request spillToDisk(long thresholdBytes) {
+        if (thresholdBytes < 0) {
+            throw new IllegalArgumentException("thresholdBytes must not be negative");
+        }
+        this.spillThresholdBytes = thresholdBytes;
+        return this;
+    }
+
+    /**
+     * Fails the request with {@link HCResponseTooLargeException} and closes the connection as soon as the response
+     * body is known to exceed a size, from its Content-Length or while it is read, instead of running out of memory.
+     *
+     * @param maxBytes - maximum body size; 0 for unlimited.
+     * @return this {@link Request} instance.
+     */
+    public Request maxResponseBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative");
+        }
+        this.maxResponseBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * Sets whether to ask for a gzip or deflate compressed response with "Accept-Encoding: gzip, deflate". It is on
+     * by default. A compressed response is decoded with a pooled inflater whether it was asked for or not, and its
+     * Content-Encoding and Content-Length headers are removed.
+     *
+     * @param acceptCompressed - false to not send Accept-Encoding, e.g. for a server that compresses poorly.
+     * @return this {@link Request} instance.
+     */
+    public Request acceptCompressed(boolean acceptCompressed) {
+        this.acceptCompressed = acceptCompressed;
+        return this;
+    }
+
+    /**
+     * Sends a JSON body gzip compressed with "Content-Encoding: gzip" once it reaches a size. Small bodies are not
+     * worth the CPU time and the gzip overhead. Only enable it for servers that accept compressed requests.
+     *
+     * @param thresholdBytes - body size in bytes from which it is compressed; 0 to never compress.
+     * @return this {@link Request} instance.
+     */
+    public Request compressRequestsAbove(int thresholdBytes) {
+        if (thresholdBytes < 0) {
+            throw new IllegalArgumentException("thresholdBytes must not be negative");
+        }
+        this.compressThresholdBytes = thresholdBytes;
+        return this;
+    }
+
+    /**
+     * Leaves a successful response body unread in the {@link Response}, to be read incrementally by
+     * {@link Response#iterate(Class)} instead of being loaded into {@link Response#rawString()}.
+     *
+     * The Hystrix timeout covers the call up to the response headers only, so reading a big body is bounded by a
+     * separate transfer timeout, checked between reads, and by the socket timeout of each read. The pooled
+     * connection stays leased until the body is read to the end or its iterator is closed.
+     *
+     * @param transferTimeoutInMilliSec - time to read the body after the response headers; 0 for unbounded.
+     * @return this {@link Request} instance.
+     */
+    public Request streamBody(long transferTimeoutInMilliSec) {
+        if (transferTimeoutInMilliSec < 0) {
+            throw new IllegalArgumentException("transferTimeoutInMilliSec must not be negative");
+        }
+        this.streamBody = true;
+        this.transferTimeoutInMilliSec = transferTimeoutInMilliSec;
+        return this;
+    }
+
+    /**
+     * Executes this request and streams the elements of a top-level JSON array or NDJSON response body with
+     * backpressure: elements are parsed one at a time, on a Rx I/O thread or the requesting thread, only as the
+     * subscriber requests them, so a big body is never held in memory.
+     *
+     * The Hystrix command, its timeout and the circuit breaker cover the call up to the response headers; reading
+     * the body is bounded by the socket timeout and the transfer timeout of {@link #streamBody(long)}, if set. The
+     * pooled connection is returned when the body is read to the end, or closed when the subscriber unsubscribes
+     * early or an error occurs. A fallback response is streamed from its raw string.
+     *
+     * @param clazz - a Class to de-serialize each element to.
+     * @param <T> - a generic Type <T> of the given class.
+     * @return a cold {@link Observable} of the elements; it executes the request when subscribed.
+     */
+    public <T> Observable<T> stream(Class<T> clazz) {
+        streamBody = true;
+        return toObservable().flatMap(response -> Observable.create(SyncOnSubscribe.<JsonElementIterator<T>, T>
+                createSingleState(
+                        () -> response.iterate(clazz),
+                        (iterator, observer) -> {
+                            if (iterator.hasNext()) {
+                                observer.onNext(iterator.next());
+                            } else {
+                                observer.onCompleted();
+                            }
+                        },
+                        Request::closeQuietly))
+                .subscribeOn(Schedulers.io()));
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LOG.debug("type=http_hystrix;ex=close_failed;msg={}", e.getMessage());
+        }
+    }
+
+    /**
+     * Aborts the Http request if it is being executed, or as soon as it is created.
+     */
+    private void abort() {
+        aborted = true;
+        HttpUriRequest httpUriRequest = inFlightRequest;
+        if (httpUriRequest != null) {
+            httpUriRequest.abort();
+        }
+    }
+
+    /**
+     * Throws {@link HCLoadShedException} and {@link HCRateLimitedException} from {@link #execute()} as is, instead
+     * of wrapping them in a HystrixRuntimeException, since a rejected request never reaches Hystrix.
+     */
+    @Override
+    protected RuntimeException decomposeException(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause == HCLoadShedException.INSTANCE) {
+                return HCLoadShedException.INSTANCE;
+            }
+            if (cause == HCRateLimitedException.INSTANCE) {
+                return HCRateLimitedException.INSTANCE;
+            }
+        }
+        return super.decomposeException(e);
+    }
+
+    /**
+     * Gets a custom or stale-if-error fallback for a shed or rate-limited request without running it through
+     * Hystrix.
+     *
+     * @param rejection - the preallocated exception the request is rejected with.
+     * @param cause - the {@link FallbackEvent} cause.
+     */
+    private Observable<Response> rejectedFallback(RuntimeException rejection, String cause) {
+        final FallbackEvent jfrEvent = new FallbackEvent();
+        jfrEvent.begin();
+        String resolution = FallbackEvent.NONE;
+        try {
+            if (fallback != null) {
+                resolution = FallbackEvent.CUSTOM;
+                return Observable.just(fallback.apply(rejection));
+            }
+            Response staleResponse = isStaleIfErrorEnabled() ? staleResponseCache.get(staleCacheKey()) : null;
+            if (staleResponse != null) {
+                resolution = FallbackEvent.STALE;
+                return Observable.just(staleResponse);
+            }
+            return Observable.error(rejection);
+        } catch (RuntimeException e) {
+            return Observable.error(e);
+        } finally {
+            commitFallbackEvent(jfrEvent, cause, resolution, rejection);
+        }
+    }
+
+    /**
+     * Enables Hystrix request-scoped caching for a GET or HEAD request. Duplicate calls with the same verb, URL
+     * and values of the given headers within one {@link HystrixRequestContext} are made only once on the wire
+     * and the rest get the same {@link Response}.
+     *
+     * NOTE: It has no effect if the HystrixRequestContext is not initialized in the calling thread.
+     *
+     * @param headerNames - optional request header names to be included in the cache key, such as "Authorization".
+     * @return this {@link Request} instance.
+     */
+    public Request requestCache(String... headerNames) {
+        this.cacheKeyHeaders = (headerNames == null) ? new String[0] : headerNames;
+        return this;
+    }
+
+    /**
+     * Builds a Hystrix request cache key from verb, URL and the selected header values, including lazy ones such
+     * as the client's Authorization header.
+     *
+     * A streamed body can be read only once, so a request with {@link #stream(Class)} or {@link #streamBody(long)}
+     * is never cached. Neither is a request with {@link #spillToDisk(long)}, since closing a spilled
+     * {@link Response} deletes the file every other caller would read.
+     *
+     * @return a cache key; null if request caching is not enabled for this request or its body is streamed or may
+     * be spilled.
+     */
+    @Override
+    protected String getCacheKey() {
+        if (cacheKeyHeaders == null || streamBody || spillThresholdBytes > 0
+                || (httpVerb != HttpVerb.GET && httpVerb != HttpVerb.HEAD)
+                || !HystrixRequestContext.isCurrentThreadInitialized()) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(url.length() + 32).append(httpVerb).append(' ').append(url);
+        for (String name : cacheKeyHeaders) {
+            key.append(';').append(name).append('=').append(headerValue(name));
+        }
+        return key.toString();
+    }
+
     /**
      * If {@link #execute()} or {@link #queue()} fails in any way then this method will be invoked to provide an opportunity to return a fallback response.
      * <p>
@@ -214,13 +913,106 @@ public class Request extends HystrixCommand<Response> {
      * If network traffic is wanted for fallback (such as going to MemCache) then the fallback implementation should invoke another {@link HystrixCommand} instance that protects against that network
      * access and possibly has another level of fallback that does not involve network access.
      * <p>
-     * DEFAULT BEHAVIOR: It throws UnsupportedOperationException.
+     * DEFAULT BEHAVIOR: It applies the {@link #fallback(Function)} function if one is set. Otherwise it returns
+     * the stale response from {@link #staleIfError(StaleResponseCache, String...)} if any, or throws the
+     * preallocated {@link HCCircuitOpenException} if the circuit is open. Otherwise there is no fallback, and
+     * {@link #execute()} throws a {@link com.netflix.hystrix.exception.HystrixRuntimeException} caused by the
+     * original failure.
      *
-     * @return R or throw UnsupportedOperationException if not implemented
+     * @return the fallback or stale {@link Response}.
      */
     @Override
     protected Response getFallback() {
-        return (fallback != null) ? fallback.apply(getExecutionException()) : super.getFallback();
+        if (isResponseTimedOut()) {
+            closeUndeliveredResponse();
+        }
+        final FallbackEvent jfrEvent = new FallbackEvent();
+        jfrEvent.begin();
+        String resolution = FallbackEvent.NONE;
+        try {
+            if (fallback != null) {
+                resolution = FallbackEvent.CUSTOM;
+                return fallback.apply(getExecutionException());
+            }
+            if (isStaleIfErrorEnabled()) {
+                Response staleResponse = staleResponseCache.get(staleCacheKey());
+                if (staleResponse != null) {
+                    resolution = FallbackEvent.STALE;
+                    return staleResponse;
+                }
+            }
+            if (isResponseShortCircuited()) {
+                throw HCCircuitOpenException.INSTANCE;
+            }
+            return super.getFallback();
+        } finally {
+            commitFallbackEvent(jfrEvent, fallbackCause(), resolution, getExecutionException());
+        }
+    }
+
+    /**
+     * Closes a stream body without reading it, e.g. when this request is short-circuited, shed, rate-limited or
+     * served from the request cache and never sent. Closing it again after it was sent does nothing.
+     */
+    private void closeBody() {
+        try {
+            if (bodyEntity instanceof Closeable) {
+                ((Closeable) bodyEntity).close();
+            } else if (bodyEntity instanceof InputStreamEntity) {
+                bodyEntity.getContent().close();
+            }
+        } catch (IOException e) {
+            LOG.debug("type=http_hystrix;ex=body_close_failed;msg={}", e.getMessage());
+        }
+    }
+
+    /**
+     * Releases the temp file or connection of a response that run() returned after, or while, this command timed
+     * out, since Hystrix never delivers it. Either run() or the timeout's getFallback() gets to it, whichever is
+     * last.
+     */
+    private void closeUndeliveredResponse() {
+        Response response = undeliveredResponse.getAndSet(null);
+        if (response != null) {
+            response.close();
+        }
+    }
+
+    private static void deleteSpilledBody(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete the spilled response body {}", file, e);
+        }
+    }
+
+    /**
+     * Classifies why this command fell back.
+     */
+    private String fallbackCause() {
+        if (isResponseShortCircuited()) {
+            return FallbackEvent.SHORT_CIRCUITED;
+        }
+        if (isResponseRejected()) {
+            return FallbackEvent.REJECTED;
+        }
+        if (isResponseTimedOut()) {
+            return FallbackEvent.TIMEOUT;
+        }
+        Throwable executionException = getExecutionException();
+        if (executionException instanceof HCPoolExhaustedException) {
+            return FallbackEvent.POOL_EXHAUSTED;
+        }
+        return FallbackEvent.FAILURE;
+    }
+
+    private void commitFallbackEvent(FallbackEvent jfrEvent, String cause, String resolution, Throwable exception) {
+        jfrEvent.end();
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.fallback(getCommandKey().name(), getCommandGroup().name(), metrics.host(), cause, resolution,
+                    exception == null ? null : exception.getClass().getName());
+            jfrEvent.commit();
+        }
     }
 
     /**
@@ -309,6 +1101,25 @@ public class Request extends HystrixCommand<Response> {
         return this;
     }
 
+    /**
+     * Sets a request header whose value is computed only when the request is actually sent.
+     * Package-level access only.
+     *
+     * @param name - a HttpVerb header name
+     * @param valueSupplier - a supplier of the header value. A null or blank value is skipped.
+     * @return {@link Request} instance.
+     */
+    Request header(String name, Supplier<String> valueSupplier) {
+        if (!isNullOrBlank(name) && valueSupplier != null) {
+            if (lazyHeaderMap == null) {
+                lazyHeaderMap = new HashMap<>();
+                resolvedLazyHeaders = new ConcurrentHashMap<>();
+            }
+            lazyHeaderMap.put(name, valueSupplier);
+        }
+        return this;
+    }
+
     /**
      * Sets request headers. The "Accept" and "Content-Type" headers are auto-included.
      *
@@ -330,17 +1141,105 @@ public class Request extends HystrixCommand<Response> {
      */
     public Request bodyStr(String body) {
         this.jsonBody = body;
+        this.bodyObject = null;
+        this.bodyEntity = null;
         return this;
     }
 
     /**
-     * Sets a request payload by converting to JSON string. POST, PUT, and PATCH only!
+     * Sets a request payload to be converted to JSON string. POST, PUT, and PATCH only!
+     *
+     * NOTE: The conversion is deferred until the request is executed, so it is skipped if the circuit is open.
      *
      * @param request - Request payload object, such as Map<String,?> or DTO instance.
      * @return {@link Request} instance.
      */
     public Request body(Object request) {
-        this.jsonBody = Util.toJson(request);
+        this.bodyObject = request;
+        this.jsonBody = null;
+        this.bodyEntity = null;
+        return this;
+    }
+
+    /**
+     * Sets a file as the request body, streamed from disk with a Content-Length when the request is sent, so it is
+     * never read into the heap. Its size is taken now. POST, PUT, and PATCH only!
+     *
+     * The content type is "application/octet-stream" unless a Content-Type header is set. The Hystrix timeout also
+     * covers the upload, so size the socket timeout of big uploads accordingly.
+     *
+     * @param file - a regular file.
+     * @return {@link Request} instance.
+     * @throws IllegalArgumentException if the file is not a readable regular file.
+     */
+    public Request body(Path file) {
+        return bodyEntity(new PathEntity(file, ContentType.APPLICATION_OCTET_STREAM));
+    }
+
+    /**
+     * Sets the remaining bytes of a buffer as the request body, e.g. a memory-mapped file, without copying it into
+     * a byte array. The buffer must not change until the request completes. POST, PUT, and PATCH only!
+     *
+     * The content type is "application/octet-stream" unless a Content-Type header is set.
+     *
+     * @param buffer - a buffer; its bytes from position to limit are sent.
+     * @return {@link Request} instance.
+     */
+    public Request body(ByteBuffer buffer) {
+        return bodyEntity(new ByteBufferEntity(buffer, ContentType.APPLICATION_OCTET_STREAM));
+    }
+
+    /**
+     * Sets an input stream as the request body, read through a fixed buffer when the request is sent and then
+     * closed. It can only be sent once, so the request must not be retried. POST, PUT, and PATCH only!
+     *
+     * The stream is closed when the request terminates in any way, also when it is never sent because it is
+     * short-circuited, shed, rate-limited or served from the request cache.
+     *
+     * The content type is "application/octet-stream" unless a Content-Type header is set.
+     *
+     * @param in - an input stream.
+     * @param length - number of bytes to send; -1 if unknown, which sends the body chunked.
+     * @return {@link Request} instance.
+     */
+    public Request body(InputStream in, long length) {
+        if (in == null) {
+            throw new IllegalArgumentException("in must not be NULL");
+        }
+        return bodyEntity(new InputStreamEntity(in, length, ContentType.APPLICATION_OCTET_STREAM));
+    }
+
+    /**
+     * Sets a streaming "multipart/form-data" request body. POST, PUT, and PATCH only!
+     *
+     * @param multipart - a {@link MultipartBody}.
+     * @return {@link Request} instance.
+     */
+    public Request body(MultipartBody multipart) {
+        if (multipart == null) {
+            throw new IllegalArgumentException("multipart must not be NULL");
+        }
+        return bodyEntity(multipart);
+    }
+
+    private Request bodyEntity(HttpEntity entity) {
+        this.bodyEntity = entity;
+        this.jsonBody = null;
+        this.bodyObject = null;
+        return this;
+    }
+
+    /**
+     * Sets whether to send "Expect: 100-continue" and wait up to 3 seconds for the server to accept the request
+     * headers before sending the body, so a rejected upload, e.g. Http 401 or 413, does not send the body at all.
+     * It costs a round trip, so by default it is only sent for file, stream and multipart bodies of unknown size or
+     * at least {@link #EXPECT_CONTINUE_THRESHOLD_BYTES}.
+     *
+     * @param expectContinue - true to always send it with a body; false to never send it.
+     * @return {@link Request} instance.
+     */
+    public Request expectContinue(boolean expectContinue) {
+        this.expectContinue = expectContinue;
         return this;
     }
 
@@ -361,6 +1260,7 @@ public class Request extends HystrixCommand<Response> {
      * NOTE: useSystemProperties() will read JVM arguments like -Dhttp.proxyHost=10.0.0.1
      * In version 4.4 the method setConnectionManagerShared was added to HttpClientBuilder.
      * If you set it to true the client won't close the connection manager.
+     * HttpClient's content compression is disabled; see {@link #acceptCompressed(boolean)} instead.
      *
      * @return Response Map.
      * @throws Exception if either HttpVerb client call failed or parsing to JSON failed.
@@ -368,59 +1268,179 @@ public class Request extends HystrixCommand<Response> {
     @Override
     @SuppressWarnings("unchecked")
     protected Response run() throws Exception {
-        logStr.append(";http=").append(httpVerb);
+        if (loadShedder != null) {
+            loadShedder.recordQueueWait(System.nanoTime() - admittedAtNanos);
+        }
+        if (rateLimiter != null && permitAtNanos - System.nanoTime() > 0) {
+            metrics.startPermitWait();
+            final long waitStartNanos = System.nanoTime();
+            try {
+                rateLimiter.awaitPermit(permitAtNanos);
+            } finally {
+                metrics.endPermitWait(System.nanoTime() - waitStartNanos);
+            }
+        }
+        if (bodyObject != null) {
+            jsonBody = Util.toJson(bodyObject);
+            bodyObject = null;
+        }
+        final long startNanos = System.nanoTime();
+        final long startEpochMillis = System.currentTimeMillis();
+        traceContext = (tracer != null) ? tracer.start(parentTraceContext) : parentTraceContext;
+        final PhaseTimings timings = new PhaseTimings();
+        final HttpRequestEvent jfrEvent = new HttpRequestEvent();
+        jfrEvent.begin();
+        String outcome = HttpRequestEvent.ERROR;
+        int status = -1;
+        long requestBytes = 0;
+        long responseBytes = 0;
+        BodyBuffer body = null;
+        LogEvent logEvent = LOG_SINK.acquire().request(url, httpVerb.name());
         try(CloseableHttpClient httpClient = HttpClients.custom().useSystemProperties()
                 .setConnectionManager(connectionManager)
-                .setConnectionManagerShared(true).build()) {
+                .setConnectionManagerShared(true)
+                .disableContentCompression()
+                .setRequestExecutor(REQUEST_EXECUTOR).build()) {
             if (LOG.isDebugEnabled()) {
                 PoolStats stats = connectionManager.getTotalStats();
-                logStr.append(";pool_max=").append(connectionManager.getMaxTotal())
-                        .append(";pool_max_per_route=").append(connectionManager.getDefaultMaxPerRoute())
-                        .append(";pool_available=").append(stats.getAvailable())
-                        .append(";pool_leased=").append(stats.getLeased())
-                        .append(";pool_pending=").append(stats.getPending());
+                logEvent.poolStats(connectionManager.getMaxTotal(), connectionManager.getDefaultMaxPerRoute(),
+                        stats.getAvailable(), stats.getLeased(), stats.getPending());
             }
             HttpUriRequest httpUriRequest = newHttpRequest();
+            inFlightRequest = httpUriRequest;
+            if (aborted) {
+                httpUriRequest.abort();
+            }
             setRequestHeaders(httpUriRequest);
+            if (httpUriRequest instanceof HttpEntityEnclosingRequest) {
+                HttpEntity requestEntity = ((HttpEntityEnclosingRequest) httpUriRequest).getEntity();
+                if (requestEntity != null) {
+                    requestBytes = requestEntity.getContentLength();
+                    metrics.addRequestBytes(requestBytes);
+                }
+            }
 
-            HttpResponse httpResponse = httpClient.execute(httpUriRequest);
+            HttpClientContext context = HttpClientContext.create();
+            context.setAttribute(PhaseTimings.CONTEXT_ATTRIBUTE, timings);
+            timings.markExecuteStart();
+            CloseableHttpResponse httpResponse = httpClient.execute(httpUriRequest, context);
 
             int statusCode  = httpResponse.getStatusLine().getStatusCode();
+            metrics.recordStatus(statusCode);
+            status = statusCode;
             String statusReason = httpResponse.getStatusLine().getReasonPhrase();
-            logStr.append(";status=").append(statusCode).append(";reason=").append(statusReason);
+            logEvent.status(statusCode, statusReason);
+            if (rateLimiter != null) {
+                rateLimiter.update(httpResponse);
+            }
+            DecompressingEntity.decode(httpResponse, CodecPool.shared(), metrics::recordResponseDecompression);
 
             String responseStr = "";
-            if(httpResponse.getEntity() != null) {
+            final boolean streamEntity = streamBody && statusCode < failedStatusCode
+                    && httpResponse.getEntity() != null;
+            if (streamEntity) {
+                responseBytes = Math.max(0, httpResponse.getEntity().getContentLength());
+            } else if (httpResponse.getEntity() != null && (spillThresholdBytes > 0 || maxResponseBytes > 0)) {
+                try {
+                    body = BodyBuffer.read(httpResponse.getEntity(), spillThresholdBytes, maxResponseBytes);
+                } catch (HCResponseTooLargeException | IOException e) {
+                    httpResponse.close();
+                    throw e;
+                }
+                responseStr = body.text == null ? "" : body.text;
+                responseBytes = body.length;
+                metrics.addResponseBytes(responseBytes);
+            } else if(httpResponse.getEntity() != null) {
+                long contentLength = httpResponse.getEntity().getContentLength();
                 responseStr = EntityUtils.toString(httpResponse.getEntity(), "UTF-8");
+                responseBytes = contentLength >= 0 ? contentLength : responseStr.length();
+                metrics.addResponseBytes(responseBytes);
+            }
+            timings.markBodyRead();
+            metrics.recordPhases(timings);
+            // the lease of the first connection, not the final route of a redirect
+            HttpRoute route = timings.leaseRoute();
+            if (poolStatsSampler != null && route != null) {
+                poolStatsSampler.recordLeaseWait(route, timings.nanos(Phase.POOL_LEASE));
+            }
+            if (LOG.isDebugEnabled()) {
+                logEvent.phases(timings);
             }
             if (LOG.isTraceEnabled()) {
-                logStr.append(";request_headers=");
-                for (Header header : httpUriRequest.getAllHeaders()) {
-                    logStr.append(header.getName()).append(":").append(header.getValue()).append(",");
-                }
-                logStr.append(";request_body=").append(jsonBody)
-                        .append(";response_headers=");
-                for (Header header : httpResponse.getAllHeaders()) {
-                    logStr.append(header.getName()).append(":").append(header.getValue()).append(",");
-                }
-                logStr.append(";response_body=").append(responseStr);
+                logEvent.exchange(httpUriRequest.getAllHeaders(), jsonBody, httpResponse.getAllHeaders(), responseStr);
             }
 
             if (statusCode >= failedStatusCode) {
-                logStr.append(";failed_response_body=").append(responseStr);
-                LOG.error(logStr.toString());
+                logEvent.failedResponse(responseStr);
+                outcome = HttpRequestEvent.FAILURE;
                 throw new RuntimeException("Failed to " + httpVerb + " the remote server. status=" + statusCode);
-            } else {
-                LOG.info(logStr.toString());
             }
 
-            return new Response(statusCode, statusReason, responseStr, httpResponse.getAllHeaders());
+            Response response = new Response(statusCode, statusReason, responseStr, httpResponse.getAllHeaders())
+                    .phaseTimings(timings, metrics);
+            if (streamEntity) {
+                response.streamedBody(httpResponse, transferTimeoutInMilliSec);
+            } else if (body != null && body.file != null) {
+                response.spilledBody(body.file, body.length, body.charset);
+            } else if (isStaleIfErrorEnabled() && statusCode < 300) {
+                staleResponseCache.put(staleCacheKey(), response);
+            }
+            outcome = HttpRequestEvent.SUCCESS;
+            if (streamEntity || response.isSpilled()) {
+                // Hystrix drops the result of a run() that timed out; see getFallback()
+                undeliveredResponse.set(response);
+                if (isResponseTimedOut()) {
+                    closeUndeliveredResponse();
+                }
+            }
+            return response;
+        } catch (ConnectionPoolTimeoutException poolEx) {
+            metrics.recordError();
+            metrics.recordPoolExhausted();
+            outcome = HttpRequestEvent.POOL_EXHAUSTED;
+            logEvent.exception("No_pooled_connection_in:", connectionRequestTimeout, null, null);
+            throw new HCPoolExhaustedException("Timeout waiting for a pooled connection in "
+                    + connectionRequestTimeout + "ms", poolEx);
         } catch (SocketTimeoutException stoEx) {
-            LOG.error(logStr.append(";ex=No_data_received_in:" + socketTimeout + "ms").toString(), stoEx);
+            metrics.recordError();
+            outcome = HttpRequestEvent.TIMEOUT;
+            logEvent.exception("No_data_received_in:", socketTimeout, null, stoEx);
             throw new HystrixTimeoutException();
         } catch (Exception ex) {
-            LOG.error(logStr.append(";ex=Unknown_exception:" + ex.getMessage()).toString(), ex);
+            if (status < 0) {
+                metrics.recordError();
+            }
+            logEvent.exception("Unknown_exception:", -1, ex.getMessage(), ex);
             throw ex;
+        } finally {
+            inFlightRequest = null;
+            if (body != null && body.file != null && !HttpRequestEvent.SUCCESS.equals(outcome)) {
+                deleteSpilledBody(body.file);
+            }
+            final long elapsedNanos = System.nanoTime() - startNanos;
+            metrics.recordLatency(elapsedNanos);
+            jfrEvent.end();
+            if (jfrEvent.shouldCommit()) {
+                jfrEvent.request(getCommandKey().name(), getCommandGroup().name(), metrics.host(), httpVerb.name())
+                        .response(status, requestBytes, responseBytes, outcome)
+                        .phases(timings);
+                jfrEvent.commit();
+            }
+            if (tracer != null) {
+                tracer.end(traceContext, getCommandKey().name(), getCommandGroup().name(), url, httpVerb.name(),
+                        status, outcome, !HttpRequestEvent.SUCCESS.equals(outcome), startEpochMillis, elapsedNanos);
+            }
+            if (trafficRecorder != null && trafficRecorder.sample()) {
+                trafficRecorder.record(new TrafficRecord(startEpochMillis, getCommandKey().name(),
+                        getCommandGroup().name(), httpVerb.name(), recordedPath(), recordedHeaderNames(), requestBytes,
+                        status, responseBytes, TimeUnit.NANOSECONDS.toMicros(elapsedNanos), outcome,
+                        trafficRecorder.isIncludeBodies() ? jsonBody : null));
+            }
+            if (logEvent.isError() ? LOG.isErrorEnabled() : LOG.isInfoEnabled() && LOG_SINK.sampleSuccess()) {
+                LOG_SINK.publish(logEvent);
+            } else {
+                LOG_SINK.discard(logEvent);
+            }
         }
     }
 
@@ -430,49 +1450,155 @@ public class Request extends HystrixCommand<Response> {
      * NOTE: getMimeType() vs toString() differences!
      * APPLICATION_JSON.getMimeType() => application/json
      * APPLICATION_JSON.toString()    => application/json; charset=UTF-8
+     *
+     * Package-level access for benchmarks.
      */
-    private void setRequestHeaders(HttpUriRequest httpUriRequest) {
+    void setRequestHeaders(HttpUriRequest httpUriRequest) {
         if (httpVerb != HttpVerb.FORM_POST && !headerMap.containsKey(ACCEPT)) {
             httpUriRequest.addHeader(ACCEPT, APPLICATION_JSON.getMimeType());
         }
+        if (acceptCompressed && !headerMap.containsKey(ACCEPT_ENCODING)) {
+            httpUriRequest.addHeader(ACCEPT_ENCODING, DecompressingEntity.ACCEPT_ENCODING);
+        }
         httpUriRequest.addHeader(X_REQUEST_SENT_AT, DATE_FORMAT.format(Calendar.getInstance().getTime()));
 
         for (String key : headerMap.keySet()) {
             httpUriRequest.addHeader(key, headerMap.get(key));
         }
+
+        if (traceContext != null && !headerMap.containsKey(TraceContext.TRACEPARENT)) {
+            httpUriRequest.addHeader(TraceContext.TRACEPARENT, traceContext.traceparent());
+            if (traceContext.traceState() != null && !headerMap.containsKey(TraceContext.TRACESTATE)) {
+                httpUriRequest.addHeader(TraceContext.TRACESTATE, traceContext.traceState());
+            }
+        }
+
+        if (lazyHeaderMap != null) {
+            for (Map.Entry<String, Supplier<String>> entry : lazyHeaderMap.entrySet()) {
+                if (!headerMap.containsKey(entry.getKey())) {
+                    String value = headerValue(entry.getKey());
+                    if (value != null) {
+                        httpUriRequest.addHeader(entry.getKey(), value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the URL path template, or the URL path if this request was not created from a template.
+     */
+    private String recordedPath() {
+        if (pathTemplate != null) {
+            return pathTemplate;
+        }
+        try {
+            return new URI(url).getRawPath();
+        } catch (URISyntaxException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Gets the names of the request headers set by the caller.
+     */
+    private List<String> recordedHeaderNames() {
+        List<String> names = new ArrayList<>(headerMap.keySet());
+        if (lazyHeaderMap != null) {
+            for (String name : lazyHeaderMap.keySet()) {
+                if (!headerMap.containsKey(name)) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Builds the stale cache key from command name, verb, URL, the Authorization header and the vary headers.
+     * Package-level access for tests.
+     */
+    String staleCacheKey() {
+        String key = staleCacheKey;
+        if (key == null) {
+            StringBuilder sb = new StringBuilder(url.length() + 64).append(getCommandKey().name()).append(' ')
+                    .append(httpVerb).append(' ').append(url);
+            sb.append(';').append(AUTHORIZATION).append('=').append(headerValue(AUTHORIZATION));
+            for (String name : staleVaryHeaders) {
+                sb.append(';').append(name).append('=').append(headerValue(name));
+            }
+            key = sb.toString();
+            staleCacheKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * Gets the value a request header is sent with. A lazy header is computed only once, so the value sent and
+     * the values used in cache keys are the same. Package-level access only.
+     *
+     * @param name - a header name.
+     * @return the header value; null if it is not set or its supplier returns null or blank.
+     */
+    String headerValue(String name) {
+        String value = headerMap.get(name);
+        if (value != null || lazyHeaderMap == null) {
+            return value;
+        }
+        Supplier<String> supplier = lazyHeaderMap.get(name);
+        if (supplier == null) {
+            return null;
+        }
+        value = resolvedLazyHeaders.computeIfAbsent(name, n -> {
+            String resolved = supplier.get();
+            return isNullOrBlank(resolved) ? "" : resolved;
+        });
+        return value.isEmpty() ? null : value;
+    }
+
+    private boolean isStaleIfErrorEnabled() {
+        return staleResponseCache != null && httpVerb == HttpVerb.GET;
     }
 
     private HttpUriRequest newHttpRequest() throws UnsupportedEncodingException {
         RequestConfig requestConfig = RequestConfig.custom()
                 .setSocketTimeout(socketTimeout)
                 .setConnectTimeout(connectionTimeout)
+                .setConnectionRequestTimeout(connectionRequestTimeout)
+                .setExpectContinueEnabled(isExpectContinue())
                 .build();
 
         switch (httpVerb) {
             case POST:
                 HttpPost httpPost = new HttpPost(url);
                 httpPost.setConfig(requestConfig);
-                if (jsonBody != null && jsonBody.length() > 0) {
+                if (bodyEntity != null) {
+                    httpPost.setEntity(bodyEntity);
+                } else if (jsonBody != null && jsonBody.length() > 0) {
                     httpPost.addHeader(CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
-                    httpPost.setEntity(new StringEntity(jsonBody, StandardCharsets.UTF_8));
+                    httpPost.setEntity(jsonEntity(StandardCharsets.UTF_8));
                 }
                 return httpPost;
 
             case PUT:
                 HttpPut httpPut = new HttpPut(url);
                 httpPut.setConfig(requestConfig);
-                if (jsonBody != null && jsonBody.length() > 0) {
+                if (bodyEntity != null) {
+                    httpPut.setEntity(bodyEntity);
+                } else if (jsonBody != null && jsonBody.length() > 0) {
                     httpPut.addHeader(CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
-                    httpPut.setEntity(new StringEntity(jsonBody));
+                    httpPut.setEntity(jsonEntity(StandardCharsets.ISO_8859_1));
                 }
                 return httpPut;
 
             case PATCH:
                 HttpPatch httpPatch = new HttpPatch(url);
                 httpPatch.setConfig(requestConfig);
-                if (jsonBody != null && jsonBody.length() > 0) {
+                if (bodyEntity != null) {
+                    httpPatch.setEntity(bodyEntity);
+                } else if (jsonBody != null && jsonBody.length() > 0) {
                     httpPatch.addHeader(CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
-                    httpPatch.setEntity(new StringEntity(jsonBody));
+                    httpPatch.setEntity(jsonEntity(StandardCharsets.ISO_8859_1));
                 }
                 return httpPatch;
 
@@ -508,6 +1634,39 @@ public class Request extends HystrixCommand<Response> {
         }
     }
 
+    private boolean isExpectContinue() {
+        if (expectContinue != null) {
+            return expectContinue;
+        }
+        if (bodyEntity == null || bodyEntity instanceof ByteBufferEntity) {
+            return false;
+        }
+        long length = bodyEntity.getContentLength();
+        return length < 0 || length >= EXPECT_CONTINUE_THRESHOLD_BYTES;
+    }
+
+    /**
+     * Creates the JSON body entity, gzip compressed if it reaches the compression threshold.
+     *
+     * @param charset - charset of the body.
+     */
+    private HttpEntity jsonEntity(Charset charset) {
+        // a char encodes to at most 3 bytes, so short bodies skip the extra encoding
+        if (compressThresholdBytes <= 0 || jsonBody.length() * 3L < compressThresholdBytes) {
+            return new StringEntity(jsonBody, charset);
+        }
+        byte[] bytes = jsonBody.getBytes(charset);
+        if (bytes.length < compressThresholdBytes) {
+            return new ByteArrayEntity(bytes);
+        }
+        long startNanos = System.nanoTime();
+        byte[] compressed = Gzip.compress(bytes);
+        metrics.recordRequestCompression(bytes.length, compressed.length, System.nanoTime() - startNanos);
+        ByteArrayEntity entity = new ByteArrayEntity(compressed);
+        entity.setContentEncoding(Gzip.ENCODING);
+        return entity;
+    }
+
     private enum HttpVerb {
         POST, GET, PUT, PATCH, DELETE, HEAD, OPTIONS, FORM_POST
     }
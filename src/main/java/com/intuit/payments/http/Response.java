@@ -5,14 +5,40 @@
  */
 package com.intuit.payments.http;
 
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonReader;
 import com.intuit.payments.http.exception.*;
+import com.intuit.payments.http.json.JsonElementIterator;
+import com.intuit.payments.http.metrics.Phase;
+import com.intuit.payments.http.metrics.PhaseTimings;
+import com.intuit.payments.http.metrics.RequestMetrics;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.ContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -26,7 +52,7 @@ import static org.apache.http.entity.ContentType.APPLICATION_JSON;
  * @author saung
  * @since 7/5/17
  */
-public class Response {
+public class Response implements Closeable {
     /** Logger instance */
     private static final Logger LOG = LoggerFactory.getLogger(Response.class);
 
@@ -38,6 +64,39 @@ public class Response {
 
     private final Map<String, String> headers;
 
+    /** true if this response is a last-known-good copy served by the stale-if-error fallback */
+    private final boolean stale;
+
+    /** Age in milliseconds of a stale response */
+    private final long staleAgeInMilliSec;
+
+    /** Per-phase timings of the request that produced this response; null if it did not come from a server */
+    private PhaseTimings phaseTimings;
+
+    /** Metrics of the request to record the decode time */
+    private RequestMetrics metrics;
+
+    /** Http response whose body has not been read yet; null unless the body is streamed */
+    private CloseableHttpResponse streamedResponse;
+
+    /** true once the body has been opened by {@link #bodyReader()} */
+    private boolean bodyOpened;
+
+    /** System.nanoTime() by which a streamed body must be read; 0 if unbounded */
+    private long transferDeadlineNanos;
+
+    /** Time budget to read a streamed body; 0 if unbounded */
+    private long transferTimeoutInMilliSec;
+
+    /** Temp file holding a body that exceeded the in-memory threshold; null if the body is in memory */
+    private Path spilledFile;
+
+    /** Size of the spilled body in bytes */
+    private long spilledLength;
+
+    /** Charset of the spilled body */
+    private Charset spilledCharset = StandardCharsets.UTF_8;
+
     /**
      * Default constructor.
      *
@@ -52,6 +111,244 @@ public class Response {
         this.rawString = rawString;
         /** (p1, p2) -> p1 to remove duplicate keys */
         this.headers = Stream.of(headers).collect(Collectors.toMap(Header::getName, Header::getValue, (p1, p2) -> p1));
+        this.stale = false;
+        this.staleAgeInMilliSec = 0;
+    }
+
+    /**
+     * Copy constructor to mark a cached response as stale.
+     */
+    private Response(Response response, long staleAgeInMilliSec) {
+        this.statusCode = response.statusCode;
+        this.statusReason = response.statusReason;
+        this.rawString = response.rawString;
+        this.headers = response.headers;
+        this.stale = true;
+        this.staleAgeInMilliSec = staleAgeInMilliSec;
+    }
+
+    /**
+     * Attaches the timings and metrics of the request that produced this response. Package-level access only.
+     *
+     * @param phaseTimings - per-phase timings of the request.
+     * @param metrics - metrics of the request.
+     * @return this instance.
+     */
+    Response phaseTimings(PhaseTimings phaseTimings, RequestMetrics metrics) {
+        this.phaseTimings = phaseTimings;
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Leaves the body in the Http response to be read incrementally by {@link #bodyReader()}, which keeps the
+     * pooled connection leased until the body is read or closed. Package-level access only.
+     *
+     * @param httpResponse - a Http response with an unread entity.
+     * @param transferTimeoutInMilliSec - time budget to read the body from now on; 0 if unbounded.
+     * @return this instance.
+     */
+    Response streamedBody(CloseableHttpResponse httpResponse, long transferTimeoutInMilliSec) {
+        this.streamedResponse = httpResponse;
+        this.transferTimeoutInMilliSec = transferTimeoutInMilliSec;
+        this.transferDeadlineNanos = transferTimeoutInMilliSec > 0
+                ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(transferTimeoutInMilliSec) : 0;
+        return this;
+    }
+
+    /**
+     * Attaches a body that was written to a temp file instead of {@link #rawString()}. Package-level access only.
+     *
+     * @param file - the temp file; deleted by {@link #close()}.
+     * @param length - body size in bytes.
+     * @param charset - charset of the body.
+     * @return this instance.
+     */
+    Response spilledBody(Path file, long length, Charset charset) {
+        this.spilledFile = file;
+        this.spilledLength = length;
+        this.spilledCharset = charset;
+        return this;
+    }
+
+    /**
+     * Checks whether the body exceeded the in-memory threshold of the request and was written to a temp file, in
+     * which case {@link #rawString()} is empty. Read it with {@link #byteBuffer()}, {@link #inputStream()},
+     * {@link #iterate(Class)}, {@link #json(Class)} or {@link #map()}, and {@link #close()} the response to delete
+     * the file.
+     *
+     * @return true if the body is in a temp file.
+     */
+    public boolean isSpilled() {
+        return spilledFile != null;
+    }
+
+    /**
+     * Gets the body as a read-only buffer: memory-mapped from the temp file of a spilled body, so it stays off the
+     * heap, or the encoded {@link #rawString()} otherwise.
+     *
+     * @return a read-only {@link ByteBuffer} of the body.
+     * @throws IOException if the temp file cannot be mapped.
+     * @throws IllegalStateException if the body is streamed.
+     */
+    public ByteBuffer byteBuffer() throws IOException {
+        checkNotStreamed();
+        if (spilledFile == null) {
+            return ByteBuffer.wrap(rawBytes()).asReadOnlyBuffer();
+        }
+        try (FileChannel channel = FileChannel.open(spilledFile, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, spilledLength);
+        }
+    }
+
+    /**
+     * Gets the body as a stream: from the temp file of a spilled body, or of the encoded {@link #rawString()}.
+     *
+     * @return a new {@link InputStream} of the body; the caller closes it.
+     * @throws IOException if the temp file cannot be opened.
+     * @throws IllegalStateException if the body is streamed.
+     */
+    public InputStream inputStream() throws IOException {
+        checkNotStreamed();
+        if (spilledFile == null) {
+            return new ByteArrayInputStream(rawBytes());
+        }
+        return Files.newInputStream(spilledFile);
+    }
+
+    /**
+     * Releases the resources of the body: deletes the temp file of a spilled body, and closes the connection of a
+     * streamed body that was never opened. Does nothing for a body in memory.
+     */
+    @Override
+    public synchronized void close() {
+        if (spilledFile != null) {
+            try {
+                Files.deleteIfExists(spilledFile);
+            } catch (IOException e) {
+                LOG.warn("Failed to delete the spilled response body {}", spilledFile, e);
+            }
+        }
+        if (streamedResponse != null && !bodyOpened) {
+            bodyOpened = true;
+            try {
+                streamedResponse.close();
+            } catch (IOException e) {
+                LOG.debug("Failed to close the streamed response", e);
+            }
+        }
+    }
+
+    private byte[] rawBytes() {
+        return rawString == null ? new byte[0] : rawString.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void checkNotStreamed() {
+        if (streamedResponse != null) {
+            throw new IllegalStateException("The body is streamed; use iterate(Class) to read it");
+        }
+    }
+
+    /**
+     * Checks whether the body is streamed from the connection instead of being held in {@link #rawString()}.
+     *
+     * @return true if the body is streamed.
+     */
+    public boolean isStreamed() {
+        return streamedResponse != null;
+    }
+
+    /**
+     * Opens the body: the streamed entity, or {@link #rawString()} otherwise. Closing the reader of an entity that
+     * was read to the end returns its connection to the pool; closing it earlier closes the connection, so the
+     * rest of a big body is not downloaded. Package-level access only.
+     *
+     * @return a Reader of the body.
+     * @throws IOException if the entity cannot be opened.
+     * @throws IllegalStateException if a streamed body was already opened.
+     */
+    synchronized Reader bodyReader() throws IOException {
+        if (spilledFile != null) {
+            return new InputStreamReader(Files.newInputStream(spilledFile), spilledCharset);
+        }
+        if (streamedResponse == null) {
+            return new StringReader(rawString == null ? "" : rawString);
+        }
+        if (bodyOpened) {
+            throw new IllegalStateException("The streamed body can be read only once");
+        }
+        bodyOpened = true;
+        HttpEntity entity = streamedResponse.getEntity();
+        Charset charset = ContentType.getOrDefault(entity).getCharset();
+        return new EntityReader(new InputStreamReader(entity.getContent(),
+                charset == null ? StandardCharsets.UTF_8 : charset), streamedResponse,
+                transferDeadlineNanos, transferTimeoutInMilliSec);
+    }
+
+    /**
+     * Iterates the elements of a top-level JSON array or NDJSON body, one at a time, so memory use does not depend
+     * on the body size if the body is streamed. Close the iterator if it is not read to the end, e.g. with
+     * try-with-resources.
+     *
+     * Example:
+     * <pre>
+     * Response response = client.Request("ExportUsers", "UsersGroup", "/v1/users/export").GET()
+     *         .streamBody(60000).execute();
+     * try (JsonElementIterator&lt;User&gt; users = response.iterate(User.class)) {
+     *     users.forEachRemaining(this::process);
+     * }
+     * </pre>
+     *
+     * @param clazz - a Class to de-serialize each element to.
+     * @param <T> -  a generic Type <T> of the given class.
+     * @return a {@link JsonElementIterator} over the streamed body, or over {@link #rawString()} otherwise.
+     * @throws JsonIOException if a streamed body cannot be opened.
+     * @throws IllegalStateException if a streamed body was already opened.
+     */
+    public <T> JsonElementIterator<T> iterate(Class<T> clazz) {
+        try {
+            return new JsonElementIterator<>(bodyReader(), clazz);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * Gets the per-phase timings of the request: pool lease, connect, TLS, time-to-first-byte, body read and the
+     * time spent in {@link #map()} or {@link #json(Class)}.
+     *
+     * @return the {@link PhaseTimings}; null if this response did not come from a server, such as a fallback.
+     */
+    public PhaseTimings phaseTimings() {
+        return phaseTimings;
+    }
+
+    /**
+     * Creates a copy of this response marked as stale.
+     *
+     * @param ageInMilliSec - time elapsed since this response was received.
+     * @return a stale copy of this response.
+     */
+    public Response stale(long ageInMilliSec) {
+        return new Response(this, ageInMilliSec);
+    }
+
+    /**
+     * Checks whether this response is a last-known-good copy served by the stale-if-error fallback.
+     *
+     * @return true if the response is stale; false if it came from the server.
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Gets the age of a stale response.
+     *
+     * @return milliseconds since the cached response was received; 0 if the response is not stale.
+     */
+    public long staleAgeInMilliSec() {
+        return staleAgeInMilliSec;
     }
 
     /**
@@ -100,11 +397,14 @@ public class Response {
             return new HashMap<>();
         }
 
+        long start = System.nanoTime();
         try {
-            return fromJson(rawString);
+            return spilledFile != null ? fromSpilledFile(Map.class) : fromJson(rawString);
         } catch(Exception e) {
             LOG.error("Failed to deserialize the body JSON string to key-value map. raw_string=" + rawString);
             throw e;
+        } finally {
+            recordDecode(System.nanoTime() - start);
         }
     }
 
@@ -120,11 +420,31 @@ public class Response {
             return null;
         }
 
+        long start = System.nanoTime();
         try {
-            return fromJson(rawString, clazz);
+            return spilledFile != null ? fromSpilledFile(clazz) : fromJson(rawString, clazz);
         } catch(Exception e) {
             LOG.error("Failed to deserialize the body JSON string to the given type<{}>. raw_string=" + rawString, clazz);
             throw e;
+        } finally {
+            recordDecode(System.nanoTime() - start);
+        }
+    }
+
+    private <T> T fromSpilledFile(Class<T> clazz) {
+        try (JsonReader reader = new JsonReader(bodyReader())) {
+            return fromJson(reader, clazz);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    private void recordDecode(long nanos) {
+        if (phaseTimings != null) {
+            phaseTimings.add(Phase.DECODE, nanos);
+        }
+        if (metrics != null) {
+            metrics.recordPhase(Phase.DECODE, nanos);
         }
     }
 
@@ -149,7 +469,8 @@ public class Response {
     }
 
     private boolean isValidJson() {
-        if (isNullOrBlank(rawString)) {
+        checkNotStreamed();
+        if (spilledFile == null && isNullOrBlank(rawString)) {
             LOG.warn("Response raw string was null or empty. Couldn't deserialize!. raw_string=" + rawString);
             return false;
         }
@@ -167,4 +488,61 @@ public class Response {
 
         return true;
     }
+
+    /**
+     * Reader of a streamed entity that enforces the transfer timeout and releases the connection on close.
+     */
+    private static final class EntityReader extends FilterReader {
+        private final CloseableHttpResponse httpResponse;
+
+        private final long deadlineNanos;
+
+        private final long timeoutInMilliSec;
+
+        private boolean endOfStream;
+
+        EntityReader(Reader in, CloseableHttpResponse httpResponse, long deadlineNanos, long timeoutInMilliSec) {
+            super(in);
+            this.httpResponse = httpResponse;
+            this.deadlineNanos = deadlineNanos;
+            this.timeoutInMilliSec = timeoutInMilliSec;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkDeadline();
+            int c = super.read();
+            endOfStream |= c == -1;
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            checkDeadline();
+            int n = super.read(buffer, offset, length);
+            endOfStream |= n == -1;
+            return n;
+        }
+
+        /**
+         * Closes the connection once the transfer timeout has expired. A single read is bounded by the socket
+         * timeout.
+         */
+        private void checkDeadline() throws IOException {
+            if (deadlineNanos != 0 && !endOfStream && System.nanoTime() - deadlineNanos > 0) {
+                httpResponse.close();
+                throw new SocketTimeoutException("Response body was not read in " + timeoutInMilliSec + "ms");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (endOfStream) {
+                // the entity was fully read, so its connection is already back in the pool
+                super.close();
+            } else {
+                httpResponse.close();
+            }
+        }
+    }
 }
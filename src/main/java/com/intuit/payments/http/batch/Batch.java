@@ -0,0 +1,203 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.batch;
+
+import com.intuit.payments.http.Request;
+import com.intuit.payments.http.Response;
+import com.intuit.payments.http.exception.HCCancelledException;
+import com.intuit.payments.http.exception.HCDeadlineExceededException;
+import rx.Observable;
+import rx.subscriptions.SerialSubscription;
+import rx.subscriptions.Subscriptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Predicate;
+
+/**
+ * Scatter-gather execution of many {@link Request}s, e.g. the calls of an aggregation endpoint.
+ *
+ * The requests are subscribed through their Hystrix observables with at most {@link #maxConcurrency(int)} in
+ * flight, so no caller thread blocks per outstanding request. Results stream in completion order from
+ * {@link #toObservable()}, or are gathered in submission order by {@link #execute()}. When the
+ * {@link #deadline(long, TimeUnit)} expires, or a fatal error occurs with {@link #failFast(Predicate)}, the
+ * remaining requests are unsubscribed and reported with HCDeadlineExceededException or HCCancelledException, so the
+ * partial results are still returned. A request already running is aborted, which closes its pooled connection.
+ *
+ * Example:
+ * <pre>
+ * BatchResult result = client.batch(requests)
+ *         .maxConcurrency(8)
+ *         .deadline(500, TimeUnit.MILLISECONDS)
+ *         .execute();
+ * </pre>
+ *
+ * NOTE: Like a {@link Request}, a batch can be executed only once.
+ *
+ * @author saung
+ * @since 6/11/18
+ */
+public class Batch {
+    /** Default maximum number of requests in flight, the Hystrix default thread pool size */
+    public static final int DEFAULT_MAX_CONCURRENCY = 10;
+
+    private final List<Request> requests;
+
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+    private long deadlineInMilliSec;
+
+    private Predicate<Throwable> fatalError;
+
+    /**
+     * Default constructor.
+     *
+     * @param requests - requests to execute; their position is the item index.
+     */
+    public Batch(Collection<Request> requests) {
+        if (requests == null || requests.contains(null)) {
+            throw new IllegalArgumentException("requests must not be NULL or contain NULL");
+        }
+        this.requests = new ArrayList<>(requests);
+    }
+
+    /**
+     * @param maxConcurrency - maximum number of requests in flight. Default is {@link #DEFAULT_MAX_CONCURRENCY}.
+     * @return this instance.
+     */
+    public Batch maxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be greater than zero");
+        }
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    /**
+     * Sets an overall deadline, measured from the subscription.
+     *
+     * @param deadline - time for the whole batch; 0 for none. Default is none.
+     * @param unit - a time unit.
+     * @return this instance.
+     */
+    public Batch deadline(long deadline, TimeUnit unit) {
+        this.deadlineInMilliSec = unit.toMillis(deadline);
+        return this;
+    }
+
+    /**
+     * Stops the batch at the first fatal error.
+     *
+     * @param fatalError - tells whether a request error is fatal, e.g. {@code e -> true} for any error;
+     *                   null to never stop. Default is null.
+     * @return this instance.
+     */
+    public Batch failFast(Predicate<Throwable> fatalError) {
+        this.fatalError = fatalError;
+        return this;
+    }
+
+    /**
+     * Executes the requests when subscribed.
+     *
+     * @return an {@link Observable} of one {@link BatchItem} per request: the completed ones in completion order,
+     * then the unfinished ones if the batch was stopped.
+     */
+    public Observable<BatchItem> toObservable() {
+        return Observable.defer(() -> {
+            final AtomicIntegerArray completed = new AtomicIntegerArray(requests.size());
+            final AtomicBoolean cancelled = new AtomicBoolean();
+            final Predicate<Throwable> fatal = fatalError;
+            Observable<BatchItem> items = Observable.range(0, requests.size())
+                    .flatMap(this::execute, maxConcurrency);
+            if (deadlineInMilliSec > 0) {
+                items = items.takeUntil(Observable.timer(deadlineInMilliSec, TimeUnit.MILLISECONDS));
+            }
+            if (fatal != null) {
+                items = items.takeUntil(item -> !item.isSuccess() && fatal.test(item.error())
+                        && cancelled.compareAndSet(false, true));
+            }
+            return items
+                    .doOnNext(item -> completed.set(item.index(), 1))
+                    .concatWith(Observable.defer(() -> Observable.from(unfinished(completed,
+                            cancelled.get() ? HCCancelledException.INSTANCE : HCDeadlineExceededException.INSTANCE))));
+        });
+    }
+
+    /**
+     * Executes the requests and waits for the batch in the calling thread.
+     *
+     * @return the {@link BatchResult} in submission order.
+     */
+    public BatchResult execute() {
+        return toResult(toObservable().toList().toBlocking().single());
+    }
+
+    /**
+     * Executes the requests without blocking the calling thread. Cancelling the returned future aborts the
+     * requests in flight.
+     *
+     * @return a {@link CompletableFuture} completed with the {@link BatchResult} in submission order.
+     */
+    public CompletableFuture<BatchResult> executeAsync() {
+        final SerialSubscription subscription = new SerialSubscription();
+        final CompletableFuture<BatchResult> future = new CompletableFuture<BatchResult>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                if (cancelled) {
+                    subscription.unsubscribe();
+                }
+                return cancelled;
+            }
+        };
+        subscription.set(toObservable().toList().map(this::toResult)
+                .subscribe(future::complete, future::completeExceptionally));
+        return future;
+    }
+
+    private BatchResult toResult(List<BatchItem> completedItems) {
+        BatchItem[] items = new BatchItem[requests.size()];
+        for (BatchItem item : completedItems) {
+            items[item.index()] = item;
+        }
+        return new BatchResult(Arrays.asList(items));
+    }
+
+    /**
+     * Executes one request; unsubscribing aborts it.
+     */
+    private Observable<BatchItem> execute(int index) {
+        final Request request = requests.get(index);
+        return Observable.create(subscriber -> {
+            CompletableFuture<Response> future = request.executeAsync();
+            subscriber.add(Subscriptions.create(() -> future.cancel(false)));
+            future.whenComplete((response, e) -> {
+                if (subscriber.isUnsubscribed()) {
+                    return;
+                }
+                subscriber.onNext(new BatchItem(index, request, response, e));
+                subscriber.onCompleted();
+            });
+        });
+    }
+
+    private List<BatchItem> unfinished(AtomicIntegerArray completed, Throwable error) {
+        List<BatchItem> items = new ArrayList<>();
+        for (int i = 0; i < completed.length(); i++) {
+            if (completed.get(i) == 0) {
+                items.add(new BatchItem(i, requests.get(i), null, error));
+            }
+        }
+        return items;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.batch;
+
+import com.intuit.payments.http.Request;
+import com.intuit.payments.http.Response;
+
+/**
+ * Outcome of one {@link Request} of a {@link Batch}: either a {@link Response} or an error.
+ *
+ * @author saung
+ * @since 6/11/18
+ */
+public class BatchItem {
+    private final int index;
+
+    private final Request request;
+
+    private final Response response;
+
+    private final Throwable error;
+
+    /**
+     * Default constructor. Package-level access only.
+     *
+     * @param index - position of the request in the batch.
+     * @param request - the {@link Request}.
+     * @param response - the {@link Response}, or null if it failed.
+     * @param error - the error, or null if it succeeded.
+     */
+    BatchItem(int index, Request request, Response response, Throwable error) {
+        this.index = index;
+        this.request = request;
+        this.response = response;
+        this.error = error;
+    }
+
+    /**
+     * @return position of the request in the batch, starting at 0.
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * @return the {@link Request}.
+     */
+    public Request request() {
+        return request;
+    }
+
+    /**
+     * @return the {@link Response}, or null if the request failed.
+     */
+    public Response response() {
+        return response;
+    }
+
+    /**
+     * @return the error, such as HCDeadlineExceededException or HCCancelledException, or null if the request
+     * succeeded.
+     */
+    public Throwable error() {
+        return error;
+    }
+
+    /**
+     * @return true if the request got a response.
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.batch;
+
+import com.intuit.payments.http.Response;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcomes of all requests of a {@link Batch} in submission order. Requests that did not complete have a
+ * HCDeadlineExceededException or HCCancelledException error, so partial results are always available.
+ *
+ * @author saung
+ * @since 6/11/18
+ */
+public class BatchResult {
+    private final List<BatchItem> items;
+
+    /**
+     * Default constructor. Package-level access only.
+     *
+     * @param items - one item per request, sorted by index.
+     */
+    BatchResult(List<BatchItem> items) {
+        this.items = Collections.unmodifiableList(items);
+    }
+
+    /**
+     * @return all items in submission order.
+     */
+    public List<BatchItem> items() {
+        return items;
+    }
+
+    /**
+     * @param index - position of a request in the batch.
+     * @return the item of the request.
+     */
+    public BatchItem item(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * @return number of requests.
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * @return responses of the successful requests in submission order.
+     */
+    public List<Response> responses() {
+        List<Response> responses = new ArrayList<>(items.size());
+        for (BatchItem item : items) {
+            if (item.isSuccess()) {
+                responses.add(item.response());
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * @return items of the failed requests in submission order.
+     */
+    public List<BatchItem> failures() {
+        List<BatchItem> failures = new ArrayList<>();
+        for (BatchItem item : items) {
+            if (!item.isSuccess()) {
+                failures.add(item);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return true if every request got a response.
+     */
+    public boolean isComplete() {
+        for (BatchItem item : items) {
+            if (!item.isSuccess()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.body;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A repeatable request entity over the remaining bytes of a {@link ByteBuffer}, e.g. a memory-mapped file or a
+ * pooled direct buffer, without copying it into a byte array first. A heap buffer is written straight from its
+ * backing array; a direct buffer through a small buffer.
+ *
+ * The buffer position and limit are read when the entity is created and never changed; the content must not
+ * change until the request completes.
+ *
+ * @author saung
+ * @since 6/29/18
+ */
+public class ByteBufferEntity extends AbstractHttpEntity {
+    /** Size of the copy buffer of direct buffers */
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Default constructor.
+     *
+     * @param buffer - a buffer; its bytes from position to limit are sent.
+     * @param contentType - a content type; null for none.
+     */
+    public ByteBufferEntity(ByteBuffer buffer, ContentType contentType) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer must not be NULL");
+        }
+        this.buffer = buffer.duplicate();
+        if (contentType != null) {
+            setContentType(contentType.toString());
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public InputStream getContent() {
+        ByteBuffer source = buffer.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return source.hasRemaining() ? source.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, source.remaining());
+                source.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return source.remaining();
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        ByteBuffer source = buffer.duplicate();
+        if (source.hasArray()) {
+            out.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+            return;
+        }
+        byte[] chunk = new byte[Math.min(BUFFER_SIZE, source.remaining())];
+        while (source.hasRemaining()) {
+            int n = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, n);
+            out.write(chunk, 0, n);
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
@@ -0,0 +1,333 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.body;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A streaming "multipart/form-data" (RFC 7578) request body of text fields, files, buffers and input streams.
+ *
+ * Parts are written one after the other straight to the connection when the request is sent; files and streams
+ * go through a fixed buffer and are never read into the heap. The body has a Content-Length if the length of every
+ * part is known and is sent chunked otherwise. It is repeatable unless it has an input stream part, which can only
+ * be read once. {@link #close()} closes input stream parts that were not sent, e.g. when the request is
+ * short-circuited.
+ *
+ * Example:
+ * <pre>
+ * client.Request("UploadStatement", "FilesGroup", "/v1/files").POST()
+ *         .body(new MultipartBody()
+ *                 .field("accountId", "42")
+ *                 .file("statement", Paths.get("statement.pdf"), ContentType.create("application/pdf")))
+ *         .execute();
+ * </pre>
+ *
+ * @author saung
+ * @since 6/29/18
+ */
+public class MultipartBody extends AbstractHttpEntity implements Closeable {
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private static final byte[] DASHES = {'-', '-'};
+
+    private static final char[] BOUNDARY_CHARS =
+            "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ-_".toCharArray();
+
+    private final String boundary;
+
+    private final List<Part> parts = new ArrayList<>();
+
+    /**
+     * One part: its encoded headers and its content.
+     */
+    private abstract static class Part {
+        final byte[] headers;
+
+        Part(byte[] headers) {
+            this.headers = headers;
+        }
+
+        /** @return content length; -1 if unknown. */
+        abstract long length();
+
+        abstract boolean isRepeatable();
+
+        abstract void writeContent(OutputStream out) throws IOException;
+
+        /** Releases the content without writing it. */
+        void close() throws IOException {
+        }
+    }
+
+    /**
+     * Default constructor with a random boundary.
+     */
+    public MultipartBody() {
+        char[] chars = new char[32];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = BOUNDARY_CHARS[random.nextInt(BOUNDARY_CHARS.length)];
+        }
+        this.boundary = new String(chars);
+        setContentType("multipart/form-data; boundary=" + boundary);
+    }
+
+    /**
+     * @return the part boundary.
+     */
+    public String boundary() {
+        return boundary;
+    }
+
+    /**
+     * Adds a text field.
+     *
+     * @param name - a field name.
+     * @param value - a value, sent as UTF-8 text without a Content-Type.
+     * @return this instance.
+     */
+    public MultipartBody field(String name, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return add(new Part(partHeaders(name, null, null, false)) {
+            @Override
+            long length() {
+                return bytes.length;
+            }
+
+            @Override
+            boolean isRepeatable() {
+                return true;
+            }
+
+            @Override
+            void writeContent(OutputStream out) throws IOException {
+                out.write(bytes);
+            }
+        });
+    }
+
+    /**
+     * Adds a file, streamed when the body is written. Its size is taken now.
+     *
+     * @param name - a field name.
+     * @param file - a regular file; its file name is sent as the part file name.
+     * @param contentType - a content type; null for "application/octet-stream".
+     * @return this instance.
+     * @throws IllegalArgumentException if the file is not a readable regular file.
+     */
+    public MultipartBody file(String name, Path file, ContentType contentType) {
+        PathEntity entity = new PathEntity(file, null);
+        return add(new Part(partHeaders(name, String.valueOf(file.getFileName()), contentType, true)) {
+            @Override
+            long length() {
+                return entity.getContentLength();
+            }
+
+            @Override
+            boolean isRepeatable() {
+                return true;
+            }
+
+            @Override
+            void writeContent(OutputStream out) throws IOException {
+                entity.writeTo(out);
+            }
+        });
+    }
+
+    /**
+     * Adds the remaining bytes of a buffer, without copying them.
+     *
+     * @param name - a field name.
+     * @param fileName - a file name; null for none.
+     * @param buffer - a buffer; its bytes from position to limit are sent.
+     * @param contentType - a content type; null for "application/octet-stream".
+     * @return this instance.
+     */
+    public MultipartBody part(String name, String fileName, ByteBuffer buffer, ContentType contentType) {
+        ByteBufferEntity entity = new ByteBufferEntity(buffer, null);
+        return add(new Part(partHeaders(name, fileName, contentType, true)) {
+            @Override
+            long length() {
+                return entity.getContentLength();
+            }
+
+            @Override
+            boolean isRepeatable() {
+                return true;
+            }
+
+            @Override
+            void writeContent(OutputStream out) throws IOException {
+                entity.writeTo(out);
+            }
+        });
+    }
+
+    /**
+     * Adds an input stream, read once when the body is written and then closed.
+     *
+     * @param name - a field name.
+     * @param fileName - a file name; null for none.
+     * @param in - an input stream.
+     * @param length - number of bytes to send; -1 if unknown, which makes the body chunked.
+     * @param contentType - a content type; null for "application/octet-stream".
+     * @return this instance.
+     */
+    public MultipartBody part(String name, String fileName, InputStream in, long length, ContentType contentType) {
+        if (in == null) {
+            throw new IllegalArgumentException("in must not be NULL");
+        }
+        return add(new Part(partHeaders(name, fileName, contentType, true)) {
+            @Override
+            long length() {
+                return length;
+            }
+
+            @Override
+            boolean isRepeatable() {
+                return false;
+            }
+
+            @Override
+            void writeContent(OutputStream out) throws IOException {
+                try (InputStream source = in) {
+                    PathEntity.copy(source, out, length, "part " + name);
+                }
+            }
+
+            @Override
+            void close() throws IOException {
+                in.close();
+            }
+        });
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        for (Part part : parts) {
+            if (!part.isRepeatable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        long length = 0;
+        for (Part part : parts) {
+            long partLength = part.length();
+            if (partLength < 0) {
+                return -1;
+            }
+            length += DASHES.length + boundary.length() + CRLF.length + part.headers.length + partLength
+                    + CRLF.length;
+        }
+        return length + DASHES.length + boundary.length() + DASHES.length + CRLF.length;
+    }
+
+    /**
+     * Reads the whole body into memory. Meant for logging and tests only; use {@link #writeTo(OutputStream)}.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeTo(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        byte[] boundaryBytes = boundary.getBytes(StandardCharsets.US_ASCII);
+        for (Part part : parts) {
+            out.write(DASHES);
+            out.write(boundaryBytes);
+            out.write(CRLF);
+            out.write(part.headers);
+            part.writeContent(out);
+            out.write(CRLF);
+        }
+        out.write(DASHES);
+        out.write(boundaryBytes);
+        out.write(DASHES);
+        out.write(CRLF);
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return !isRepeatable();
+    }
+
+    /**
+     * Closes all input stream parts without reading them. Closing a part again after it was sent does nothing.
+     *
+     * @throws IOException if a part fails to close; the remaining parts are still closed.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Part part : parts) {
+            try {
+                part.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private MultipartBody add(Part part) {
+        parts.add(part);
+        return this;
+    }
+
+    /**
+     * Encodes the Content-Disposition and Content-Type headers of a part and the blank line after them. Quotes and
+     * line breaks in names are percent-encoded as browsers do.
+     */
+    private static byte[] partHeaders(String name, String fileName, ContentType contentType, boolean binary) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("name must not be empty");
+        }
+        StringBuilder sb = new StringBuilder("Content-Disposition: form-data; name=\"").append(escape(name))
+                .append('"');
+        if (fileName != null) {
+            sb.append("; filename=\"").append(escape(fileName)).append('"');
+        }
+        sb.append("\r\n");
+        if (contentType != null || binary) {
+            sb.append("Content-Type: ")
+                    .append(contentType != null ? contentType : ContentType.APPLICATION_OCTET_STREAM.getMimeType())
+                    .append("\r\n");
+        }
+        return sb.append("\r\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A");
+    }
+}
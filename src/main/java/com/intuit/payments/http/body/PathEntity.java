@@ -0,0 +1,119 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.body;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A repeatable request entity that streams a file through a fixed buffer, so a file of any size is sent with a
+ * known Content-Length without being read into the heap.
+ *
+ * The size is taken when the entity is created; a file that shrinks before it is sent fails the request instead of
+ * leaving the server waiting for the missing bytes, and bytes appended later are not sent.
+ *
+ * @author saung
+ * @since 6/29/18
+ */
+public class PathEntity extends AbstractHttpEntity {
+    /** Size of the copy buffer */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+
+    private final long length;
+
+    /**
+     * Default constructor.
+     *
+     * @param file - a regular file.
+     * @param contentType - a content type; null for none.
+     * @throws IllegalArgumentException if the file is not a readable regular file.
+     */
+    public PathEntity(Path file, ContentType contentType) {
+        if (file == null || !Files.isRegularFile(file) || !Files.isReadable(file)) {
+            throw new IllegalArgumentException("Not a readable file:" + file);
+        }
+        try {
+            this.length = Files.size(file);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Not a readable file:" + file, e);
+        }
+        this.file = file;
+        if (contentType != null) {
+            setContentType(contentType.toString());
+        }
+    }
+
+    /**
+     * @return the file.
+     */
+    public Path file() {
+        return file;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return length;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return Files.newInputStream(file);
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            copy(in, out, length, file.toString());
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * Copies exactly length bytes, or all bytes if the length is unknown.
+     *
+     * @param in - a source stream.
+     * @param out - a target stream.
+     * @param length - number of bytes to copy; negative to copy to the end of the source.
+     * @param name - a source name for the error message.
+     * @return number of bytes copied.
+     * @throws IOException if the source ends before length bytes.
+     */
+    static long copy(InputStream in, OutputStream out, long length, String name) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, length < 0 ? BUFFER_SIZE : Math.max(1, length))];
+        long remaining = length < 0 ? Long.MAX_VALUE : length;
+        long copied = 0;
+        while (remaining > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (n == -1) {
+                if (length < 0) {
+                    break;
+                }
+                throw new IOException("Expected " + length + " bytes but " + name + " ended after " + copied);
+            }
+            out.write(buffer, 0, n);
+            copied += n;
+            remaining -= n;
+        }
+        return copied;
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.cache;
+
+import com.intuit.payments.http.Response;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, TTL-aware store of the last successful {@link Response} per cache key. It backs the
+ * stale-if-error fallback: when a call fails, times out or is short-circuited, the last-known-good
+ * response is returned marked as stale instead of an error.
+ *
+ * Entries live in a {@link ConcurrentHashMap}, so puts and lookups of different keys never wait on a shared
+ * lock. Eviction is approximately least-recently-used: once a put exceeds the maximum size, it samples up to
+ * {@link #EVICTION_SAMPLE_SIZE} entries and evicts the least recently used one, dropping any expired entry it
+ * meets on the way. Caches no larger than the sample size evict exactly. Expired entries are also dropped when
+ * they are looked up.
+ *
+ * @author saung
+ * @since 3/19/18
+ */
+public class StaleResponseCache {
+    /** Number of entries compared to pick one to evict */
+    public static final int EVICTION_SAMPLE_SIZE = 8;
+
+    /** Maximum number of cached responses */
+    private final int maxEntries;
+
+    /** Time in milliseconds a cached response may be served after it was stored */
+    private final long ttlInMilliSec;
+
+    /** Cache key to the last successful response */
+    private final Map<String, CachedResponse> entries = new ConcurrentHashMap<>();
+
+    /** Number of fallback lookups served from the cache */
+    private final LongAdder hits = new LongAdder();
+
+    /** Number of fallback lookups with no usable entry */
+    private final LongAdder misses = new LongAdder();
+
+    /** Age of the last stale response served */
+    private volatile long lastStaleAgeInMilliSec;
+
+    /**
+     * Default constructor.
+     *
+     * @param maxEntries - maximum number of responses to keep. The least recently used one is evicted first.
+     * @param ttlInMilliSec - how long a response may be served as stale after it was stored.
+     */
+    public StaleResponseCache(int maxEntries, long ttlInMilliSec) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be greater than zero");
+        }
+        if (ttlInMilliSec < 1) {
+            throw new IllegalArgumentException("ttlInMilliSec must be greater than zero");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlInMilliSec = ttlInMilliSec;
+    }
+
+    /**
+     * Stores a successful response as the last-known-good one for a given key.
+     *
+     * @param key - a cache key that includes everything the response varies by, such as the credentials.
+     * @param response - a successful response.
+     */
+    public void put(String key, Response response) {
+        CachedResponse entry = new CachedResponse(response, System.currentTimeMillis());
+        entries.put(key, entry);
+        while (entries.size() > maxEntries && evictOne(entry)) {
+            // concurrent puts may each evict, leaving the cache briefly below its maximum size
+        }
+    }
+
+    /**
+     * Gets the last-known-good response for a given key marked as stale.
+     *
+     * @param key - a cache key that includes everything the response varies by, such as the credentials.
+     * @return a stale copy of the cached response; null if there is none or it has expired.
+     */
+    public Response get(String key) {
+        CachedResponse entry = entries.get(key);
+        long age = (entry == null) ? -1 : System.currentTimeMillis() - entry.storedAt;
+        if (entry != null && age > ttlInMilliSec) {
+            entries.remove(key, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        entry.lastAccessNanos = System.nanoTime();
+        hits.increment();
+        lastStaleAgeInMilliSec = age;
+        return entry.response.stale(age);
+    }
+
+    /**
+     * Gets the ratio of fallback lookups served from the cache.
+     *
+     * @return the hit rate between 0.0 and 1.0; 0.0 if there was no lookup yet.
+     */
+    public double hitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return number of fallback lookups served from the cache.
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of fallback lookups with no usable entry.
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return age in milliseconds of the last stale response served; 0 if none was served yet.
+     */
+    public long lastStaleAgeInMilliSec() {
+        return lastStaleAgeInMilliSec;
+    }
+
+    /**
+     * @return number of cached responses.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Evicts the least recently used of up to {@link #EVICTION_SAMPLE_SIZE} entries, other than the one just put.
+     * Expired entries met while sampling are evicted too.
+     *
+     * @param added - the entry just put, which is never evicted.
+     * @return true if an entry was evicted; false if there was no other entry.
+     */
+    private boolean evictOne(CachedResponse added) {
+        long now = System.currentTimeMillis();
+        boolean evicted = false;
+        Map.Entry<String, CachedResponse> eldest = null;
+        Iterator<Map.Entry<String, CachedResponse>> it = entries.entrySet().iterator();
+        for (int sampled = 0; sampled < EVICTION_SAMPLE_SIZE && it.hasNext(); ) {
+            Map.Entry<String, CachedResponse> candidate = it.next();
+            CachedResponse value = candidate.getValue();
+            if (value == added) {
+                continue;
+            }
+            if (now - value.storedAt > ttlInMilliSec) {
+                evicted |= entries.remove(candidate.getKey(), value);
+                continue;
+            }
+            if (eldest == null || value.lastAccessNanos - eldest.getValue().lastAccessNanos < 0) {
+                eldest = candidate;
+            }
+            sampled++;
+        }
+        if (!evicted && eldest != null) {
+            evicted = entries.remove(eldest.getKey(), eldest.getValue());
+        }
+        return evicted;
+    }
+
+    /**
+     * Cached response, the time it was stored and the time it was last put or looked up.
+     */
+    private static class CachedResponse {
+        private final Response response;
+        private final long storedAt;
+        private volatile long lastAccessNanos = System.nanoTime();
+
+        private CachedResponse(Response response, long storedAt) {
+            this.response = response;
+            this.storedAt = storedAt;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A bounded pool of raw (no zlib wrapper) {@link Deflater}s and {@link Inflater}s.
+ *
+ * Each codec holds about 256KB (deflate) or 40KB (inflate) of native memory that is only freed by
+ * {@link Deflater#end()} or a finalizer, so creating one per request churns native memory and the finalizer queue.
+ * Pooled codecs are reset on release; codecs released to a full pool are ended right away.
+ *
+ * @author saung
+ * @since 6/27/18
+ */
+public final class CodecPool {
+    /** Default number of idle codecs of each kind */
+    public static final int DEFAULT_CAPACITY = 2 * Runtime.getRuntime().availableProcessors();
+
+    /** Pool shared by all requests */
+    private static final CodecPool SHARED = new CodecPool(DEFAULT_CAPACITY, Deflater.DEFAULT_COMPRESSION);
+
+    private final BlockingQueue<Deflater> deflaters;
+
+    private final BlockingQueue<Inflater> inflaters;
+
+    private final int level;
+
+    /**
+     * Default constructor.
+     *
+     * @param capacity - maximum number of idle codecs of each kind.
+     * @param level - deflate level from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}, or
+     *              {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public CodecPool(int capacity, int level) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (level != Deflater.DEFAULT_COMPRESSION
+                && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid deflate level:" + level);
+        }
+        this.deflaters = new ArrayBlockingQueue<>(capacity);
+        this.inflaters = new ArrayBlockingQueue<>(capacity);
+        this.level = level;
+    }
+
+    /**
+     * @return the pool shared by all requests.
+     */
+    public static CodecPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return an idle or new raw {@link Deflater}; give it back with {@link #release(Deflater)}.
+     */
+    public Deflater acquireDeflater() {
+        Deflater deflater = deflaters.poll();
+        return deflater != null ? deflater : new Deflater(level, true);
+    }
+
+    /**
+     * @return an idle or new raw {@link Inflater}; give it back with {@link #release(Inflater)}.
+     */
+    public Inflater acquireInflater() {
+        Inflater inflater = inflaters.poll();
+        return inflater != null ? inflater : new Inflater(true);
+    }
+
+    /**
+     * Resets a deflater and returns it to the pool, or ends it if the pool is full.
+     *
+     * @param deflater - a {@link Deflater} from {@link #acquireDeflater()}.
+     */
+    public void release(Deflater deflater) {
+        deflater.reset();
+        if (!deflaters.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Resets an inflater and returns it to the pool, or ends it if the pool is full.
+     *
+     * @param inflater - an {@link Inflater} from {@link #acquireInflater()}.
+     */
+    public void release(Inflater inflater) {
+        inflater.reset();
+        if (!inflaters.offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @return number of idle deflaters.
+     */
+    public int idleDeflaters() {
+        return deflaters.size();
+    }
+
+    /**
+     * @return number of idle inflaters.
+     */
+    public int idleInflaters() {
+        return inflaters.size();
+    }
+}
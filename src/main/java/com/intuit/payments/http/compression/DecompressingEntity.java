@@ -0,0 +1,111 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.compression;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * A response entity that decodes a "gzip" or "deflate" body on the fly with an {@link InflatingInputStream}.
+ *
+ * It replaces HttpClient's own content decompression, which is on or off depending on how the client is built and
+ * allocates a new inflater per response.
+ *
+ * @author saung
+ * @since 6/27/18
+ */
+public class DecompressingEntity extends HttpEntityWrapper {
+    /** "Accept-Encoding" value of requests that accept compressed responses */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private final boolean gzip;
+
+    private final CodecPool pool;
+
+    private final InflatingInputStream.Listener listener;
+
+    private InputStream content;
+
+    /**
+     * Default constructor.
+     *
+     * @param wrappedEntity - the encoded entity.
+     * @param gzip - true for "gzip", false for "deflate".
+     * @param pool - a {@link CodecPool}.
+     * @param listener - an optional {@link InflatingInputStream.Listener}; null for none.
+     */
+    public DecompressingEntity(HttpEntity wrappedEntity, boolean gzip, CodecPool pool,
+                               InflatingInputStream.Listener listener) {
+        super(wrappedEntity);
+        this.gzip = gzip;
+        this.pool = pool;
+        this.listener = listener;
+    }
+
+    /**
+     * Replaces the entity of a response with a decoding one if its Content-Encoding is "gzip", "x-gzip" or
+     * "deflate", and removes the Content-Encoding, Content-Length and Content-MD5 headers, which describe the
+     * encoded body. Other encodings are left alone.
+     *
+     * @param response - a Http response.
+     * @param pool - a {@link CodecPool}.
+     * @param listener - an optional {@link InflatingInputStream.Listener}; null for none.
+     * @return true if the entity was replaced.
+     */
+    public static boolean decode(HttpResponse response, CodecPool pool, InflatingInputStream.Listener listener) {
+        HttpEntity entity = response.getEntity();
+        Header contentEncoding = (entity != null) ? entity.getContentEncoding() : null;
+        if (contentEncoding == null) {
+            return false;
+        }
+        String encoding = contentEncoding.getValue().trim().toLowerCase(Locale.ROOT);
+        boolean gzip = Gzip.ENCODING.equals(encoding) || "x-gzip".equals(encoding);
+        if (!gzip && !"deflate".equals(encoding)) {
+            return false;
+        }
+        response.setEntity(new DecompressingEntity(entity, gzip, pool, listener));
+        response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+        response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+        response.removeHeaders(HttpHeaders.CONTENT_MD5);
+        return true;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        if (content == null) {
+            content = new InflatingInputStream(wrappedEntity.getContent(), gzip, pool, listener);
+        }
+        return content;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public Header getContentEncoding() {
+        return null;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        try (InputStream in = getContent()) {
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+}
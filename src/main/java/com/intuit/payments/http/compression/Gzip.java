@@ -0,0 +1,84 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.compression;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip (RFC 1952) encoding of request bodies with a pooled {@link Deflater}, without the stream and buffer copies
+ * of {@link java.util.zip.GZIPOutputStream}.
+ *
+ * @author saung
+ * @since 6/27/18
+ */
+public final class Gzip {
+    /** "Content-Encoding" value */
+    public static final String ENCODING = "gzip";
+
+    /** Magic number, deflate method, no flags, no mtime, no extra flags, unknown OS */
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    /** CRC-32 and input size */
+    private static final int TRAILER_LENGTH = 8;
+
+    private Gzip() {
+    }
+
+    /**
+     * Compresses bytes with a deflater of the shared {@link CodecPool}.
+     *
+     * @param data - bytes to compress.
+     * @return the gzip bytes.
+     */
+    public static byte[] compress(byte[] data) {
+        return compress(data, CodecPool.shared());
+    }
+
+    /**
+     * Compresses bytes with a pooled deflater.
+     *
+     * @param data - bytes to compress.
+     * @param pool - a {@link CodecPool}.
+     * @return the gzip bytes.
+     */
+    public static byte[] compress(byte[] data, CodecPool pool) {
+        // JSON typically compresses 5-10x; the buffer grows if it does not
+        byte[] out = new byte[Math.max(64, data.length / 4)];
+        System.arraycopy(HEADER, 0, out, 0, HEADER.length);
+        int length = HEADER.length;
+        Deflater deflater = pool.acquireDeflater();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                length += deflater.deflate(out, length, out.length - length);
+            }
+        } finally {
+            pool.release(deflater);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        if (out.length - length < TRAILER_LENGTH) {
+            out = Arrays.copyOf(out, length + TRAILER_LENGTH);
+        }
+        writeIntLE(out, length, (int) crc.getValue());
+        writeIntLE(out, length + 4, data.length);
+        length += TRAILER_LENGTH;
+        return length == out.length ? out : Arrays.copyOf(out, length);
+    }
+
+    private static void writeIntLE(byte[] out, int offset, int value) {
+        out[offset] = (byte) value;
+        out[offset + 1] = (byte) (value >>> 8);
+        out[offset + 2] = (byte) (value >>> 16);
+        out[offset + 3] = (byte) (value >>> 24);
+    }
+}
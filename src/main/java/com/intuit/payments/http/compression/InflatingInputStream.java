@@ -0,0 +1,346 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.compression;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decodes a "gzip" or "deflate" Http body with a pooled {@link Inflater}, which goes back to the pool as soon as
+ * the body is decoded to the end or the stream is closed.
+ *
+ * A gzip body is checked against its CRC-32 and size trailer. A body of several gzip members, as concatenated gzip
+ * files are, decodes to the concatenation of the members; any other data after a member is rejected with a
+ * {@link ZipException}. A deflate body may be zlib-wrapped as RFC 7230 says
+ * or raw, as some servers send it; the zlib checksum is not checked. Only the time spent in the inflater is
+ * measured, which is CPU time since it works on memory only, not the time waiting for the network.
+ *
+ * @author saung
+ * @since 6/27/18
+ */
+public class InflatingInputStream extends InputStream {
+    /** Size of the compressed input buffer */
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final InputStream in;
+
+    private final boolean gzip;
+
+    private final CodecPool pool;
+
+    private final Listener listener;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /** Buffer of {@link #read()} */
+    private final byte[] singleByte = new byte[1];
+
+    private final CRC32 crc;
+
+    private Inflater inflater;
+
+    /** Number of valid bytes in the buffer */
+    private int bufferLength;
+
+    /** Position of the next buffered byte not given to the inflater yet, e.g. of a gzip trailer */
+    private int bufferPosition;
+
+    private boolean started;
+
+    private boolean finished;
+
+    private boolean closed;
+
+    private boolean reported;
+
+    private long compressedBytes;
+
+    private long decompressedBytes;
+
+    /** Decoded bytes of the current gzip member */
+    private long memberBytes;
+
+    private long inflateNanos;
+
+    /**
+     * Receives the totals of a body once it is decoded or closed.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param compressedBytes - number of encoded bytes read.
+         * @param decompressedBytes - number of decoded bytes returned.
+         * @param inflateNanos - time spent in the inflater in nanoseconds.
+         */
+        void onDecompressed(long compressedBytes, long decompressedBytes, long inflateNanos);
+    }
+
+    /**
+     * Default constructor.
+     *
+     * @param in - the encoded body.
+     * @param gzip - true for "gzip", false for "deflate".
+     * @param pool - a {@link CodecPool}.
+     * @param listener - an optional {@link Listener}; null for none.
+     */
+    public InflatingInputStream(InputStream in, boolean gzip, CodecPool pool, Listener listener) {
+        this.in = in;
+        this.gzip = gzip;
+        this.pool = pool;
+        this.listener = listener;
+        this.crc = gzip ? new CRC32() : null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!started) {
+            start();
+        }
+        if (finished) {
+            return -1;
+        }
+        try {
+            while (true) {
+                long startNanos = System.nanoTime();
+                int n = inflater.inflate(b, off, len);
+                inflateNanos += System.nanoTime() - startNanos;
+                if (n > 0) {
+                    if (crc != null) {
+                        crc.update(b, off, n);
+                    }
+                    decompressedBytes += n;
+                    memberBytes += n;
+                    return n;
+                }
+                if (inflater.finished()) {
+                    if (gzip && readGzipTrailer()) {
+                        continue;
+                    }
+                    finish();
+                    return -1;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Deflate preset dictionaries are not supported");
+                }
+                if (inflater.needsInput()) {
+                    fill();
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid " + (gzip ? "gzip" : "deflate") + " body: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            releaseInflater();
+            report();
+            in.close();
+        }
+    }
+
+    /**
+     * @return number of encoded bytes read so far.
+     */
+    public long compressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * @return number of decoded bytes returned so far.
+     */
+    public long decompressedBytes() {
+        return decompressedBytes;
+    }
+
+    /**
+     * Reads the gzip header or the optional zlib header. An empty body decodes to an empty body.
+     */
+    private void start() throws IOException {
+        started = true;
+        int first = in.read();
+        if (first == -1) {
+            finished = true;
+            report();
+            return;
+        }
+        compressedBytes++;
+        inflater = pool.acquireInflater();
+        if (gzip) {
+            readGzipHeader(first);
+            return;
+        }
+        int second = readByte();
+        if ((first & 0x0f) != 8 || ((first << 8) | second) % 31 != 0) {
+            // raw deflate without the zlib header
+            buffer[0] = (byte) first;
+            buffer[1] = (byte) second;
+            bufferLength = 2;
+            bufferPosition = 2;
+            inflater.setInput(buffer, 0, bufferLength);
+        } else if ((second & 0x20) != 0) {
+            throw new ZipException("Deflate preset dictionaries are not supported");
+        }
+    }
+
+    private void readGzipHeader(int first) throws IOException {
+        if (first != 0x1f || readByte() != 0x8b) {
+            throw new ZipException("Not in gzip format");
+        }
+        if (readByte() != 8) {
+            throw new ZipException("Unsupported gzip compression method");
+        }
+        int flags = readByte();
+        // mtime, extra flags and OS
+        skipBytes(6);
+        if ((flags & FEXTRA) != 0) {
+            skipBytes(readByte() | (readByte() << 8));
+        }
+        if ((flags & FNAME) != 0) {
+            while (readByte() != 0) {
+                // skip the file name
+            }
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (readByte() != 0) {
+                // skip the comment
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            skipBytes(2);
+        }
+    }
+
+    /**
+     * Reads the gzip trailer after the last deflate block of a member and starts the next member if any.
+     *
+     * @return true if another member follows; false at the end of the body.
+     */
+    private boolean readGzipTrailer() throws IOException {
+        bufferPosition = bufferLength - inflater.getRemaining();
+        long expectedCrc = 0;
+        long expectedSize = 0;
+        for (int i = 0; i < 8; i++) {
+            long b = readByte();
+            if (i < 4) {
+                expectedCrc |= b << (8 * i);
+            } else {
+                expectedSize |= b << (8 * (i - 4));
+            }
+        }
+        if (expectedCrc != crc.getValue()) {
+            throw new ZipException("Corrupt gzip body: CRC-32 mismatch");
+        }
+        if (expectedSize != (memberBytes & 0xffffffffL)) {
+            throw new ZipException("Corrupt gzip body: size mismatch");
+        }
+        int next;
+        if (bufferPosition < bufferLength) {
+            next = buffer[bufferPosition++] & 0xff;
+        } else {
+            next = in.read();
+            if (next == -1) {
+                return false;
+            }
+            compressedBytes++;
+        }
+        if (next != 0x1f) {
+            throw new ZipException("Corrupt gzip body: unexpected data after the trailer");
+        }
+        readGzipHeader(next);
+        inflater.reset();
+        crc.reset();
+        memberBytes = 0;
+        if (bufferPosition < bufferLength) {
+            inflater.setInput(buffer, bufferPosition, bufferLength - bufferPosition);
+            bufferPosition = bufferLength;
+        }
+        return true;
+    }
+
+    /**
+     * Gives the inflater back at the end of the body.
+     */
+    private void finish() {
+        finished = true;
+        releaseInflater();
+        report();
+    }
+
+    private void fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        if (n == -1) {
+            throw new EOFException("Unexpected end of " + (gzip ? "gzip" : "deflate") + " body");
+        }
+        compressedBytes += n;
+        bufferLength = n;
+        bufferPosition = n;
+        inflater.setInput(buffer, 0, n);
+    }
+
+    /**
+     * Reads a header or trailer byte: the next buffered byte not given to the inflater, or from the body.
+     */
+    private int readByte() throws IOException {
+        if (bufferPosition < bufferLength) {
+            return buffer[bufferPosition++] & 0xff;
+        }
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("Unexpected end of gzip header");
+        }
+        compressedBytes++;
+        return b;
+    }
+
+    private void skipBytes(int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            readByte();
+        }
+    }
+
+    private void releaseInflater() {
+        if (inflater != null) {
+            pool.release(inflater);
+            inflater = null;
+        }
+    }
+
+    private void report() {
+        if (!reported) {
+            reported = true;
+            if (listener != null) {
+                listener.onDecompressed(compressedBytes, decompressedBytes, inflateNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.exception;
+
+/**
+ * Raised for a request that was cancelled before it completed, e.g. because another request of its batch failed.
+ *
+ * NOTE: This exception is preallocated and stackless since it is reported for every cancelled request.
+ * Use {@link #INSTANCE} instead of creating a new one.
+ *
+ * @author saung
+ * @since 6/11/18
+ */
+public class HCCancelledException extends HCException {
+    /** Shared stackless instance */
+    public static final HCCancelledException INSTANCE = new HCCancelledException();
+
+    /**
+     * Private constructor. Use {@link #INSTANCE}.
+     */
+    private HCCancelledException() {
+        super("Request was cancelled before it completed", false);
+    }
+}
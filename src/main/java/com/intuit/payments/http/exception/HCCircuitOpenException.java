@@ -0,0 +1,27 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.exception;
+
+/**
+ * Raised when a request is short-circuited by an open Hystrix circuit breaker and no fallback is set.
+ *
+ * NOTE: This exception is preallocated and stackless since it is thrown on every rejected call while
+ * the circuit is open. Use {@link #INSTANCE} instead of creating a new one.
+ *
+ * @author saung
+ * @since 3/12/18
+ */
+public class HCCircuitOpenException extends HCException {
+    /** Shared stackless instance */
+    public static final HCCircuitOpenException INSTANCE = new HCCircuitOpenException();
+
+    /**
+     * Private constructor. Use {@link #INSTANCE}.
+     */
+    private HCCircuitOpenException() {
+        super("Circuit breaker is open and no fallback is available", false);
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.exception;
+
+/**
+ * Raised for a request of a batch that did not complete before the batch deadline.
+ *
+ * NOTE: This exception is preallocated and stackless since it is reported for every unfinished request.
+ * Use {@link #INSTANCE} instead of creating a new one.
+ *
+ * @author saung
+ * @since 6/11/18
+ */
+public class HCDeadlineExceededException extends HCException {
+    /** Shared stackless instance */
+    public static final HCDeadlineExceededException INSTANCE = new HCDeadlineExceededException();
+
+    /**
+     * Private constructor. Use {@link #INSTANCE}.
+     */
+    private HCDeadlineExceededException() {
+        super("Request did not complete before the deadline", false);
+    }
+}
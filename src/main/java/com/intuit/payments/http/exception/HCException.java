@@ -23,4 +23,16 @@ public class HCException extends RuntimeException {
     public HCException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new runtime exception with the specified detail message and
+     * writable stack trace enabled or disabled. Subclasses that are thrown on hot
+     * failure paths pass false to skip the costly stack trace capture.
+     *
+     * @param message the detail message.
+     * @param writableStackTrace whether or not the stack trace should be writable.
+     */
+    protected HCException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
 }
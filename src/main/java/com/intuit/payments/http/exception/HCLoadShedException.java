@@ -0,0 +1,27 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.exception;
+
+/**
+ * Raised when a low-priority request is shed because its command group is saturated.
+ *
+ * NOTE: This exception is preallocated and stackless since it is thrown on every shed call.
+ * Use {@link #INSTANCE} instead of creating a new one.
+ *
+ * @author saung
+ * @since 4/2/18
+ */
+public class HCLoadShedException extends HCException {
+    /** Shared stackless instance */
+    public static final HCLoadShedException INSTANCE = new HCLoadShedException();
+
+    /**
+     * Private constructor. Use {@link #INSTANCE}.
+     */
+    private HCLoadShedException() {
+        super("Request was shed because the command group is saturated", false);
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.exception;
+
+/**
+ * Raised when a request could not lease a connection from the pool within the connection request timeout,
+ * i.e. the pool of the route is exhausted. The request was never sent to the server.
+ *
+ * @author saung
+ * @since 4/30/18
+ */
+public class HCPoolExhaustedException extends HCException {
+    /**
+     * Constructs a new runtime exception with the specified detail message and cause.
+     *
+     * @param message the detail message.
+     * @param cause the underlying {@link org.apache.http.conn.ConnectionPoolTimeoutException}.
+     */
+    public HCPoolExhaustedException(String message, Throwable cause) {
+        super(message);
+        initCause(cause);
+    }
+}
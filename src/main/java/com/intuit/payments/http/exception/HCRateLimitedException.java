@@ -0,0 +1,27 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.exception;
+
+/**
+ * Raised when a client-side rate limiter rejects a request before it is sent.
+ *
+ * NOTE: This exception is preallocated and stackless since it is thrown on every throttled call.
+ * Use {@link #INSTANCE} instead of creating a new one.
+ *
+ * @author saung
+ * @since 3/26/18
+ */
+public class HCRateLimitedException extends HCException {
+    /** Shared stackless instance */
+    public static final HCRateLimitedException INSTANCE = new HCRateLimitedException();
+
+    /**
+     * Private constructor. Use {@link #INSTANCE}.
+     */
+    private HCRateLimitedException() {
+        super("Request was throttled by the client-side rate limiter", false);
+    }
+}
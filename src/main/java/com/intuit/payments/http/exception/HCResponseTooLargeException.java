@@ -0,0 +1,25 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.exception;
+
+/**
+ * Raised when a response body exceeds the maximum response size of a request. The connection is closed rather
+ * than the rest of the body read.
+ *
+ * @author saung
+ * @since 6/25/18
+ */
+public class HCResponseTooLargeException extends HCException {
+    /**
+     * Default constructor.
+     *
+     * @param maxBytes - the maximum response size.
+     * @param bytes - the Content-Length, or the bytes read when the maximum was exceeded.
+     */
+    public HCResponseTooLargeException(long maxBytes, long bytes) {
+        super("Response body of at least " + bytes + " bytes exceeds the maximum of " + maxBytes + " bytes");
+    }
+}
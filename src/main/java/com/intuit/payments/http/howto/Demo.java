@@ -29,6 +29,7 @@ public class Demo {
         httpGET();
         httpPOST();
         with_fallback();
+        with_stale_if_error();
     }
 
     private static void httpGET() {
@@ -80,4 +81,17 @@ public class Demo {
                 response.statusCode() + " " +
                 response.statusReason() + "\n" + response.map());
     }
+
+    private static void with_stale_if_error() {
+        // Keeps the last successful GET response per URL for 5 minutes.
+        Client client = new Client("https://httpbin.org").staleIfError(100, 300000);
+
+        client.Request("GetCommand", "HttpGroup", "/get").GET().execute();
+        // Served from the stale-if-error cache if the second call fails.
+        Response response = client.Request("GetCommand", "HttpGroup", "/get").GET().execute();
+
+        out.println("__Response__\n" +
+                response.statusCode() + " " +
+                response.statusReason() + " stale=" + response.isStale() + "\n" + response.map());
+    }
 }
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.jfr;
+
+/**
+ * Java Flight Recorder event of a {@link com.intuit.payments.http.Request} fallback, i.e. a request that was
+ * short-circuited, rejected, shed, timed out or failed.
+ *
+ * This Java 8 version is a no-op. On JDK 11+ the multi-release jar loads the version in META-INF/versions/11,
+ * a jdk.jfr.Event named "com.intuit.payments.http.Fallback" that records every fallback. Both versions must
+ * keep the same public API.
+ *
+ * @author saung
+ * @since 5/21/18
+ */
+public class FallbackEvent {
+    /** Causes */
+    public static final String SHORT_CIRCUITED = "short_circuited";
+    public static final String REJECTED = "rejected";
+    public static final String SHED = "shed";
+    public static final String RATE_LIMITED = "rate_limited";
+    public static final String TIMEOUT = "timeout";
+    public static final String POOL_EXHAUSTED = "pool_exhausted";
+    public static final String FAILURE = "failure";
+
+    /** Resolutions */
+    public static final String CUSTOM = "custom";
+    public static final String STALE = "stale";
+    public static final String NONE = "none";
+
+    /**
+     * Starts the timing of the event.
+     */
+    public void begin() {
+    }
+
+    /**
+     * Ends the timing of the event.
+     */
+    public void end() {
+    }
+
+    /**
+     * @return true if the event is enabled; always false on Java 8.
+     */
+    public boolean shouldCommit() {
+        return false;
+    }
+
+    /**
+     * Writes the event to the flight recorder.
+     */
+    public void commit() {
+    }
+
+    /**
+     * Sets the fallback fields.
+     *
+     * @param commandKey - Hystrix command name.
+     * @param commandGroup - Hystrix command group name.
+     * @param host - target host name.
+     * @param cause - one of the cause constants of this class.
+     * @param resolution - one of the resolution constants of this class.
+     * @param exception - class name of the execution exception; null if none.
+     * @return this instance.
+     */
+    public FallbackEvent fallback(String commandKey, String commandGroup, String host, String cause,
+                                 String resolution, String exception) {
+        return this;
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.jfr;
+
+import com.intuit.payments.http.metrics.PhaseTimings;
+
+/**
+ * Java Flight Recorder event of one Http request execution in {@link com.intuit.payments.http.Request}.
+ *
+ * This Java 8 version is a no-op. On JDK 11+ the multi-release jar loads the version in META-INF/versions/11,
+ * a jdk.jfr.Event named "com.intuit.payments.http.HttpRequest" that is recorded when the request takes longer
+ * than 20 ms. Both versions must keep the same public API.
+ *
+ * Usage: call {@link #begin()} before the request and {@link #end()} after it; set the fields and
+ * {@link #commit()} only if {@link #shouldCommit()} returns true.
+ *
+ * @author saung
+ * @since 5/21/18
+ */
+public class HttpRequestEvent {
+    /** Outcomes */
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+    public static final String TIMEOUT = "timeout";
+    public static final String POOL_EXHAUSTED = "pool_exhausted";
+    public static final String ERROR = "error";
+
+    /**
+     * Starts the timing of the event.
+     */
+    public void begin() {
+    }
+
+    /**
+     * Ends the timing of the event.
+     */
+    public void end() {
+    }
+
+    /**
+     * @return true if the event is enabled and lasted longer than its threshold; always false on Java 8.
+     */
+    public boolean shouldCommit() {
+        return false;
+    }
+
+    /**
+     * Writes the event to the flight recorder.
+     */
+    public void commit() {
+    }
+
+    /**
+     * Sets the request fields.
+     *
+     * @param commandKey - Hystrix command name.
+     * @param commandGroup - Hystrix command group name.
+     * @param host - target host name.
+     * @param httpVerb - Http verb name.
+     * @return this instance.
+     */
+    public HttpRequestEvent request(String commandKey, String commandGroup, String host, String httpVerb) {
+        return this;
+    }
+
+    /**
+     * Sets the response fields.
+     *
+     * @param status - Http status code; -1 if no response was received.
+     * @param requestBytes - request body bytes.
+     * @param responseBytes - response body bytes.
+     * @param outcome - one of the outcome constants of this class.
+     * @return this instance.
+     */
+    public HttpRequestEvent response(int status, long requestBytes, long responseBytes, String outcome) {
+        return this;
+    }
+
+    /**
+     * Sets the phase durations.
+     *
+     * @param timings - {@link PhaseTimings} of the request.
+     * @return this instance.
+     */
+    public HttpRequestEvent phases(PhaseTimings timings) {
+        return this;
+    }
+}
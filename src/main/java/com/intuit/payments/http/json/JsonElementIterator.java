@@ -0,0 +1,152 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.json;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import com.intuit.payments.http.util.Util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the elements of a top-level JSON array, or the values of an NDJSON (newline-delimited JSON) body, one at a
+ * time via Gson's {@link JsonReader}, so only one element is in memory regardless of the body size. The format is
+ * detected from the first token: an array is iterated element by element, anything else as a sequence of
+ * top-level values.
+ *
+ * Read failures are thrown as {@link JsonIOException} and malformed JSON as {@link JsonSyntaxException}. Close the
+ * iterator to release the underlying stream if it is not read to the end.
+ *
+ * @author saung
+ * @since 6/18/18
+ */
+public class JsonElementIterator<T> implements Iterator<T>, Closeable {
+    private final JsonReader reader;
+
+    private final Class<T> clazz;
+
+    /** true if the body is a top-level array; null until the first token is read */
+    private Boolean array;
+
+    private boolean exhausted;
+
+    private boolean closed;
+
+    private long count;
+
+    /**
+     * Default constructor.
+     *
+     * @param reader - a Reader of a JSON array or NDJSON body; it is closed by {@link #close()}.
+     * @param clazz - a Class to de-serialize each element to.
+     */
+    public JsonElementIterator(Reader reader, Class<T> clazz) {
+        if (reader == null || clazz == null) {
+            throw new IllegalArgumentException("reader and clazz must not be NULL");
+        }
+        this.reader = new JsonReader(reader);
+        this.reader.setLenient(true);
+        this.clazz = clazz;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (exhausted || closed) {
+            return false;
+        }
+        try {
+            if (array == null) {
+                JsonToken first = peekFirst();
+                if (first == JsonToken.END_DOCUMENT) {
+                    exhausted = true;
+                    return false;
+                }
+                array = first == JsonToken.BEGIN_ARRAY;
+                if (array) {
+                    reader.beginArray();
+                }
+            }
+            if (array ? reader.hasNext() : reader.peek() != JsonToken.END_DOCUMENT) {
+                return true;
+            }
+            if (array) {
+                reader.endArray();
+                // reads up to the end of the stream, which lets a Http entity release its connection for reuse
+                reader.peek();
+            }
+            exhausted = true;
+            return false;
+        } catch (IOException e) {
+            throw toJsonException(e);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T element;
+        try {
+            element = Util.fromJson(reader, clazz);
+        } catch (JsonSyntaxException e) {
+            // Gson reports every IOException as a syntax error; keep read failures such as timeouts apart
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException && !(cause instanceof MalformedJsonException)
+                    && !(cause instanceof EOFException)) {
+                throw new JsonIOException(cause);
+            }
+            throw e;
+        }
+        count++;
+        return element;
+    }
+
+    /**
+     * @return true if all elements have been read.
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * @return number of elements read so far.
+     */
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            reader.close();
+        }
+    }
+
+    /**
+     * Peeks the first token; an empty body is an empty document rather than an error.
+     */
+    private JsonToken peekFirst() throws IOException {
+        try {
+            return reader.peek();
+        } catch (EOFException e) {
+            return JsonToken.END_DOCUMENT;
+        }
+    }
+
+    private static RuntimeException toJsonException(IOException e) {
+        return e instanceof MalformedJsonException ? new JsonSyntaxException(e) : new JsonIOException(e);
+    }
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.log;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An asynchronous, batched writer of {@link LogEvent}s to a SLF4J {@link Logger}.
+ *
+ * Request threads take a pooled event, copy values into it and put it in a bounded queue; a daemon thread
+ * drains the queue in batches, formats each event into one reused StringBuilder and logs it at INFO or ERROR
+ * level. Nothing is formatted on request threads.
+ *
+ * Success events can be sampled with {@link #successSampleRate(double)}. When the queue is full, success
+ * events are dropped and counted; error events are written synchronously so they are never lost.
+ *
+ * The writer thread is started by the first published event, together with a JVM shutdown hook that drains the
+ * queue for up to {@link #SHUTDOWN_TIMEOUT_IN_MILLISEC}. Call {@link #shutdown(long)} to drain and stop it
+ * earlier; events published after that are handled as if the queue were full.
+ *
+ * @author saung
+ * @since 5/7/18
+ */
+public class AsyncLogSink {
+    /** Default maximum number of characters logged per request or response body */
+    public static final int DEFAULT_MAX_BODY_CHARS = 1024;
+
+    /** Maximum time the shutdown hook waits for queued events to be written */
+    public static final long SHUTDOWN_TIMEOUT_IN_MILLISEC = 1000;
+
+    /** Maximum number of events written per batch */
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final Logger logger;
+
+    /** Events waiting to be written */
+    private final BlockingQueue<LogEvent> queue;
+
+    /** Recycled events */
+    private final BlockingQueue<LogEvent> pool;
+
+    /** Events published but not written yet */
+    private final AtomicLong pending = new AtomicLong();
+
+    /** Guards {@link #drained} */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled by the writer thread when no event is pending */
+    private final Condition drained = lock.newCondition();
+
+    /** Writer thread, or null until the first event is published */
+    private volatile Thread writer;
+
+    /** JVM shutdown hook registered with the writer thread */
+    private Thread shutdownHook;
+
+    private volatile boolean shutdown;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder written = new LongAdder();
+
+    private volatile double successSampleRate = 1.0;
+
+    private volatile int maxBodyChars = DEFAULT_MAX_BODY_CHARS;
+
+    /**
+     * Default constructor. The daemon writer thread is not started until the first event is published.
+     *
+     * @param logger - the SLF4J logger to write to.
+     * @param capacity - maximum number of queued events.
+     */
+    public AsyncLogSink(Logger logger, int capacity) {
+        if (logger == null) {
+            throw new IllegalArgumentException("logger must not be NULL");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.logger = logger;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.pool = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Sets the fraction of success events to be logged. Error events are always logged.
+     *
+     * @param successSampleRate - a rate in [0, 1]. Default is 1, i.e. every success is logged.
+     * @return this instance.
+     */
+    public AsyncLogSink successSampleRate(double successSampleRate) {
+        if (successSampleRate < 0 || successSampleRate > 1) {
+            throw new IllegalArgumentException("successSampleRate must be in [0, 1]");
+        }
+        this.successSampleRate = successSampleRate;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of characters logged per request or response body. Longer bodies are truncated.
+     *
+     * @param maxBodyChars - maximum number of characters. Default is {@link #DEFAULT_MAX_BODY_CHARS}.
+     * @return this instance.
+     */
+    public AsyncLogSink maxBodyChars(int maxBodyChars) {
+        if (maxBodyChars < 0) {
+            throw new IllegalArgumentException("maxBodyChars must not be negative");
+        }
+        this.maxBodyChars = maxBodyChars;
+        return this;
+    }
+
+    /**
+     * Checks whether a success event should be logged according to the sample rate.
+     *
+     * @return true if the success should be logged; false otherwise.
+     */
+    public boolean sampleSuccess() {
+        double rate = successSampleRate;
+        return rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * Takes a recycled event, or creates one if none is free.
+     *
+     * @return an empty {@link LogEvent}.
+     */
+    public LogEvent acquire() {
+        LogEvent event = pool.poll();
+        return event != null ? event : new LogEvent();
+    }
+
+    /**
+     * Queues an event to be written. The event must not be used by the caller afterwards.
+     *
+     * @param event - a {@link LogEvent} from {@link #acquire()}.
+     */
+    public void publish(LogEvent event) {
+        if (writer == null) {
+            start();
+        }
+        pending.incrementAndGet();
+        if (shutdown || !queue.offer(event)) {
+            decrementPending();
+            if (event.isError()) {
+                write(event, new StringBuilder(256));
+            } else {
+                dropped.increment();
+            }
+            recycle(event);
+        }
+    }
+
+    /**
+     * Hands back an event that is not going to be written, such as an unsampled success.
+     *
+     * @param event - a {@link LogEvent} from {@link #acquire()}.
+     */
+    public void discard(LogEvent event) {
+        recycle(event);
+    }
+
+    /**
+     * Waits until all published events are written.
+     *
+     * @param timeoutInMilliSec - maximum time to wait.
+     * @return true if all events are written; false if the timeout elapsed.
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    public boolean flush(long timeoutInMilliSec) throws InterruptedException {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutInMilliSec);
+        lock.lockInterruptibly();
+        try {
+            while (pending.get() > 0) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = drained.awaitNanos(remainingNanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all queued events are written, then stops the writer thread and removes the shutdown hook.
+     * Events still queued after the timeout are written on the calling thread. Later events are handled as if the
+     * queue were full: errors are written synchronously and successes are dropped.
+     *
+     * @param timeoutInMilliSec - maximum time to wait for the writer thread to drain the queue.
+     * @return true if the writer thread drained the queue; false if the timeout elapsed.
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    public boolean shutdown(long timeoutInMilliSec) throws InterruptedException {
+        Thread hook;
+        synchronized (this) {
+            shutdown = true;
+            hook = shutdownHook;
+            shutdownHook = null;
+        }
+        if (hook != null && hook != Thread.currentThread()) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            } catch (IllegalStateException e) {
+                // the JVM is already shutting down
+            }
+        }
+        boolean flushed = flush(timeoutInMilliSec);
+        Thread thread = writer;
+        if (thread != null) {
+            thread.interrupt();
+            thread.join(timeoutInMilliSec);
+        }
+        StringBuilder sb = new StringBuilder(256);
+        for (LogEvent event = queue.poll(); event != null; event = queue.poll()) {
+            writeAndRecycle(event, sb);
+        }
+        return flushed;
+    }
+
+    /**
+     * @return number of success events dropped because the queue was full.
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return number of events written.
+     */
+    public long writtenCount() {
+        return written.sum();
+    }
+
+    private synchronized void start() {
+        if (writer != null || shutdown) {
+            return;
+        }
+        Thread thread = new Thread(this::writeLoop, "hc-async-log-writer");
+        thread.setDaemon(true);
+        shutdownHook = new Thread(() -> {
+            try {
+                shutdown(SHUTDOWN_TIMEOUT_IN_MILLISEC);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "hc-async-log-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        thread.start();
+        writer = thread;
+    }
+
+    private void writeLoop() {
+        List<LogEvent> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        StringBuilder sb = new StringBuilder(1024);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                for (LogEvent event : batch) {
+                    writeAndRecycle(event, sb);
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void writeAndRecycle(LogEvent event, StringBuilder sb) {
+        try {
+            write(event, sb);
+        } catch (Exception e) {
+            logger.error("Failed to write a log event", e);
+        } finally {
+            recycle(event);
+            decrementPending();
+        }
+    }
+
+    private void decrementPending() {
+        if (pending.decrementAndGet() == 0) {
+            lock.lock();
+            try {
+                drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void write(LogEvent event, StringBuilder sb) {
+        sb.setLength(0);
+        String line = event.appendTo(sb, maxBodyChars).toString();
+        if (event.isError()) {
+            if (event.thrown() != null) {
+                logger.error(line, event.thrown());
+            } else {
+                logger.error(line);
+            }
+        } else {
+            logger.info(line);
+        }
+        written.increment();
+    }
+
+    private void recycle(LogEvent event) {
+        event.reset();
+        pool.offer(event);
+    }
+}
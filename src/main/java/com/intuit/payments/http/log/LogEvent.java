@@ -0,0 +1,271 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.log;
+
+import com.intuit.payments.http.metrics.Phase;
+import com.intuit.payments.http.metrics.PhaseTimings;
+import org.apache.http.Header;
+
+/**
+ * A structured, reusable record of one Http request execution. Request threads only copy field values and
+ * references into it; the "type=http_hystrix;..." line is formatted later by the {@link AsyncLogSink} writer
+ * thread. Instances are pooled by the sink: get one from {@link AsyncLogSink#acquire()} and hand it back with
+ * {@link AsyncLogSink#publish(LogEvent)} or {@link AsyncLogSink#discard(LogEvent)}.
+ *
+ * @author saung
+ * @since 5/7/18
+ */
+public class LogEvent {
+    /** Cached since {@link Phase#values()} clones the array on every call */
+    private static final Phase[] PHASES = Phase.values();
+
+    private String url;
+    private String httpVerb;
+
+    private boolean hasPoolStats;
+    private int poolMax;
+    private int poolMaxPerRoute;
+    private int poolAvailable;
+    private int poolLeased;
+    private int poolPending;
+
+    private int status = -1;
+    private String reason;
+
+    private boolean hasPhases;
+    private final long[] phaseNanos = new long[PHASES.length];
+
+    private Header[] requestHeaders;
+    private String requestBody;
+    private Header[] responseHeaders;
+    private String responseBody;
+    private String failedResponseBody;
+
+    private String exLabel;
+    private long exMillis = -1;
+    private String exMessage;
+    private Throwable thrown;
+
+    private boolean error;
+
+    /**
+     * Package-level access only. Use {@link AsyncLogSink#acquire()}.
+     */
+    LogEvent() {
+    }
+
+    /**
+     * Sets the request line.
+     *
+     * @param url - request URL.
+     * @param httpVerb - Http verb name.
+     * @return this instance.
+     */
+    public LogEvent request(String url, String httpVerb) {
+        this.url = url;
+        this.httpVerb = httpVerb;
+        return this;
+    }
+
+    /**
+     * Sets the connection pool stats.
+     *
+     * @param max - maximum total connections.
+     * @param maxPerRoute - default maximum connections per route.
+     * @param available - idle connections.
+     * @param leased - leased connections.
+     * @param pending - pending lease requests.
+     * @return this instance.
+     */
+    public LogEvent poolStats(int max, int maxPerRoute, int available, int leased, int pending) {
+        this.hasPoolStats = true;
+        this.poolMax = max;
+        this.poolMaxPerRoute = maxPerRoute;
+        this.poolAvailable = available;
+        this.poolLeased = leased;
+        this.poolPending = pending;
+        return this;
+    }
+
+    /**
+     * Sets the response status line.
+     *
+     * @param status - Http status code.
+     * @param reason - Http status reason.
+     * @return this instance.
+     */
+    public LogEvent status(int status, String reason) {
+        this.status = status;
+        this.reason = reason;
+        return this;
+    }
+
+    /**
+     * Copies the phase durations.
+     *
+     * @param timings - {@link PhaseTimings} of the request.
+     * @return this instance.
+     */
+    public LogEvent phases(PhaseTimings timings) {
+        this.hasPhases = true;
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseNanos[i] = timings.nanos(PHASES[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Sets full request and response headers and bodies. Bodies are capped by the sink when formatted.
+     *
+     * @param requestHeaders - request headers.
+     * @param requestBody - request body.
+     * @param responseHeaders - response headers.
+     * @param responseBody - response body.
+     * @return this instance.
+     */
+    public LogEvent exchange(Header[] requestHeaders, String requestBody, Header[] responseHeaders,
+                             String responseBody) {
+        this.requestHeaders = requestHeaders;
+        this.requestBody = requestBody;
+        this.responseHeaders = responseHeaders;
+        this.responseBody = responseBody;
+        return this;
+    }
+
+    /**
+     * Marks the event as an error caused by a failed status code.
+     *
+     * @param failedResponseBody - response body. It is capped by the sink when formatted.
+     * @return this instance.
+     */
+    public LogEvent failedResponse(String failedResponseBody) {
+        this.error = true;
+        this.failedResponseBody = failedResponseBody;
+        return this;
+    }
+
+    /**
+     * Marks the event as an error caused by an exception, formatted as "ex={label}{millis}ms{message}".
+     *
+     * @param label - a short error label, such as "No_data_received_in:".
+     * @param millis - an optional timeout value; negative if none.
+     * @param message - an optional message; null if none.
+     * @param thrown - an optional exception to be logged with its stack trace; null if none.
+     * @return this instance.
+     */
+    public LogEvent exception(String label, long millis, String message, Throwable thrown) {
+        this.error = true;
+        this.exLabel = label;
+        this.exMillis = millis;
+        this.exMessage = message;
+        this.thrown = thrown;
+        return this;
+    }
+
+    /**
+     * @return true if the event is logged at ERROR level; false for INFO.
+     */
+    public boolean isError() {
+        return error;
+    }
+
+    /**
+     * @return the exception to be logged with the event; null if none.
+     */
+    public Throwable thrown() {
+        return thrown;
+    }
+
+    /**
+     * Formats the event in the "type=http_hystrix;outURL=...;http=...;status=..." line format.
+     *
+     * @param sb - a StringBuilder to be appended.
+     * @param maxBodyChars - maximum number of characters of each body.
+     * @return the given StringBuilder.
+     */
+    public StringBuilder appendTo(StringBuilder sb, int maxBodyChars) {
+        sb.append("type=http_hystrix;outURL=").append(url).append(";http=").append(httpVerb);
+        if (hasPoolStats) {
+            sb.append(";pool_max=").append(poolMax)
+                    .append(";pool_max_per_route=").append(poolMaxPerRoute)
+                    .append(";pool_available=").append(poolAvailable)
+                    .append(";pool_leased=").append(poolLeased)
+                    .append(";pool_pending=").append(poolPending);
+        }
+        if (status >= 0) {
+            sb.append(";status=").append(status).append(";reason=").append(reason);
+        }
+        if (hasPhases) {
+            for (int i = 0; i < PHASES.length; i++) {
+                sb.append(';').append(PHASES[i].label()).append("_ms=").append(phaseNanos[i] / 1000000);
+            }
+        }
+        if (requestHeaders != null || responseHeaders != null) {
+            sb.append(";request_headers=");
+            appendHeaders(sb, requestHeaders);
+            sb.append(";request_body=");
+            appendBody(sb, requestBody, maxBodyChars);
+            sb.append(";response_headers=");
+            appendHeaders(sb, responseHeaders);
+            sb.append(";response_body=");
+            appendBody(sb, responseBody, maxBodyChars);
+        }
+        if (failedResponseBody != null) {
+            sb.append(";failed_response_body=");
+            appendBody(sb, failedResponseBody, maxBodyChars);
+        }
+        if (exLabel != null) {
+            sb.append(";ex=").append(exLabel);
+            if (exMillis >= 0) {
+                sb.append(exMillis).append("ms");
+            }
+            if (exMessage != null) {
+                sb.append(exMessage);
+            }
+        }
+        return sb;
+    }
+
+    private static void appendHeaders(StringBuilder sb, Header[] headers) {
+        if (headers == null) {
+            return;
+        }
+        for (Header header : headers) {
+            sb.append(header.getName()).append(':').append(header.getValue()).append(',');
+        }
+    }
+
+    private static void appendBody(StringBuilder sb, String body, int maxBodyChars) {
+        if (body == null || body.length() <= maxBodyChars) {
+            sb.append(body);
+        } else {
+            sb.append(body, 0, maxBodyChars).append("...(").append(body.length() - maxBodyChars)
+                    .append(" more chars)");
+        }
+    }
+
+    /**
+     * Clears all references so that a pooled event does not keep request data alive.
+     */
+    void reset() {
+        url = null;
+        httpVerb = null;
+        hasPoolStats = false;
+        status = -1;
+        reason = null;
+        hasPhases = false;
+        requestHeaders = null;
+        requestBody = null;
+        responseHeaders = null;
+        responseBody = null;
+        failedResponseBody = null;
+        exLabel = null;
+        exMillis = -1;
+        exMessage = null;
+        thrown = null;
+        error = false;
+    }
+}
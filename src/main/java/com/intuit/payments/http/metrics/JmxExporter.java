@@ -0,0 +1,172 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Exports every {@link RequestMetrics} as a read-only MBean named
+ * "com.intuit.payments.http:type=Request,group=...,command=...,host=...".
+ *
+ * @author saung
+ * @since 4/9/18
+ */
+public class JmxExporter implements MetricsExporter {
+    /** Logger instance */
+    private static final Logger log = LoggerFactory.getLogger(JmxExporter.class);
+
+    /** MBean domain */
+    static final String DOMAIN = "com.intuit.payments.http";
+
+    /** Exported attributes */
+    private static final String[] ATTRIBUTES = {
+            "Count", "LatencyMeanMillis", "Latency50thMillis", "Latency99thMillis", "LatencyMaxMillis",
+            "ErrorCount", "PoolExhaustedCount", "RateLimitedCount", "PermitWaitedCount", "PermitWaitingCount",
+            "PermitWaitMillis", "AdmittedCounts", "ShedCounts", "RequestBytes", "ResponseBytes", "StatusCounts",
+            "RequestCompressionRatio", "ResponseCompressionRatio", "CompressionMillis", "DecompressionMillis"
+    };
+
+    private final MBeanServer mBeanServer;
+
+    /**
+     * Default constructor to export to the platform MBean server.
+     */
+    public JmxExporter() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Constructor with a custom MBean server.
+     *
+     * @param mBeanServer - an MBean server.
+     */
+    public JmxExporter(MBeanServer mBeanServer) {
+        this.mBeanServer = mBeanServer;
+    }
+
+    @Override
+    public void start(MetricsRegistry registry) {
+        for (RequestMetrics metrics : registry.all()) {
+            onCreate(metrics);
+        }
+    }
+
+    @Override
+    public void onCreate(RequestMetrics metrics) {
+        try {
+            ObjectName name = objectName(metrics);
+            if (!mBeanServer.isRegistered(name)) {
+                mBeanServer.registerMBean(new RequestMetricsMBean(metrics), name);
+            }
+        } catch (JMException e) {
+            log.warn("type=jmx_export;command={};ex={}", metrics.commandKey(), e.getMessage());
+        }
+    }
+
+    static ObjectName objectName(RequestMetrics metrics) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Request"
+                + ",group=" + ObjectName.quote(metrics.commandGroup())
+                + ",command=" + ObjectName.quote(metrics.commandKey())
+                + ",host=" + ObjectName.quote(metrics.host()));
+    }
+
+    /**
+     * Read-only MBean view of a {@link RequestMetrics}.
+     */
+    private static class RequestMetricsMBean implements DynamicMBean {
+        private final RequestMetrics metrics;
+
+        private RequestMetricsMBean(RequestMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            return getAttribute(attribute, null);
+        }
+
+        private Object getAttribute(String attribute, Histogram snapshot) throws AttributeNotFoundException {
+            Histogram latency = (snapshot != null) ? snapshot : metrics.latencySnapshot();
+            switch (attribute) {
+                case "Count": return latency.getTotalCount();
+                case "LatencyMeanMillis": return latency.getMean() / 1000.0;
+                case "Latency50thMillis": return latency.getValueAtPercentile(50) / 1000.0;
+                case "Latency99thMillis": return latency.getValueAtPercentile(99) / 1000.0;
+                case "LatencyMaxMillis": return latency.getMaxValue() / 1000.0;
+                case "ErrorCount": return metrics.errorCount();
+                case "PoolExhaustedCount": return metrics.poolExhaustedCount();
+                case "RateLimitedCount": return metrics.rateLimitedCount();
+                case "PermitWaitedCount": return metrics.permitWaitedCount();
+                case "PermitWaitingCount": return (long) metrics.permitWaitingCount();
+                case "PermitWaitMillis": return metrics.permitWaitNanos() / 1e6;
+                case "AdmittedCounts": return metrics.admittedCounts().toString();
+                case "ShedCounts": return metrics.shedCounts().toString();
+                case "RequestBytes": return metrics.requestBytes();
+                case "ResponseBytes": return metrics.responseBytes();
+                case "StatusCounts": return metrics.statusCounts().toString();
+                case "RequestCompressionRatio": return metrics.requestCompressionRatio();
+                case "ResponseCompressionRatio": return metrics.responseCompressionRatio();
+                case "CompressionMillis": return metrics.compressionNanos() / 1e6;
+                case "DecompressionMillis": return metrics.decompressionNanos() / 1e6;
+                default: throw new AttributeNotFoundException(attribute);
+            }
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Histogram snapshot = metrics.latencySnapshot();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute, snapshot)));
+                } catch (AttributeNotFoundException e) {
+                    // skip unknown attributes
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Read-only MBean");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("No operations");
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            MBeanAttributeInfo[] infos = new MBeanAttributeInfo[ATTRIBUTES.length];
+            for (int i = 0; i < ATTRIBUTES.length; i++) {
+                String type = ATTRIBUTES[i].endsWith("Millis") || ATTRIBUTES[i].endsWith("Ratio") ? "double"
+                        : ATTRIBUTES[i].endsWith("Counts") ? "java.lang.String" : "long";
+                infos[i] = new MBeanAttributeInfo(ATTRIBUTES[i], type, ATTRIBUTES[i], true, false, false);
+            }
+            return new MBeanInfo(RequestMetrics.class.getName(), "HC request metrics",
+                    infos, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A latency histogram with a lock-free HdrHistogram {@link Recorder} for the hot path and a cumulative
+ * {@link Histogram} for snapshots. Latencies are kept in microseconds.
+ *
+ * Latencies up to 5 minutes, longer than any sensible Hystrix timeout, are tracked with 2 significant digits,
+ * i.e. within 1%. That keeps each of the four underlying histograms at about 24 KB.
+ *
+ * @author saung
+ * @since 4/23/18
+ */
+public class LatencyHistogram {
+    /** Highest latency tracked by the histogram. Longer ones are recorded as this value. */
+    private static final long HIGHEST_TRACKABLE_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    /** Number of significant value digits of the histogram */
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_LATENCY_MICROS, SIGNIFICANT_DIGITS);
+
+    /** Latencies accumulated from the recorder's interval histograms */
+    private final Histogram total = new Histogram(HIGHEST_TRACKABLE_LATENCY_MICROS, SIGNIFICANT_DIGITS);
+
+    /** Interval histogram recycled between snapshots */
+    private Histogram interval;
+
+    /**
+     * Records a latency. Negative values are recorded as 0.
+     *
+     * @param nanos - latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+        recorder.recordValue(Math.min(micros, HIGHEST_TRACKABLE_LATENCY_MICROS));
+    }
+
+    /**
+     * Gets a copy of all latencies recorded so far.
+     *
+     * @return a {@link Histogram} in microseconds.
+     */
+    public synchronized Histogram snapshot() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return total.copy();
+    }
+
+    /**
+     * @return a new, empty and auto-resizing {@link Histogram} for a latency that has never been recorded.
+     */
+    static Histogram empty() {
+        return new Histogram(SIGNIFICANT_DIGITS);
+    }
+}
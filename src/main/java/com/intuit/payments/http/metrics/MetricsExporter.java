@@ -0,0 +1,28 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+/**
+ * Pluggable exporter of the {@link RequestMetrics} in a {@link MetricsRegistry}.
+ *
+ * @author saung
+ * @since 4/9/18
+ */
+public interface MetricsExporter {
+    /**
+     * Called once when the exporter is added to a registry.
+     *
+     * @param registry - the {@link MetricsRegistry} to be exported.
+     */
+    void start(MetricsRegistry registry);
+
+    /**
+     * Called whenever the registry creates metrics for a new command key, group and host.
+     *
+     * @param metrics - the new {@link RequestMetrics}.
+     */
+    void onCreate(RequestMetrics metrics);
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of {@link RequestMetrics} per command key, command group and host.
+ *
+ * Every {@link com.intuit.payments.http.Request} looks up its metrics once when it is created, so the hot path
+ * only records into them. Use {@link #getInstance()} like Hystrix's own metrics factories.
+ *
+ * The registry is bounded: once it holds {@link #maxMetrics(int)} metrics, requests to new hosts are counted
+ * under the host "other" of their command, so a client that calls many distinct hosts can't grow it without end.
+ *
+ * @author saung
+ * @since 4/9/18
+ */
+public class MetricsRegistry {
+    /** Default maximum number of metrics */
+    public static final int DEFAULT_MAX_METRICS = 1000;
+
+    /** Default registry instance */
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    /** Host label for URLs that can't be parsed */
+    private static final String UNKNOWN_HOST = "unknown";
+
+    /** Host label of requests to new hosts once the registry is full */
+    static final String OVERFLOW_HOST = "other";
+
+    /** Command group to command key to host to metrics, so a lookup builds no key */
+    private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, RequestMetrics>>> metrics =
+            new ConcurrentHashMap<>();
+
+    /** All metrics in creation order */
+    private final List<RequestMetrics> all = new CopyOnWriteArrayList<>();
+
+    private final List<MetricsExporter> exporters = new CopyOnWriteArrayList<>();
+
+    private volatile int maxMetrics = DEFAULT_MAX_METRICS;
+
+    /**
+     * @return the default {@link MetricsRegistry} used by all requests.
+     */
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the maximum number of metrics. Metrics of the "other" host are created past it, at most one per
+     * command.
+     *
+     * @param maxMetrics - maximum number of metrics. Default is {@link #DEFAULT_MAX_METRICS}.
+     * @return this {@link MetricsRegistry} instance.
+     */
+    public MetricsRegistry maxMetrics(int maxMetrics) {
+        if (maxMetrics < 1) {
+            throw new IllegalArgumentException("maxMetrics must be greater than zero");
+        }
+        this.maxMetrics = maxMetrics;
+        return this;
+    }
+
+    /**
+     * Gets or creates metrics of a command key, command group and host.
+     *
+     * @param commandKey - Hystrix command name.
+     * @param commandGroup - Hystrix command group name.
+     * @param host - target host name.
+     * @return the {@link RequestMetrics} instance; the one of the "other" host if the registry is full.
+     */
+    public RequestMetrics forRequest(String commandKey, String commandGroup, String host) {
+        ConcurrentMap<String, RequestMetrics> byHost = child(child(metrics, commandGroup), commandKey);
+        RequestMetrics requestMetrics = byHost.get(host);
+        if (requestMetrics != null) {
+            return requestMetrics;
+        }
+        if (all.size() >= maxMetrics && !OVERFLOW_HOST.equals(host)) {
+            return forRequest(commandKey, commandGroup, OVERFLOW_HOST);
+        }
+        RequestMetrics created = new RequestMetrics(commandKey, commandGroup, host);
+        requestMetrics = byHost.putIfAbsent(host, created);
+        if (requestMetrics == null) {
+            all.add(created);
+            for (MetricsExporter exporter : exporters) {
+                exporter.onCreate(created);
+            }
+            return created;
+        }
+        return requestMetrics;
+    }
+
+    /**
+     * Gets or creates metrics of a command key, command group and the host of a given URL.
+     *
+     * @param commandKey - Hystrix command name.
+     * @param commandGroup - Hystrix command group name.
+     * @param url - request URL.
+     * @return the {@link RequestMetrics} instance.
+     */
+    public RequestMetrics forUrl(String commandKey, String commandGroup, String url) {
+        return forRequest(commandKey, commandGroup, hostOf(url));
+    }
+
+    /**
+     * Adds an exporter. It is started right away and notified of every metrics created afterwards.
+     *
+     * @param exporter - a {@link MetricsExporter} implementation.
+     * @return this {@link MetricsRegistry} instance.
+     */
+    public MetricsRegistry addExporter(MetricsExporter exporter) {
+        exporters.add(exporter);
+        exporter.start(this);
+        return this;
+    }
+
+    /**
+     * @return all registered metrics.
+     */
+    public Collection<RequestMetrics> all() {
+        return Collections.unmodifiableCollection(all);
+    }
+
+    /**
+     * Parses the host of a URL once, so callers with a fixed base URL can use
+     * {@link #forRequest(String, String, String)} without parsing every request URL.
+     *
+     * @param url - a URL.
+     * @return the host name; "unknown" if the URL can't be parsed or has no host.
+     */
+    public static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return (host == null) ? UNKNOWN_HOST : host;
+        } catch (RuntimeException e) {
+            return UNKNOWN_HOST;
+        }
+    }
+
+    private static <V> ConcurrentMap<String, V> child(ConcurrentMap<String, ConcurrentMap<String, V>> parent,
+                                                      String key) {
+        ConcurrentMap<String, V> child = parent.get(key);
+        return (child != null) ? child : parent.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+    }
+}
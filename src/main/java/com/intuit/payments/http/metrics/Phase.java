@@ -0,0 +1,41 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+/**
+ * Phases of a Http request execution measured by {@link PhaseTimings}.
+ *
+ * @author saung
+ * @since 4/16/18
+ */
+public enum Phase {
+    /** Waiting for a connection from the pool */
+    POOL_LEASE("pool_lease"),
+    /** TCP connect of a new connection */
+    CONNECT("connect"),
+    /** TLS handshake of a new connection */
+    TLS("tls"),
+    /** Server think-time between the request being sent and the response headers being received */
+    TIME_TO_FIRST_BYTE("ttfb"),
+    /** Reading the response body */
+    BODY_READ("body_read"),
+    /** De-serializing the response body via Gson */
+    DECODE("decode");
+
+    /** Label used in logs and metrics */
+    private final String label;
+
+    Phase(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return a short snake_case label, such as "ttfb".
+     */
+    public String label() {
+        return label;
+    }
+}
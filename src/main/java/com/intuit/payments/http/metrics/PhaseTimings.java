@@ -0,0 +1,155 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.protocol.HttpContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-phase timings of one Http request execution. An instance is put in the {@link HttpContext} of the
+ * request, filled by {@link TimingSocketFactories} and {@link TimingRequestExecutor}, and attached to the
+ * {@link com.intuit.payments.http.Response}.
+ *
+ * A phase that did not happen, such as connect and TLS on a reused pooled connection, is 0.
+ *
+ * @author saung
+ * @since 4/16/18
+ */
+public class PhaseTimings {
+    /** {@link HttpContext} attribute name */
+    public static final String CONTEXT_ATTRIBUTE = "hc.phase_timings";
+
+    /** Durations in nanoseconds indexed by {@link Phase#ordinal()} */
+    private final long[] durations = new long[Phase.values().length];
+
+    /** System.nanoTime() marks */
+    private long executeStartNanos;
+    private long requestSentNanos;
+    private long firstByteNanos;
+
+    /** Whether the first request has been sent; redirects and retries reuse the same timings */
+    private boolean sendStarted;
+
+    /** Route of the connection the pool lease time was taken for */
+    private HttpRoute leaseRoute;
+
+    /**
+     * Gets the timings of a given Http context.
+     *
+     * @param context - a Http context.
+     * @return the {@link PhaseTimings} instance; null if the request is not timed.
+     */
+    public static PhaseTimings from(HttpContext context) {
+        Object timings = (context == null) ? null : context.getAttribute(CONTEXT_ATTRIBUTE);
+        return (timings instanceof PhaseTimings) ? (PhaseTimings) timings : null;
+    }
+
+    /**
+     * Marks the start of the Http client execution, right before a connection is leased from the pool.
+     */
+    public void markExecuteStart() {
+        executeStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks that a connection is ready and the request is about to be written. The pool lease time is the time
+     * since {@link #markExecuteStart()} minus the connect and TLS time. It is taken on the first send only, so the
+     * round trips of redirects and retries that follow are not counted as lease time.
+     */
+    public void markSendStart() {
+        markSendStart(null);
+    }
+
+    /**
+     * Marks that a connection of a given route is ready and the request is about to be written.
+     * See {@link #markSendStart()}.
+     *
+     * @param route - the route of the connection; null if unknown.
+     */
+    public void markSendStart(HttpRoute route) {
+        if (sendStarted) {
+            return;
+        }
+        sendStarted = true;
+        leaseRoute = route;
+        long lease = System.nanoTime() - executeStartNanos - durations[Phase.CONNECT.ordinal()]
+                - durations[Phase.TLS.ordinal()];
+        durations[Phase.POOL_LEASE.ordinal()] = Math.max(0, lease);
+    }
+
+    /**
+     * Marks that the request is fully written.
+     */
+    public void markRequestSent() {
+        requestSentNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks that the response headers are received.
+     */
+    public void markFirstByte() {
+        firstByteNanos = System.nanoTime();
+        durations[Phase.TIME_TO_FIRST_BYTE.ordinal()] = firstByteNanos - requestSentNanos;
+    }
+
+    /**
+     * Marks that the response body is fully read.
+     */
+    public void markBodyRead() {
+        if (firstByteNanos != 0) {
+            durations[Phase.BODY_READ.ordinal()] = System.nanoTime() - firstByteNanos;
+        }
+    }
+
+    /**
+     * Adds time spent in a given phase.
+     *
+     * @param phase - a {@link Phase}.
+     * @param nanos - duration in nanoseconds.
+     */
+    public void add(Phase phase, long nanos) {
+        durations[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * @param phase - a {@link Phase}.
+     * @return duration of the phase in nanoseconds.
+     */
+    public long nanos(Phase phase) {
+        return durations[phase.ordinal()];
+    }
+
+    /**
+     * @param phase - a {@link Phase}.
+     * @return duration of the phase in milliseconds.
+     */
+    public long millis(Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(durations[phase.ordinal()]);
+    }
+
+    /**
+     * @return the route of the first connection leased, whose lease time is {@link Phase#POOL_LEASE}; null if
+     * unknown or nothing was sent.
+     */
+    public HttpRoute leaseRoute() {
+        return leaseRoute;
+    }
+
+    /**
+     * Appends all phases in "phase_ms=value;" format.
+     *
+     * @param sb - a StringBuilder to be appended.
+     * @return the given StringBuilder.
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        for (Phase phase : Phase.values()) {
+            sb.append(';').append(phase.label()).append("_ms=").append(millis(phase));
+        }
+        return sb;
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+import com.intuit.payments.http.shedding.Priority;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Exports the registry in the Prometheus text exposition format. Serve {@link #scrape()} from your
+ * metrics endpoint.
+ *
+ * Example:
+ * <pre>
+ * hc_request_latency_seconds{group="UsersGroup",command="GetUsers",host="localhost",quantile="0.99"} 0.012
+ * hc_responses_total{group="UsersGroup",command="GetUsers",host="localhost",code="200"} 42
+ * </pre>
+ *
+ * @author saung
+ * @since 4/9/18
+ */
+public class PrometheusExporter implements MetricsExporter {
+    /** Latency quantiles to be exported */
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    /** Microseconds to seconds */
+    private static final double MICROS_PER_SECOND = 1000000.0;
+
+    /** Nanoseconds to seconds */
+    private static final double NANOS_PER_SECOND = 1000000000.0;
+
+    private volatile MetricsRegistry registry;
+
+    @Override
+    public void start(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void onCreate(RequestMetrics metrics) {
+        // metrics are read from the registry on each scrape
+    }
+
+    /**
+     * Renders all metrics of the registry.
+     *
+     * @return a Prometheus text format string.
+     */
+    public String scrape() {
+        StringWriter writer = new StringWriter();
+        try {
+            write(writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes all metrics of the registry in the Prometheus text format.
+     *
+     * @param writer - a Writer such as a Http response body.
+     * @throws IOException if the writer fails.
+     */
+    public void write(Writer writer) throws IOException {
+        if (registry == null) {
+            throw new IllegalStateException("Exporter is not added to a MetricsRegistry");
+        }
+        writer.write("# TYPE hc_request_latency_seconds summary\n");
+        for (RequestMetrics metrics : registry.all()) {
+            Histogram latency = metrics.latencySnapshot();
+            for (double quantile : QUANTILES) {
+                writer.write("hc_request_latency_seconds");
+                writeLabels(writer, metrics, "quantile", String.valueOf(quantile));
+                writer.write(' ');
+                writer.write(String.valueOf(latency.getValueAtPercentile(quantile * 100) / MICROS_PER_SECOND));
+                writer.write('\n');
+            }
+            writeSample(writer, "hc_request_latency_seconds_count", metrics, latency.getTotalCount());
+            writer.write("hc_request_latency_seconds_sum");
+            writeLabels(writer, metrics);
+            writer.write(' ');
+            writer.write(String.valueOf(latency.getMean() * latency.getTotalCount() / MICROS_PER_SECOND));
+            writer.write('\n');
+        }
+
+        writer.write("# TYPE hc_request_phase_seconds summary\n");
+        for (RequestMetrics metrics : registry.all()) {
+            for (Phase phase : Phase.values()) {
+                Histogram latency = metrics.phaseSnapshot(phase);
+                if (latency.getTotalCount() == 0) {
+                    continue;
+                }
+                for (double quantile : QUANTILES) {
+                    writer.write("hc_request_phase_seconds");
+                    writeLabels(writer, metrics, "phase", phase.label(), "quantile", String.valueOf(quantile));
+                    writer.write(' ');
+                    writer.write(String.valueOf(latency.getValueAtPercentile(quantile * 100) / MICROS_PER_SECOND));
+                    writer.write('\n');
+                }
+            }
+        }
+
+        writer.write("# TYPE hc_responses_total counter\n");
+        for (RequestMetrics metrics : registry.all()) {
+            for (Map.Entry<Integer, Long> entry : metrics.statusCounts().entrySet()) {
+                writer.write("hc_responses_total");
+                writeLabels(writer, metrics, "code", String.valueOf(entry.getKey()));
+                writer.write(' ');
+                writer.write(String.valueOf(entry.getValue()));
+                writer.write('\n');
+            }
+        }
+
+        writer.write("# TYPE hc_request_errors_total counter\n");
+        for (RequestMetrics metrics : registry.all()) {
+            writeSample(writer, "hc_request_errors_total", metrics, metrics.errorCount());
+        }
+        writer.write("# TYPE hc_pool_exhausted_total counter\n");
+        for (RequestMetrics metrics : registry.all()) {
+            writeSample(writer, "hc_pool_exhausted_total", metrics, metrics.poolExhaustedCount());
+        }
+        writer.write("# TYPE hc_rate_limited_total counter\n");
+        for (RequestMetrics metrics : registry.all()) {
+            writeSample(writer, "hc_rate_limited_total", metrics, metrics.rateLimitedCount());
+        }
+        writer.write("# TYPE hc_permit_waited_total counter\n");
+        for (RequestMetrics metrics : registry.all()) {
+            writeSample(writer, "hc_permit_waited_total", metrics, metrics.permitWaitedCount());
+        }
+        writer.write("# TYPE hc_permit_wait_seconds_total counter\n");
+        for (RequestMetrics metrics : registry.all()) {
+            writeSample(writer, "hc_permit_wait_seconds_total", metrics, metrics.permitWaitNanos() / NANOS_PER_SECOND);
+        }
+        writer.write("# TYPE hc_permit_waiting gauge\n");
+        for (RequestMetrics metrics : registry.all()) {
+            writeSample(writer, "hc_permit_waiting", metrics, metrics.permitWaitingCount());
+        }
+        writer.write("# TYPE hc_load_admitted_total counter\n");
+        for (RequestMetrics metrics : registry.all()) {
+            for (Map.Entry<Priority, Long> entry : metrics.admittedCounts().entrySet()) {
+                writeSample(writer, "hc_load_admitted_total", metrics, "priority",
+                        entry.getKey().name().toLowerCase(Locale.ROOT), entry.getValue());
+            }
+        }
+        writer.write("# TYPE hc_load_shed_total counter\n");
+        for (RequestMetrics metrics : registry.all()) {
+            for (Map.Entry<Priority, Long> entry : metrics.shedCounts().entrySet()) {
+                writeSample(writer, "hc_load_shed_total", metrics, "priority",
+                        entry.getKey().name().toLowerCase(Locale.ROOT), entry.getValue());
+            }
+        }
+        writer.write("# TYPE hc_request_bytes_total counter\n");
+        for (RequestMetrics metrics : registry.all()) {
+            writeSample(writer, "hc_request_bytes_total", metrics, metrics.requestBytes());
+        }
+        writer.write("# TYPE hc_response_bytes_total counter\n");
+        for (RequestMetrics metrics : registry.all()) {
+            writeSample(writer, "hc_response_bytes_total", metrics, metrics.responseBytes());
+        }
+        writer.write("# TYPE hc_request_compression_bytes_total counter\n");
+        for (RequestMetrics metrics : registry.all()) {
+            writeSample(writer, "hc_request_compression_bytes_total", metrics, "stage", "uncompressed",
+                    metrics.requestUncompressedBytes());
+            writeSample(writer, "hc_request_compression_bytes_total", metrics, "stage", "compressed",
+                    metrics.requestCompressedBytes());
+        }
+        writer.write("# TYPE hc_response_compression_bytes_total counter\n");
+        for (RequestMetrics metrics : registry.all()) {
+            writeSample(writer, "hc_response_compression_bytes_total", metrics, "stage", "compressed",
+                    metrics.responseCompressedBytes());
+            writeSample(writer, "hc_response_compression_bytes_total", metrics, "stage", "decompressed",
+                    metrics.responseDecompressedBytes());
+        }
+        writer.write("# TYPE hc_compression_seconds_total counter\n");
+        for (RequestMetrics metrics : registry.all()) {
+            writeSample(writer, "hc_compression_seconds_total", metrics, "direction", "request",
+                    metrics.compressionNanos() / NANOS_PER_SECOND);
+            writeSample(writer, "hc_compression_seconds_total", metrics, "direction", "response",
+                    metrics.decompressionNanos() / NANOS_PER_SECOND);
+        }
+    }
+
+    private static void writeSample(Writer writer, String name, RequestMetrics metrics, Object value)
+            throws IOException {
+        writer.write(name);
+        writeLabels(writer, metrics);
+        writer.write(' ');
+        writer.write(String.valueOf(value));
+        writer.write('\n');
+    }
+
+    private static void writeSample(Writer writer, String name, RequestMetrics metrics, String labelName,
+                                    String labelValue, Object value) throws IOException {
+        writer.write(name);
+        writeLabels(writer, metrics, labelName, labelValue);
+        writer.write(' ');
+        writer.write(String.valueOf(value));
+        writer.write('\n');
+    }
+
+    /**
+     * Writes the group, command and host labels followed by extra label name-value pairs.
+     */
+    private static void writeLabels(Writer writer, RequestMetrics metrics, String... extraNameValues)
+            throws IOException {
+        writer.write("{group=\"");
+        writeEscaped(writer, metrics.commandGroup());
+        writer.write("\",command=\"");
+        writeEscaped(writer, metrics.commandKey());
+        writer.write("\",host=\"");
+        writeEscaped(writer, metrics.host());
+        for (int i = 0; i + 1 < extraNameValues.length; i += 2) {
+            writer.write("\",");
+            writer.write(extraNameValues[i]);
+            writer.write("=\"");
+            writeEscaped(writer, extraNameValues[i + 1]);
+        }
+        writer.write("\"}");
+    }
+
+    private static void writeEscaped(Writer writer, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': writer.write("\\\\"); break;
+                case '"': writer.write("\\\""); break;
+                case '\n': writer.write("\\n"); break;
+                default: writer.write(c);
+            }
+        }
+    }
+}
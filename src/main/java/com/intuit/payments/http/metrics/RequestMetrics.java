@@ -0,0 +1,465 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+import com.intuit.payments.http.shedding.Priority;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, byte and status code metrics of one command key, command group and target host.
+ *
+ * All record methods are lock-free and allocation-free: latencies, overall and per {@link Phase}, go to
+ * HdrHistogram {@link Recorder}s and counters are {@link LongAdder}s or a fixed {@link AtomicLongArray}
+ * indexed by status code. The histogram of a phase is created when the phase is first recorded, so phases a
+ * request never goes through, such as TLS on plain Http, take no memory.
+ *
+ * @author saung
+ * @since 4/9/18
+ */
+public class RequestMetrics {
+    /** Status codes are counted in [0, 600) */
+    private static final int MAX_STATUS_CODE = 600;
+
+    private final String commandKey;
+
+    private final String commandGroup;
+
+    private final String host;
+
+    /** Overall latencies */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /** Latencies per {@link Phase} indexed by {@link Phase#ordinal()}; null until the phase is first recorded */
+    private final AtomicReferenceArray<LatencyHistogram> phaseLatencies =
+            new AtomicReferenceArray<>(Phase.values().length);
+
+    private final LongAdder requestBytes = new LongAdder();
+
+    private final LongAdder responseBytes = new LongAdder();
+
+    /** Request body bytes before and after gzip, and time spent in the deflater */
+    private final LongAdder requestUncompressedBytes = new LongAdder();
+    private final LongAdder requestCompressedBytes = new LongAdder();
+    private final LongAdder compressionNanos = new LongAdder();
+
+    /** Response body bytes before and after decoding, and time spent in the inflater */
+    private final LongAdder responseCompressedBytes = new LongAdder();
+    private final LongAdder responseDecompressedBytes = new LongAdder();
+    private final LongAdder decompressionNanos = new LongAdder();
+
+    /** Requests that failed without a Http status, such as connect or socket timeouts */
+    private final LongAdder errors = new LongAdder();
+
+    /** Requests that failed to lease a pooled connection within the connection request timeout */
+    private final LongAdder poolExhausted = new LongAdder();
+
+    /** Requests rejected by the command group's rate limiter */
+    private final LongAdder rateLimited = new LongAdder();
+
+    /** Requests that waited for a rate limiter permit, total time waited, and requests waiting now */
+    private final LongAdder permitWaited = new LongAdder();
+    private final LongAdder permitWaitNanos = new LongAdder();
+    private final AtomicInteger permitWaiting = new AtomicInteger();
+
+    /** Requests admitted and shed by the command group's load shedder, indexed by {@link Priority#ordinal()} */
+    private final AtomicLongArray admitted = new AtomicLongArray(Priority.values().length);
+    private final AtomicLongArray shed = new AtomicLongArray(Priority.values().length);
+
+    private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS_CODE);
+
+    /**
+     * Default constructor. Package-level access only. Use {@link MetricsRegistry#forRequest(String, String, String)}.
+     *
+     * @param commandKey - Hystrix command name.
+     * @param commandGroup - Hystrix command group name.
+     * @param host - target host name.
+     */
+    RequestMetrics(String commandKey, String commandGroup, String host) {
+        this.commandKey = commandKey;
+        this.commandGroup = commandGroup;
+        this.host = host;
+    }
+
+    /**
+     * Records a request latency.
+     *
+     * @param nanos - latency in nanoseconds.
+     */
+    public void recordLatency(long nanos) {
+        latency.record(nanos);
+    }
+
+    /**
+     * Records the latency of one phase.
+     *
+     * @param phase - a {@link Phase}.
+     * @param nanos - latency in nanoseconds.
+     */
+    public void recordPhase(Phase phase, long nanos) {
+        LatencyHistogram histogram = phaseLatencies.get(phase.ordinal());
+        if (histogram == null) {
+            phaseLatencies.compareAndSet(phase.ordinal(), null, new LatencyHistogram());
+            histogram = phaseLatencies.get(phase.ordinal());
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * Records all phases of a request execution. Connect and TLS are recorded only for new connections.
+     *
+     * @param timings - {@link PhaseTimings} of a request.
+     */
+    public void recordPhases(PhaseTimings timings) {
+        for (Phase phase : Phase.values()) {
+            long nanos = timings.nanos(phase);
+            if (nanos > 0 || (phase != Phase.CONNECT && phase != Phase.TLS && phase != Phase.DECODE)) {
+                recordPhase(phase, nanos);
+            }
+        }
+    }
+
+    /**
+     * Counts a Http response status code.
+     *
+     * @param statusCode - a Http status code.
+     */
+    public void recordStatus(int statusCode) {
+        if (statusCode >= 0 && statusCode < MAX_STATUS_CODE) {
+            statusCounts.incrementAndGet(statusCode);
+        }
+    }
+
+    /**
+     * Counts a request that failed without a Http response.
+     */
+    public void recordError() {
+        errors.increment();
+    }
+
+    /**
+     * Counts a request that timed out waiting for a pooled connection.
+     */
+    public void recordPoolExhausted() {
+        poolExhausted.increment();
+    }
+
+    /**
+     * Counts a request rejected by the rate limiter.
+     */
+    public void recordRateLimited() {
+        rateLimited.increment();
+    }
+
+    /**
+     * Marks a request as waiting for a rate limiter permit. Must be followed by {@link #endPermitWait(long)}.
+     */
+    public void startPermitWait() {
+        permitWaiting.incrementAndGet();
+    }
+
+    /**
+     * Records the time a request waited for a rate limiter permit.
+     *
+     * @param nanos - time waited in nanoseconds.
+     */
+    public void endPermitWait(long nanos) {
+        permitWaiting.decrementAndGet();
+        permitWaited.increment();
+        permitWaitNanos.add(nanos);
+    }
+
+    /**
+     * Counts a request admitted by the load shedder.
+     *
+     * @param priority - the request priority.
+     */
+    public void recordAdmitted(Priority priority) {
+        admitted.incrementAndGet(priority.ordinal());
+    }
+
+    /**
+     * Counts a request shed by the load shedder.
+     *
+     * @param priority - the request priority.
+     */
+    public void recordShed(Priority priority) {
+        shed.incrementAndGet(priority.ordinal());
+    }
+
+    /**
+     * @param bytes - number of request body bytes sent.
+     */
+    public void addRequestBytes(long bytes) {
+        if (bytes > 0) {
+            requestBytes.add(bytes);
+        }
+    }
+
+    /**
+     * @param bytes - number of response body bytes received.
+     */
+    public void addResponseBytes(long bytes) {
+        if (bytes > 0) {
+            responseBytes.add(bytes);
+        }
+    }
+
+    /**
+     * Records a gzip compressed request body.
+     *
+     * @param uncompressedBytes - body size before compression.
+     * @param compressedBytes - body size after compression.
+     * @param nanos - time spent compressing in nanoseconds.
+     */
+    public void recordRequestCompression(long uncompressedBytes, long compressedBytes, long nanos) {
+        requestUncompressedBytes.add(uncompressedBytes);
+        requestCompressedBytes.add(compressedBytes);
+        compressionNanos.add(nanos);
+    }
+
+    /**
+     * Records a decoded gzip or deflate response body.
+     *
+     * @param compressedBytes - encoded body bytes read.
+     * @param decompressedBytes - decoded body bytes.
+     * @param nanos - time spent decompressing in nanoseconds.
+     */
+    public void recordResponseDecompression(long compressedBytes, long decompressedBytes, long nanos) {
+        responseCompressedBytes.add(compressedBytes);
+        responseDecompressedBytes.add(decompressedBytes);
+        decompressionNanos.add(nanos);
+    }
+
+    /**
+     * Takes a snapshot of all latencies recorded so far. This is meant for exporters, not for the hot path.
+     *
+     * @return a copy of the cumulative latency histogram in microseconds.
+     */
+    public Histogram latencySnapshot() {
+        return latency.snapshot();
+    }
+
+    /**
+     * Takes a snapshot of all latencies of a phase recorded so far.
+     *
+     * @param phase - a {@link Phase}.
+     * @return a copy of the cumulative latency histogram of the phase in microseconds; empty if it was never
+     * recorded.
+     */
+    public Histogram phaseSnapshot(Phase phase) {
+        LatencyHistogram histogram = phaseLatencies.get(phase.ordinal());
+        return (histogram != null) ? histogram.snapshot() : LatencyHistogram.empty();
+    }
+
+    /**
+     * @return status code to count of all status codes received at least once.
+     */
+    public Map<Integer, Long> statusCounts() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        for (int code = 0; code < MAX_STATUS_CODE; code++) {
+            long count = statusCounts.get(code);
+            if (count > 0) {
+                counts.put(code, count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @param statusCode - a Http status code.
+     * @return number of responses with the given status code.
+     */
+    public long statusCount(int statusCode) {
+        return (statusCode >= 0 && statusCode < MAX_STATUS_CODE) ? statusCounts.get(statusCode) : 0;
+    }
+
+    /**
+     * @return number of requests that failed without a Http response.
+     */
+    public long errorCount() {
+        return errors.sum();
+    }
+
+    /**
+     * @return number of requests that timed out waiting for a pooled connection. They are also counted as errors.
+     */
+    public long poolExhaustedCount() {
+        return poolExhausted.sum();
+    }
+
+    /**
+     * @return number of requests rejected by the rate limiter. They never reach Hystrix.
+     */
+    public long rateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * @return number of requests that waited for a rate limiter permit.
+     */
+    public long permitWaitedCount() {
+        return permitWaited.sum();
+    }
+
+    /**
+     * @return number of requests waiting for a rate limiter permit now.
+     */
+    public int permitWaitingCount() {
+        return permitWaiting.get();
+    }
+
+    /**
+     * @return total time requests waited for a rate limiter permit in nanoseconds.
+     */
+    public long permitWaitNanos() {
+        return permitWaitNanos.sum();
+    }
+
+    /**
+     * @param priority - a request priority.
+     * @return number of requests of the given priority admitted by the load shedder.
+     */
+    public long admittedCount(Priority priority) {
+        return admitted.get(priority.ordinal());
+    }
+
+    /**
+     * @param priority - a request priority.
+     * @return number of requests of the given priority shed by the load shedder. They never reach Hystrix.
+     */
+    public long shedCount(Priority priority) {
+        return shed.get(priority.ordinal());
+    }
+
+    /**
+     * @return counts of admitted requests per priority, without zero counts.
+     */
+    public Map<Priority, Long> admittedCounts() {
+        return countsByPriority(admitted);
+    }
+
+    /**
+     * @return counts of shed requests per priority, without zero counts.
+     */
+    public Map<Priority, Long> shedCounts() {
+        return countsByPriority(shed);
+    }
+
+    private static Map<Priority, Long> countsByPriority(AtomicLongArray counters) {
+        Map<Priority, Long> counts = new EnumMap<>(Priority.class);
+        for (Priority priority : Priority.values()) {
+            long count = counters.get(priority.ordinal());
+            if (count > 0) {
+                counts.put(priority, count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return number of request body bytes sent.
+     */
+    public long requestBytes() {
+        return requestBytes.sum();
+    }
+
+    /**
+     * @return number of response body bytes received.
+     */
+    public long responseBytes() {
+        return responseBytes.sum();
+    }
+
+    /**
+     * @return size of compressed request bodies before compression.
+     */
+    public long requestUncompressedBytes() {
+        return requestUncompressedBytes.sum();
+    }
+
+    /**
+     * @return size of compressed request bodies after compression.
+     */
+    public long requestCompressedBytes() {
+        return requestCompressedBytes.sum();
+    }
+
+    /**
+     * @return time spent compressing request bodies in nanoseconds.
+     */
+    public long compressionNanos() {
+        return compressionNanos.sum();
+    }
+
+    /**
+     * @return size of encoded response bodies as received.
+     */
+    public long responseCompressedBytes() {
+        return responseCompressedBytes.sum();
+    }
+
+    /**
+     * @return size of encoded response bodies after decoding.
+     */
+    public long responseDecompressedBytes() {
+        return responseDecompressedBytes.sum();
+    }
+
+    /**
+     * @return time spent decoding response bodies in nanoseconds.
+     */
+    public long decompressionNanos() {
+        return decompressionNanos.sum();
+    }
+
+    /**
+     * @return uncompressed to compressed size of request bodies, e.g. 8.0 for 8x smaller; 0 if none was compressed.
+     */
+    public double requestCompressionRatio() {
+        return ratio(requestUncompressedBytes(), requestCompressedBytes());
+    }
+
+    /**
+     * @return decoded to encoded size of response bodies, e.g. 8.0 for 8x smaller; 0 if none was encoded.
+     */
+    public double responseCompressionRatio() {
+        return ratio(responseDecompressedBytes(), responseCompressedBytes());
+    }
+
+    private static double ratio(long uncompressed, long compressed) {
+        return compressed > 0 ? (double) uncompressed / compressed : 0;
+    }
+
+    /**
+     * @return Hystrix command name.
+     */
+    public String commandKey() {
+        return commandKey;
+    }
+
+    /**
+     * @return Hystrix command group name.
+     */
+    public String commandGroup() {
+        return commandGroup;
+    }
+
+    /**
+     * @return target host name.
+     */
+    public String host() {
+        return host;
+    }
+}
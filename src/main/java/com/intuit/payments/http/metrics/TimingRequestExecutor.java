@@ -0,0 +1,53 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import java.io.IOException;
+
+/**
+ * {@link HttpRequestExecutor} that records when a request starts being written on a leased connection and its
+ * route, when it is fully sent and when the response headers arrive into the context's {@link PhaseTimings}.
+ *
+ * @author saung
+ * @since 4/16/18
+ */
+public class TimingRequestExecutor extends HttpRequestExecutor {
+
+    @Override
+    protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn, HttpContext context)
+            throws IOException, HttpException {
+        PhaseTimings timings = PhaseTimings.from(context);
+        if (timings != null) {
+            Object route = context.getAttribute(HttpClientContext.HTTP_ROUTE);
+            timings.markSendStart((route instanceof HttpRoute) ? (HttpRoute) route : null);
+        }
+        HttpResponse response = super.doSendRequest(request, conn, context);
+        if (timings != null) {
+            timings.markRequestSent();
+        }
+        return response;
+    }
+
+    @Override
+    protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn, HttpContext context)
+            throws HttpException, IOException {
+        HttpResponse response = super.doReceiveResponse(request, conn, context);
+        PhaseTimings timings = PhaseTimings.from(context);
+        if (timings != null) {
+            timings.markFirstByte();
+        }
+        return response;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+import org.apache.http.HttpHost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Connection socket factories that record TCP connect and TLS handshake time of new connections into the
+ * context's {@link PhaseTimings}.
+ *
+ * @author saung
+ * @since 4/16/18
+ */
+public class TimingSocketFactories {
+
+    /**
+     * Builds a socket factory registry for "http" and "https".
+     *
+     * @param sslContext - an SSL context; null to use the default one.
+     * @return a registry of timing socket factories.
+     */
+    public static Registry<ConnectionSocketFactory> registry(SSLContext sslContext) {
+        return RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", new Plain())
+                .register("https", new Ssl(sslContext == null ? SSLContexts.createDefault() : sslContext))
+                .build();
+    }
+
+    /**
+     * Plain socket factory that records the TCP connect time.
+     */
+    static class Plain extends PlainConnectionSocketFactory {
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress, HttpContext context) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            } finally {
+                PhaseTimings timings = PhaseTimings.from(context);
+                if (timings != null) {
+                    timings.add(Phase.CONNECT, System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    /**
+     * SSL socket factory that records the TCP connect and the TLS handshake time separately.
+     * {@link SSLConnectionSocketFactory#connectSocket} connects a plain socket and then layers TLS on it through
+     * {@link SSLConnectionSocketFactory#createLayeredSocket}, which does the handshake.
+     */
+    static class Ssl extends SSLConnectionSocketFactory {
+        Ssl(SSLContext sslContext) {
+            super(sslContext, getDefaultHostnameVerifier());
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress, HttpContext context) throws IOException {
+            PhaseTimings timings = PhaseTimings.from(context);
+            long start = System.nanoTime();
+            long tlsBefore = (timings == null) ? 0 : timings.nanos(Phase.TLS);
+            try {
+                return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            } finally {
+                if (timings != null) {
+                    long tls = timings.nanos(Phase.TLS) - tlsBefore;
+                    timings.add(Phase.CONNECT, System.nanoTime() - start - tls);
+                }
+            }
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context)
+                throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.createLayeredSocket(socket, target, port, context);
+            } finally {
+                PhaseTimings timings = PhaseTimings.from(context);
+                if (timings != null) {
+                    timings.add(Phase.TLS, System.nanoTime() - start);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.pool;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically samples leased, available, pending and max connections per route of a
+ * {@link PoolingHttpClientConnectionManager} and reports a route as saturated when lease requests stay pending
+ * longer than a threshold. The data helps to right-size the maximum connections per route, which is only 2 by
+ * default.
+ *
+ * Sampling runs in one daemon thread; {@link #recordLeaseWait(HttpRoute, long)} is called by requests and is
+ * lock-free.
+ *
+ * @author saung
+ * @since 4/23/18
+ */
+public class PoolStatsSampler {
+    /** Logger instance */
+    private static final Logger LOG = LoggerFactory.getLogger(PoolStatsSampler.class);
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final long saturationThresholdNanos;
+
+    private final SaturationListener listener;
+
+    private final Map<HttpRoute, RouteStats> routes = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * Callback for saturated routes.
+     */
+    @FunctionalInterface
+    public interface SaturationListener {
+        /**
+         * Called from the sampler thread once per saturation, when lease requests of a route have been pending
+         * longer than the threshold.
+         *
+         * @param stats - statistics of the saturated route.
+         */
+        void onSaturation(RouteStats stats);
+    }
+
+    /**
+     * Default constructor.
+     *
+     * @param connectionManager - the connection pool to be sampled.
+     * @param saturationThresholdInMilliSec - how long lease requests may be pending before a route is saturated.
+     * @param listener - an optional {@link SaturationListener}. Saturations are logged at WARN level regardless.
+     */
+    public PoolStatsSampler(PoolingHttpClientConnectionManager connectionManager,
+                            long saturationThresholdInMilliSec, SaturationListener listener) {
+        if (connectionManager == null) {
+            throw new IllegalArgumentException("connectionManager must not be NULL");
+        }
+        if (saturationThresholdInMilliSec < 0) {
+            throw new IllegalArgumentException("saturationThresholdInMilliSec must not be negative");
+        }
+        this.connectionManager = connectionManager;
+        this.saturationThresholdNanos = TimeUnit.MILLISECONDS.toNanos(saturationThresholdInMilliSec);
+        this.listener = listener;
+    }
+
+    /**
+     * Starts sampling in a daemon thread. Does nothing if it is already running.
+     *
+     * @param periodInMilliSec - sampling period.
+     * @return this instance.
+     */
+    public synchronized PoolStatsSampler start(long periodInMilliSec) {
+        if (periodInMilliSec <= 0) {
+            throw new IllegalArgumentException("periodInMilliSec must be positive");
+        }
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "hc-pool-stats-sampler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleAtFixedRate(this::sampleQuietly, periodInMilliSec, periodInMilliSec,
+                    TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * Stops sampling. The statistics sampled so far are kept.
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * @return true if sampling is running; false otherwise.
+     */
+    public synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    /**
+     * Samples the statistics of all routes of the pool now and reports saturated routes.
+     */
+    public void sample() {
+        long now = System.nanoTime();
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            RouteStats stats = routes.computeIfAbsent(route, RouteStats::new);
+            stats.update(connectionManager.getStats(route), now);
+            if (stats.checkSaturated(now, saturationThresholdNanos)) {
+                LOG.warn("type=pool_saturation;{};pending_ms={}", stats, stats.pendingInMilliSec());
+                if (listener != null) {
+                    listener.onSaturation(stats);
+                }
+            }
+        }
+    }
+
+    private void sampleQuietly() {
+        try {
+            sample();
+        } catch (Exception e) {
+            LOG.error("Failed to sample connection pool stats", e);
+        }
+    }
+
+    /**
+     * Records the time a request waited to lease a connection of a route, once per request execution: redirects
+     * and retries of the same execution must not be recorded again.
+     *
+     * @param route - a Http route.
+     * @param nanos - lease wait in nanoseconds.
+     */
+    public void recordLeaseWait(HttpRoute route, long nanos) {
+        RouteStats stats = routes.get(route);
+        if (stats == null) {
+            stats = routes.computeIfAbsent(route, RouteStats::new);
+        }
+        stats.recordLeaseWait(nanos);
+    }
+
+    /**
+     * @return all routes seen so far.
+     */
+    public Set<HttpRoute> getRoutes() {
+        return Collections.unmodifiableSet(routes.keySet());
+    }
+
+    /**
+     * Gets the statistics of a route.
+     *
+     * @param route - a Http route.
+     * @return the {@link RouteStats}; null if the route has not been seen yet.
+     */
+    public RouteStats getStats(HttpRoute route) {
+        return routes.get(route);
+    }
+
+    /**
+     * @return the statistics of all routes seen so far.
+     */
+    public Collection<RouteStats> all() {
+        return Collections.unmodifiableCollection(routes.values());
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.pool;
+
+import com.intuit.payments.http.metrics.LatencyHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection pool statistics of one route, as last sampled by {@link PoolStatsSampler}, plus the pool lease
+ * wait times of the requests sent to the route.
+ *
+ * @author saung
+ * @since 4/23/18
+ */
+public class RouteStats {
+    private final HttpRoute route;
+
+    /** Time requests waited to lease a connection */
+    private final LatencyHistogram leaseWait = new LatencyHistogram();
+
+    private final LongAdder saturationCount = new LongAdder();
+
+    private volatile int leased;
+
+    private volatile int available;
+
+    private volatile int pending;
+
+    private volatile int max;
+
+    /** Highest number of pending lease requests seen by the sampler */
+    private volatile int peakPending;
+
+    /** System.nanoTime() of the first sample with pending lease requests; 0 if nothing is pending */
+    private volatile long pendingSinceNanos;
+
+    /** true once the current saturation was reported. Written by the sampler thread only. */
+    private boolean reported;
+
+    /**
+     * Default constructor. Package-level access only.
+     *
+     * @param route - a Http route.
+     */
+    RouteStats(HttpRoute route) {
+        this.route = route;
+    }
+
+    /**
+     * Updates the statistics from a new sample.
+     *
+     * @param stats - the route's {@link PoolStats}.
+     * @param nowNanos - System.nanoTime() of the sample.
+     */
+    void update(PoolStats stats, long nowNanos) {
+        leased = stats.getLeased();
+        available = stats.getAvailable();
+        max = stats.getMax();
+        pending = stats.getPending();
+        if (pending > peakPending) {
+            peakPending = pending;
+        }
+        if (pending == 0) {
+            pendingSinceNanos = 0;
+            reported = false;
+        } else if (pendingSinceNanos == 0) {
+            pendingSinceNanos = nowNanos;
+        }
+    }
+
+    /**
+     * Checks whether lease requests have been pending longer than a given threshold, once per saturation.
+     *
+     * @param nowNanos - System.nanoTime() of the sample.
+     * @param thresholdNanos - how long requests may be pending before the route is saturated.
+     * @return true if the route became saturated with this sample; false otherwise.
+     */
+    boolean checkSaturated(long nowNanos, long thresholdNanos) {
+        long since = pendingSinceNanos;
+        if (reported || since == 0 || nowNanos - since < thresholdNanos) {
+            return false;
+        }
+        reported = true;
+        saturationCount.increment();
+        return true;
+    }
+
+    /**
+     * Records the time a request waited to lease a connection of this route.
+     *
+     * @param nanos - lease wait in nanoseconds.
+     */
+    void recordLeaseWait(long nanos) {
+        leaseWait.record(nanos);
+    }
+
+    /**
+     * @return the Http route.
+     */
+    public HttpRoute route() {
+        return route;
+    }
+
+    /**
+     * @return number of connections leased by requests.
+     */
+    public int leased() {
+        return leased;
+    }
+
+    /**
+     * @return number of idle connections in the pool.
+     */
+    public int available() {
+        return available;
+    }
+
+    /**
+     * @return number of requests waiting to lease a connection.
+     */
+    public int pending() {
+        return pending;
+    }
+
+    /**
+     * @return maximum number of connections of the route.
+     */
+    public int max() {
+        return max;
+    }
+
+    /**
+     * @return highest number of pending lease requests seen so far.
+     */
+    public int peakPending() {
+        return peakPending;
+    }
+
+    /**
+     * @return ratio of leased to maximum connections, in [0, 1].
+     */
+    public double utilization() {
+        int m = max;
+        return m > 0 ? (double) leased / m : 0;
+    }
+
+    /**
+     * @return milliseconds lease requests have been pending continuously; 0 if nothing is pending.
+     */
+    public long pendingInMilliSec() {
+        long since = pendingSinceNanos;
+        return since == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - since);
+    }
+
+    /**
+     * @return number of times the route was reported as saturated.
+     */
+    public long saturationCount() {
+        return saturationCount.sum();
+    }
+
+    /**
+     * Gets the pool lease wait times of the requests sent to this route.
+     *
+     * @return a {@link Histogram} in microseconds.
+     */
+    public Histogram leaseWaitSnapshot() {
+        return leaseWait.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return "route=" + route + ";leased=" + leased + ";available=" + available + ";pending=" + pending
+                + ";max=" + max + ";peak_pending=" + peakPending;
+    }
+}
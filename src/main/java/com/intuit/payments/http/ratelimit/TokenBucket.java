@@ -0,0 +1,268 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.ratelimit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free token-bucket rate limiter. It is implemented as a generic cell rate algorithm: a single
+ * atomic "theoretical arrival time" is advanced by one permit interval per request, and a request may
+ * run ahead of it by at most the burst size.
+ *
+ * The rate is adjusted from the server's "Retry-After" and "X-RateLimit-*" response headers so that
+ * the client stays under the partner's quota instead of burning connections on calls that get 429s.
+ *
+ * @author saung
+ * @since 3/26/18
+ */
+public class TokenBucket {
+    /** Rate limit response headers */
+    static final String RETRY_AFTER = "Retry-After";
+    static final String X_RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+    static final String X_RATE_LIMIT_RESET = "X-RateLimit-Reset";
+
+    /** Returned by {@link #tryReserve()} when the request must be rejected */
+    public static final long REJECTED = Long.MIN_VALUE;
+
+    /** Any X-RateLimit-Reset value above this is an epoch second rather than a delta. */
+    private static final long EPOCH_SECONDS_THRESHOLD = 1000000000L;
+
+    /** Configured time between two permits in nanoseconds */
+    private final long intervalNanos;
+
+    /** Number of permits that may be taken back-to-back */
+    private final int burst;
+
+    /** Maximum time a request waits for a permit before it is rejected */
+    private final long maxWaitNanos;
+
+    /** Theoretical arrival time of the next request in System.nanoTime() units */
+    private final AtomicLong nextFreeNanos = new AtomicLong(System.nanoTime());
+
+    /** Temporarily lowered permit interval learned from X-RateLimit-* headers; 0 if none */
+    private volatile long adjustedIntervalNanos;
+
+    /** System.nanoTime() until the adjusted interval applies */
+    private volatile long adjustedUntilNanos;
+
+    /** Metrics */
+    private final LongAdder permitted = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder waited = new LongAdder();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Default constructor.
+     *
+     * @param permitsPerSecond - steady request rate.
+     * @param burst - number of requests that may be sent back-to-back. Minimum is 1.
+     * @param maxWaitInMilliSec - time a request waits for a permit before it is rejected. 0 rejects immediately.
+     */
+    public TokenBucket(double permitsPerSecond, int burst, long maxWaitInMilliSec) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be greater than zero");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be greater than zero");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burst = burst;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitInMilliSec));
+    }
+
+    /**
+     * Takes a permit, waiting up to the configured maximum wait time.
+     *
+     * @return true if a permit was taken; false if the request must be rejected.
+     * @throws InterruptedException if the thread is interrupted while waiting, such as by a Hystrix timeout.
+     */
+    public boolean acquire() throws InterruptedException {
+        long permitAtNanos = tryReserve();
+        if (permitAtNanos == REJECTED) {
+            return false;
+        }
+        awaitPermit(permitAtNanos);
+        return true;
+    }
+
+    /**
+     * Reserves a permit without waiting, so a request can be rejected before it is submitted to a thread pool.
+     * A reserved permit must be used after {@link #awaitPermit(long)}.
+     *
+     * @return System.nanoTime() from which the permit may be used; {@link #REJECTED} if the request must be
+     * rejected.
+     */
+    public long tryReserve() {
+        long now = System.nanoTime();
+        long waitNanos = reserve(now);
+        if (waitNanos < 0) {
+            throttled.increment();
+            return REJECTED;
+        }
+        permitted.increment();
+        return now + waitNanos;
+    }
+
+    /**
+     * Waits until a reserved permit may be used. Time spent since the reservation, e.g. in a thread pool queue,
+     * counts toward the wait.
+     *
+     * @param permitAtNanos - the permit time returned by {@link #tryReserve()}.
+     * @throws InterruptedException if the thread is interrupted while waiting, such as by a Hystrix timeout.
+     */
+    public void awaitPermit(long permitAtNanos) throws InterruptedException {
+        long remaining = permitAtNanos - System.nanoTime();
+        if (remaining <= 0) {
+            return;
+        }
+        waited.increment();
+        waiting.incrementAndGet();
+        try {
+            for (; remaining > 0; remaining = permitAtNanos - System.nanoTime()) {
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reserves the next permit.
+     *
+     * @return nanoseconds to wait before the permit may be used; -1 if the wait would exceed the maximum.
+     */
+    private long reserve(long now) {
+        long interval = currentInterval(now);
+        long tolerance = (burst - 1) * interval;
+        while (true) {
+            long next = nextFreeNanos.get();
+            long arrival = Math.max(next, now);
+            long waitNanos = arrival - tolerance - now;
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            if (nextFreeNanos.compareAndSet(next, arrival + interval)) {
+                return Math.max(0, waitNanos);
+            }
+        }
+    }
+
+    private long currentInterval(long now) {
+        long adjusted = adjustedIntervalNanos;
+        return (adjusted > intervalNanos && now - adjustedUntilNanos < 0) ? adjusted : intervalNanos;
+    }
+
+    /**
+     * Blocks all permits until a given time.
+     *
+     * @param delayInMilliSec - time from now the server asked us to hold off.
+     */
+    public void pause(long delayInMilliSec) {
+        if (delayInMilliSec <= 0) {
+            return;
+        }
+        long resumeAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayInMilliSec)
+                + (burst - 1) * intervalNanos;
+        while (true) {
+            long next = nextFreeNanos.get();
+            if (next - resumeAt >= 0 || nextFreeNanos.compareAndSet(next, resumeAt)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adjusts the rate from the server's rate limit headers:
+     * "Retry-After" (delta seconds or Http date) on any response pauses all permits;
+     * "X-RateLimit-Remaining" and "X-RateLimit-Reset" lower the rate until the reset time if the quota left
+     * would be used up sooner at the configured rate.
+     *
+     * @param httpResponse - a Http response.
+     */
+    public void update(HttpResponse httpResponse) {
+        long retryAfter = parseRetryAfterInMilliSec(httpResponse.getFirstHeader(RETRY_AFTER));
+        if (retryAfter > 0) {
+            pause(retryAfter);
+        }
+
+        Header remainingHeader = httpResponse.getFirstHeader(X_RATE_LIMIT_REMAINING);
+        Header resetHeader = httpResponse.getFirstHeader(X_RATE_LIMIT_RESET);
+        if (remainingHeader == null || resetHeader == null) {
+            return;
+        }
+        try {
+            long remaining = Long.parseLong(remainingHeader.getValue().trim());
+            long reset = Long.parseLong(resetHeader.getValue().trim());
+            long resetInMilliSec = (reset > EPOCH_SECONDS_THRESHOLD)
+                    ? TimeUnit.SECONDS.toMillis(reset) - System.currentTimeMillis()
+                    : TimeUnit.SECONDS.toMillis(reset);
+            if (resetInMilliSec <= 0) {
+                return;
+            }
+            if (remaining <= 0) {
+                pause(resetInMilliSec);
+                return;
+            }
+            adjustedIntervalNanos = TimeUnit.MILLISECONDS.toNanos(resetInMilliSec) / remaining;
+            adjustedUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(resetInMilliSec);
+        } catch (NumberFormatException e) {
+            // ignore malformed headers
+        }
+    }
+
+    private static long parseRetryAfterInMilliSec(Header header) {
+        if (header == null) {
+            return 0;
+        }
+        String value = header.getValue().trim();
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            return (date == null) ? 0 : date.getTime() - System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @return number of requests that got a permit.
+     */
+    public long permittedCount() {
+        return permitted.sum();
+    }
+
+    /**
+     * @return number of requests rejected by this limiter.
+     */
+    public long throttledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * @return number of requests that had to wait for a permit.
+     */
+    public long waitedCount() {
+        return waited.sum();
+    }
+
+    /**
+     * @return number of requests currently waiting for a permit.
+     */
+    public int waitingCount() {
+        return waiting.get();
+    }
+}
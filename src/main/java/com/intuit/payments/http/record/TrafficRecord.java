@@ -0,0 +1,180 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.record;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The shape of one recorded request execution: one line of a JSONL traffic trace. Header values and bodies are not
+ * recorded unless bodies are enabled in the {@link TrafficRecorder}.
+ *
+ * Example:
+ * <pre>
+ * {"ts":1527500000000,"cmd":"GetUser","grp":"UsersGroup","verb":"GET","path":"/v1/users/{0}",
+ *  "hdrs":["intuit_tid","Authorization"],"req_bytes":0,"status":200,"resp_bytes":512,"dur_us":1834,
+ *  "outcome":"success"}
+ * </pre>
+ *
+ * @author saung
+ * @since 6/4/18
+ */
+public class TrafficRecord {
+    @SerializedName("ts")
+    private final long startEpochMillis;
+
+    @SerializedName("cmd")
+    private final String commandName;
+
+    @SerializedName("grp")
+    private final String commandGroup;
+
+    @SerializedName("verb")
+    private final String httpVerb;
+
+    @SerializedName("path")
+    private final String pathTemplate;
+
+    @SerializedName("hdrs")
+    private final List<String> headerNames;
+
+    @SerializedName("req_bytes")
+    private final long requestBytes;
+
+    @SerializedName("status")
+    private final int status;
+
+    @SerializedName("resp_bytes")
+    private final long responseBytes;
+
+    @SerializedName("dur_us")
+    private final long durationMicros;
+
+    @SerializedName("outcome")
+    private final String outcome;
+
+    @SerializedName("body")
+    private final String body;
+
+    /**
+     * Default constructor.
+     *
+     * @param startEpochMillis - when the execution started.
+     * @param commandName - Hystrix command name.
+     * @param commandGroup - Hystrix command group name.
+     * @param httpVerb - Http verb such as "GET".
+     * @param pathTemplate - URL path template such as "/v1/users/{0}", or the URL path if there is no template.
+     * @param headerNames - names of the request headers set by the caller.
+     * @param requestBytes - request body size; 0 if none.
+     * @param status - Http status code; -1 if there was no response.
+     * @param responseBytes - response body size.
+     * @param durationMicros - execution time in microseconds.
+     * @param outcome - "success", "failure", "timeout", "pool_exhausted" or "error".
+     * @param body - the request body; null unless bodies are recorded.
+     */
+    public TrafficRecord(long startEpochMillis, String commandName, String commandGroup, String httpVerb,
+                         String pathTemplate, List<String> headerNames, long requestBytes, int status,
+                         long responseBytes, long durationMicros, String outcome, String body) {
+        this.startEpochMillis = startEpochMillis;
+        this.commandName = commandName;
+        this.commandGroup = commandGroup;
+        this.httpVerb = httpVerb;
+        this.pathTemplate = pathTemplate;
+        this.headerNames = headerNames;
+        this.requestBytes = requestBytes;
+        this.status = status;
+        this.responseBytes = responseBytes;
+        this.durationMicros = durationMicros;
+        this.outcome = outcome;
+        this.body = body;
+    }
+
+    /**
+     * @return when the execution started, in epoch milliseconds.
+     */
+    public long startEpochMillis() {
+        return startEpochMillis;
+    }
+
+    /**
+     * @return Hystrix command name.
+     */
+    public String commandName() {
+        return commandName;
+    }
+
+    /**
+     * @return Hystrix command group name.
+     */
+    public String commandGroup() {
+        return commandGroup;
+    }
+
+    /**
+     * @return Http verb such as "GET".
+     */
+    public String httpVerb() {
+        return httpVerb;
+    }
+
+    /**
+     * @return URL path template such as "/v1/users/{0}", or the URL path if there is no template.
+     */
+    public String pathTemplate() {
+        return pathTemplate;
+    }
+
+    /**
+     * @return names of the request headers set by the caller; never null.
+     */
+    public List<String> headerNames() {
+        return headerNames == null ? Collections.emptyList() : headerNames;
+    }
+
+    /**
+     * @return request body size; 0 if none.
+     */
+    public long requestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * @return Http status code; -1 if there was no response.
+     */
+    public int status() {
+        return status;
+    }
+
+    /**
+     * @return response body size.
+     */
+    public long responseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * @return execution time in microseconds.
+     */
+    public long durationMicros() {
+        return durationMicros;
+    }
+
+    /**
+     * @return "success", "failure", "timeout", "pool_exhausted" or "error".
+     */
+    public String outcome() {
+        return outcome;
+    }
+
+    /**
+     * @return the request body; null unless bodies are recorded.
+     */
+    public String body() {
+        return body;
+    }
+}
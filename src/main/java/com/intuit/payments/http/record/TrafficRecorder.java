@@ -0,0 +1,159 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.record;
+
+import com.intuit.payments.http.util.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the shape of request executions (verb, URL path template, header names, body sizes, status, latency and
+ * start time) as a JSONL trace, one {@link TrafficRecord} per line, to replay production traffic shapes against a
+ * new build. Header values are never recorded and bodies only if {@link #includeBodies(boolean)} is enabled.
+ *
+ * Lines are appended to a buffered writer; call {@link #flush()} or {@link #close()} to write them out. A failed
+ * write is logged once and counted, and never fails the request.
+ *
+ * @author saung
+ * @since 6/4/18
+ */
+public class TrafficRecorder implements Closeable {
+    /** Logger instance */
+    private static final Logger LOG = LoggerFactory.getLogger(TrafficRecorder.class);
+
+    private final Writer writer;
+
+    private final LongAdder recordedCount = new LongAdder();
+
+    private final LongAdder failedCount = new LongAdder();
+
+    private volatile double sampleRate = 1;
+
+    private volatile boolean includeBodies;
+
+    /**
+     * Default constructor.
+     *
+     * @param writer - a Writer for the JSONL lines; it is buffered.
+     */
+    public TrafficRecorder(Writer writer) {
+        if (writer == null) {
+            throw new IllegalArgumentException("writer must not be NULL");
+        }
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer, 64 * 1024);
+    }
+
+    /**
+     * Creates a recorder that appends to a file.
+     *
+     * @param path - a trace file; created if it does not exist.
+     * @return new {@link TrafficRecorder} instance.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static TrafficRecorder toFile(Path path) throws IOException {
+        return new TrafficRecorder(Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+    }
+
+    /**
+     * @param sampleRate - ratio of executions to record between 0 and 1. Default is 1.
+     * @return this instance.
+     */
+    public TrafficRecorder sampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    /**
+     * @param includeBodies - true to record request bodies, e.g. in a test environment. Default is false.
+     * @return this instance.
+     */
+    public TrafficRecorder includeBodies(boolean includeBodies) {
+        this.includeBodies = includeBodies;
+        return this;
+    }
+
+    /**
+     * @return true if request bodies are recorded.
+     */
+    public boolean isIncludeBodies() {
+        return includeBodies;
+    }
+
+    /**
+     * Decides whether to record the next execution, so that unsampled executions build no record.
+     *
+     * @return true if the execution should be recorded.
+     */
+    public boolean sample() {
+        double rate = sampleRate;
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * Appends a record to the trace.
+     *
+     * @param record - a {@link TrafficRecord}.
+     */
+    public void record(TrafficRecord record) {
+        String line = Util.toJson(record);
+        try {
+            synchronized (writer) {
+                writer.write(line);
+                writer.write('\n');
+            }
+            recordedCount.increment();
+        } catch (IOException e) {
+            failedCount.increment();
+            if (failedCount.sum() == 1) {
+                LOG.error("Failed to write the traffic trace", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered records out.
+     *
+     * @throws IOException if the writer fails.
+     */
+    public void flush() throws IOException {
+        synchronized (writer) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return number of records written.
+     */
+    public long recordedCount() {
+        return recordedCount.sum();
+    }
+
+    /**
+     * @return number of records that failed to be written.
+     */
+    public long failedCount() {
+        return failedCount.sum();
+    }
+}
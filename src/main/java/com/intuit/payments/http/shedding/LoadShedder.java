@@ -0,0 +1,193 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.shedding;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Priority-aware admission control for a Hystrix command group.
+ *
+ * A request is admitted before it is submitted to the Hystrix thread pool and released when it terminates.
+ * Each {@link Priority} has its own utilisation and queue wait thresholds, so when the group's in-flight
+ * requests or the time recently spent waiting for a pool thread cross them, SHEDDABLE work is shed first, then
+ * DEFAULT. CRITICAL requests are never shed. Shedding happens only on admission, so it never counts toward the
+ * circuit breaker.
+ *
+ * The queue wait compared with the thresholds is the median of the last 16 samples within a second, so a single
+ * slow request such as a GC pause does not shed the requests after it; a standing queue does.
+ *
+ * @author saung
+ * @since 4/2/18
+ */
+public class LoadShedder {
+    /** A queue wait sample older than this is ignored for admission decisions. */
+    private static final long QUEUE_WAIT_SAMPLE_EXPIRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** Number of recent queue wait samples whose median is compared with the thresholds */
+    private static final int QUEUE_WAIT_WINDOW = 16;
+
+    /** Number of concurrent requests the group can serve, usually the Hystrix thread pool core size. */
+    private final int capacity;
+
+    /** Utilisation (in-flight / capacity) at or above which each priority is shed */
+    private final double[] utilisationThresholds = new double[Priority.values().length];
+
+    /** Queue wait in nanoseconds above which each priority is shed */
+    private final long[] queueWaitThresholdNanos = new long[Priority.values().length];
+
+    /** Admitted requests that have not terminated yet */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /** Latest time a request waited for a pool thread */
+    private volatile long lastQueueWaitNanos;
+
+    /** Ring of recent queue wait samples and when each was observed */
+    private final AtomicLongArray queueWaitSamples = new AtomicLongArray(QUEUE_WAIT_WINDOW);
+    private final AtomicLongArray queueWaitSampledAt = new AtomicLongArray(QUEUE_WAIT_WINDOW);
+    private final AtomicInteger queueWaitIndex = new AtomicInteger();
+
+    /** Counters per priority */
+    private final LongAdder[] admitted = newCounters();
+    private final LongAdder[] shed = newCounters();
+
+    /**
+     * Default constructor. SHEDDABLE requests are shed at 50% utilisation or 50ms queue wait,
+     * DEFAULT requests at 80% utilisation or 200ms queue wait.
+     *
+     * @param capacity - number of concurrent requests the command group can serve. Hystrix default is 10.
+     */
+    public LoadShedder(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be greater than zero");
+        }
+        this.capacity = capacity;
+        shedAt(Priority.CRITICAL, Double.MAX_VALUE, Long.MAX_VALUE);
+        shedAt(Priority.DEFAULT, 0.8, 200);
+        shedAt(Priority.SHEDDABLE, 0.5, 50);
+    }
+
+    /**
+     * Sets the thresholds at which a given priority is shed.
+     *
+     * @param priority - a request priority.
+     * @param utilisation - in-flight requests / capacity at or above which requests are shed. E.g. 0.8
+     * @param queueWaitInMilliSec - median recent time waited for a pool thread above which requests are shed.
+     * @return this {@link LoadShedder} instance.
+     */
+    public LoadShedder shedAt(Priority priority, double utilisation, long queueWaitInMilliSec) {
+        utilisationThresholds[priority.ordinal()] = utilisation;
+        queueWaitThresholdNanos[priority.ordinal()] = (queueWaitInMilliSec == Long.MAX_VALUE)
+                ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(queueWaitInMilliSec);
+        return this;
+    }
+
+    /**
+     * Admits a request before it is submitted to the thread pool. An admitted request must be released
+     * exactly once with {@link #release()}.
+     *
+     * @param priority - the request priority.
+     * @return true if admitted; false if the request is shed.
+     */
+    public boolean tryAdmit(Priority priority) {
+        int i = priority.ordinal();
+        if (queueWaitExceeds(queueWaitThresholdNanos[i])) {
+            shed[i].increment();
+            return false;
+        }
+        while (true) {
+            int current = inFlight.get();
+            if ((double) current / capacity >= utilisationThresholds[i]) {
+                shed[i].increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted[i].increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Records the time an admitted request waited for a pool thread once it starts running. The request itself
+     * proceeds; the sample is used to shed the next requests on admission.
+     *
+     * @param queueWaitNanos - time between admission and the start of execution.
+     */
+    public void recordQueueWait(long queueWaitNanos) {
+        lastQueueWaitNanos = queueWaitNanos;
+        int slot = (queueWaitIndex.getAndIncrement() & Integer.MAX_VALUE) % QUEUE_WAIT_WINDOW;
+        queueWaitSampledAt.set(slot, System.nanoTime());
+        queueWaitSamples.set(slot, queueWaitNanos);
+    }
+
+    /**
+     * Checks if the median of the recent queue wait samples is above a threshold, i.e. more than half of the
+     * window is. Expired and missing samples count as no wait.
+     */
+    private boolean queueWaitExceeds(long thresholdNanos) {
+        if (thresholdNanos == Long.MAX_VALUE) {
+            return false;
+        }
+        long now = System.nanoTime();
+        int above = 0;
+        for (int slot = 0; slot < QUEUE_WAIT_WINDOW; slot++) {
+            if (queueWaitSamples.get(slot) > thresholdNanos
+                    && now - queueWaitSampledAt.get(slot) < QUEUE_WAIT_SAMPLE_EXPIRY_NANOS
+                    && ++above > QUEUE_WAIT_WINDOW / 2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Releases an admitted request when it terminates.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @param priority - a request priority.
+     * @return number of requests of the given priority shed so far.
+     */
+    public long shedCount(Priority priority) {
+        return shed[priority.ordinal()].sum();
+    }
+
+    /**
+     * @param priority - a request priority.
+     * @return number of requests of the given priority admitted so far.
+     */
+    public long admittedCount(Priority priority) {
+        return admitted[priority.ordinal()].sum();
+    }
+
+    /**
+     * @return number of admitted requests that have not terminated yet.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the latest time in milliseconds a request waited for a pool thread.
+     */
+    public long lastQueueWaitInMilliSec() {
+        return TimeUnit.NANOSECONDS.toMillis(lastQueueWaitNanos);
+    }
+
+    private static LongAdder[] newCounters() {
+        LongAdder[] counters = new LongAdder[Priority.values().length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.shedding;
+
+/**
+ * Request priority classes for load shedding. Lower priorities are shed first when a command group saturates.
+ *
+ * @author saung
+ * @since 4/2/18
+ */
+public enum Priority {
+    /** User-facing calls that are never shed */
+    CRITICAL,
+    /** Default priority */
+    DEFAULT,
+    /** Background or batch calls that are shed first */
+    SHEDDABLE
+}
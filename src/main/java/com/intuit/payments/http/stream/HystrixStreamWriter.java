@@ -0,0 +1,347 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.stream;
+
+import com.google.gson.stream.JsonWriter;
+import com.intuit.payments.http.cache.StaleResponseCache;
+import com.intuit.payments.http.pool.PoolStatsSampler;
+import com.intuit.payments.http.pool.RouteStats;
+import com.intuit.payments.http.ratelimit.TokenBucket;
+import com.intuit.payments.http.shedding.LoadShedder;
+import com.intuit.payments.http.shedding.Priority;
+import com.netflix.hystrix.HystrixCircuitBreaker;
+import com.netflix.hystrix.HystrixCommandMetrics;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.HystrixEventType;
+import com.netflix.hystrix.HystrixThreadPoolMetrics;
+import com.netflix.hystrix.HystrixThreadPoolProperties;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Serializes metrics to server-sent events. Hystrix commands and thread pools use the field names of the
+ * standard "hystrix.stream" so the Hystrix dashboard and Turbine can read them. Package-level access only.
+ *
+ * @author saung
+ * @since 5/7/18
+ */
+class HystrixStreamWriter {
+    /** Latency percentiles of the standard stream */
+    private static final double[] PERCENTILES = { 0, 25, 50, 75, 90, 95, 99, 99.5, 100 };
+
+    /** Rolling counters of the standard stream */
+    private static final HystrixEventType[] ROLLING_COUNTS = {
+            HystrixEventType.BAD_REQUEST, HystrixEventType.COLLAPSED, HystrixEventType.EMIT,
+            HystrixEventType.EXCEPTION_THROWN, HystrixEventType.FAILURE, HystrixEventType.FALLBACK_EMIT,
+            HystrixEventType.FALLBACK_FAILURE, HystrixEventType.FALLBACK_MISSING,
+            HystrixEventType.FALLBACK_REJECTION, HystrixEventType.FALLBACK_SUCCESS,
+            HystrixEventType.RESPONSE_FROM_CACHE, HystrixEventType.SEMAPHORE_REJECTED,
+            HystrixEventType.SHORT_CIRCUITED, HystrixEventType.SUCCESS, HystrixEventType.THREAD_POOL_REJECTED,
+            HystrixEventType.TIMEOUT
+    };
+
+    private final StringWriter out = new StringWriter(4096);
+
+    private final long currentTime = System.currentTimeMillis();
+
+    /**
+     * Writes one "HystrixCommand" event per command.
+     */
+    void writeCommands() {
+        for (HystrixCommandMetrics metrics : HystrixCommandMetrics.getInstances()) {
+            JsonWriter json = begin();
+            try {
+                writeCommand(json, metrics);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            end();
+        }
+    }
+
+    /**
+     * Writes one "HystrixThreadPool" event per thread pool that executed a command.
+     */
+    void writeThreadPools() {
+        for (HystrixThreadPoolMetrics metrics : HystrixThreadPoolMetrics.getInstances()) {
+            if (metrics.getCurrentCompletedTaskCount().longValue() == 0) {
+                continue;
+            }
+            JsonWriter json = begin();
+            try {
+                writeThreadPool(json, metrics);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            end();
+        }
+    }
+
+    /**
+     * Writes a "HCConnectionPool" event with the total and per-route stats of a connection pool.
+     *
+     * @param name - a client name.
+     * @param connectionManager - the connection pool.
+     * @param sampler - an optional {@link PoolStatsSampler} for peak pending and saturation counts.
+     */
+    void writeConnectionPool(String name, PoolingHttpClientConnectionManager connectionManager,
+                             PoolStatsSampler sampler) {
+        JsonWriter json = begin();
+        try {
+            PoolStats total = connectionManager.getTotalStats();
+            json.beginObject();
+            json.name("type").value("HCConnectionPool");
+            json.name("name").value(name);
+            json.name("currentTime").value(currentTime);
+            writePoolStats(json, total);
+            json.name("routes").beginArray();
+            for (HttpRoute route : connectionManager.getRoutes()) {
+                json.beginObject();
+                json.name("route").value(route.getTargetHost().toURI());
+                writePoolStats(json, connectionManager.getStats(route));
+                RouteStats stats = sampler == null ? null : sampler.getStats(route);
+                if (stats != null) {
+                    json.name("peakPending").value(stats.peakPending());
+                    json.name("saturationCount").value(stats.saturationCount());
+                }
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        end();
+    }
+
+    /**
+     * Writes a "HCStaleCache" event with the size and hit rate of a stale-if-error cache.
+     *
+     * @param name - a client name.
+     * @param cache - the cache.
+     */
+    void writeStaleCache(String name, StaleResponseCache cache) {
+        JsonWriter json = begin();
+        try {
+            json.beginObject();
+            json.name("type").value("HCStaleCache");
+            json.name("name").value(name);
+            json.name("currentTime").value(currentTime);
+            json.name("size").value(cache.size());
+            json.name("hitCount").value(cache.hitCount());
+            json.name("missCount").value(cache.missCount());
+            json.name("hitRate").value(cache.hitRate());
+            json.name("lastStaleAgeInMilliSec").value(cache.lastStaleAgeInMilliSec());
+            json.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        end();
+    }
+
+    /**
+     * Writes a "HCRateLimiter" event with the permit counts of a command group's rate limiter.
+     *
+     * @param name - a client name.
+     * @param group - a Hystrix command group name.
+     * @param rateLimiter - the rate limiter.
+     */
+    void writeRateLimiter(String name, String group, TokenBucket rateLimiter) {
+        JsonWriter json = begin();
+        try {
+            json.beginObject();
+            json.name("type").value("HCRateLimiter");
+            json.name("name").value(name);
+            json.name("group").value(group);
+            json.name("currentTime").value(currentTime);
+            json.name("permitted").value(rateLimiter.permittedCount());
+            json.name("throttled").value(rateLimiter.throttledCount());
+            json.name("waited").value(rateLimiter.waitedCount());
+            json.name("waiting").value(rateLimiter.waitingCount());
+            json.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        end();
+    }
+
+    /**
+     * Writes a "HCLoadShedder" event with the in-flight requests and the admitted and shed counts per priority of a
+     * command group's load shedder.
+     *
+     * @param name - a client name.
+     * @param group - a Hystrix command group name.
+     * @param loadShedder - the load shedder.
+     */
+    void writeLoadShedder(String name, String group, LoadShedder loadShedder) {
+        JsonWriter json = begin();
+        try {
+            json.beginObject();
+            json.name("type").value("HCLoadShedder");
+            json.name("name").value(name);
+            json.name("group").value(group);
+            json.name("currentTime").value(currentTime);
+            json.name("inFlight").value(loadShedder.inFlight());
+            json.name("lastQueueWaitInMilliSec").value(loadShedder.lastQueueWaitInMilliSec());
+            json.name("admitted").beginObject();
+            for (Priority priority : Priority.values()) {
+                json.name(priority.name()).value(loadShedder.admittedCount(priority));
+            }
+            json.endObject();
+            json.name("shed").beginObject();
+            for (Priority priority : Priority.values()) {
+                json.name(priority.name()).value(loadShedder.shedCount(priority));
+            }
+            json.endObject();
+            json.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        end();
+    }
+
+    private void writeCommand(JsonWriter json, HystrixCommandMetrics metrics) throws IOException {
+        HystrixCommandMetrics.HealthCounts healthCounts = metrics.getHealthCounts();
+        HystrixCommandProperties properties = metrics.getProperties();
+        HystrixCircuitBreaker circuitBreaker = HystrixCircuitBreaker.Factory.getInstance(metrics.getCommandKey());
+
+        json.beginObject();
+        json.name("type").value("HystrixCommand");
+        json.name("name").value(metrics.getCommandKey().name());
+        json.name("group").value(metrics.getCommandGroup().name());
+        json.name("currentTime").value(currentTime);
+        json.name("isCircuitBreakerOpen").value(circuitBreaker != null && circuitBreaker.isOpen());
+        json.name("errorPercentage").value(healthCounts.getErrorPercentage());
+        json.name("errorCount").value(healthCounts.getErrorCount());
+        json.name("requestCount").value(healthCounts.getTotalRequests());
+        for (HystrixEventType eventType : ROLLING_COUNTS) {
+            json.name(rollingCountName(eventType)).value(metrics.getRollingCount(eventType));
+        }
+        json.name("currentConcurrentExecutionCount").value(metrics.getCurrentConcurrentExecutionCount());
+        json.name("rollingMaxConcurrentExecutionCount").value(metrics.getRollingMaxConcurrentExecutions());
+
+        json.name("latencyExecute_mean").value(metrics.getExecutionTimeMean());
+        json.name("latencyExecute").beginObject();
+        for (double percentile : PERCENTILES) {
+            json.name(percentileName(percentile)).value(metrics.getExecutionTimePercentile(percentile));
+        }
+        json.endObject();
+        json.name("latencyTotal_mean").value(metrics.getTotalTimeMean());
+        json.name("latencyTotal").beginObject();
+        for (double percentile : PERCENTILES) {
+            json.name(percentileName(percentile)).value(metrics.getTotalTimePercentile(percentile));
+        }
+        json.endObject();
+
+        json.name("propertyValue_circuitBreakerRequestVolumeThreshold")
+                .value(properties.circuitBreakerRequestVolumeThreshold().get());
+        json.name("propertyValue_circuitBreakerSleepWindowInMilliseconds")
+                .value(properties.circuitBreakerSleepWindowInMilliseconds().get());
+        json.name("propertyValue_circuitBreakerErrorThresholdPercentage")
+                .value(properties.circuitBreakerErrorThresholdPercentage().get());
+        json.name("propertyValue_circuitBreakerForceOpen").value(properties.circuitBreakerForceOpen().get());
+        json.name("propertyValue_circuitBreakerForceClosed").value(properties.circuitBreakerForceClosed().get());
+        json.name("propertyValue_circuitBreakerEnabled").value(properties.circuitBreakerEnabled().get());
+        json.name("propertyValue_executionIsolationStrategy")
+                .value(properties.executionIsolationStrategy().get().name());
+        json.name("propertyValue_executionIsolationThreadTimeoutInMilliseconds")
+                .value(properties.executionTimeoutInMilliseconds().get());
+        json.name("propertyValue_executionTimeoutInMilliseconds")
+                .value(properties.executionTimeoutInMilliseconds().get());
+        json.name("propertyValue_executionIsolationThreadInterruptOnTimeout")
+                .value(properties.executionIsolationThreadInterruptOnTimeout().get());
+        json.name("propertyValue_executionIsolationThreadPoolKeyOverride")
+                .value(properties.executionIsolationThreadPoolKeyOverride().get());
+        json.name("propertyValue_executionIsolationSemaphoreMaxConcurrentRequests")
+                .value(properties.executionIsolationSemaphoreMaxConcurrentRequests().get());
+        json.name("propertyValue_fallbackIsolationSemaphoreMaxConcurrentRequests")
+                .value(properties.fallbackIsolationSemaphoreMaxConcurrentRequests().get());
+        json.name("propertyValue_metricsRollingStatisticalWindowInMilliseconds")
+                .value(properties.metricsRollingStatisticalWindowInMilliseconds().get());
+        json.name("propertyValue_requestCacheEnabled").value(properties.requestCacheEnabled().get());
+        json.name("propertyValue_requestLogEnabled").value(properties.requestLogEnabled().get());
+        json.name("reportingHosts").value(1);
+        json.name("threadPool").value(metrics.getThreadPoolKey().name());
+        json.endObject();
+    }
+
+    private void writeThreadPool(JsonWriter json, HystrixThreadPoolMetrics metrics) throws IOException {
+        HystrixThreadPoolProperties properties = metrics.getProperties();
+
+        json.beginObject();
+        json.name("type").value("HystrixThreadPool");
+        json.name("name").value(metrics.getThreadPoolKey().name());
+        json.name("currentTime").value(currentTime);
+        json.name("currentActiveCount").value(metrics.getCurrentActiveCount());
+        json.name("currentCompletedTaskCount").value(metrics.getCurrentCompletedTaskCount());
+        json.name("currentCorePoolSize").value(metrics.getCurrentCorePoolSize());
+        json.name("currentLargestPoolSize").value(metrics.getCurrentLargestPoolSize());
+        json.name("currentMaximumPoolSize").value(metrics.getCurrentMaximumPoolSize());
+        json.name("currentPoolSize").value(metrics.getCurrentPoolSize());
+        json.name("currentQueueSize").value(metrics.getCurrentQueueSize());
+        json.name("currentTaskCount").value(metrics.getCurrentTaskCount());
+        json.name("rollingCountThreadsExecuted").value(metrics.getRollingCountThreadsExecuted());
+        json.name("rollingMaxActiveThreads").value(metrics.getRollingMaxActiveThreads());
+        json.name("rollingCountCommandRejections").value(metrics.getRollingCountThreadsRejected());
+        json.name("propertyValue_queueSizeRejectionThreshold")
+                .value(properties.queueSizeRejectionThreshold().get());
+        json.name("propertyValue_metricsRollingStatisticalWindowInMilliseconds")
+                .value(properties.metricsRollingStatisticalWindowInMilliseconds().get());
+        json.name("reportingHosts").value(1);
+        json.endObject();
+    }
+
+    private static void writePoolStats(JsonWriter json, PoolStats stats) throws IOException {
+        json.name("leased").value(stats.getLeased());
+        json.name("available").value(stats.getAvailable());
+        json.name("pending").value(stats.getPending());
+        json.name("max").value(stats.getMax());
+    }
+
+    /**
+     * E.g. THREAD_POOL_REJECTED -> rollingCountThreadPoolRejected. Some counters are plural in the standard
+     * stream.
+     */
+    private static String rollingCountName(HystrixEventType eventType) {
+        switch (eventType) {
+            case BAD_REQUEST: return "rollingCountBadRequests";
+            case COLLAPSED: return "rollingCountCollapsedRequests";
+            case EXCEPTION_THROWN: return "rollingCountExceptionsThrown";
+            case RESPONSE_FROM_CACHE: return "rollingCountResponsesFromCache";
+            default:
+                StringBuilder sb = new StringBuilder("rollingCount");
+                for (String word : eventType.name().split("_")) {
+                    sb.append(word.charAt(0)).append(word.substring(1).toLowerCase());
+                }
+                return sb.toString();
+        }
+    }
+
+    /**
+     * E.g. 99.5 -> "99.5", 50 -> "50"
+     */
+    private static String percentileName(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile);
+    }
+
+    private JsonWriter begin() {
+        out.write("data: ");
+        return new JsonWriter(out);
+    }
+
+    private void end() {
+        out.write("\n\n");
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
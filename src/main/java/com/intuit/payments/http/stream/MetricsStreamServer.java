@@ -0,0 +1,398 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.stream;
+
+import com.intuit.payments.http.cache.StaleResponseCache;
+import com.intuit.payments.http.pool.PoolStatsSampler;
+import com.intuit.payments.http.ratelimit.TokenBucket;
+import com.intuit.payments.http.shedding.LoadShedder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A tiny embedded Http server on the JDK's built-in {@link HttpServer} that streams Hystrix command and thread
+ * pool metrics as server-sent events in the standard "hystrix.stream" format, so the Hystrix dashboard or Turbine
+ * can read them without a servlet container. Connection pool, stale cache, rate limiter and load shedder stats of
+ * monitored clients are streamed in the same stream as "HCConnectionPool", "HCStaleCache", "HCRateLimiter" and
+ * "HCLoadShedder" events, which the dashboard ignores.
+ *
+ * The metrics are read and serialized once per interval in one daemon thread and only while a dashboard is
+ * connected; each connection just writes the shared payload. The number of connections is capped.
+ *
+ * The server listens on the loopback address unless a bind address is given, since the stream is not
+ * authenticated and exposes the endpoint groups and traffic of the application.
+ *
+ * Example:
+ * <pre>
+ * MetricsStreamServer server = MetricsStreamServer.start(8077);
+ * Client client = new Client("https://api.example.com").metricsStream(server);
+ * // curl http://localhost:8077/hystrix.stream
+ *
+ * // a dashboard on another host reads the stream on a private interface
+ * MetricsStreamServer shared = MetricsStreamServer.start(InetAddress.getByName("10.0.0.5"), 8077);
+ * </pre>
+ *
+ * @author saung
+ * @since 5/7/18
+ */
+public class MetricsStreamServer {
+    /** Logger instance */
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsStreamServer.class);
+
+    /** Context path of the stream */
+    public static final String PATH = "/hystrix.stream";
+
+    /** Default interval between two payloads */
+    public static final long DEFAULT_INTERVAL_IN_MILLI_SEC = 500;
+
+    /** Default maximum number of concurrent connections */
+    public static final int DEFAULT_MAX_CONNECTIONS = 5;
+
+    private static final byte[] PING = "ping: \n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+
+    private final ExecutorService connectionExecutor;
+
+    private final ScheduledExecutorService sampler;
+
+    private final Map<String, Monitor> monitors = new ConcurrentHashMap<>();
+
+    /** Client name to rate limiters per command group */
+    private final Map<String, Map<String, TokenBucket>> rateLimiters = new ConcurrentHashMap<>();
+
+    /** Client name to load shedders per command group */
+    private final Map<String, Map<String, LoadShedder>> loadShedders = new ConcurrentHashMap<>();
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final Object payloadLock = new Object();
+
+    private volatile int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+    private volatile long intervalInMilliSec = DEFAULT_INTERVAL_IN_MILLI_SEC;
+
+    private volatile boolean running;
+
+    /** Latest serialized payload; guarded by payloadLock */
+    private byte[] payload = PING;
+
+    /** Sequence number of the latest payload; guarded by payloadLock */
+    private long payloadSeq;
+
+    /**
+     * Connection pool and cache of one client.
+     */
+    static final class Monitor {
+        final String name;
+        final PoolingHttpClientConnectionManager connectionManager;
+        final Supplier<PoolStatsSampler> poolStatsSampler;
+        final Supplier<StaleResponseCache> staleResponseCache;
+
+        Monitor(String name, PoolingHttpClientConnectionManager connectionManager,
+                Supplier<PoolStatsSampler> poolStatsSampler, Supplier<StaleResponseCache> staleResponseCache) {
+            this.name = name;
+            this.connectionManager = connectionManager;
+            this.poolStatsSampler = poolStatsSampler;
+            this.staleResponseCache = staleResponseCache;
+        }
+    }
+
+    /**
+     * Default constructor. Listens on the loopback address. Call {@link #start()} to accept connections.
+     *
+     * @param port - a port to listen on; 0 to pick a free one.
+     * @throws IOException if the port cannot be bound.
+     */
+    public MetricsStreamServer(int port) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Constructor with a bind address. Call {@link #start()} to accept connections.
+     *
+     * @param bindAddress - a local address to listen on; null to listen on all interfaces.
+     * @param port - a port to listen on; 0 to pick a free one.
+     * @throws IOException if the address and port cannot be bound.
+     */
+    public MetricsStreamServer(InetAddress bindAddress, int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.connectionExecutor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "hc-metrics-stream-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "hc-metrics-stream-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(connectionExecutor);
+        this.server.createContext(PATH, this::handle);
+    }
+
+    /**
+     * Creates and starts a server on the loopback address with the default interval and connection cap.
+     *
+     * @param port - a port to listen on; 0 to pick a free one.
+     * @return a started {@link MetricsStreamServer}.
+     * @throws IllegalStateException if the port cannot be bound.
+     */
+    public static MetricsStreamServer start(int port) {
+        return start(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Creates and starts a server on a given address with the default interval and connection cap.
+     *
+     * @param bindAddress - a local address to listen on; null to listen on all interfaces.
+     * @param port - a port to listen on; 0 to pick a free one.
+     * @return a started {@link MetricsStreamServer}.
+     * @throws IllegalStateException if the address and port cannot be bound.
+     */
+    public static MetricsStreamServer start(InetAddress bindAddress, int port) {
+        try {
+            return new MetricsStreamServer(bindAddress, port).start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to start the metrics stream on " + bindAddress + ":" + port, e);
+        }
+    }
+
+    /**
+     * Sets the interval between two payloads.
+     *
+     * @param intervalInMilliSec - interval in milliseconds; applies to the next {@link #start()}.
+     * @return this instance.
+     */
+    public MetricsStreamServer intervalInMilliSec(long intervalInMilliSec) {
+        if (intervalInMilliSec <= 0) {
+            throw new IllegalArgumentException("intervalInMilliSec must be positive");
+        }
+        this.intervalInMilliSec = intervalInMilliSec;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of concurrent connections. Further connections get Http 503.
+     *
+     * @param maxConnections - maximum number of connections.
+     * @return this instance.
+     */
+    public MetricsStreamServer maxConnections(int maxConnections) {
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("maxConnections must be positive");
+        }
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    /**
+     * Adds the connection pool and stale cache stats of a client to the stream. Monitoring the same name again
+     * replaces the previous one.
+     *
+     * @param name - a client name such as the server base URL.
+     * @param connectionManager - the connection pool of the client.
+     * @param poolStatsSampler - supplies the optional {@link PoolStatsSampler} for saturation counts.
+     * @param staleResponseCache - supplies the optional {@link StaleResponseCache}.
+     * @return this instance.
+     */
+    public MetricsStreamServer monitor(String name, PoolingHttpClientConnectionManager connectionManager,
+                                       Supplier<PoolStatsSampler> poolStatsSampler,
+                                       Supplier<StaleResponseCache> staleResponseCache) {
+        if (name == null || connectionManager == null) {
+            throw new IllegalArgumentException("name and connectionManager must not be NULL");
+        }
+        monitors.put(name, new Monitor(name, connectionManager, poolStatsSampler, staleResponseCache));
+        return this;
+    }
+
+    /**
+     * Adds the rate limiters of a client to the stream. Monitoring the same name again replaces the previous ones.
+     *
+     * @param name - a client name such as the server base URL.
+     * @param rateLimiters - a live map of command group name to {@link TokenBucket}; groups added later are
+     *                     streamed too.
+     * @return this instance.
+     */
+    public MetricsStreamServer monitorRateLimiters(String name, Map<String, TokenBucket> rateLimiters) {
+        if (name == null || rateLimiters == null) {
+            throw new IllegalArgumentException("name and rateLimiters must not be NULL");
+        }
+        this.rateLimiters.put(name, rateLimiters);
+        return this;
+    }
+
+    /**
+     * Adds the load shedders of a client to the stream. Monitoring the same name again replaces the previous ones.
+     *
+     * @param name - a client name such as the server base URL.
+     * @param loadShedders - a live map of command group name to {@link LoadShedder}; groups added later are
+     *                     streamed too.
+     * @return this instance.
+     */
+    public MetricsStreamServer monitorLoadShedders(String name, Map<String, LoadShedder> loadShedders) {
+        if (name == null || loadShedders == null) {
+            throw new IllegalArgumentException("name and loadShedders must not be NULL");
+        }
+        this.loadShedders.put(name, loadShedders);
+        return this;
+    }
+
+    /**
+     * Starts accepting connections. Does nothing if it is already running.
+     *
+     * @return this instance.
+     */
+    public synchronized MetricsStreamServer start() {
+        if (!running) {
+            running = true;
+            server.start();
+            sampler.scheduleAtFixedRate(this::publishQuietly, 0, intervalInMilliSec, TimeUnit.MILLISECONDS);
+            LOG.info("type=metrics_stream_start;address={};port={};path={}", address().getHostAddress(), port(),
+                    PATH);
+        }
+        return this;
+    }
+
+    /**
+     * Stops the server and closes all connections. A stopped server cannot be started again.
+     */
+    public synchronized void stop() {
+        running = false;
+        sampler.shutdownNow();
+        synchronized (payloadLock) {
+            payloadLock.notifyAll();
+        }
+        server.stop(0);
+        connectionExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the local address the server listens on; the wildcard address if it listens on all interfaces.
+     */
+    public InetAddress address() {
+        return server.getAddress().getAddress();
+    }
+
+    /**
+     * @return the port the server listens on.
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return number of open stream connections.
+     */
+    public int connectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Renders the current payload: one "data:" event per Hystrix command, Hystrix thread pool, monitored
+     * connection pool, monitored stale cache, monitored rate limiter and monitored load shedder.
+     *
+     * @return the server-sent events string.
+     */
+    public String render() {
+        HystrixStreamWriter writer = new HystrixStreamWriter();
+        writer.writeCommands();
+        writer.writeThreadPools();
+        for (Monitor monitor : monitors.values()) {
+            writer.writeConnectionPool(monitor.name, monitor.connectionManager,
+                    monitor.poolStatsSampler == null ? null : monitor.poolStatsSampler.get());
+            StaleResponseCache cache = monitor.staleResponseCache == null ? null : monitor.staleResponseCache.get();
+            if (cache != null) {
+                writer.writeStaleCache(monitor.name, cache);
+            }
+        }
+        for (Map.Entry<String, Map<String, TokenBucket>> client : rateLimiters.entrySet()) {
+            for (Map.Entry<String, TokenBucket> group : client.getValue().entrySet()) {
+                writer.writeRateLimiter(client.getKey(), group.getKey(), group.getValue());
+            }
+        }
+        for (Map.Entry<String, Map<String, LoadShedder>> client : loadShedders.entrySet()) {
+            for (Map.Entry<String, LoadShedder> group : client.getValue().entrySet()) {
+                writer.writeLoadShedder(client.getKey(), group.getKey(), group.getValue());
+            }
+        }
+        return writer.toString();
+    }
+
+    private void publishQuietly() {
+        if (connections.get() == 0) {
+            return;
+        }
+        try {
+            String events = render();
+            byte[] bytes = events.isEmpty() ? PING : events.getBytes(StandardCharsets.UTF_8);
+            synchronized (payloadLock) {
+                payload = bytes;
+                payloadSeq++;
+                payloadLock.notifyAll();
+            }
+        } catch (Exception e) {
+            LOG.error("Failed to render the metrics stream", e);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream;charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache, no-store, max-age=0, must-revalidate");
+            exchange.getResponseHeaders().set("Pragma", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write(PING);
+            out.flush();
+            publishQuietly();
+            long seq = 0;
+            while (running) {
+                byte[] next;
+                synchronized (payloadLock) {
+                    if (payloadSeq == seq) {
+                        payloadLock.wait(intervalInMilliSec * 2);
+                    }
+                    next = payloadSeq == seq ? PING : payload;
+                    seq = payloadSeq;
+                }
+                out.write(next);
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOG.debug("type=metrics_stream_disconnect;remote={}", exchange.getRemoteAddress());
+        } finally {
+            connections.decrementAndGet();
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.trace;
+
+/**
+ * An immutable, finished client span of one {@link com.intuit.payments.http.Request} execution. Spans are
+ * created only when they are kept by the {@link Tracer}'s sampling.
+ *
+ * @author saung
+ * @since 5/28/18
+ */
+public final class Span {
+    private final TraceContext context;
+    private final String name;
+    private final String commandGroup;
+    private final String url;
+    private final String httpVerb;
+    private final int status;
+    private final String outcome;
+    private final boolean error;
+    private final long startEpochMicros;
+    private final long durationNanos;
+    private final boolean tailSampled;
+
+    /**
+     * Default constructor. Package-level access only.
+     */
+    Span(TraceContext context, String name, String commandGroup, String url, String httpVerb, int status,
+         String outcome, boolean error, long startEpochMicros, long durationNanos, boolean tailSampled) {
+        this.context = context;
+        this.name = name;
+        this.commandGroup = commandGroup;
+        this.url = url;
+        this.httpVerb = httpVerb;
+        this.status = status;
+        this.outcome = outcome;
+        this.error = error;
+        this.startEpochMicros = startEpochMicros;
+        this.durationNanos = durationNanos;
+        this.tailSampled = tailSampled;
+    }
+
+    /**
+     * @return trace id, span id and parent span id of this span.
+     */
+    public TraceContext context() {
+        return context;
+    }
+
+    /**
+     * @return span name, i.e. the Hystrix command name.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return Hystrix command group name.
+     */
+    public String commandGroup() {
+        return commandGroup;
+    }
+
+    /**
+     * @return request URL.
+     */
+    public String url() {
+        return url;
+    }
+
+    /**
+     * @return Http verb name.
+     */
+    public String httpVerb() {
+        return httpVerb;
+    }
+
+    /**
+     * @return Http status code; -1 if no response was received.
+     */
+    public int status() {
+        return status;
+    }
+
+    /**
+     * @return outcome of the request, e.g. "success", "failure" or "timeout".
+     */
+    public String outcome() {
+        return outcome;
+    }
+
+    /**
+     * @return true if the request failed.
+     */
+    public boolean isError() {
+        return error;
+    }
+
+    /**
+     * @return start time in microseconds since the epoch.
+     */
+    public long startEpochMicros() {
+        return startEpochMicros;
+    }
+
+    /**
+     * @return duration in nanoseconds.
+     */
+    public long durationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return true if the span was kept by tail sampling because it was slow or failed; false if head sampled.
+     */
+    public boolean isTailSampled() {
+        return tailSampled;
+    }
+
+    @Override
+    public String toString() {
+        return "trace_id=" + context.traceId() + ";span_id=" + context.spanId() + ";parent_id="
+                + context.parentSpanId() + ";name=" + name + ";http=" + httpVerb + ";status=" + status
+                + ";outcome=" + outcome + ";duration_us=" + durationNanos / 1000;
+    }
+}
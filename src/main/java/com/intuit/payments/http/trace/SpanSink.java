@@ -0,0 +1,23 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.trace;
+
+/**
+ * Exports finished {@link Span}s, e.g. to Zipkin, Jaeger or a log. It is called from the Hystrix thread at the
+ * end of each kept request, so implementations should hand spans off to a queue instead of doing I/O.
+ *
+ * @author saung
+ * @since 5/28/18
+ */
+@FunctionalInterface
+public interface SpanSink {
+    /**
+     * Exports a finished span.
+     *
+     * @param span - a kept {@link Span}.
+     */
+    void export(Span span);
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.trace;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An immutable W3C Trace Context (https://www.w3.org/TR/trace-context/): trace id, span id, sampled flag and
+ * the vendor-specific "tracestate". The current context of a thread is set with {@link #attach(TraceContext)},
+ * e.g. from the "traceparent" header of an inbound request, and is captured by every
+ * {@link com.intuit.payments.http.Request} created in that thread.
+ *
+ * @author saung
+ * @since 5/28/18
+ */
+public final class TraceContext {
+    /** Http header names */
+    public static final String TRACEPARENT = "traceparent";
+    public static final String TRACESTATE = "tracestate";
+
+    private static final String VERSION = "00";
+    private static final int TRACEPARENT_LENGTH = 55;
+    private static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
+    private static final String INVALID_SPAN_ID = "0000000000000000";
+
+    private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+
+    private final String traceId;
+
+    private final String spanId;
+
+    /** Span id of the parent; null for a context parsed from a header or a new root */
+    private final String parentSpanId;
+
+    private final boolean sampled;
+
+    /** Vendor-specific "tracestate" header value; null if none */
+    private final String traceState;
+
+    private TraceContext(String traceId, String spanId, String parentSpanId, boolean sampled, String traceState) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.sampled = sampled;
+        this.traceState = traceState;
+    }
+
+    /**
+     * Gets the context attached to the current thread.
+     *
+     * @return the current {@link TraceContext}; null if none.
+     */
+    public static TraceContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Attaches a context to the current thread until the returned scope is closed.
+     *
+     * @param context - a {@link TraceContext}; null to detach.
+     * @return a {@link Scope} that restores the previous context when closed.
+     */
+    public static Scope attach(TraceContext context) {
+        TraceContext previous = CURRENT.get();
+        CURRENT.set(context);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Parses the "traceparent" and "tracestate" header values of an inbound request.
+     *
+     * @param traceparent - "traceparent" header value, e.g. "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01".
+     * @param tracestate - optional "tracestate" header value.
+     * @return a {@link TraceContext}; null if the traceparent is missing or invalid.
+     */
+    public static TraceContext fromHeaders(String traceparent, String tracestate) {
+        if (traceparent == null) {
+            return null;
+        }
+        String value = traceparent.trim();
+        if (value.length() < TRACEPARENT_LENGTH || value.charAt(2) != '-' || value.charAt(35) != '-'
+                || value.charAt(52) != '-' || (value.length() > TRACEPARENT_LENGTH && value.charAt(55) != '-')) {
+            return null;
+        }
+        String version = value.substring(0, 2);
+        String traceId = value.substring(3, 35);
+        String spanId = value.substring(36, 52);
+        String flags = value.substring(53, 55);
+        if (!isLowerHex(version) || "ff".equals(version)
+                || (VERSION.equals(version) && value.length() != TRACEPARENT_LENGTH)
+                || !isLowerHex(traceId) || INVALID_TRACE_ID.equals(traceId)
+                || !isLowerHex(spanId) || INVALID_SPAN_ID.equals(spanId) || !isLowerHex(flags)) {
+            return null;
+        }
+        boolean sampled = (Integer.parseInt(flags, 16) & 0x01) != 0;
+        String state = (tracestate == null || tracestate.trim().isEmpty()) ? null : tracestate.trim();
+        return new TraceContext(traceId, spanId, null, sampled, state);
+    }
+
+    /**
+     * Creates a context of a new trace.
+     *
+     * @param sampled - sampled flag.
+     * @return a new root {@link TraceContext}.
+     */
+    public static TraceContext newRoot(boolean sampled) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String traceId = toHex(nonZero(random), new StringBuilder(32))
+                .append(toHex(random.nextLong(), new StringBuilder(16))).toString();
+        return new TraceContext(traceId, newSpanId(random), null, sampled, null);
+    }
+
+    /**
+     * Creates a context of a child span in the same trace.
+     *
+     * @param sampled - sampled flag of the child.
+     * @return a new child {@link TraceContext} whose parent is this context.
+     */
+    public TraceContext newChild(boolean sampled) {
+        return new TraceContext(traceId, newSpanId(ThreadLocalRandom.current()), spanId, sampled, traceState);
+    }
+
+    /**
+     * @return 32 lowercase hex character trace id.
+     */
+    public String traceId() {
+        return traceId;
+    }
+
+    /**
+     * @return 16 lowercase hex character span id.
+     */
+    public String spanId() {
+        return spanId;
+    }
+
+    /**
+     * @return span id of the parent; null if this context was parsed from a header or is a root.
+     */
+    public String parentSpanId() {
+        return parentSpanId;
+    }
+
+    /**
+     * @return true if the sampled flag is set.
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * @return "tracestate" header value; null if none.
+     */
+    public String traceState() {
+        return traceState;
+    }
+
+    /**
+     * Formats the "traceparent" header value with this context's span id as the parent id.
+     *
+     * @return "00-{trace-id}-{span-id}-{flags}".
+     */
+    public String traceparent() {
+        return new StringBuilder(TRACEPARENT_LENGTH).append(VERSION).append('-').append(traceId).append('-')
+                .append(spanId).append('-').append(sampled ? "01" : "00").toString();
+    }
+
+    @Override
+    public String toString() {
+        return traceparent();
+    }
+
+    private static String newSpanId(ThreadLocalRandom random) {
+        return toHex(nonZero(random), new StringBuilder(16)).toString();
+    }
+
+    private static long nonZero(ThreadLocalRandom random) {
+        long value;
+        do {
+            value = random.nextLong();
+        } while (value == 0);
+        return value;
+    }
+
+    private static StringBuilder toHex(long value, StringBuilder sb) {
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            sb.append(Character.forDigit((int) (value >>> shift) & 0xf, 16));
+        }
+        return sb;
+    }
+
+    private static boolean isLowerHex(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Restores the previous context when closed.
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Starts a client span per {@link com.intuit.payments.http.Request} and decides which spans are kept:
+ *
+ * - Head sampling: a span is kept if its parent context is sampled, or, for a new trace, with the head sample
+ *   rate. The decision is propagated downstream in the "traceparent" sampled flag.
+ * - Tail sampling: a span that is not head sampled is still kept if it failed or took longer than the slow
+ *   threshold.
+ *
+ * A span that is not kept costs its ids and the "traceparent" header only; no {@link Span} is created.
+ *
+ * @author saung
+ * @since 5/28/18
+ */
+public class Tracer {
+    /** Logger instance */
+    private static final Logger LOG = LoggerFactory.getLogger(Tracer.class);
+
+    private final SpanSink sink;
+
+    private volatile double headSampleRate = 0.01;
+
+    private volatile long slowThresholdNanos = Long.MAX_VALUE;
+
+    private volatile boolean keepErrors = true;
+
+    private final LongAdder exported = new LongAdder();
+
+    /**
+     * Default constructor. By default 1% of new traces and all failed spans are kept.
+     *
+     * @param sink - a {@link SpanSink} to export kept spans.
+     */
+    public Tracer(SpanSink sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("sink must not be NULL");
+        }
+        this.sink = sink;
+    }
+
+    /**
+     * Sets the fraction of new traces that are head sampled.
+     *
+     * @param headSampleRate - a rate in [0, 1]. Default is 0.01.
+     * @return this instance.
+     */
+    public Tracer headSampleRate(double headSampleRate) {
+        if (headSampleRate < 0 || headSampleRate > 1) {
+            throw new IllegalArgumentException("headSampleRate must be in [0, 1]");
+        }
+        this.headSampleRate = headSampleRate;
+        return this;
+    }
+
+    /**
+     * Keeps spans that are not head sampled but take at least a given time.
+     *
+     * @param slowThresholdInMilliSec - the slow threshold. Default is off.
+     * @return this instance.
+     */
+    public Tracer keepSlowerThan(long slowThresholdInMilliSec) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdInMilliSec);
+        return this;
+    }
+
+    /**
+     * Keeps failed spans that are not head sampled.
+     *
+     * @param keepErrors - true to keep failed spans. Default is true.
+     * @return this instance.
+     */
+    public Tracer keepErrors(boolean keepErrors) {
+        this.keepErrors = keepErrors;
+        return this;
+    }
+
+    /**
+     * Starts a client span.
+     *
+     * @param parent - the caller's context; null to start a new trace.
+     * @return the context of the client span, to be propagated in the "traceparent" header.
+     */
+    public TraceContext start(TraceContext parent) {
+        if (parent == null) {
+            double rate = headSampleRate;
+            return TraceContext.newRoot(rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate));
+        }
+        return parent.newChild(parent.isSampled());
+    }
+
+    /**
+     * Ends a client span and exports it if it is kept.
+     *
+     * @param context - the context returned by {@link #start(TraceContext)}.
+     * @param name - span name, i.e. the Hystrix command name.
+     * @param commandGroup - Hystrix command group name.
+     * @param url - request URL.
+     * @param httpVerb - Http verb name.
+     * @param status - Http status code; -1 if no response was received.
+     * @param outcome - outcome of the request.
+     * @param error - true if the request failed.
+     * @param startEpochMillis - start time in milliseconds since the epoch.
+     * @param durationNanos - duration in nanoseconds.
+     */
+    public void end(TraceContext context, String name, String commandGroup, String url, String httpVerb, int status,
+                    String outcome, boolean error, long startEpochMillis, long durationNanos) {
+        boolean tailSampled;
+        if (context.isSampled()) {
+            tailSampled = false;
+        } else if ((error && keepErrors) || durationNanos >= slowThresholdNanos) {
+            tailSampled = true;
+        } else {
+            return;
+        }
+        try {
+            sink.export(new Span(context, name, commandGroup, url, httpVerb, status, outcome, error,
+                    TimeUnit.MILLISECONDS.toMicros(startEpochMillis), durationNanos, tailSampled));
+            exported.increment();
+        } catch (Exception e) {
+            LOG.warn("Failed to export a span. span_id={}", context.spanId(), e);
+        }
+    }
+
+    /**
+     * @return number of spans exported.
+     */
+    public long exportedCount() {
+        return exported.sum();
+    }
+}
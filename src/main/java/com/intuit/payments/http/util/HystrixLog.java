@@ -5,67 +5,35 @@
  */
 package com.intuit.payments.http.util;
 
-import com.netflix.hystrix.HystrixInvokableInfo;
-import com.netflix.hystrix.HystrixRequestLog;
-
 /**
  * This class implements logging all Hystrix command details including useful Http headers.
+ * See {@link RequestSummary} for the structured form.
 
  * @author saung
  * @since 6/5/17
  */
 public class HystrixLog {
-    /** Circuit breaker status */
-    private static final String YES = "yes";
-    private static final String NO = "no";
 
     /**
-     * Iterates all executed Hystrix commands and logs each command metrics.
+     * Summarizes all executed Hystrix commands of the current request, grouped by command key.
+     * Commands served from the Hystrix request cache are counted as "{command}_cache_hits" and "num_cache_hits".
+     * "code_exe_time" is the processing time minus the critical path time of the commands, so parallel commands
+     * are not subtracted twice.
      *
      * @param responseCode - Http response code.
      * @param processingTime - the total time to process the request.
      * @return a StringBuilder with Hystrix command details.
      */
     public static StringBuilder logMetrics(int responseCode, long processingTime) {
-        final StringBuilder stringBuilder = new StringBuilder("type=hystrix;");
-        stringBuilder.append("response_code=").append(responseCode).append(";")
-                .append("processing_time=").append(String.valueOf(processingTime)).append(";");
-        final HystrixRequestLog hystrixRequestLog = HystrixRequestLog.getCurrentRequest();
-        if (hystrixRequestLog == null) {
+        final StringBuilder stringBuilder = new StringBuilder(256).append("type=hystrix;");
+        stringBuilder.append("response_code=").append(responseCode).append(';')
+                .append("processing_time=").append(processingTime).append(';');
+        final RequestSummary summary = RequestSummary.current();
+        if (summary == null) {
             stringBuilder.append("reason=HystrixRequestLog.getCurrentRequest() returned null. Try HystrixRequestContext.initializeContext()");
             return stringBuilder;
         }
-        long dependencyExeTime = 0;
-        boolean isAllSuccessful = true;
-        for (HystrixInvokableInfo<?> command : hystrixRequestLog.getAllExecutedCommands()) {
-            String cmdName = command.getCommandKey().name();
-            if (command.getExecutionTimeInMilliseconds() > 0 ) {
-                dependencyExeTime += command.getExecutionTimeInMilliseconds();
-            }
-            stringBuilder.append(cmdName).append("_is_success=")
-                    .append((command.isSuccessfulExecution() ? YES : NO)).append(";")
-                    .append(cmdName).append("_is_timeout=")
-                    .append((command.isResponseTimedOut() ? YES : NO)).append(";")
-                    .append(cmdName).append("_is_cb_open=")
-                    .append((command.isCircuitBreakerOpen() ? YES : NO)).append(";")
-                    .append(cmdName).append("_exe_time=")
-                    .append(String.valueOf(command.getExecutionTimeInMilliseconds())).append(";");
-
-            if (isAllSuccessful && !command.isSuccessfulExecution()) {
-                isAllSuccessful = false;
-            }
-
-            Throwable failedException = command.getFailedExecutionException();
-            if (failedException != null) {
-                stringBuilder.append(cmdName).append("_failed_exception=")
-                        .append(failedException.getClass()).append(";");
-            }
-        } // end for
-        stringBuilder.append("num_dependencies=").append(hystrixRequestLog.getAllExecutedCommands().size()).append(";")
-                .append("is_all_dep_successful=").append(isAllSuccessful).append(";")
-                .append("dependencies_exe_time=").append(String.valueOf(dependencyExeTime)).append(";")
-                .append("code_exe_time=").append(String.valueOf(processingTime - dependencyExeTime)).append(";");
-
-        return stringBuilder;
+        return summary.appendTo(stringBuilder)
+                .append("code_exe_time=").append(processingTime - summary.criticalPathTime()).append(';');
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,378 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.util;
+
+import com.netflix.hystrix.HystrixInvokableInfo;
+import com.netflix.hystrix.HystrixRequestLog;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An aggregated summary of all Hystrix commands executed in one request context, built in a single pass over
+ * {@link HystrixRequestLog#getAllExecutedCommands()}. Commands are grouped by command key with count, sum, max
+ * and percentiles of their execution times. The critical path time is the union of the command run intervals,
+ * so parallel fan-out calls are not counted twice.
+ *
+ * @author saung
+ * @since 5/14/18
+ */
+public class RequestSummary {
+    /** Circuit breaker status */
+    private static final String YES = "yes";
+    private static final String NO = "no";
+
+    /** Command summaries by command key in first-execution order */
+    private final Map<String, CommandSummary> commands;
+
+    private final int numDependencies;
+
+    private final int numCacheHits;
+
+    private final boolean isAllSuccessful;
+
+    private final long dependenciesExeTime;
+
+    private final long criticalPathTime;
+
+    /**
+     * Summarizes the commands executed in the current request context.
+     *
+     * @return a {@link RequestSummary}; null if {@link HystrixRequestLog#getCurrentRequest()} returned null.
+     */
+    public static RequestSummary current() {
+        HystrixRequestLog requestLog = HystrixRequestLog.getCurrentRequest();
+        return requestLog == null ? null : of(requestLog.getAllExecutedCommands());
+    }
+
+    /**
+     * Summarizes a given collection of executed commands.
+     *
+     * @param executedCommands - commands from {@link HystrixRequestLog#getAllExecutedCommands()}.
+     * @return a {@link RequestSummary}.
+     */
+    public static RequestSummary of(Collection<HystrixInvokableInfo<?>> executedCommands) {
+        return new RequestSummary(executedCommands);
+    }
+
+    private RequestSummary(Collection<HystrixInvokableInfo<?>> executedCommands) {
+        Map<String, CommandSummary> byKey = new LinkedHashMap<>();
+        /** Run intervals in nanoseconds for the critical path */
+        long[] starts = new long[8];
+        long[] ends = new long[8];
+        int numIntervals = 0;
+        int count = 0;
+        int cacheHits = 0;
+        boolean allSuccessful = true;
+        long exeTime = 0;
+        for (HystrixInvokableInfo<?> command : executedCommands) {
+            count++;
+            String cmdName = command.getCommandKey().name();
+            CommandSummary summary = byKey.get(cmdName);
+            if (summary == null) {
+                summary = new CommandSummary(cmdName);
+                byKey.put(cmdName, summary);
+            }
+            summary.add(command);
+
+            int exeTimeInMilliSec = command.getExecutionTimeInMilliseconds();
+            if (exeTimeInMilliSec > 0) {
+                exeTime += exeTimeInMilliSec;
+            }
+            if (command.isResponseFromCache()) {
+                cacheHits++;
+            }
+            if (!command.isSuccessfulExecution()) {
+                allSuccessful = false;
+            }
+
+            long start = command.getCommandRunStartTimeInNanos();
+            if (start > 0 && exeTimeInMilliSec >= 0 && !command.isResponseFromCache()) {
+                if (numIntervals == starts.length) {
+                    starts = Arrays.copyOf(starts, numIntervals * 2);
+                    ends = Arrays.copyOf(ends, numIntervals * 2);
+                }
+                starts[numIntervals] = start;
+                ends[numIntervals] = start + TimeUnit.MILLISECONDS.toNanos(exeTimeInMilliSec);
+                numIntervals++;
+            }
+        }
+        this.commands = byKey;
+        this.numDependencies = count;
+        this.numCacheHits = cacheHits;
+        this.isAllSuccessful = allSuccessful;
+        this.dependenciesExeTime = exeTime;
+        this.criticalPathTime = TimeUnit.NANOSECONDS.toMillis(unionLength(starts, ends, numIntervals));
+    }
+
+    /**
+     * Computes the total length of the union of intervals.
+     */
+    private static long unionLength(long[] starts, long[] ends, int n) {
+        /** insertion sort by start; n is the number of dependencies of one request */
+        for (int i = 1; i < n; i++) {
+            long start = starts[i];
+            long end = ends[i];
+            int j = i - 1;
+            while (j >= 0 && starts[j] > start) {
+                starts[j + 1] = starts[j];
+                ends[j + 1] = ends[j];
+                j--;
+            }
+            starts[j + 1] = start;
+            ends[j + 1] = end;
+        }
+        long total = 0;
+        long coveredUntil = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            long start = Math.max(starts[i], coveredUntil);
+            if (ends[i] > start) {
+                total += ends[i] - start;
+                coveredUntil = ends[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return summaries per command key in first-execution order.
+     */
+    public Collection<CommandSummary> commands() {
+        return Collections.unmodifiableCollection(commands.values());
+    }
+
+    /**
+     * @param commandKey - Hystrix command name.
+     * @return the summary of the command key; null if it was not executed.
+     */
+    public CommandSummary command(String commandKey) {
+        return commands.get(commandKey);
+    }
+
+    /**
+     * @return number of executed commands including cache hits.
+     */
+    public int numDependencies() {
+        return numDependencies;
+    }
+
+    /**
+     * @return number of responses served from the Hystrix request cache.
+     */
+    public int numCacheHits() {
+        return numCacheHits;
+    }
+
+    /**
+     * @return true if all commands were successful; false otherwise.
+     */
+    public boolean isAllSuccessful() {
+        return isAllSuccessful;
+    }
+
+    /**
+     * @return sum of all command execution times in milliseconds.
+     */
+    public long dependenciesExeTime() {
+        return dependenciesExeTime;
+    }
+
+    /**
+     * @return milliseconds during which at least one command was running.
+     */
+    public long criticalPathTime() {
+        return criticalPathTime;
+    }
+
+    /**
+     * Appends the summary in "key=value;" format.
+     *
+     * @param sb - a StringBuilder to be appended.
+     * @return the given StringBuilder.
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        for (CommandSummary command : commands.values()) {
+            command.appendTo(sb);
+        }
+        sb.append("num_dependencies=").append(numDependencies).append(';');
+        if (numCacheHits > 0) {
+            sb.append("num_cache_hits=").append(numCacheHits).append(';');
+        }
+        sb.append("is_all_dep_successful=").append(isAllSuccessful).append(';')
+                .append("dependencies_exe_time=").append(dependenciesExeTime).append(';')
+                .append("critical_path_time=").append(criticalPathTime).append(';');
+        return sb;
+    }
+
+    /**
+     * Aggregated executions of one command key.
+     */
+    public static class CommandSummary {
+        private final String name;
+
+        /** Execution times in milliseconds of the commands that ran */
+        private int[] exeTimes = new int[4];
+        private int numExeTimes;
+        /** Whether {@link #exeTimes} is sorted; set by {@link #percentile(double)} and cleared by each add */
+        private boolean exeTimesSorted;
+
+        private int count;
+        private int successCount;
+        private int timeoutCount;
+        private int circuitOpenCount;
+        private int cacheHitCount;
+        private long sumExeTime;
+        private int maxExeTime;
+        private Class<? extends Throwable> failedException;
+
+        private CommandSummary(String name) {
+            this.name = name;
+        }
+
+        private void add(HystrixInvokableInfo<?> command) {
+            count++;
+            if (command.isSuccessfulExecution()) {
+                successCount++;
+            }
+            if (command.isResponseTimedOut()) {
+                timeoutCount++;
+            }
+            if (command.isCircuitBreakerOpen()) {
+                circuitOpenCount++;
+            }
+            if (command.isResponseFromCache()) {
+                cacheHitCount++;
+            }
+            int exeTime = command.getExecutionTimeInMilliseconds();
+            if (exeTime >= 0) {
+                if (numExeTimes == exeTimes.length) {
+                    exeTimes = Arrays.copyOf(exeTimes, numExeTimes * 2);
+                }
+                exeTimes[numExeTimes++] = exeTime;
+                exeTimesSorted = false;
+                sumExeTime += exeTime;
+                maxExeTime = Math.max(maxExeTime, exeTime);
+            }
+            Throwable failed = command.getFailedExecutionException();
+            if (failed != null) {
+                failedException = failed.getClass();
+            }
+        }
+
+        /**
+         * @return Hystrix command name.
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return number of executions including cache hits.
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * @return number of successful executions.
+         */
+        public int successCount() {
+            return successCount;
+        }
+
+        /**
+         * @return number of timed out executions.
+         */
+        public int timeoutCount() {
+            return timeoutCount;
+        }
+
+        /**
+         * @return number of executions while the circuit breaker was open.
+         */
+        public int circuitOpenCount() {
+            return circuitOpenCount;
+        }
+
+        /**
+         * @return number of responses served from the Hystrix request cache.
+         */
+        public int cacheHitCount() {
+            return cacheHitCount;
+        }
+
+        /**
+         * @return sum of execution times in milliseconds.
+         */
+        public long sumExeTime() {
+            return sumExeTime;
+        }
+
+        /**
+         * @return maximum execution time in milliseconds.
+         */
+        public int maxExeTime() {
+            return maxExeTime;
+        }
+
+        /**
+         * Gets a nearest-rank percentile of the execution times. The times are sorted in place on the first call
+         * after a command is added, so further percentiles are read without sorting again.
+         *
+         * @param percentile - a percentile in (0, 100].
+         * @return execution time in milliseconds; 0 if no command ran.
+         */
+        public int percentile(double percentile) {
+            if (numExeTimes == 0) {
+                return 0;
+            }
+            if (!exeTimesSorted) {
+                Arrays.sort(exeTimes, 0, numExeTimes);
+                exeTimesSorted = true;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * numExeTimes);
+            return exeTimes[Math.min(numExeTimes, Math.max(1, rank)) - 1];
+        }
+
+        /**
+         * @return class of the last failed execution exception; null if none failed.
+         */
+        public Class<? extends Throwable> failedException() {
+            return failedException;
+        }
+
+        /**
+         * Appends the command summary in "{command}_key=value;" format. Max and percentiles are appended only
+         * for a command key executed more than once.
+         *
+         * @param sb - a StringBuilder to be appended.
+         * @return the given StringBuilder.
+         */
+        public StringBuilder appendTo(StringBuilder sb) {
+            sb.append(name).append("_count=").append(count).append(';')
+                    .append(name).append("_is_success=").append(successCount == count ? YES : NO).append(';')
+                    .append(name).append("_is_timeout=").append(timeoutCount > 0 ? YES : NO).append(';')
+                    .append(name).append("_is_cb_open=").append(circuitOpenCount > 0 ? YES : NO).append(';')
+                    .append(name).append("_exe_time=").append(sumExeTime).append(';');
+            if (count > 1) {
+                sb.append(name).append("_max_exe_time=").append(maxExeTime).append(';')
+                        .append(name).append("_p50_exe_time=").append(percentile(50)).append(';')
+                        .append(name).append("_p99_exe_time=").append(percentile(99)).append(';');
+            }
+            if (cacheHitCount > 0) {
+                sb.append(name).append("_cache_hits=").append(cacheHitCount).append(';');
+            }
+            if (failedException != null) {
+                sb.append(name).append("_failed_exception=").append(failedException).append(';');
+            }
+            return sb;
+        }
+    }
+}
@@ -7,6 +7,7 @@ package com.intuit.payments.http.util;
 
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
 import org.apache.http.NameValuePair;
 import org.apache.http.message.BasicNameValuePair;
 
@@ -151,6 +152,18 @@ public class Util {
         return gson.fromJson(jsonStr, classOfT);
     }
 
+    /**
+     * Reads the next JSON value of a reader as instance of <T>.
+     *
+     * @param reader - a JsonReader positioned before a value.
+     * @param classOfT -  a class of <T>.
+     * @param <T> Generic type T to be serialized from JSON.
+     * @return T instance.
+     */
+    public static <T> T fromJson(JsonReader reader, Class<T> classOfT) {
+        return gson.fromJson(reader, classOfT);
+    }
+
     /**
      * Checks whether a string is null or empty.
      *
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.jfr;
+
+import com.intuit.payments.http.metrics.Phase;
+import com.intuit.payments.http.metrics.PhaseTimings;
+
+/**
+ * Java Flight Recorder event of one Http request execution in {@link com.intuit.payments.http.Request}.
+ *
+ * JDK 11+ version packaged in META-INF/versions/11 of the multi-release jar. It records a
+ * {@link JfrHttpRequestEvent} named "com.intuit.payments.http.HttpRequest" when the request takes longer than
+ * 20 ms. It must keep the same public API as the Java 8 no-op version in src/main/java.
+ *
+ * @author saung
+ * @since 5/21/18
+ */
+public class HttpRequestEvent {
+    /** Outcomes */
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+    public static final String TIMEOUT = "timeout";
+    public static final String POOL_EXHAUSTED = "pool_exhausted";
+    public static final String ERROR = "error";
+
+    private final JfrHttpRequestEvent event = new JfrHttpRequestEvent();
+
+    /**
+     * Starts the timing of the event.
+     */
+    public void begin() {
+        event.begin();
+    }
+
+    /**
+     * Ends the timing of the event.
+     */
+    public void end() {
+        event.end();
+    }
+
+    /**
+     * @return true if the event is enabled and lasted longer than its threshold.
+     */
+    public boolean shouldCommit() {
+        return event.shouldCommit();
+    }
+
+    /**
+     * Writes the event to the flight recorder.
+     */
+    public void commit() {
+        event.commit();
+    }
+
+    /**
+     * Sets the request fields.
+     *
+     * @param commandKey - Hystrix command name.
+     * @param commandGroup - Hystrix command group name.
+     * @param host - target host name.
+     * @param httpVerb - Http verb name.
+     * @return this instance.
+     */
+    public HttpRequestEvent request(String commandKey, String commandGroup, String host, String httpVerb) {
+        event.commandKey = commandKey;
+        event.commandGroup = commandGroup;
+        event.host = host;
+        event.httpVerb = httpVerb;
+        return this;
+    }
+
+    /**
+     * Sets the response fields.
+     *
+     * @param status - Http status code; -1 if no response was received.
+     * @param requestBytes - request body bytes.
+     * @param responseBytes - response body bytes.
+     * @param outcome - one of the outcome constants of this class.
+     * @return this instance.
+     */
+    public HttpRequestEvent response(int status, long requestBytes, long responseBytes, String outcome) {
+        event.status = status;
+        event.requestBytes = requestBytes;
+        event.responseBytes = responseBytes;
+        event.outcome = outcome;
+        return this;
+    }
+
+    /**
+     * Sets the phase durations.
+     *
+     * @param timings - {@link PhaseTimings} of the request.
+     * @return this instance.
+     */
+    public HttpRequestEvent phases(PhaseTimings timings) {
+        event.poolLease = timings.nanos(Phase.POOL_LEASE);
+        event.connect = timings.nanos(Phase.CONNECT);
+        event.tls = timings.nanos(Phase.TLS);
+        event.timeToFirstByte = timings.nanos(Phase.TIME_TO_FIRST_BYTE);
+        event.bodyRead = timings.nanos(Phase.BODY_READ);
+        return this;
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The jdk.jfr.Event behind {@link FallbackEvent}. It exists in META-INF/versions/11 only, so it must stay
+ * package-private to keep the public API of the multi-release jar the same as the Java 8 version.
+ *
+ * @author saung
+ * @since 5/21/18
+ */
+@Name("com.intuit.payments.http.Fallback")
+@Label("HC Fallback")
+@Description("Fallback of a Hystrix command that was short-circuited, rejected, shed, timed out or failed")
+@Category({ "HC", "Http" })
+@StackTrace(false)
+class JfrFallbackEvent extends Event {
+    @Label("Command Key")
+    String commandKey;
+
+    @Label("Command Group")
+    String commandGroup;
+
+    @Label("Host")
+    String host;
+
+    @Label("Cause")
+    String cause;
+
+    @Label("Resolution")
+    String resolution;
+
+    @Label("Exception")
+    String exception;
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * The jdk.jfr.Event behind {@link HttpRequestEvent}. It exists in META-INF/versions/11 only, so it must stay
+ * package-private to keep the public API of the multi-release jar the same as the Java 8 version.
+ *
+ * @author saung
+ * @since 5/21/18
+ */
+@Name("com.intuit.payments.http.HttpRequest")
+@Label("HC Http Request")
+@Description("Http request executed by a Hystrix command")
+@Category({ "HC", "Http" })
+@Threshold("20 ms")
+@StackTrace(false)
+class JfrHttpRequestEvent extends Event {
+    @Label("Command Key")
+    String commandKey;
+
+    @Label("Command Group")
+    String commandGroup;
+
+    @Label("Host")
+    String host;
+
+    @Label("Http Verb")
+    String httpVerb;
+
+    @Label("Status")
+    int status;
+
+    @Label("Request Bytes")
+    @DataAmount(DataAmount.BYTES)
+    long requestBytes;
+
+    @Label("Response Bytes")
+    @DataAmount(DataAmount.BYTES)
+    long responseBytes;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Pool Lease")
+    @Timespan(Timespan.NANOSECONDS)
+    long poolLease;
+
+    @Label("Connect")
+    @Timespan(Timespan.NANOSECONDS)
+    long connect;
+
+    @Label("TLS Handshake")
+    @Timespan(Timespan.NANOSECONDS)
+    long tls;
+
+    @Label("Time To First Byte")
+    @Timespan(Timespan.NANOSECONDS)
+    long timeToFirstByte;
+
+    @Label("Body Read")
+    @Timespan(Timespan.NANOSECONDS)
+    long bodyRead;
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http;
+
+import com.intuit.payments.http.exception.HCResponseTooLargeException;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for {@link BodyBuffer}.
+ *
+ * @author saung
+ * @since 6/25/18
+ */
+public class BodyBufferTest {
+    @Test
+    public void read_in_memory() throws Exception {
+        BodyBuffer body = BodyBuffer.read(new StringEntity("{\"name\":\"é\"}", ContentType.APPLICATION_JSON),
+                1024, 2048);
+
+        assertEquals("{\"name\":\"é\"}", body.text);
+        assertNull(body.file);
+        assertEquals(13, body.length);
+    }
+
+    @Test
+    public void read_spilled() throws Exception {
+        String json = json(20000);
+        BodyBuffer body = BodyBuffer.read(new StringEntity(json, ContentType.APPLICATION_JSON), 1024, 0);
+        try {
+            assertNull(body.text);
+            assertEquals(json.length(), body.length);
+            assertEquals(json, new String(Files.readAllBytes(body.file), StandardCharsets.UTF_8));
+        } finally {
+            Files.delete(body.file);
+        }
+    }
+
+    @Test
+    public void read_content_length_too_large() throws Exception {
+        try {
+            BodyBuffer.read(new StringEntity(json(5000), ContentType.APPLICATION_JSON), 0, 4096);
+            fail("Expected the body to be rejected");
+        } catch (HCResponseTooLargeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("5000 bytes"));
+        }
+    }
+
+    @Test(expected = HCResponseTooLargeException.class)
+    public void read_chunked_too_large() throws Exception {
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream(json(50000).getBytes(StandardCharsets.UTF_8)));
+        entity.setContentLength(-1);
+
+        BodyBuffer.read(entity, 1024, 20000);
+    }
+
+    @Test
+    public void read_spilled_failure_deletes_file() throws Exception {
+        byte[] data = json(50000).getBytes(StandardCharsets.UTF_8);
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new InputStream() {
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                if (position == 20000) {
+                    throw new IOException("Connection reset");
+                }
+                return data[position++];
+            }
+        });
+        long before = spillFileCount();
+        try {
+            BodyBuffer.read(entity, 1024, 0);
+            fail("Expected the read to fail");
+        } catch (IOException e) {
+            assertEquals("Connection reset", e.getMessage());
+        }
+        assertEquals(before, spillFileCount());
+    }
+
+    /**
+     * @return number of spilled body temp files. Package-level access for other tests.
+     */
+    static long spillFileCount() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("hc-body-")).count();
+        }
+    }
+
+    private static String json(int bytes) {
+        StringBuilder sb = new StringBuilder("{\"data\":\"");
+        while (sb.length() < bytes - 2) {
+            sb.append('x');
+        }
+        return sb.append("\"}").toString();
+    }
+}
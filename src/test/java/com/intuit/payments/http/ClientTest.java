@@ -8,7 +8,10 @@ package com.intuit.payments.http;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author saung
@@ -70,4 +73,25 @@ public class ClientTest {
         request = client.withAuthHeader(request, "ticket-v1-123", "111");
         assertNotNull(request);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void isCircuitOpen() {
+        assertFalse(client.isCircuitOpen("NeverCalledCmd"));
+    }
+
+    @Test
+    public void rateLimit() {
+        assertNull(client.rateLimiter("LimitedGroup"));
+        assertNotNull(client.rateLimit("LimitedGroup", 10, 5, 100));
+        assertNotNull(client.rateLimiter("LimitedGroup"));
+    }
+
+    @Test
+    public void samplePoolStats() {
+        assertNull(client.poolStatsSampler());
+        assertNotNull(client.samplePoolStats(1000, 500, null));
+        assertTrue(client.poolStatsSampler().isRunning());
+        client.stopPoolStats();
+        assertNull(client.poolStatsSampler());
+    }
+}
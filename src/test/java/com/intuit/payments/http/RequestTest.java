@@ -0,0 +1,649 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http;
+
+import com.intuit.payments.http.body.MultipartBody;
+import com.intuit.payments.http.exception.HCCircuitOpenException;
+import com.intuit.payments.http.exception.HCLoadShedException;
+import com.intuit.payments.http.exception.HCPoolExhaustedException;
+import com.intuit.payments.http.exception.HCRateLimitedException;
+import com.intuit.payments.http.metrics.MetricsRegistry;
+import com.intuit.payments.http.metrics.Phase;
+import com.intuit.payments.http.metrics.RequestMetrics;
+import com.intuit.payments.http.pool.RouteStats;
+import com.intuit.payments.http.shedding.LoadShedder;
+import com.intuit.payments.http.shedding.Priority;
+import com.netflix.config.ConfigurationManager;
+import com.netflix.hystrix.exception.HystrixRuntimeException;
+import com.netflix.hystrix.strategy.concurrency.HystrixRequestContext;
+import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import com.intuit.payments.http.testing.LatencyDistribution;
+import com.intuit.payments.http.testing.StubServer;
+import org.junit.Test;
+import rx.observers.TestSubscriber;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for {@link Request}.
+ *
+ * @author saung
+ * @since 3/12/18
+ */
+public class RequestTest {
+    private Client client = new Client("http://localhost");
+
+    @Test
+    public void getCacheKey() {
+        HystrixRequestContext context = HystrixRequestContext.initializeContext();
+        try {
+            Request request = client.Request("GetCmd", "TestGroup", "/v1/users/{0}", 123).GET()
+                    .header("Company-Id", "42")
+                    .header("X-Other", "ignored")
+                    .requestCache("Company-Id");
+            assertEquals("GET http://localhost/v1/users/123;Company-Id=42", request.getCacheKey());
+        } finally {
+            context.shutdown();
+        }
+    }
+
+    @Test
+    public void getCacheKey_lazy_authorization() {
+        HystrixRequestContext context = HystrixRequestContext.initializeContext();
+        try {
+            Request userA = new Client("http://localhost").customAuth(x -> "Bearer user-a")
+                    .Request("GetCmd", "TestGroup", "/v1/users").GET().requestCache("Authorization");
+            Request userB = new Client("http://localhost").customAuth(x -> "Bearer user-b")
+                    .Request("GetCmd", "TestGroup", "/v1/users").GET().requestCache("Authorization");
+            assertEquals("GET http://localhost/v1/users;Authorization=Bearer user-a", userA.getCacheKey());
+            assertNotEquals(userA.getCacheKey(), userB.getCacheKey());
+        } finally {
+            context.shutdown();
+        }
+    }
+
+    @Test
+    public void getCacheKey_disabled() {
+        HystrixRequestContext context = HystrixRequestContext.initializeContext();
+        try {
+            assertNull(client.Request("GetCmd", "TestGroup", "/v1/users").GET().getCacheKey());
+            assertNull(client.Request("PostCmd", "TestGroup", "/v1/users").POST().requestCache().getCacheKey());
+        } finally {
+            context.shutdown();
+        }
+        assertNull(client.Request("GetCmd", "TestGroup", "/v1/users").GET().requestCache().getCacheKey());
+    }
+
+    @Test
+    public void getCacheKey_stream_body() {
+        HystrixRequestContext context = HystrixRequestContext.initializeContext();
+        try {
+            Request streamed = client.Request("GetCmd", "TestGroup", "/v1/users").GET().requestCache();
+            streamed.stream(Map.class);
+            assertNull(streamed.getCacheKey());
+            assertNull(client.Request("GetCmd", "TestGroup", "/v1/users").GET().requestCache().streamBody(0)
+                    .getCacheKey());
+        } finally {
+            context.shutdown();
+        }
+    }
+
+    @Test
+    public void getCacheKey_spill_to_disk() {
+        HystrixRequestContext context = HystrixRequestContext.initializeContext();
+        try {
+            assertNull(client.Request("GetCmd", "TestGroup", "/v1/users").GET().requestCache().spillToDisk(1024)
+                    .getCacheKey());
+            assertEquals("GET http://localhost/v1/users", client.Request("GetCmd", "TestGroup", "/v1/users").GET()
+                    .requestCache().spillToDisk(0).getCacheKey());
+        } finally {
+            context.shutdown();
+        }
+    }
+
+    @Test
+    public void getFallback_circuit_open() {
+        ConfigurationManager.getConfigInstance()
+                .setProperty("hystrix.command.ForceOpenCmd.circuitBreaker.forceOpen", true);
+        Request request = client.Request("ForceOpenCmd", "TestGroup", "/v1/users").GET();
+        try {
+            request.execute();
+            fail("Expected short-circuited request to fail");
+        } catch (HystrixRuntimeException e) {
+            assertSame(HCCircuitOpenException.INSTANCE, e.getFallbackException());
+        }
+        assertTrue(request.isResponseShortCircuited());
+    }
+
+    @Test
+    public void getFallback_circuit_open_with_fallback() {
+        ConfigurationManager.getConfigInstance()
+                .setProperty("hystrix.command.ForceOpenFallbackCmd.circuitBreaker.forceOpen", true);
+        Response response = client.Request("ForceOpenFallbackCmd", "TestGroup", "/v1/users").GET()
+                .fallback(x -> new Response(304, "Not Modified", "{}", new Header[] { }))
+                .execute();
+        assertEquals(304, response.statusCode());
+    }
+
+    @Test
+    public void getFallback_stale_if_error() {
+        ConfigurationManager.getConfigInstance()
+                .setProperty("hystrix.command.ForceOpenStaleCmd.circuitBreaker.forceOpen", true);
+        Client staleClient = new Client("http://localhost").staleIfError(10, 60000);
+        Request request = staleClient.Request("ForceOpenStaleCmd", "TestGroup", "/v1/users").GET();
+        staleClient.staleResponseCache().put(request.staleCacheKey(), new Response(200, "OK", "{}", new Header[] { }));
+        Response response = request.execute();
+        assertEquals(200, response.statusCode());
+        assertTrue(response.isStale());
+        assertEquals(1, staleClient.staleResponseCache().hitCount());
+    }
+
+    @Test
+    public void staleCacheKey_per_user() {
+        Client staleClient = new Client("http://localhost").staleIfError(10, 60000, "Company-Id");
+        String userA = staleClient.Request("StaleKeyCmd", "TestGroup", "/v1/me").GET()
+                .header("Authorization", "Bearer user-a").header("Company-Id", "1").staleCacheKey();
+
+        assertEquals(userA, staleClient.Request("StaleKeyCmd", "TestGroup", "/v1/me").GET()
+                .header("Authorization", "Bearer user-a").header("Company-Id", "1").staleCacheKey());
+        assertNotEquals(userA, staleClient.Request("StaleKeyCmd", "TestGroup", "/v1/me").GET()
+                .header("Authorization", "Bearer user-b").header("Company-Id", "1").staleCacheKey());
+        assertNotEquals(userA, staleClient.Request("StaleKeyCmd", "TestGroup", "/v1/me").GET()
+                .header("Authorization", "Bearer user-a").header("Company-Id", "2").staleCacheKey());
+        assertNotEquals(userA, staleClient.Request("OtherKeyCmd", "TestGroup", "/v1/me").GET()
+                .header("Authorization", "Bearer user-a").header("Company-Id", "1").staleCacheKey());
+    }
+
+    @Test
+    public void getFallback_stale_if_error_per_user() {
+        StubServer server = new StubServer().start();
+        try {
+            Client staleClient = new Client(server.baseUrl()).staleIfError(10, 60000, "Company-Id");
+            Response userA = staleClient.Request("StalePerUserCmd", "StaleGroup", "/v1/me").GET()
+                    .header("Authorization", "Bearer user-a").header("Company-Id", "1").execute();
+            assertEquals(200, userA.statusCode());
+            assertEquals(1, staleClient.staleResponseCache().size());
+
+            server.stub("/", new StubServer.Behavior().status(500, 1));
+            for (String[] other : new String[][] {{"Bearer user-b", "1"}, {"Bearer user-a", "2"}}) {
+                try {
+                    staleClient.Request("StalePerUserCmd", "StaleGroup", "/v1/me").GET()
+                            .header("Authorization", other[0]).header("Company-Id", other[1]).execute();
+                    fail("Expected no stale response of another user or company");
+                } catch (HystrixRuntimeException e) {
+                    assertEquals(0, staleClient.staleResponseCache().hitCount());
+                }
+            }
+            Response staleA = staleClient.Request("StalePerUserCmd", "StaleGroup", "/v1/me").GET()
+                    .header("Authorization", "Bearer user-a").header("Company-Id", "1").execute();
+            assertTrue(staleA.isStale());
+            assertEquals(userA.rawString(), staleA.rawString());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void toObservable_rate_limited_burst_keeps_circuit_closed() throws Exception {
+        ConfigurationManager.getConfigInstance()
+                .setProperty("hystrix.command.RateLimitedCmd.circuitBreaker.requestVolumeThreshold", 5);
+        ConfigurationManager.getConfigInstance()
+                .setProperty("hystrix.command.RateLimitedCmd.metrics.healthSnapshot.intervalInMilliseconds", 10);
+        Client limitedClient = new Client("http://localhost").rateLimit("RateLimitedGroup", 1, 1, 0);
+        RequestMetrics metrics = MetricsRegistry.getInstance().forUrl("RateLimitedCmd", "RateLimitedGroup",
+                "http://localhost");
+        long rateLimited = metrics.rateLimitedCount();
+        int throttled = 0;
+        for (int i = 0; i < 30; i++) {
+            try {
+                limitedClient.Request("RateLimitedCmd", "RateLimitedGroup", "/v1/users").GET().execute();
+            } catch (HCRateLimitedException e) {
+                assertSame(HCRateLimitedException.INSTANCE, e);
+                throttled++;
+            } catch (HystrixRuntimeException e) {
+                // the one permitted request may fail to connect
+            }
+        }
+        assertEquals(29, throttled);
+        assertEquals(rateLimited + 29, metrics.rateLimitedCount());
+        Thread.sleep(100);
+        assertFalse(limitedClient.isCircuitOpen("RateLimitedCmd"));
+    }
+
+    @Test
+    public void run_rate_limited_queued_keeps_rate() throws Exception {
+        ConfigurationManager.getConfigInstance().setProperty("hystrix.threadpool.QueuedRateLimitGroup.coreSize", 1);
+        ConfigurationManager.getConfigInstance()
+                .setProperty("hystrix.threadpool.QueuedRateLimitGroup.maxQueueSize", 20);
+        ConfigurationManager.getConfigInstance()
+                .setProperty("hystrix.threadpool.QueuedRateLimitGroup.queueSizeRejectionThreshold", 20);
+        StubServer server = new StubServer().start();
+        try {
+            Client limitedClient = new Client(server.baseUrl()).rateLimit("QueuedRateLimitGroup", 20, 1, 1000);
+            long start = System.nanoTime();
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[10];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = limitedClient.Request("QueuedRateLimitCmd", "QueuedRateLimitGroup", "/v1/users").GET()
+                        .executeAsync();
+            }
+            CompletableFuture.allOf(futures).get(5, TimeUnit.SECONDS);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(10, server.requestCount());
+            // 10 permits at 20 per second take 450 ms; waiting each permit again after the queue took over 2 s
+            assertTrue(elapsedMillis >= 400);
+            assertTrue("achieved rate too low: " + elapsedMillis + " ms", elapsedMillis < 1000);
+            RequestMetrics metrics = MetricsRegistry.getInstance().forUrl("QueuedRateLimitCmd",
+                    "QueuedRateLimitGroup", server.baseUrl());
+            assertTrue(metrics.permitWaitedCount() >= 5);
+            assertTrue(metrics.permitWaitNanos() > 0);
+            assertEquals(0, metrics.permitWaitingCount());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void phaseTimings_redirect() {
+        StubServer server = new StubServer()
+                .stub("/old", new StubServer.Behavior().latency(LatencyDistribution.fixed(300)).redirect("/new"))
+                .start();
+        try {
+            Response response = new Client(server.baseUrl()).Request("RedirectCmd", "TestGroup", "/old").GET()
+                    .execute();
+            assertEquals(200, response.statusCode());
+            assertEquals(2, server.requestCount());
+            assertTrue(response.phaseTimings().millis(Phase.POOL_LEASE) < 250);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void poolStats_redirect_to_other_host() {
+        StubServer target = new StubServer().start();
+        StubServer origin = new StubServer()
+                .stub("/old", new StubServer.Behavior().latency(LatencyDistribution.fixed(300))
+                        .redirect(target.baseUrl() + "/new"))
+                .start();
+        Client redirectClient = new Client(origin.baseUrl()).samplePoolStats(1000, 1000, null);
+        try {
+            Response response = redirectClient.Request("RedirectPoolCmd", "TestGroup", "/old").GET().execute();
+            assertEquals(200, response.statusCode());
+            for (RouteStats stats : redirectClient.poolStatsSampler().all()) {
+                long count = stats.leaseWaitSnapshot().getTotalCount();
+                if (stats.route().getTargetHost().getPort() == origin.port()) {
+                    assertEquals(1, count);
+                    assertTrue(stats.leaseWaitSnapshot().getMaxValue() < TimeUnit.MILLISECONDS.toMicros(250));
+                } else {
+                    assertEquals(0, count);
+                }
+            }
+        } finally {
+            redirectClient.stopPoolStats();
+            origin.stop();
+            target.stop();
+        }
+    }
+
+    @Test
+    public void spillToDisk_hystrix_timeout_deletes_file() throws Exception {
+        ConfigurationManager.getConfigInstance().setProperty(
+                "hystrix.command.SpillTimeoutCmd.execution.isolation.thread.timeoutInMilliseconds", 100);
+        ConfigurationManager.getConfigInstance().setProperty(
+                "hystrix.command.SpillTimeoutCmd.execution.isolation.thread.interruptOnTimeout", false);
+        StubServer server = new StubServer()
+                .stub("/", new StubServer.Behavior().latency(LatencyDistribution.fixed(300)).payloadBytes(8192))
+                .start();
+        long before = BodyBufferTest.spillFileCount();
+        try {
+            new Client(server.baseUrl()).Request("SpillTimeoutCmd", "TestGroup", "/v1/report").GET()
+                    .spillToDisk(1024).execute();
+            fail("Expected a Hystrix timeout");
+        } catch (HystrixRuntimeException e) {
+            assertEquals(HystrixRuntimeException.FailureType.TIMEOUT, e.getFailureType());
+        } finally {
+            // run() completes after the timeout
+            Thread.sleep(600);
+            server.stop();
+        }
+        assertEquals(before, BodyBufferTest.spillFileCount());
+    }
+
+    @Test
+    public void body_stream_closed_when_not_sent() {
+        ConfigurationManager.getConfigInstance()
+                .setProperty("hystrix.command.ForceOpenUploadCmd.circuitBreaker.forceOpen", true);
+        AtomicBoolean shortCircuitedClosed = new AtomicBoolean();
+        AtomicBoolean shedClosed = new AtomicBoolean();
+        try {
+            client.Request("ForceOpenUploadCmd", "TestGroup", "/v1/files").POST()
+                    .body(closeTracking(shortCircuitedClosed), 3).execute();
+            fail("Expected short-circuited request to fail");
+        } catch (HystrixRuntimeException e) {
+            assertTrue(shortCircuitedClosed.get());
+        }
+        try {
+            client.Request("ShedUploadCmd", "TestGroup", "/v1/files").POST()
+                    .priority(Priority.SHEDDABLE)
+                    .loadShedder(new LoadShedder(1).shedAt(Priority.SHEDDABLE, 0.0, 50))
+                    .body(new MultipartBody().part("file", "a.bin", closeTracking(shedClosed), 3, null))
+                    .execute();
+            fail("Expected sheddable request to be shed");
+        } catch (HCLoadShedException e) {
+            assertTrue(shedClosed.get());
+        }
+    }
+
+    private static InputStream closeTracking(AtomicBoolean closed) {
+        return new ByteArrayInputStream(new byte[] {1, 2, 3}) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+    }
+
+    @Test
+    public void toObservable_shed() {
+        LoadShedder shedder = new LoadShedder(1).shedAt(Priority.SHEDDABLE, 0.0, 50);
+        RequestMetrics metrics = MetricsRegistry.getInstance().forUrl("ShedCmd", "TestGroup", "http://localhost");
+        long shed = metrics.shedCount(Priority.SHEDDABLE);
+        Request request = client.Request("ShedCmd", "TestGroup", "/v1/users").GET()
+                .priority(Priority.SHEDDABLE)
+                .loadShedder(shedder);
+        try {
+            request.execute();
+            fail("Expected sheddable request to be shed");
+        } catch (HCLoadShedException e) {
+            assertSame(HCLoadShedException.INSTANCE, e);
+        }
+        assertEquals(1, shedder.shedCount(Priority.SHEDDABLE));
+        assertEquals(0, shedder.inFlight());
+        assertEquals(shed + 1, metrics.shedCount(Priority.SHEDDABLE));
+    }
+
+    @Test
+    public void toObservable_shed_with_fallback() {
+        LoadShedder shedder = new LoadShedder(1).shedAt(Priority.SHEDDABLE, 0.0, 50);
+        Response response = client.Request("ShedFallbackCmd", "TestGroup", "/v1/users").GET()
+                .priority(Priority.SHEDDABLE)
+                .loadShedder(shedder)
+                .fallback(x -> new Response(503, "Shed", "{}", new Header[] { }))
+                .execute();
+        assertEquals(503, response.statusCode());
+    }
+
+    @Test
+    public void connectionRequestTimeout_hystrix_timeout() {
+        Request request = new Client("http://localhost").connectionTimeoutInMilliSec(100).socketTimeoutInMilliSec(200)
+                .connectionRequestTimeoutInMilliSec(300)
+                .Request("LeaseTimeoutCmd", "TestGroup", "/v1/users").GET();
+        assertEquals(610, request.getProperties().executionTimeoutInMilliseconds().get().intValue());
+    }
+
+    @Test
+    public void run_pool_exhausted() throws Exception {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(1);
+        HttpClientConnection connection = connectionManager
+                .requestConnection(new HttpRoute(new HttpHost("localhost", 80)), null).get(1, TimeUnit.SECONDS);
+        RequestMetrics metrics = MetricsRegistry.getInstance().forUrl("PoolExhaustedCmd", "TestGroup",
+                "http://localhost/v1/users");
+        long exhausted = metrics.poolExhaustedCount();
+        try {
+            new Request(connectionManager, "http://localhost/v1/users", "PoolExhaustedCmd", "TestGroup",
+                    100, 100, 50).GET().execute();
+            fail("Expected the request to time out waiting for a pooled connection");
+        } catch (HystrixRuntimeException e) {
+            assertTrue(e.getCause() instanceof HCPoolExhaustedException);
+        } finally {
+            connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+            connectionManager.shutdown();
+        }
+        assertEquals(exhausted + 1, metrics.poolExhaustedCount());
+    }
+
+    @Test
+    public void executeAsync() throws Exception {
+        StubServer server = new StubServer().stub("/v1/users", new StubServer.Behavior().payloadBytes(64)).start();
+        try {
+            Client stubClient = new Client(server.baseUrl());
+
+            Response response = stubClient.Request("AsyncGetCmd", "AsyncGroup", "/v1/users/1").GET()
+                    .executeAsync().get(5, TimeUnit.SECONDS);
+            Map body = stubClient.Request("AsyncGetTypedCmd", "AsyncGroup", "/v1/users/1").GET()
+                    .executeAsync(Map.class).get(5, TimeUnit.SECONDS);
+
+            assertEquals(200, response.statusCode());
+            assertEquals(64, response.rawString().length());
+            assertTrue(body.toString(), body.containsKey("data"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void executeAsync_error() throws Exception {
+        StubServer server = new StubServer().stub("/v1/users", new StubServer.Behavior().status(500, 1)).start();
+        try {
+            CompletableFuture<Response> future = new Client(server.baseUrl())
+                    .Request("AsyncErrorCmd", "AsyncGroup", "/v1/users/1").GET().executeAsync();
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("Expected the request to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause().toString(), e.getCause() instanceof HystrixRuntimeException);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void executeAsync_cancel_aborts() throws Exception {
+        StubServer server = new StubServer()
+                .stub("/slow", new StubServer.Behavior().latency(LatencyDistribution.fixed(800)))
+                .stub("/fast", new StubServer.Behavior())
+                .start();
+        try {
+            Client stubClient = new Client(server.baseUrl()).maxConcurrentConnection(1)
+                    .connectionRequestTimeoutInMilliSec(300);
+            CompletableFuture<Response> slow = stubClient.Request("AsyncSlowCmd", "AsyncCancelGroup", "/slow").GET()
+                    .executeAsync();
+            Thread.sleep(100);
+
+            assertTrue(slow.cancel(true));
+            assertTrue(slow.isCancelled());
+            // the only pooled connection is free again without waiting for the slow response
+            Response response = stubClient.Request("AsyncFastCmd", "AsyncCancelGroup", "/fast").GET()
+                    .executeAsync().get(5, TimeUnit.SECONDS);
+            assertEquals(200, response.statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void stream() throws Exception {
+        StringBuilder array = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            array.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append('}');
+        }
+        StubServer server = new StubServer()
+                .stub("/array", new StubServer.Behavior().body(array.append(']').toString()))
+                .stub("/ndjson", new StubServer.Behavior().body("{\"id\":1}\n{\"id\":2}\n"))
+                .start();
+        try {
+            Client stubClient = new Client(server.baseUrl()).maxConcurrentConnection(1)
+                    .connectionRequestTimeoutInMilliSec(500);
+
+            List<Map> all = stubClient.Request("StreamArrayCmd", "StreamGroup", "/array").GET().stream(Map.class)
+                    .toList().toBlocking().single();
+            List<Map> ndjson = stubClient.Request("StreamNdjsonCmd", "StreamGroup", "/ndjson").GET()
+                    .stream(Map.class).toList().toBlocking().single();
+            // unsubscribing after 2 elements closes the only pooled connection instead of leaking it
+            List<Map> first = stubClient.Request("StreamTakeCmd", "StreamGroup", "/array").GET().stream(Map.class)
+                    .take(2).toList().toBlocking().single();
+            Response next = stubClient.Request("StreamNextCmd", "StreamGroup", "/ndjson").GET().execute();
+
+            assertEquals(1000, all.size());
+            assertEquals(999.0, all.get(999).get("id"));
+            assertEquals(2, ndjson.size());
+            assertEquals(2, first.size());
+            assertEquals(200, next.statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void stream_backpressure() throws Exception {
+        StubServer server = new StubServer()
+                .stub("/ndjson", new StubServer.Behavior().body("{\"id\":1}\n{\"id\":2}\n{\"id\":3}\n"))
+                .start();
+        try {
+            TestSubscriber<Map> subscriber = new TestSubscriber<>(1);
+            new Client(server.baseUrl()).Request("StreamBackpressureCmd", "StreamGroup", "/ndjson").GET()
+                    .stream(Map.class).subscribe(subscriber);
+            for (int i = 0; i < 500 && subscriber.getOnNextEvents().isEmpty(); i++) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(50);
+            assertEquals(1, subscriber.getOnNextEvents().size());
+
+            subscriber.requestMore(5);
+            subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+            subscriber.assertNoErrors();
+            assertEquals(3, subscriber.getOnNextEvents().size());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void compressed_response() throws Exception {
+        StubServer server = new StubServer()
+                .stub("/gzip", new StubServer.Behavior().payloadBytes(4096).gzip(true))
+                .stub("/ndjson", new StubServer.Behavior().body("{\"id\":1}\n{\"id\":2}\n").gzip(true))
+                .start();
+        try {
+            Client stubClient = new Client(server.baseUrl()).maxConcurrentConnection(1)
+                    .connectionRequestTimeoutInMilliSec(500);
+            RequestMetrics metrics = MetricsRegistry.getInstance().forUrl("GzipGetCmd", "GzipGroup",
+                    server.baseUrl() + "/gzip");
+
+            Response response = stubClient.Request("GzipGetCmd", "GzipGroup", "/gzip").GET().execute();
+            Response spilled = stubClient.Request("GzipSpillCmd", "GzipGroup", "/gzip").GET().spillToDisk(1024)
+                    .execute();
+            List<Map> streamed = stubClient.Request("GzipStreamCmd", "GzipGroup", "/ndjson").GET()
+                    .stream(Map.class).toList().toBlocking().single();
+            Response identity = stubClient.Request("GzipOffCmd", "GzipGroup", "/gzip").GET()
+                    .acceptCompressed(false).execute();
+
+            assertEquals(4096, response.rawString().length());
+            assertNull(response.headers().get("Content-Encoding"));
+            assertEquals(4096, metrics.responseDecompressedBytes());
+            assertTrue(metrics.responseCompressedBytes() > 0);
+            assertTrue(metrics.responseCompressionRatio() > 10);
+            assertTrue(metrics.decompressionNanos() > 0);
+            assertTrue(spilled.isSpilled());
+            try (InputStream in = spilled.inputStream()) {
+                long length = 0;
+                while (in.read() != -1) {
+                    length++;
+                }
+                assertEquals(4096, length);
+            }
+            spilled.close();
+            assertEquals(2, streamed.size());
+            assertEquals(4096, identity.rawString().length());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void compressed_request() throws Exception {
+        StubServer server = new StubServer().start();
+        try {
+            Client stubClient = new Client(server.baseUrl()).compressRequestsAbove(1024);
+            RequestMetrics metrics = MetricsRegistry.getInstance().forUrl("GzipPostCmd", "GzipGroup",
+                    server.baseUrl() + "/v1/users");
+            StringBuilder body = new StringBuilder("{\"data\":\"");
+            for (int i = 0; i < 4096; i++) {
+                body.append('x');
+            }
+            body.append("\"}");
+
+            stubClient.Request("GzipPostCmd", "GzipGroup", "/v1/users").POST().bodyStr(body.toString()).execute();
+            stubClient.Request("GzipPutCmd", "GzipGroup", "/v1/users").PUT().bodyStr(body.toString()).execute();
+            long bytes = server.requestBytes();
+            stubClient.Request("GzipSmallPostCmd", "GzipGroup", "/v1/users").POST().bodyStr("{\"id\":1}")
+                    .execute();
+
+            assertEquals(2, server.compressedRequestCount());
+            assertTrue(bytes < 2 * 1024);
+            assertEquals(bytes + 8, server.requestBytes());
+            assertEquals(4107, metrics.requestUncompressedBytes());
+            assertTrue(metrics.requestCompressionRatio() > 10);
+        } finally {
+            server.stop();
+        }
+    }
+    @Test
+    public void upload() throws Exception {
+        StubServer server = new StubServer().start();
+        Path file = Files.createTempFile("hc-upload-", ".bin");
+        try {
+            Files.write(file, new byte[3 * 1024 * 1024]);
+            Client stubClient = new Client(server.baseUrl()).socketTimeoutInMilliSec(5000);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+
+            stubClient.Request("UploadFileCmd", "UploadGroup", "/v1/files").POST().body(file).execute();
+            assertEquals(3 * 1024 * 1024, server.requestBytes());
+            assertEquals(1, server.expectContinueCount());
+
+            stubClient.Request("UploadBufferCmd", "UploadGroup", "/v1/files").PUT().body(buffer).execute();
+            assertEquals(3 * 1024 * 1024 + 4096, server.requestBytes());
+            assertEquals(4096, buffer.remaining());
+
+            stubClient.Request("UploadStreamCmd", "UploadGroup", "/v1/files").POST()
+                    .body(new ByteArrayInputStream(new byte[1000]), -1).expectContinue(false).execute();
+            assertEquals(3 * 1024 * 1024 + 5096, server.requestBytes());
+
+            MultipartBody multipart = new MultipartBody().field("id", "42").file("file", file, null);
+            stubClient.Request("UploadMultipartCmd", "UploadGroup", "/v1/files").POST().body(multipart).execute();
+            assertEquals(3 * 1024 * 1024 * 2 + 5096 + multipart.getContentLength() - Files.size(file),
+                    server.requestBytes());
+            assertEquals(2, server.expectContinueCount());
+        } finally {
+            Files.deleteIfExists(file);
+            server.stop();
+        }
+    }
+}
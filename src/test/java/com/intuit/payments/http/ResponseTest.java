@@ -6,17 +6,29 @@
 
 package com.intuit.payments.http;
 
+import com.google.gson.JsonIOException;
 import com.intuit.payments.http.exception.*;
+import com.intuit.payments.http.json.JsonElementIterator;
+import com.intuit.payments.http.testing.FaultProxy;
+import com.intuit.payments.http.testing.StubServer;
+import com.netflix.hystrix.exception.HystrixRuntimeException;
 import org.apache.http.Header;
 import org.apache.http.message.BasicHeader;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Unit test for {@link Response}.
@@ -178,6 +190,17 @@ public class ResponseTest {
         response.raise_for_status();
     }
 
+    @Test
+    public void stale() {
+        Response response = new Response(200, "OK", "body", headers);
+        Response stale = response.stale(1500);
+        assertEquals(false, response.isStale());
+        assertEquals(true, stale.isStale());
+        assertEquals(1500, stale.staleAgeInMilliSec());
+        assertEquals("body", stale.rawString());
+        assertEquals(response.headers(), stale.headers());
+    }
+
     class Foo {
         String value;
 
@@ -200,4 +223,140 @@ public class ResponseTest {
             return value != null ? value.hashCode() : 0;
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void iterate_raw_string() throws Exception {
+        Response response = new Response(200, "OK", "[{\"id\":1},{\"id\":2}]", headers);
+
+        try (JsonElementIterator<Map> iterator = response.iterate(Map.class)) {
+            assertEquals(1.0, iterator.next().get("id"));
+            assertEquals(2.0, iterator.next().get("id"));
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    public void iterate_streamed() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            ndjson.append("{\"id\":").append(i).append(",\"name\":\"user-").append(i).append("\"}\n");
+        }
+        StubServer server = new StubServer().stub("/export", new StubServer.Behavior().body(ndjson.toString()))
+                .start();
+        try {
+            Response response = new Client(server.baseUrl())
+                    .Request("IterateExportCmd", "IterateGroup", "/export").GET().streamBody(0).execute();
+
+            assertTrue(response.isStreamed());
+            assertEquals("", response.rawString());
+            long count = 0;
+            try (JsonElementIterator<Map> iterator = response.iterate(Map.class)) {
+                while (iterator.hasNext()) {
+                    assertEquals((double) count++, iterator.next().get("id"));
+                }
+            }
+            assertEquals(20000, count);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void iterate_streamed_twice() throws Exception {
+        StubServer server = new StubServer().stub("/export", new StubServer.Behavior().body("[]")).start();
+        try {
+            Response response = new Client(server.baseUrl())
+                    .Request("IterateTwiceCmd", "IterateGroup", "/export").GET().streamBody(0).execute();
+            response.iterate(Map.class).close();
+            response.iterate(Map.class);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void map_streamed() throws Exception {
+        StubServer server = new StubServer().stub("/export", new StubServer.Behavior().body("[]")).start();
+        try {
+            new Client(server.baseUrl()).Request("IterateMapCmd", "IterateGroup", "/export").GET().streamBody(0)
+                    .execute().map();
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void iterate_transfer_timeout() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            ndjson.append("{\"id\":").append(i).append("}\n");
+        }
+        StubServer server = new StubServer().stub("/export", new StubServer.Behavior().body(ndjson.toString()))
+                .start();
+        FaultProxy proxy = new FaultProxy(server).slowDrip(16, 20).start();
+        try {
+            Response response = new Client(proxy.baseUrl())
+                    .Request("IterateSlowCmd", "IterateGroup", "/export").GET().streamBody(200).execute();
+
+            try (JsonElementIterator<Map> iterator = response.iterate(Map.class)) {
+                iterator.forEachRemaining(element -> { });
+                fail("Expected the transfer timeout to expire");
+            } catch (JsonIOException e) {
+                assertTrue(e.getCause() instanceof SocketTimeoutException);
+            }
+        } finally {
+            proxy.stop();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void spilled() throws Exception {
+        StubServer server = new StubServer().stub("/export", new StubServer.Behavior().payloadBytes(100000)).start();
+        try {
+            Response response = new Client(server.baseUrl()).spillToDisk(10000)
+                    .Request("SpillExportCmd", "SpillGroup", "/export").GET().execute();
+
+            assertTrue(response.isSpilled());
+            assertEquals("", response.rawString());
+            ByteBuffer buffer = response.byteBuffer();
+            assertEquals(100000, buffer.remaining());
+            assertEquals('{', buffer.get(0));
+            assertEquals(99989, ((String) response.map().get("data")).length());
+            try (InputStream in = response.inputStream()) {
+                assertEquals('{', in.read());
+            }
+            response.close();
+            try {
+                response.inputStream();
+                fail("Expected the temp file to be deleted");
+            } catch (IOException e) {
+                // deleted
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void maxResponseBytes() throws Exception {
+        StubServer server = new StubServer().stub("/export", new StubServer.Behavior().payloadBytes(100000)).start();
+        try {
+            new Client(server.baseUrl()).maxResponseBytes(50000)
+                    .Request("MaxBytesExportCmd", "SpillGroup", "/export").GET().execute();
+            fail("Expected the response to be too large");
+        } catch (HystrixRuntimeException e) {
+            assertTrue(e.getCause().toString(), e.getCause() instanceof HCResponseTooLargeException);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void byteBuffer_in_memory() throws Exception {
+        Response response = new Response(200, "OK", "{}", headers);
+
+        assertEquals(2, response.byteBuffer().remaining());
+        assertFalse(response.isSpilled());
+    }
+}
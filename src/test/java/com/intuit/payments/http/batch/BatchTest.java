@@ -0,0 +1,182 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.batch;
+
+import com.intuit.payments.http.Client;
+import com.intuit.payments.http.Request;
+import com.intuit.payments.http.exception.HCCancelledException;
+import com.intuit.payments.http.exception.HCDeadlineExceededException;
+import com.intuit.payments.http.testing.LatencyDistribution;
+import com.intuit.payments.http.testing.StubServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link Batch} and {@link BatchResult}.
+ *
+ * @author saung
+ * @since 6/11/18
+ */
+public class BatchTest {
+    private StubServer server;
+
+    private Client client;
+
+    @Before
+    public void setUp() {
+        server = new StubServer()
+                .stub("/fast", new StubServer.Behavior().latency(LatencyDistribution.fixed(20)))
+                .stub("/slow", new StubServer.Behavior().latency(LatencyDistribution.fixed(2000)))
+                .stub("/missing", new StubServer.Behavior().status(404, 1))
+                .start();
+        client = new Client(server.baseUrl()).maxConcurrentConnection(20);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_null_request() {
+        new Batch(Arrays.asList(request("/fast"), null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxConcurrency_zero() {
+        new Batch(Collections.emptyList()).maxConcurrency(0);
+    }
+
+    @Test
+    public void executeAll() {
+        List<Request> requests = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            requests.add(request("/fast"));
+        }
+
+        BatchResult result = client.executeAll(requests);
+
+        assertEquals(6, result.size());
+        assertTrue(result.isComplete());
+        assertEquals(6, result.responses().size());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i, result.item(i).index());
+            assertSame(requests.get(i), result.item(i).request());
+            assertEquals(200, result.item(i).response().statusCode());
+        }
+    }
+
+    @Test
+    public void execute_empty() {
+        BatchResult result = client.batch(Collections.emptyList()).execute();
+
+        assertEquals(0, result.size());
+        assertTrue(result.isComplete());
+    }
+
+    @Test
+    public void execute_bounded_concurrency() {
+        List<Request> requests = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            requests.add(request("/fast"));
+        }
+
+        long start = System.nanoTime();
+        BatchResult result = client.batch(requests).maxConcurrency(1).execute();
+
+        assertTrue(result.isComplete());
+        // one at a time: 4 x 20ms
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(80));
+    }
+
+    @Test
+    public void execute_deadline_partial_results() {
+        List<Request> requests = Arrays.asList(request("/fast"), request("/slow"), request("/fast"));
+
+        long start = System.nanoTime();
+        BatchResult result = client.batch(requests).deadline(500, TimeUnit.MILLISECONDS).execute();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+        assertFalse(result.isComplete());
+        assertEquals(2, result.responses().size());
+        assertEquals(1, result.failures().size());
+        assertEquals(1, result.failures().get(0).index());
+        assertSame(HCDeadlineExceededException.INSTANCE, result.item(1).error());
+    }
+
+    @Test
+    public void execute_failFast() {
+        List<Request> requests = Arrays.asList(
+                request("/missing").throwExceptionIfResponseCodeIsGreaterThanOrEqual(400),
+                request("/slow"), request("/slow"));
+
+        long start = System.nanoTime();
+        BatchResult result = client.batch(requests).failFast(e -> true).execute();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+        assertNotNull(result.item(0).error());
+        assertFalse(result.item(0).error() instanceof HCCancelledException);
+        assertSame(HCCancelledException.INSTANCE, result.item(1).error());
+        assertSame(HCCancelledException.INSTANCE, result.item(2).error());
+    }
+
+    @Test
+    public void execute_failFast_not_fatal() {
+        List<Request> requests = Arrays.asList(
+                request("/missing").throwExceptionIfResponseCodeIsGreaterThanOrEqual(400), request("/fast"));
+
+        BatchResult result = client.batch(requests).failFast(e -> false).execute();
+
+        assertFalse(result.item(0).isSuccess());
+        assertTrue(result.item(1).isSuccess());
+    }
+
+    @Test
+    public void toObservable_completion_order() {
+        List<Request> requests = Arrays.asList(request("/slow"), request("/fast"));
+
+        List<BatchItem> items = client.batch(requests).toObservable().toList().toBlocking().single();
+
+        assertEquals(1, items.get(0).index());
+        assertEquals(0, items.get(1).index());
+    }
+
+    @Test
+    public void executeAllAsync() throws Exception {
+        BatchResult result = client.executeAllAsync(Arrays.asList(request("/fast"), request("/fast")))
+                .get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.isComplete());
+        assertEquals(2, result.responses().size());
+    }
+
+    @Test
+    public void executeAsync_cancel() {
+        CompletableFuture<BatchResult> future = client.batch(Collections.singletonList(request("/slow")))
+                .executeAsync();
+
+        assertTrue(future.cancel(true));
+        assertTrue(future.isCancelled());
+    }
+
+    private Request request(String path) {
+        return client.Request("Batch" + path.substring(1), "BatchGroup", path).GET();
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.body;
+
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for {@link ByteBufferEntity}.
+ *
+ * @author saung
+ * @since 6/29/18
+ */
+public class ByteBufferEntityTest {
+    @Test
+    public void writeTo_heap_slice() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0, 1, 2, 3, 4, 5});
+        buffer.position(1).limit(5);
+        ByteBufferEntity entity = new ByteBufferEntity(buffer.slice(), null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+
+        assertEquals(4, entity.getContentLength());
+        assertArrayEquals(new byte[] {1, 2, 3, 4}, out.toByteArray());
+    }
+
+    @Test
+    public void writeTo_direct() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(20000);
+        for (int i = 0; i < 20000; i++) {
+            buffer.put((byte) i);
+        }
+        buffer.flip();
+        ByteBufferEntity entity = new ByteBufferEntity(buffer, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        byte[] content = EntityUtils.toByteArray(entity);
+
+        assertEquals(20000, out.size());
+        assertEquals((byte) 19999, out.toByteArray()[19999]);
+        assertArrayEquals(out.toByteArray(), content);
+        // the caller's buffer is untouched
+        assertEquals(0, buffer.position());
+    }
+}
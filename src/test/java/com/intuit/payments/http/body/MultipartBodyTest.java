@@ -0,0 +1,101 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.body;
+
+import org.apache.http.entity.ContentType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link MultipartBody}.
+ *
+ * @author saung
+ * @since 6/29/18
+ */
+public class MultipartBodyTest {
+    @Test
+    public void writeTo() throws Exception {
+        Path file = Files.createTempFile("hc-multipart-", ".json");
+        try {
+            Files.write(file, "{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+            ByteBuffer raw = ByteBuffer.allocateDirect(3).put(new byte[] {1, 2, 3});
+            raw.flip();
+            MultipartBody body = new MultipartBody()
+                    .field("account \"Id\"", "42 é")
+                    .file("statement", file, ContentType.APPLICATION_JSON)
+                    .part("raw", "raw.bin", raw, null);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            body.writeTo(out);
+            String text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+            String boundary = body.boundary();
+
+            assertEquals("multipart/form-data; boundary=" + boundary, body.getContentType().getValue());
+            assertTrue(body.isRepeatable());
+            assertEquals(body.getContentLength(), out.size());
+            assertTrue(text, text.startsWith("--" + boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"account %22Id%22\"\r\n\r\n42 é\r\n"));
+            assertTrue(text, text.contains("--" + boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"statement\"; filename=\"" + file.getFileName() + "\"\r\n"
+                    + "Content-Type: application/json; charset=UTF-8\r\n\r\n{\"id\":1}\r\n"));
+            assertTrue(text, text.contains("Content-Disposition: form-data; name=\"raw\"; filename=\"raw.bin\"\r\n"
+                    + "Content-Type: application/octet-stream\r\n\r\n\u0001\u0002\u0003\r\n"));
+            assertTrue(text, text.endsWith("\r\n--" + boundary + "--\r\n"));
+
+            // repeatable
+            ByteArrayOutputStream again = new ByteArrayOutputStream();
+            body.writeTo(again);
+            assertEquals(out.size(), again.size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void stream_part() throws Exception {
+        byte[] data = new byte[100000];
+        MultipartBody known = new MultipartBody()
+                .part("data", null, new ByteArrayInputStream(data), data.length, null);
+        MultipartBody unknown = new MultipartBody()
+                .part("data", null, new ByteArrayInputStream(data), -1, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        known.writeTo(out);
+        assertEquals(known.getContentLength(), out.size());
+        assertFalse(known.isRepeatable());
+        assertTrue(known.isStreaming());
+        assertEquals(-1, unknown.getContentLength());
+        ByteArrayOutputStream chunked = new ByteArrayOutputStream();
+        unknown.writeTo(chunked);
+        assertEquals(out.size(), chunked.size());
+    }
+
+    @Test
+    public void close_unsent_stream_parts() throws Exception {
+        boolean[] closed = new boolean[1];
+        MultipartBody body = new MultipartBody()
+                .field("id", "1")
+                .part("data", null, new ByteArrayInputStream(new byte[10]) {
+                    @Override
+                    public void close() {
+                        closed[0] = true;
+                    }
+                }, 10, null);
+
+        body.close();
+        assertTrue(closed[0]);
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.body;
+
+import org.apache.http.entity.ContentType;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for {@link PathEntity}.
+ *
+ * @author saung
+ * @since 6/29/18
+ */
+public class PathEntityTest {
+    @Test
+    public void writeTo() throws Exception {
+        byte[] data = new byte[3 * PathEntity.BUFFER_SIZE + 17];
+        new Random(7).nextBytes(data);
+        Path file = Files.createTempFile("hc-upload-", ".bin");
+        try {
+            Files.write(file, data);
+            PathEntity entity = new PathEntity(file, ContentType.APPLICATION_OCTET_STREAM);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entity.writeTo(out);
+
+            assertEquals(data.length, entity.getContentLength());
+            assertTrue(entity.isRepeatable());
+            assertEquals("application/octet-stream", entity.getContentType().getValue());
+            assertArrayEquals(data, out.toByteArray());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void writeTo_file_shrank() throws Exception {
+        Path file = Files.createTempFile("hc-upload-", ".bin");
+        try {
+            Files.write(file, new byte[1000]);
+            PathEntity entity = new PathEntity(file, null);
+            Files.write(file, new byte[10]);
+
+            entity.writeTo(new ByteArrayOutputStream());
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("ended after 10"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missing_file() {
+        new PathEntity(Paths.get("does-not-exist.bin"), null);
+    }
+}
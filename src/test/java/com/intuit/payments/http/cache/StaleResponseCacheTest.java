@@ -0,0 +1,140 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.cache;
+
+import com.intuit.payments.http.Response;
+import org.apache.http.Header;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link StaleResponseCache}.
+ *
+ * @author saung
+ * @since 3/19/18
+ */
+public class StaleResponseCacheTest {
+    private Response response = new Response(200, "OK", "{}", new Header[] { });
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid_maxEntries() {
+        new StaleResponseCache(0, 1000);
+    }
+
+    @Test
+    public void get() {
+        StaleResponseCache cache = new StaleResponseCache(10, 60000);
+        cache.put("http://localhost/v1/users", response);
+        Response stale = cache.get("http://localhost/v1/users");
+        assertNotNull(stale);
+        assertTrue(stale.isStale());
+        assertFalse(response.isStale());
+        assertEquals(200, stale.statusCode());
+        assertEquals("{}", stale.rawString());
+        assertEquals(1, cache.hitCount());
+        assertEquals(1.0, cache.hitRate(), 0.0);
+    }
+
+    @Test
+    public void get_miss() {
+        StaleResponseCache cache = new StaleResponseCache(10, 60000);
+        assertNull(cache.get("http://localhost/v1/users"));
+        assertEquals(1, cache.missCount());
+        assertEquals(0.0, cache.hitRate(), 0.0);
+    }
+
+    @Test
+    public void get_expired() throws Exception {
+        StaleResponseCache cache = new StaleResponseCache(10, 1);
+        cache.put("http://localhost/v1/users", response);
+        Thread.sleep(5);
+        assertNull(cache.get("http://localhost/v1/users"));
+    }
+
+    @Test
+    public void put_evicts_oldest() throws Exception {
+        StaleResponseCache cache = new StaleResponseCache(2, 60000);
+        cache.put("a", response);
+        Thread.sleep(2);
+        cache.put("b", response);
+        Thread.sleep(2);
+        cache.put("c", response);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void put_evicts_least_recently_used() {
+        StaleResponseCache cache = new StaleResponseCache(2, 60000);
+        cache.put("a", response);
+        cache.put("b", response);
+        cache.get("a");
+        cache.put("c", response);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void put_evicts_sampled_least_recently_used() {
+        StaleResponseCache cache = new StaleResponseCache(100, 60000);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, response);
+        }
+        for (int i = 0; i < 100; i++) {
+            cache.get("key" + i);
+        }
+        cache.get("key0");
+        cache.put("new", response);
+        assertEquals(100, cache.size());
+        assertNotNull(cache.get("key0"));
+        assertNotNull(cache.get("new"));
+    }
+
+    @Test
+    public void put_get_concurrent() throws Exception {
+        StaleResponseCache cache = new StaleResponseCache(16, 60000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        String key = "key" + ThreadLocalRandom.current().nextInt(64);
+                        if (i % 2 == 0) {
+                            cache.put(key, response);
+                        } else {
+                            cache.get(key);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        cache.put("last", response);
+        assertTrue(cache.size() <= 16);
+        assertNotNull(cache.get("last"));
+        assertTrue(cache.hitCount() > 0);
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.compression;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link Gzip} and {@link CodecPool}.
+ *
+ * @author saung
+ * @since 6/27/18
+ */
+public class GzipTest {
+    @Test
+    public void compress() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"status\":\"ACTIVE\"}");
+        }
+        byte[] data = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+
+        byte[] compressed = Gzip.compress(data);
+
+        assertTrue(compressed.length + " bytes", compressed.length * 5 < data.length);
+        assertArrayEquals(data, gunzip(compressed));
+    }
+
+    @Test
+    public void compress_incompressible_and_empty() throws Exception {
+        byte[] random = new byte[100000];
+        new Random(42).nextBytes(random);
+
+        assertArrayEquals(random, gunzip(Gzip.compress(random)));
+        assertArrayEquals(new byte[0], gunzip(Gzip.compress(new byte[0])));
+    }
+
+    @Test
+    public void pool_reuses_codecs() {
+        CodecPool pool = new CodecPool(1, Deflater.BEST_SPEED);
+        Deflater first = pool.acquireDeflater();
+        Deflater second = pool.acquireDeflater();
+        assertNotSame(first, second);
+
+        pool.release(first);
+        pool.release(second);
+        assertEquals(1, pool.idleDeflaters());
+        assertSame(first, pool.acquireDeflater());
+
+        Gzip.compress(new byte[100], pool);
+        Gzip.compress(new byte[100], pool);
+        assertEquals(1, pool.idleDeflaters());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pool_invalid_level() {
+        new CodecPool(1, 10);
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+}
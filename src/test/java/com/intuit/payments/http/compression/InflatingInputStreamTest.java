@@ -0,0 +1,204 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.compression;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for {@link InflatingInputStream} and {@link DecompressingEntity}.
+ *
+ * @author saung
+ * @since 6/27/18
+ */
+public class InflatingInputStreamTest {
+    private static final byte[] DATA = json(20000);
+
+    private final CodecPool pool = new CodecPool(2, Deflater.DEFAULT_COMPRESSION);
+
+    @Test
+    public void read_gzip() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(DATA);
+        }
+        AtomicLong reported = new AtomicLong();
+        InflatingInputStream in = new InflatingInputStream(new ByteArrayInputStream(compressed.toByteArray()), true,
+                pool, (compressedBytes, decompressedBytes, nanos) -> reported.set(decompressedBytes));
+
+        assertArrayEquals(DATA, readAll(in));
+        assertEquals(compressed.size(), in.compressedBytes());
+        assertEquals(DATA.length, reported.get());
+        // the inflater goes back to the pool at the end of the body, before close
+        assertEquals(1, pool.idleInflaters());
+        in.close();
+        assertEquals(1, pool.idleInflaters());
+    }
+
+    @Test
+    public void read_gzip_header_fields() throws Exception {
+        byte[] name = "body.json\0".getBytes(StandardCharsets.US_ASCII);
+        byte[] compressed = Gzip.compress(DATA, pool);
+        ByteArrayOutputStream withName = new ByteArrayOutputStream();
+        withName.write(compressed, 0, 3);
+        // FEXTRA and FNAME
+        withName.write(4 | 8);
+        withName.write(compressed, 4, 6);
+        withName.write(new byte[] {2, 0, 'a', 'b'});
+        withName.write(name);
+        withName.write(compressed, 10, compressed.length - 10);
+
+        assertArrayEquals(DATA, readAll(new InflatingInputStream(new ByteArrayInputStream(withName.toByteArray()),
+                true, pool, null)));
+    }
+
+    @Test
+    public void read_deflate_zlib_and_raw() throws Exception {
+        ByteArrayOutputStream zlib = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(zlib)) {
+            out.write(DATA);
+        }
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(raw, new Deflater(6, true))) {
+            out.write(DATA);
+        }
+
+        assertArrayEquals(DATA, readAll(new InflatingInputStream(new ByteArrayInputStream(zlib.toByteArray()),
+                false, pool, null)));
+        assertArrayEquals(DATA, readAll(new InflatingInputStream(new ByteArrayInputStream(raw.toByteArray()),
+                false, pool, null)));
+    }
+
+    @Test
+    public void read_empty() throws Exception {
+        assertEquals(-1, new InflatingInputStream(new ByteArrayInputStream(new byte[0]), true, pool, null).read());
+    }
+
+    @Test
+    public void read_corrupt() throws Exception {
+        byte[] compressed = Gzip.compress(DATA, pool);
+        byte[] badCrc = compressed.clone();
+        badCrc[badCrc.length - 8] ^= 1;
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length - 20);
+
+        assertFails(badCrc, ZipException.class);
+        assertFails(truncated, EOFException.class);
+        assertFails("{\"id\":1}".getBytes(StandardCharsets.UTF_8), ZipException.class);
+        assertEquals(1, pool.idleInflaters());
+    }
+
+    @Test
+    public void read_gzip_multi_member() throws Exception {
+        byte[] second = "[{\"id\":-1}]".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream members = new ByteArrayOutputStream();
+        members.write(Gzip.compress(DATA, pool));
+        members.write(Gzip.compress(second, pool));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(DATA);
+        expected.write(second);
+
+        InflatingInputStream in = new InflatingInputStream(new ByteArrayInputStream(members.toByteArray()), true,
+                pool, null);
+        assertArrayEquals(expected.toByteArray(), readAll(in));
+        assertEquals(members.size(), in.compressedBytes());
+
+        // one byte at a time, so that every trailer and header is read from the body rather than the buffer
+        InputStream trickle = new ByteArrayInputStream(members.toByteArray()) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        InflatingInputStream bytes = new InflatingInputStream(trickle, true, pool, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int b; (b = bytes.read()) != -1; ) {
+            out.write(b);
+        }
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+        assertEquals(members.size(), bytes.compressedBytes());
+        assertEquals(1, pool.idleInflaters());
+    }
+
+    @Test
+    public void read_gzip_trailing_garbage() throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(Gzip.compress(DATA, pool));
+        body.write(new byte[] {0, 0, 0, 0});
+
+        assertFails(body.toByteArray(), ZipException.class);
+    }
+
+    @Test
+    public void decode() throws Exception {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        ByteArrayEntity entity = new ByteArrayEntity(Gzip.compress(DATA, pool));
+        entity.setContentEncoding("x-gzip");
+        response.setEntity(entity);
+        response.setHeader("Content-Encoding", "x-gzip");
+        response.setHeader("Content-Length", String.valueOf(entity.getContentLength()));
+
+        assertTrue(DecompressingEntity.decode(response, pool, null));
+        assertNull(response.getFirstHeader("Content-Encoding"));
+        assertNull(response.getFirstHeader("Content-Length"));
+        assertNull(response.getEntity().getContentEncoding());
+        assertEquals(-1, response.getEntity().getContentLength());
+        assertArrayEquals(DATA, EntityUtils.toByteArray(response.getEntity()));
+
+        ByteArrayEntity brotli = new ByteArrayEntity(DATA);
+        brotli.setContentEncoding("br");
+        response.setEntity(brotli);
+        assertFalse(DecompressingEntity.decode(response, pool, null));
+    }
+
+    private void assertFails(byte[] body, Class<? extends Exception> expected) {
+        try (InputStream in = new InflatingInputStream(new ByteArrayInputStream(body), true, pool, null)) {
+            readAll(in);
+            fail("Expected " + expected.getSimpleName());
+        } catch (Exception e) {
+            assertEquals(e.toString(), expected, e.getClass());
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        for (int n; (n = in.read(buffer)) != -1; ) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] json(int items) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append('}');
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
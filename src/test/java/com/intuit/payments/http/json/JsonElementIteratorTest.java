@@ -0,0 +1,96 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.json;
+
+import com.google.gson.JsonSyntaxException;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link JsonElementIterator}.
+ *
+ * @author saung
+ * @since 6/18/18
+ */
+public class JsonElementIteratorTest {
+    @Test(expected = IllegalArgumentException.class)
+    public void new_null_reader() {
+        new JsonElementIterator<>(null, Map.class);
+    }
+
+    @Test
+    public void array() {
+        JsonElementIterator<Item> iterator = iterator("[{\"id\":1,\"name\":\"a\"}, {\"id\":2,\"name\":\"b\"}]\n");
+
+        List<Item> items = toList(iterator);
+
+        assertEquals(2, items.size());
+        assertEquals(1, items.get(0).id);
+        assertEquals("b", items.get(1).name);
+        assertTrue(iterator.isExhausted());
+        assertEquals(2, iterator.count());
+    }
+
+    @Test
+    public void ndjson() {
+        List<Item> items = toList(iterator("{\"id\":1}\n{\"id\":2}\n\n{\"id\":3}\n"));
+
+        assertEquals(3, items.size());
+        assertEquals(3, items.get(2).id);
+    }
+
+    @Test
+    public void empty() {
+        assertFalse(iterator("").hasNext());
+        assertFalse(iterator("  \n").hasNext());
+        assertFalse(iterator("[]").hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void next_exhausted() {
+        JsonElementIterator<Item> iterator = iterator("[]");
+        iterator.next();
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void malformed() {
+        toList(iterator("[{\"id\":1},{\"id\":"));
+    }
+
+    @Test
+    public void close() throws Exception {
+        JsonElementIterator<Item> iterator = iterator("[{\"id\":1},{\"id\":2}]");
+        iterator.next();
+        iterator.close();
+
+        assertFalse(iterator.hasNext());
+        assertFalse(iterator.isExhausted());
+    }
+
+    private static JsonElementIterator<Item> iterator(String json) {
+        return new JsonElementIterator<>(new StringReader(json), Item.class);
+    }
+
+    private static <T> List<T> toList(JsonElementIterator<T> iterator) {
+        List<T> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    private static class Item {
+        int id;
+        String name;
+    }
+}
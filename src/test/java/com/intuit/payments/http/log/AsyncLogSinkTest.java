@@ -0,0 +1,166 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.log;
+
+import com.intuit.payments.http.metrics.Phase;
+import com.intuit.payments.http.metrics.PhaseTimings;
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link AsyncLogSink} and {@link LogEvent}.
+ *
+ * @author saung
+ * @since 5/7/18
+ */
+public class AsyncLogSinkTest {
+    /** Lines written to the test logger as "LEVEL message" */
+    private final List<String> lines = new CopyOnWriteArrayList<>();
+
+    private final Logger logger = (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(),
+            new Class[] { Logger.class }, (proxy, method, args) -> {
+                if ((method.getName().equals("info") || method.getName().equals("error"))
+                        && args.length > 0 && args[0] instanceof String) {
+                    lines.add(method.getName().toUpperCase() + " " + args[0]);
+                }
+                return method.getReturnType() == boolean.class ? true : null;
+            });
+
+    @Test
+    public void publish() throws Exception {
+        AsyncLogSink sink = new AsyncLogSink(logger, 16);
+        sink.publish(sink.acquire().request("http://localhost/v1/users", "GET").status(200, "OK"));
+        PhaseTimings timings = new PhaseTimings();
+        timings.add(Phase.TIME_TO_FIRST_BYTE, TimeUnit.MILLISECONDS.toNanos(12));
+        sink.publish(sink.acquire().request("http://localhost/v1/users", "POST")
+                .poolStats(20, 2, 1, 1, 0).phases(timings)
+                .exception("No_data_received_in:", 500, null, new Exception()));
+        assertTrue(sink.flush(1000));
+
+        assertEquals(2, sink.writtenCount());
+        assertEquals("INFO type=http_hystrix;outURL=http://localhost/v1/users;http=GET;status=200;reason=OK",
+                lines.get(0));
+        assertEquals("ERROR type=http_hystrix;outURL=http://localhost/v1/users;http=POST;pool_max=20"
+                + ";pool_max_per_route=2;pool_available=1;pool_leased=1;pool_pending=0;pool_lease_ms=0;connect_ms=0"
+                + ";tls_ms=0;ttfb_ms=12;body_read_ms=0;decode_ms=0;ex=No_data_received_in:500ms", lines.get(1));
+    }
+
+    @Test
+    public void maxBodyChars() throws Exception {
+        AsyncLogSink sink = new AsyncLogSink(logger, 16).maxBodyChars(4);
+        sink.publish(sink.acquire().request("http://localhost", "PUT").status(500, "Error")
+                .exchange(new Header[] { new BasicHeader("Accept", "*/*") }, "{\"a\":1}", new Header[0], "{}")
+                .failedResponse("0123456789"));
+        assertTrue(sink.flush(1000));
+
+        assertEquals("ERROR type=http_hystrix;outURL=http://localhost;http=PUT;status=500;reason=Error"
+                + ";request_headers=Accept:*/*,;request_body={\"a\"...(3 more chars);response_headers="
+                + ";response_body={};failed_response_body=0123...(6 more chars)", lines.get(0));
+    }
+
+    @Test
+    public void successSampleRate() {
+        AsyncLogSink sink = new AsyncLogSink(logger, 16);
+        assertTrue(sink.sampleSuccess());
+        sink.successSampleRate(0);
+        for (int i = 0; i < 100; i++) {
+            assertFalse(sink.sampleSuccess());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void successSampleRate_invalid() {
+        new AsyncLogSink(logger, 16).successSampleRate(1.5);
+    }
+
+    @Test
+    public void writer_started_lazily() throws Exception {
+        int writers = writerThreads();
+        AsyncLogSink sink = new AsyncLogSink(logger, 16);
+        assertEquals(writers, writerThreads());
+        sink.publish(sink.acquire().request("http://localhost", "GET").status(200, "OK"));
+        assertEquals(writers + 1, writerThreads());
+        assertTrue(sink.shutdown(1000));
+        assertEquals(writers, writerThreads());
+    }
+
+    @Test
+    public void shutdown_drains_queue() throws Exception {
+        AsyncLogSink sink = new AsyncLogSink(logger, 256);
+        for (int i = 0; i < 200; i++) {
+            sink.publish(sink.acquire().request("http://localhost", "GET").status(200, "OK"));
+        }
+        assertTrue(sink.shutdown(1000));
+        assertEquals(200, sink.writtenCount());
+        assertEquals(200, lines.size());
+    }
+
+    @Test
+    public void publish_after_shutdown() throws Exception {
+        AsyncLogSink sink = new AsyncLogSink(logger, 16);
+        assertTrue(sink.shutdown(1000));
+        sink.publish(sink.acquire().request("http://localhost", "GET").status(200, "OK"));
+        sink.publish(sink.acquire().request("http://localhost", "GET").status(500, "Error").failedResponse("x"));
+        assertEquals(1, sink.droppedCount());
+        assertEquals(1, sink.writtenCount());
+        assertTrue(lines.get(0).startsWith("ERROR "));
+        assertTrue(sink.flush(0));
+    }
+
+    @Test
+    public void flush_timeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Logger blocking = (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(),
+                new Class[] { Logger.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("info")) {
+                        release.await();
+                    }
+                    return null;
+                });
+        AsyncLogSink sink = new AsyncLogSink(blocking, 16);
+        sink.publish(sink.acquire().request("http://localhost", "GET").status(200, "OK"));
+        assertFalse(sink.flush(50));
+        release.countDown();
+        assertTrue(sink.flush(1000));
+        assertEquals(1, sink.writtenCount());
+        assertTrue(sink.shutdown(1000));
+    }
+
+    @Test
+    public void acquire_recycled() {
+        AsyncLogSink sink = new AsyncLogSink(logger, 16);
+        LogEvent event = sink.acquire().request("http://localhost", "GET").failedResponse("x");
+        sink.discard(event);
+        LogEvent recycled = sink.acquire();
+        assertSame(event, recycled);
+        assertFalse(recycled.isError());
+        assertNotSame(recycled, sink.acquire());
+    }
+
+    private static int writerThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("hc-async-log-writer") && thread.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+import com.intuit.payments.http.shedding.Priority;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link JmxExporter}.
+ *
+ * @author saung
+ * @since 4/9/18
+ */
+public class JmxExporterTest {
+
+    @Test
+    public void onCreate() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        MetricsRegistry registry = new MetricsRegistry();
+        RequestMetrics existing = registry.forRequest("GetUsers", "UsersGroup", "localhost");
+        registry.addExporter(new JmxExporter(mBeanServer));
+        RequestMetrics created = registry.forRequest("PostUsers", "UsersGroup", "localhost");
+        created.recordStatus(201);
+        created.addRequestBytes(64);
+        created.recordRequestCompression(256, 64, 1000000);
+        created.recordRateLimited();
+        created.startPermitWait();
+        created.recordShed(Priority.SHEDDABLE);
+
+        assertTrue(mBeanServer.isRegistered(JmxExporter.objectName(existing)));
+        assertTrue(mBeanServer.isRegistered(JmxExporter.objectName(created)));
+        assertEquals(64L, mBeanServer.getAttribute(JmxExporter.objectName(created), "RequestBytes"));
+        assertEquals(4.0, mBeanServer.getAttribute(JmxExporter.objectName(created), "RequestCompressionRatio"));
+        assertEquals(1.0, mBeanServer.getAttribute(JmxExporter.objectName(created), "CompressionMillis"));
+        assertEquals("{201=1}", mBeanServer.getAttribute(JmxExporter.objectName(created), "StatusCounts"));
+        assertEquals(1L, mBeanServer.getAttribute(JmxExporter.objectName(created), "RateLimitedCount"));
+        assertEquals(1L, mBeanServer.getAttribute(JmxExporter.objectName(created), "PermitWaitingCount"));
+        assertEquals(0L, mBeanServer.getAttribute(JmxExporter.objectName(created), "PermitWaitedCount"));
+        assertEquals("{SHEDDABLE=1}", mBeanServer.getAttribute(JmxExporter.objectName(created), "ShedCounts"));
+        assertEquals("{}", mBeanServer.getAttribute(JmxExporter.objectName(created), "AdmittedCounts"));
+    }
+}
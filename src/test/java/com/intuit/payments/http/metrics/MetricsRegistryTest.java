@@ -0,0 +1,89 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link MetricsRegistry} and {@link RequestMetrics}.
+ *
+ * @author saung
+ * @since 4/9/18
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void forRequest() {
+        MetricsRegistry registry = new MetricsRegistry();
+        RequestMetrics metrics = registry.forRequest("GetUsers", "UsersGroup", "localhost");
+        assertSame(metrics, registry.forRequest("GetUsers", "UsersGroup", "localhost"));
+        assertNotSame(metrics, registry.forRequest("GetUsers", "UsersGroup", "example.com"));
+        assertEquals(2, registry.all().size());
+    }
+
+    @Test
+    public void forUrl() {
+        MetricsRegistry registry = new MetricsRegistry();
+        assertEquals("localhost", registry.forUrl("GetUsers", "UsersGroup", "http://localhost:8080/v1/users").host());
+        assertEquals("unknown", registry.forUrl("GetUsers", "UsersGroup", "not a url").host());
+    }
+
+    @Test
+    public void forRequest_bounded() {
+        MetricsRegistry registry = new MetricsRegistry().maxMetrics(2);
+        registry.forRequest("GetUsers", "UsersGroup", "a.example.com");
+        registry.forRequest("GetUsers", "UsersGroup", "b.example.com");
+        RequestMetrics overflow = registry.forRequest("GetUsers", "UsersGroup", "c.example.com");
+        assertEquals(MetricsRegistry.OVERFLOW_HOST, overflow.host());
+        assertSame(overflow, registry.forRequest("GetUsers", "UsersGroup", "d.example.com"));
+        assertEquals("a.example.com", registry.forRequest("GetUsers", "UsersGroup", "a.example.com").host());
+        assertEquals(3, registry.all().size());
+    }
+
+    @Test
+    public void phaseSnapshot_never_recorded() {
+        RequestMetrics metrics = new MetricsRegistry().forRequest("GetUsers", "UsersGroup", "localhost");
+        assertEquals(0, metrics.phaseSnapshot(Phase.TLS).getTotalCount());
+        metrics.recordPhase(Phase.TLS, TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(1, metrics.phaseSnapshot(Phase.TLS).getTotalCount());
+    }
+
+    @Test
+    public void record() {
+        RequestMetrics metrics = new MetricsRegistry().forRequest("GetUsers", "UsersGroup", "localhost");
+        metrics.recordLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        metrics.recordLatency(TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.recordStatus(200);
+        metrics.recordStatus(200);
+        metrics.recordStatus(503);
+        metrics.recordStatus(999);
+        metrics.recordError();
+        metrics.addRequestBytes(100);
+        metrics.addResponseBytes(2048);
+        metrics.addResponseBytes(-1);
+
+        Histogram latency = metrics.latencySnapshot();
+        assertEquals(2, latency.getTotalCount());
+        assertTrue(latency.getMaxValue() >= 19990);
+        assertEquals(2, metrics.statusCount(200));
+        assertEquals(1, metrics.statusCount(503));
+        assertEquals(2, metrics.statusCounts().size());
+        assertEquals(1, metrics.errorCount());
+        assertEquals(100, metrics.requestBytes());
+        assertEquals(2048, metrics.responseBytes());
+
+        metrics.recordLatency(TimeUnit.MILLISECONDS.toNanos(30));
+        assertEquals(3, metrics.latencySnapshot().getTotalCount());
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link PhaseTimings}.
+ *
+ * @author saung
+ * @since 4/16/18
+ */
+public class PhaseTimingsTest {
+
+    @Test
+    public void from() {
+        HttpContext context = new BasicHttpContext();
+        assertNull(PhaseTimings.from(null));
+        assertNull(PhaseTimings.from(context));
+
+        PhaseTimings timings = new PhaseTimings();
+        context.setAttribute(PhaseTimings.CONTEXT_ATTRIBUTE, timings);
+        assertSame(timings, PhaseTimings.from(context));
+    }
+
+    @Test
+    public void marks() throws Exception {
+        PhaseTimings timings = new PhaseTimings();
+        timings.markExecuteStart();
+        timings.add(Phase.CONNECT, TimeUnit.MILLISECONDS.toNanos(1));
+        Thread.sleep(5);
+        timings.markSendStart();
+        timings.markRequestSent();
+        Thread.sleep(5);
+        timings.markFirstByte();
+        timings.markBodyRead();
+
+        assertTrue(timings.millis(Phase.POOL_LEASE) >= 3);
+        assertEquals(1, timings.millis(Phase.CONNECT));
+        assertEquals(0, timings.nanos(Phase.TLS));
+        assertTrue(timings.millis(Phase.TIME_TO_FIRST_BYTE) >= 5);
+        assertTrue(timings.nanos(Phase.BODY_READ) >= 0);
+    }
+
+    @Test
+    public void markSendStart_first_send_only() throws Exception {
+        PhaseTimings timings = new PhaseTimings();
+        timings.markExecuteStart();
+        timings.markSendStart();
+        long lease = timings.nanos(Phase.POOL_LEASE);
+        Thread.sleep(20);
+        // e.g. a redirect or a retry on the same context
+        timings.markSendStart();
+        assertEquals(lease, timings.nanos(Phase.POOL_LEASE));
+    }
+
+    @Test
+    public void markSendStart_keeps_first_route() {
+        HttpRoute origin = new HttpRoute(new HttpHost("origin.example.com", 80));
+        PhaseTimings timings = new PhaseTimings();
+        timings.markExecuteStart();
+        assertNull(timings.leaseRoute());
+        timings.markSendStart(origin);
+        // e.g. a redirect to another host
+        timings.markSendStart(new HttpRoute(new HttpHost("target.example.com", 80)));
+        assertSame(origin, timings.leaseRoute());
+    }
+
+    @Test
+    public void appendTo() {
+        PhaseTimings timings = new PhaseTimings();
+        timings.add(Phase.DECODE, TimeUnit.MILLISECONDS.toNanos(3));
+        assertEquals("x;pool_lease_ms=0;connect_ms=0;tls_ms=0;ttfb_ms=0;body_read_ms=0;decode_ms=3",
+                timings.appendTo(new StringBuilder("x")).toString());
+    }
+
+    @Test
+    public void recordPhases() {
+        RequestMetrics metrics = new MetricsRegistry().forRequest("GetUsers", "UsersGroup", "localhost");
+        PhaseTimings timings = new PhaseTimings();
+        timings.add(Phase.TIME_TO_FIRST_BYTE, TimeUnit.MILLISECONDS.toNanos(7));
+        metrics.recordPhases(timings);
+
+        assertEquals(1, metrics.phaseSnapshot(Phase.TIME_TO_FIRST_BYTE).getTotalCount());
+        assertEquals(1, metrics.phaseSnapshot(Phase.POOL_LEASE).getTotalCount());
+        assertEquals(0, metrics.phaseSnapshot(Phase.CONNECT).getTotalCount());
+        assertEquals(0, metrics.phaseSnapshot(Phase.DECODE).getTotalCount());
+    }
+}
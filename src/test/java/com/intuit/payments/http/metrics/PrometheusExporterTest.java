@@ -0,0 +1,66 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.metrics;
+
+import com.intuit.payments.http.shedding.Priority;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link PrometheusExporter}.
+ *
+ * @author saung
+ * @since 4/9/18
+ */
+public class PrometheusExporterTest {
+
+    @Test(expected = IllegalStateException.class)
+    public void scrape_not_started() {
+        new PrometheusExporter().scrape();
+    }
+
+    @Test
+    public void scrape() {
+        MetricsRegistry registry = new MetricsRegistry();
+        PrometheusExporter exporter = new PrometheusExporter();
+        registry.addExporter(exporter);
+        RequestMetrics metrics = registry.forRequest("GetUsers", "UsersGroup", "local\"host");
+        metrics.recordLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        metrics.recordStatus(200);
+        metrics.addResponseBytes(512);
+        metrics.recordResponseDecompression(512, 4096, TimeUnit.MILLISECONDS.toNanos(2));
+        metrics.recordPhase(Phase.TIME_TO_FIRST_BYTE, TimeUnit.MILLISECONDS.toNanos(4));
+        metrics.recordRateLimited();
+        metrics.startPermitWait();
+        metrics.startPermitWait();
+        metrics.endPermitWait(TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.recordAdmitted(Priority.CRITICAL);
+        metrics.recordShed(Priority.SHEDDABLE);
+
+        String text = exporter.scrape();
+        String labels = "{group=\"UsersGroup\",command=\"GetUsers\",host=\"local\\\"host\"";
+        assertTrue(text.contains("# TYPE hc_request_latency_seconds summary\n"));
+        assertTrue(text.contains("hc_request_latency_seconds" + labels + ",quantile=\"0.99\"} 0.010"));
+        assertTrue(text.contains("hc_request_latency_seconds_count" + labels + "} 1\n"));
+        assertTrue(text.contains("hc_responses_total" + labels + ",code=\"200\"} 1\n"));
+        assertTrue(text.contains("hc_response_bytes_total" + labels + "} 512\n"));
+        assertTrue(text.contains("hc_pool_exhausted_total" + labels + "} 0\n"));
+        assertTrue(text.contains("hc_rate_limited_total" + labels + "} 1\n"));
+        assertTrue(text.contains("hc_permit_waited_total" + labels + "} 1\n"));
+        assertTrue(text.contains("hc_permit_wait_seconds_total" + labels + "} 0.003\n"));
+        assertTrue(text.contains("# TYPE hc_permit_waiting gauge\n"));
+        assertTrue(text.contains("hc_permit_waiting" + labels + "} 1\n"));
+        assertTrue(text.contains("hc_load_admitted_total" + labels + ",priority=\"critical\"} 1\n"));
+        assertTrue(text.contains("hc_load_shed_total" + labels + ",priority=\"sheddable\"} 1\n"));
+        assertTrue(text.contains("hc_response_compression_bytes_total" + labels + ",stage=\"decompressed\"} 4096\n"));
+        assertTrue(text.contains("hc_compression_seconds_total" + labels + ",direction=\"response\"} 0.002\n"));
+        assertTrue(text.contains("# TYPE hc_request_phase_seconds summary\n"));
+        assertTrue(text.contains("hc_request_phase_seconds" + labels + ",phase=\"ttfb\",quantile=\"0.5\"} 0.004"));
+    }
+}
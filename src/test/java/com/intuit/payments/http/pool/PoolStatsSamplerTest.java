@@ -0,0 +1,113 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.pool;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link PoolStatsSampler} and {@link RouteStats}.
+ *
+ * @author saung
+ * @since 4/23/18
+ */
+public class PoolStatsSamplerTest {
+    private final HttpRoute route = new HttpRoute(new HttpHost("localhost", 8080));
+
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    @Before
+    public void setUp() {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(1);
+    }
+
+    @After
+    public void tearDown() {
+        connectionManager.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_null_connectionManager() {
+        new PoolStatsSampler(null, 0, null);
+    }
+
+    @Test
+    public void startStop() {
+        PoolStatsSampler sampler = new PoolStatsSampler(connectionManager, 100, null);
+        assertFalse(sampler.isRunning());
+        assertSame(sampler, sampler.start(1000));
+        assertTrue(sampler.isRunning());
+        sampler.stop();
+        assertFalse(sampler.isRunning());
+    }
+
+    @Test
+    public void sample_saturation() throws Exception {
+        List<RouteStats> saturated = new CopyOnWriteArrayList<>();
+        PoolStatsSampler sampler = new PoolStatsSampler(connectionManager, 0, saturated::add);
+        HttpClientConnection connection = connectionManager.requestConnection(route, null)
+                .get(1, TimeUnit.SECONDS);
+        ConnectionRequest pendingRequest = connectionManager.requestConnection(route, null);
+        Thread waiter = new Thread(() -> {
+            try {
+                pendingRequest.get(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                // cancelled by the test
+            }
+        });
+        waiter.start();
+        while (connectionManager.getStats(route).getPending() == 0) {
+            Thread.sleep(5);
+        }
+
+        sampler.sample();
+        sampler.sample();
+        RouteStats stats = sampler.getStats(route);
+        assertEquals(1, stats.leased());
+        assertEquals(1, stats.pending());
+        assertEquals(1, stats.max());
+        assertEquals(1, stats.peakPending());
+        assertEquals(1.0, stats.utilization(), 0.001);
+        assertEquals(1, saturated.size());
+        assertSame(stats, saturated.get(0));
+        assertEquals(1, stats.saturationCount());
+
+        pendingRequest.cancel();
+        waiter.join();
+        connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+        sampler.sample();
+        assertEquals(0, stats.pending());
+        assertEquals(0, stats.pendingInMilliSec());
+        assertEquals(1, stats.peakPending());
+    }
+
+    @Test
+    public void recordLeaseWait() {
+        PoolStatsSampler sampler = new PoolStatsSampler(connectionManager, 100, null);
+        assertNull(sampler.getStats(route));
+        sampler.recordLeaseWait(route, TimeUnit.MILLISECONDS.toNanos(3));
+        assertTrue(sampler.getRoutes().contains(route));
+        assertEquals(1, sampler.getStats(route).leaseWaitSnapshot().getTotalCount());
+        assertEquals(1, sampler.all().size());
+    }
+}
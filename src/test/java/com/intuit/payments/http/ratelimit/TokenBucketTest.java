@@ -0,0 +1,124 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.ratelimit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link TokenBucket}.
+ *
+ * @author saung
+ * @since 3/26/18
+ */
+public class TokenBucketTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid_rate() {
+        new TokenBucket(0, 1, 0);
+    }
+
+    @Test
+    public void acquire_burst_then_reject() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 3, 0);
+        assertTrue(bucket.acquire());
+        assertTrue(bucket.acquire());
+        assertTrue(bucket.acquire());
+        assertFalse(bucket.acquire());
+        assertEquals(3, bucket.permittedCount());
+        assertEquals(1, bucket.throttledCount());
+        assertEquals(0, bucket.waitingCount());
+    }
+
+    @Test
+    public void acquire_waits() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 1, 1000);
+        assertTrue(bucket.acquire());
+        long start = System.nanoTime();
+        assertTrue(bucket.acquire());
+        assertTrue(System.nanoTime() - start >= 5000000L);
+        assertEquals(1, bucket.waitedCount());
+    }
+
+    @Test
+    public void tryReserve_then_awaitPermit() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 1, 1000);
+        long first = bucket.tryReserve();
+        assertTrue(first - System.nanoTime() <= 0);
+        long second = bucket.tryReserve();
+        assertTrue(second - first >= TimeUnit.MILLISECONDS.toNanos(9));
+        bucket.awaitPermit(second);
+        assertTrue(System.nanoTime() - second >= 0);
+        assertEquals(2, bucket.permittedCount());
+        assertEquals(1, bucket.waitedCount());
+    }
+
+    @Test
+    public void tryReserve_rejected() {
+        TokenBucket bucket = new TokenBucket(1, 1, 0);
+        assertTrue(bucket.tryReserve() != TokenBucket.REJECTED);
+        assertEquals(TokenBucket.REJECTED, bucket.tryReserve());
+        assertEquals(1, bucket.throttledCount());
+    }
+
+    @Test
+    public void awaitPermit_counts_queue_time() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 1, 1000);
+        long start = System.nanoTime();
+        long[] permits = new long[10];
+        for (int i = 0; i < permits.length; i++) {
+            permits[i] = bucket.tryReserve();
+        }
+        Thread.sleep(50);
+        for (long permitAtNanos : permits) {
+            bucket.awaitPermit(permitAtNanos);
+            assertTrue(System.nanoTime() - permitAtNanos >= 0);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(85));
+        assertTrue("queue time waited twice: " + elapsed, elapsed < TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(bucket.waitedCount() < permits.length);
+    }
+
+    @Test
+    public void update_retry_after() throws Exception {
+        TokenBucket bucket = new TokenBucket(1000, 10, 0);
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 429, "Too Many Requests");
+        response.addHeader("Retry-After", "5");
+        bucket.update(response);
+        assertFalse(bucket.acquire());
+    }
+
+    @Test
+    public void update_rate_limit_remaining_zero() throws Exception {
+        TokenBucket bucket = new TokenBucket(1000, 10, 0);
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.addHeader("X-RateLimit-Remaining", "0");
+        response.addHeader("X-RateLimit-Reset", "30");
+        bucket.update(response);
+        assertFalse(bucket.acquire());
+    }
+
+    @Test
+    public void update_rate_limit_lowers_rate() throws Exception {
+        TokenBucket bucket = new TokenBucket(1000, 2, 0);
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.addHeader("X-RateLimit-Remaining", "1");
+        response.addHeader("X-RateLimit-Reset", "60");
+        bucket.update(response);
+        assertTrue(bucket.acquire());
+        assertTrue(bucket.acquire());
+        assertFalse(bucket.acquire());
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.record;
+
+import com.intuit.payments.http.Client;
+import com.intuit.payments.http.testing.StubServer;
+import com.intuit.payments.http.util.Util;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link TrafficRecorder} and {@link TrafficRecord}.
+ *
+ * @author saung
+ * @since 6/4/18
+ */
+public class TrafficRecorderTest {
+    private StubServer server;
+
+    private StringWriter out;
+
+    private TrafficRecorder recorder;
+
+    @Before
+    public void setUp() {
+        server = new StubServer().stub("/v1/users", new StubServer.Behavior().payloadBytes(100)).start();
+        out = new StringWriter();
+        recorder = new TrafficRecorder(out);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_null_writer() {
+        new TrafficRecorder(null);
+    }
+
+    @Test
+    public void record() throws Exception {
+        Client client = new Client(server.baseUrl()).recordTraffic(recorder);
+
+        client.Request("RecordGetUser", "RecordGroup", "/v1/users/{0}", 42)
+                .header("X-Request-Id", "secret-value").GET().execute();
+        client.Request("RecordPostUser", "RecordGroup", "/v1/users").POST().bodyStr("{\"name\":\"x\"}").execute();
+        recorder.flush();
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(2, recorder.recordedCount());
+        assertFalse(lines[0], lines[0].contains("secret-value"));
+
+        TrafficRecord get = Util.fromJson(lines[0], TrafficRecord.class);
+        assertEquals("RecordGetUser", get.commandName());
+        assertEquals("RecordGroup", get.commandGroup());
+        assertEquals("GET", get.httpVerb());
+        assertEquals("/v1/users/{0}", get.pathTemplate());
+        assertTrue(get.headerNames().toString(), get.headerNames().contains("X-Request-Id"));
+        assertEquals(200, get.status());
+        assertEquals(100, get.responseBytes());
+        assertTrue(get.durationMicros() > 0);
+        assertTrue(get.startEpochMillis() > 0);
+        assertEquals("success", get.outcome());
+
+        TrafficRecord post = Util.fromJson(lines[1], TrafficRecord.class);
+        assertEquals("POST", post.httpVerb());
+        assertEquals(12, post.requestBytes());
+        assertNull(post.body());
+    }
+
+    @Test
+    public void record_bodies() throws Exception {
+        Client client = new Client(server.baseUrl()).recordTraffic(recorder.includeBodies(true));
+
+        client.Request("RecordPutUser", "RecordGroup", "/v1/users/1").PUT().bodyStr("{\"name\":\"y\"}").execute();
+        recorder.close();
+
+        assertEquals("{\"name\":\"y\"}", Util.fromJson(out.toString().trim(), TrafficRecord.class).body());
+    }
+
+    @Test
+    public void sample() {
+        assertTrue(recorder.sample());
+        assertFalse(recorder.sampleRate(0).sample());
+    }
+
+    @Test
+    public void record_write_failure() {
+        TrafficRecorder failing = new TrafficRecorder(new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        TrafficRecord record = new TrafficRecord(1, "Cmd", "Grp", "GET", "/", Collections.emptyList(), 0, 200, 2, 10,
+                "success", null);
+
+        for (int i = 0; i < 20000; i++) {
+            failing.record(record);
+        }
+
+        // records are counted as written until the buffer has to be flushed
+        assertTrue(failing.failedCount() > 0);
+        assertEquals(20000, failing.recordedCount() + failing.failedCount());
+    }
+
+    @Test
+    public void toJson() {
+        TrafficRecord record = new TrafficRecord(1528070400000L, "GetUser", "UsersGroup", "GET", "/v1/users/{0}",
+                Arrays.asList("X-Request-Id"), 0, 200, 100, 1500, "success", null);
+
+        assertEquals("{\"ts\":1528070400000,\"cmd\":\"GetUser\",\"grp\":\"UsersGroup\",\"verb\":\"GET\","
+                + "\"path\":\"/v1/users/{0}\",\"hdrs\":[\"X-Request-Id\"],\"req_bytes\":0,\"status\":200,"
+                + "\"resp_bytes\":100,\"dur_us\":1500,\"outcome\":\"success\"}", Util.toJson(record));
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.shedding;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link LoadShedder}.
+ *
+ * @author saung
+ * @since 4/2/18
+ */
+public class LoadShedderTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid_capacity() {
+        new LoadShedder(0);
+    }
+
+    @Test
+    public void tryAdmit_sheds_lower_priority_first() {
+        LoadShedder shedder = new LoadShedder(10);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(shedder.tryAdmit(Priority.DEFAULT));
+        }
+        // 50% utilisation
+        assertFalse(shedder.tryAdmit(Priority.SHEDDABLE));
+        assertTrue(shedder.tryAdmit(Priority.DEFAULT));
+        for (int i = 0; i < 2; i++) {
+            assertTrue(shedder.tryAdmit(Priority.DEFAULT));
+        }
+        // 80% utilisation
+        assertFalse(shedder.tryAdmit(Priority.DEFAULT));
+        assertTrue(shedder.tryAdmit(Priority.CRITICAL));
+        assertTrue(shedder.tryAdmit(Priority.CRITICAL));
+        assertTrue(shedder.tryAdmit(Priority.CRITICAL));
+
+        assertEquals(11, shedder.inFlight());
+        assertEquals(1, shedder.shedCount(Priority.SHEDDABLE));
+        assertEquals(1, shedder.shedCount(Priority.DEFAULT));
+        assertEquals(0, shedder.shedCount(Priority.CRITICAL));
+        assertEquals(8, shedder.admittedCount(Priority.DEFAULT));
+    }
+
+    @Test
+    public void release() {
+        LoadShedder shedder = new LoadShedder(1).shedAt(Priority.DEFAULT, 1.0, 200);
+        assertTrue(shedder.tryAdmit(Priority.DEFAULT));
+        assertFalse(shedder.tryAdmit(Priority.DEFAULT));
+        shedder.release();
+        assertTrue(shedder.tryAdmit(Priority.DEFAULT));
+    }
+
+    @Test
+    public void recordQueueWait() {
+        LoadShedder shedder = new LoadShedder(10);
+        for (int i = 0; i < 9; i++) {
+            shedder.recordQueueWait(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertEquals(100, shedder.lastQueueWaitInMilliSec());
+        // median recent queue wait above the SHEDDABLE threshold
+        assertFalse(shedder.tryAdmit(Priority.SHEDDABLE));
+        assertTrue(shedder.tryAdmit(Priority.DEFAULT));
+        assertEquals(1, shedder.shedCount(Priority.SHEDDABLE));
+    }
+
+    @Test
+    public void recordQueueWait_single_outlier() {
+        LoadShedder shedder = new LoadShedder(10);
+        for (int i = 0; i < 20; i++) {
+            shedder.recordQueueWait(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        shedder.recordQueueWait(TimeUnit.SECONDS.toNanos(5));
+        assertEquals(5000, shedder.lastQueueWaitInMilliSec());
+        assertTrue(shedder.tryAdmit(Priority.SHEDDABLE));
+        assertTrue(shedder.tryAdmit(Priority.DEFAULT));
+        assertEquals(0, shedder.shedCount(Priority.SHEDDABLE));
+
+        // half of the window is not a majority
+        for (int i = 0; i < 7; i++) {
+            shedder.recordQueueWait(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertTrue(shedder.tryAdmit(Priority.SHEDDABLE));
+        shedder.recordQueueWait(TimeUnit.MILLISECONDS.toNanos(100));
+        assertFalse(shedder.tryAdmit(Priority.SHEDDABLE));
+    }
+
+    @Test
+    public void tryAdmit_concurrent_never_exceeds_threshold() throws Exception {
+        LoadShedder shedder = new LoadShedder(10).shedAt(Priority.DEFAULT, 1.0, Long.MAX_VALUE);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 10000; i++) {
+                    if (shedder.tryAdmit(Priority.DEFAULT)) {
+                        maxInFlight.accumulateAndGet(shedder.inFlight(), Math::max);
+                        shedder.release();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(maxInFlight.get() <= 10);
+        assertEquals(0, shedder.inFlight());
+        assertEquals(80000, shedder.admittedCount(Priority.DEFAULT) + shedder.shedCount(Priority.DEFAULT));
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.stream;
+
+import com.intuit.payments.http.cache.StaleResponseCache;
+import com.intuit.payments.http.ratelimit.TokenBucket;
+import com.intuit.payments.http.shedding.LoadShedder;
+import com.intuit.payments.http.shedding.Priority;
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link MetricsStreamServer}.
+ *
+ * @author saung
+ * @since 5/7/18
+ */
+public class MetricsStreamServerTest {
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    private MetricsStreamServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        server = new MetricsStreamServer(0).intervalInMilliSec(50).maxConnections(1).start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        connectionManager.shutdown();
+    }
+
+    @Test
+    public void render() throws Exception {
+        new StreamTestCommand().execute();
+        StaleResponseCache cache = new StaleResponseCache(10, 1000);
+        HttpClientConnection connection = connectionManager
+                .requestConnection(new HttpRoute(new HttpHost("localhost", 8080)), null)
+                .get(1, TimeUnit.SECONDS);
+        server.monitor("http://localhost:8080", connectionManager, () -> null, () -> cache);
+        TokenBucket rateLimiter = new TokenBucket(1, 1, 0);
+        rateLimiter.tryReserve();
+        rateLimiter.tryReserve();
+        server.monitorRateLimiters("http://localhost:8080", Collections.singletonMap("StreamTestGroup", rateLimiter));
+        LoadShedder loadShedder = new LoadShedder(1).shedAt(Priority.SHEDDABLE, 0.0, 50);
+        loadShedder.tryAdmit(Priority.SHEDDABLE);
+        server.monitorLoadShedders("http://localhost:8080", Collections.singletonMap("StreamTestGroup", loadShedder));
+
+        String events = server.render();
+        for (int i = 0; i < 100 && !events.contains("\"type\":\"HystrixThreadPool\""); i++) {
+            // the thread pool counts a task as completed just after the command returns
+            Thread.sleep(10);
+            events = server.render();
+        }
+        assertTrue(events, events.startsWith("data: {\"type\":\"HystrixCommand\""));
+        assertTrue(events, events.contains("\"name\":\"StreamTest\",\"group\":\"StreamTestGroup\""));
+        assertTrue(events, events.contains("\"rollingCountSuccess\":"));
+        assertTrue(events, events.contains("\"latencyExecute\":{\"0\":"));
+        assertTrue(events, events.contains("\"99.5\":"));
+        assertTrue(events, events.contains("data: {\"type\":\"HystrixThreadPool\",\"name\":\"StreamTestGroup\""));
+        assertTrue(events, events.contains("data: {\"type\":\"HCConnectionPool\",\"name\":\"http://localhost:8080\""));
+        assertTrue(events, events.contains("\"leased\":1,\"available\":0,\"pending\":0,\"max\":20,\"routes\":"
+                + "[{\"route\":\"http://localhost:8080\",\"leased\":1"));
+        assertTrue(events, events.contains("data: {\"type\":\"HCStaleCache\""));
+        assertTrue(events, events.contains("data: {\"type\":\"HCRateLimiter\",\"name\":\"http://localhost:8080\","
+                + "\"group\":\"StreamTestGroup\""));
+        assertTrue(events, events.contains("\"permitted\":1,\"throttled\":1,\"waited\":0,\"waiting\":0}"));
+        assertTrue(events, events.contains("data: {\"type\":\"HCLoadShedder\",\"name\":\"http://localhost:8080\","
+                + "\"group\":\"StreamTestGroup\""));
+        assertTrue(events, events.contains("\"inFlight\":0,\"lastQueueWaitInMilliSec\":0,"
+                + "\"admitted\":{\"CRITICAL\":0,\"DEFAULT\":0,\"SHEDDABLE\":0},"
+                + "\"shed\":{\"CRITICAL\":0,\"DEFAULT\":0,\"SHEDDABLE\":1}}"));
+        assertTrue(events, events.endsWith("}\n\n"));
+        connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void stream() throws Exception {
+        new StreamTestCommand().execute();
+        HttpURLConnection connection = open();
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(connection.getContentType().startsWith("text/event-stream"));
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            boolean found = false;
+            while (!found && (line = reader.readLine()) != null) {
+                found = line.startsWith("data: {\"type\":\"HystrixCommand\"");
+            }
+            assertTrue(found);
+            assertEquals(1, server.connectionCount());
+
+            assertEquals(503, open().getResponseCode());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void address_loopback_by_default() {
+        assertTrue(server.address().isLoopbackAddress());
+    }
+
+    @Test
+    public void address_explicit() throws Exception {
+        MetricsStreamServer anyLocal = new MetricsStreamServer(null, 0);
+        try {
+            assertTrue(anyLocal.address().isAnyLocalAddress());
+        } finally {
+            anyLocal.stop();
+        }
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        MetricsStreamServer bound = MetricsStreamServer.start(loopback, 0);
+        try {
+            assertEquals(loopback, bound.address());
+            assertTrue(bound.port() > 0);
+        } finally {
+            bound.stop();
+        }
+    }
+
+    private HttpURLConnection open() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://"
+                + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.port()
+                + MetricsStreamServer.PATH).openConnection();
+        connection.setReadTimeout(5000);
+        return connection;
+    }
+
+    private static class StreamTestCommand extends HystrixCommand<String> {
+        StreamTestCommand() {
+            super(Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey("StreamTestGroup"))
+                    .andCommandKey(HystrixCommandKey.Factory.asKey("StreamTest")));
+        }
+
+        @Override
+        protected String run() {
+            return "OK";
+        }
+    }
+}
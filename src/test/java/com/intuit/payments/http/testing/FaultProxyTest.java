@@ -0,0 +1,142 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.testing;
+
+import com.intuit.payments.http.Client;
+import com.intuit.payments.http.Request;
+import com.intuit.payments.http.Response;
+import com.netflix.hystrix.exception.HystrixRuntimeException;
+import org.apache.http.Header;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for {@link FaultProxy} with a {@link Client} and a {@link StubServer}.
+ *
+ * @author saung
+ * @since 5/28/18
+ */
+public class FaultProxyTest {
+    private StubServer server;
+
+    private FaultProxy proxy;
+
+    private Client client;
+
+    @Before
+    public void setUp() {
+        server = new StubServer().start();
+        server.stub("/", new StubServer.Behavior().payloadBytes(1000));
+        proxy = new FaultProxy(server).start();
+        client = new Client(proxy.baseUrl()).connectionTimeoutInMilliSec(200).socketTimeoutInMilliSec(300);
+    }
+
+    @After
+    public void tearDown() {
+        proxy.stop();
+        server.stop();
+    }
+
+    @Test
+    public void noFault() {
+        Response response = get("FaultNone").execute();
+        assertEquals(200, response.statusCode());
+        assertEquals(1000, response.rawString().length());
+        assertEquals(0, proxy.faultCount());
+        assertEquals(1, proxy.connectionCount());
+    }
+
+    @Test
+    public void latency_fallback() {
+        proxy.latency(1000);
+        Response response = get("FaultLatency")
+                .fallback(e -> new Response(599, "Fallback", "{}", new Header[] { }))
+                .execute();
+        assertEquals(599, response.statusCode());
+        assertEquals(1, proxy.faultCount());
+    }
+
+    @Test
+    public void errorBurst() {
+        proxy.errorBurst(503, 2);
+        assertEquals(503, get("FaultBurst").execute().statusCode());
+        assertEquals(503, get("FaultBurst").execute().statusCode());
+        assertEquals(200, get("FaultBurst").execute().statusCode());
+        assertEquals(2, proxy.faultCount());
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test
+    public void resetAfterBytes() {
+        proxy.resetAfterBytes(200);
+        assertFails(get("FaultReset"));
+
+        proxy.clear().closeConnections();
+        assertEquals(200, get("FaultReset").execute().statusCode());
+    }
+
+    @Test
+    public void resetAfterBytes_reused_connection() {
+        assertEquals(200, get("FaultResetReused").execute().statusCode());
+
+        proxy.resetAfterBytes(200);
+        assertFails(get("FaultResetReused"));
+        assertEquals(1, proxy.connectionCount());
+        assertEquals(1, proxy.faultCount());
+    }
+
+    @Test
+    public void dropConnections() {
+        proxy.dropConnections(true);
+        assertFails(get("FaultDrop"));
+        assertEquals(0, server.requestCount());
+    }
+
+    @Test
+    public void slowDrip() {
+        proxy.slowDrip(250, 50);
+        long start = System.nanoTime();
+        Response response = get("FaultDrip").execute();
+        assertEquals(200, response.statusCode());
+        assertEquals(1000, response.rawString().length());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void stallHandshake() {
+        proxy.stallHandshake(1000);
+        assertFails(get("FaultStall"));
+        assertEquals(0, server.requestCount());
+    }
+
+    @Test
+    public void probability() {
+        proxy.errorBurst(503, 0).dropConnections(true).probability(0);
+        assertEquals(200, get("FaultProbability").execute().statusCode());
+        assertEquals(0, proxy.faultCount());
+    }
+
+    private Request get(String commandName) {
+        return client.Request(commandName, "FaultGroup", "/v1/users/1").GET()
+                .throwExceptionIfResponseCodeIsGreaterThanOrEqual(600);
+    }
+
+    private static void assertFails(Request request) {
+        try {
+            request.execute();
+            fail("Expected a failure");
+        } catch (HystrixRuntimeException e) {
+            // expected
+        }
+    }
+}
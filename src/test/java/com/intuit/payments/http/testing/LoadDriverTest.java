@@ -0,0 +1,82 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.testing;
+
+import com.intuit.payments.http.Client;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link LoadDriver} and {@link LoadReport} against a {@link StubServer}.
+ *
+ * @author saung
+ * @since 5/21/18
+ */
+public class LoadDriverTest {
+    private StubServer server;
+
+    private Client client;
+
+    @Before
+    public void setUp() {
+        server = new StubServer().start();
+        client = new Client(server.baseUrl()).maxConcurrentConnection(20);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_null_supplier() {
+        new LoadDriver(null);
+    }
+
+    @Test
+    public void run() {
+        server.stub("/v1/users", new StubServer.Behavior()
+                .latency(LatencyDistribution.fixed(5))
+                .status(200, 9).status(404, 1));
+
+        LoadReport report = new LoadDriver(() -> client.Request("LoadGetUser", "LoadGroup", "/v1/users/1").GET())
+                .ratePerSecond(200)
+                .warmup(200, TimeUnit.MILLISECONDS)
+                .duration(500, TimeUnit.MILLISECONDS)
+                .run();
+
+        assertEquals(100, report.sent());
+        assertEquals(0, report.dropped());
+        assertEquals(0, report.unfinished());
+        assertEquals(report.toString(), report.sent(), report.successes() + report.httpErrors()
+                + report.rejections() + report.timeouts() + report.errors());
+        assertTrue(report.toString(), report.httpErrors() > 0 && report.successes() > report.httpErrors());
+        assertTrue(report.toString(), report.latencyMicros(50) >= 5000);
+        assertTrue(report.toString(), report.throughputPerSecond() > 150);
+        assertTrue(report.toString().startsWith("type=load_report;target_rps=200.0;"));
+    }
+
+    @Test
+    public void run_rejections() {
+        server.stub("/slow", new StubServer.Behavior().latency(LatencyDistribution.fixed(300)));
+
+        LoadReport report = new LoadDriver(() -> client.Request("LoadSlow", "LoadSlowGroup", "/slow").GET())
+                .ratePerSecond(100)
+                .poisson(true)
+                .duration(300, TimeUnit.MILLISECONDS)
+                .run();
+
+        // the default Hystrix thread pool runs 10 requests at a time without a queue
+        assertTrue(report.toString(), report.rejections() > 0);
+        assertTrue(report.toString(), report.successes() <= 10);
+    }
+}
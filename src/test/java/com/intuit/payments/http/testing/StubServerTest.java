@@ -0,0 +1,119 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.testing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link StubServer} and {@link LatencyDistribution}.
+ *
+ * @author saung
+ * @since 5/21/18
+ */
+public class StubServerTest {
+    private StubServer server;
+
+    @Before
+    public void setUp() {
+        server = new StubServer().start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void defaultBehavior() throws Exception {
+        HttpURLConnection connection = open("/anything");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("application/json", connection.getContentType());
+        assertEquals(64, read(connection).length);
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test
+    public void stub() throws Exception {
+        server.stub("/v1", new StubServer.Behavior().payloadBytes(1000).status(503, 1))
+                .stub("/v1/users", new StubServer.Behavior().latency(LatencyDistribution.fixed(50))
+                        .status(201, 1).closeConnectionRatio(1));
+
+        HttpURLConnection connection = open("/v1/companies");
+        assertEquals(503, connection.getResponseCode());
+
+        long start = System.nanoTime();
+        connection = open("/v1/users/1");
+        assertEquals(201, connection.getResponseCode());
+        assertTrue(System.nanoTime() - start >= 50000000L);
+        assertEquals("close", connection.getHeaderField("Connection"));
+        assertEquals(64, read(connection).length);
+    }
+
+    @Test
+    public void requestBytes() throws Exception {
+        HttpURLConnection connection = open("/v1/users");
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write("{\"name\":\"foo\"}".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(14, server.requestBytes());
+    }
+
+    @Test
+    public void statusMix() {
+        StubServer.Behavior behavior = new StubServer.Behavior().status(200, 3).status(500, 1);
+        int errors = 0;
+        for (int i = 0; i < 4000; i++) {
+            if (behavior.nextStatusCode() == 500) {
+                errors++;
+            }
+        }
+        assertTrue(String.valueOf(errors), errors > 800 && errors < 1200);
+    }
+
+    @Test
+    public void latencyDistribution() {
+        assertEquals(0, LatencyDistribution.none().nextMillis());
+        assertEquals(7, LatencyDistribution.fixed(7).nextMillis());
+        for (int i = 0; i < 100; i++) {
+            long millis = LatencyDistribution.uniform(5, 10).nextMillis();
+            assertTrue(millis >= 5 && millis <= 10);
+            assertTrue(LatencyDistribution.exponential(10).nextMillis() >= 0);
+        }
+        assertEquals(100, LatencyDistribution.bimodal(1, 100, 1).nextMillis());
+        assertEquals(1, LatencyDistribution.bimodal(1, 100, 0).nextMillis());
+    }
+
+    private HttpURLConnection open(String path) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(server.baseUrl() + path).openConnection();
+        connection.setReadTimeout(5000);
+        return connection;
+    }
+
+    private static byte[] read(HttpURLConnection connection) throws Exception {
+        try (InputStream in = connection.getInputStream()) {
+            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
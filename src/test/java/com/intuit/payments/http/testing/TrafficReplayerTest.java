@@ -0,0 +1,115 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.testing;
+
+import com.intuit.payments.http.Client;
+import com.intuit.payments.http.record.TrafficRecord;
+import com.intuit.payments.http.record.TrafficRecorder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link TrafficReplayer}.
+ *
+ * @author saung
+ * @since 6/4/18
+ */
+public class TrafficReplayerTest {
+    private StubServer server;
+
+    private Client client;
+
+    @Before
+    public void setUp() {
+        server = new StubServer().stub("/v1/users", new StubServer.Behavior()).start();
+        client = new Client(server.baseUrl());
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_null_client() {
+        new TrafficReplayer(null);
+    }
+
+    @Test
+    public void record_and_replay() throws Exception {
+        Path trace = Files.createTempFile("trace", ".jsonl");
+        try {
+            try (TrafficRecorder recorder = TrafficRecorder.toFile(trace)) {
+                Client recording = new Client(server.baseUrl()).recordTraffic(recorder);
+                for (int i = 0; i < 5; i++) {
+                    recording.Request("ReplayGetUser", "ReplayGroup", "/v1/users/{0}", i).GET().execute();
+                    recording.Request("ReplayPostUser", "ReplayGroup", "/v1/users").POST()
+                            .bodyStr("{\"name\":\"" + i + "\"}").execute();
+                }
+            }
+            long recordedRequests = server.requestCount();
+
+            List<TrafficRecord> records = TrafficReplayer.read(trace);
+            LoadReport report = new TrafficReplayer(client).speed(2).replay(trace);
+
+            assertEquals(10, records.size());
+            assertEquals(report.toString(), 10, report.sent());
+            assertEquals(report.toString(), 10, report.successes());
+            assertEquals(recordedRequests + 10, server.requestCount());
+            String compare = report.compare(TrafficReplayer.recordedLatency(records));
+            assertTrue(compare, compare.startsWith("type=latency_compare;p50_base_us="));
+            assertTrue(compare, compare.contains(";p999_diff_pct="));
+        } finally {
+            Files.delete(trace);
+        }
+    }
+
+    @Test
+    public void replay_timing() {
+        List<TrafficRecord> records = Arrays.asList(record(1000, "GET", 0), record(1200, "GET", 0),
+                record(1400, "DELETE", 0));
+
+        long start = System.nanoTime();
+        LoadReport report = new TrafficReplayer(client).replay(records);
+
+        assertTrue(System.nanoTime() - start >= 400_000_000L);
+        assertEquals(report.toString(), 3, report.successes());
+    }
+
+    @Test
+    public void replay_empty() {
+        assertEquals(0, new TrafficReplayer(client).replay(Collections.emptyList()).sent());
+    }
+
+    @Test
+    public void syntheticBody() {
+        assertEquals(100, TrafficReplayer.syntheticBody(100).length());
+        assertEquals("{\"r\":\"\"}", TrafficReplayer.syntheticBody(1));
+    }
+
+    @Test
+    public void toRequest_synthetic_body() throws Exception {
+        long before = server.requestBytes();
+        new TrafficReplayer(client).toRequest(record(0, "FORM_POST", 500)).execute();
+
+        assertTrue(server.requestBytes() - before >= 500);
+    }
+
+    private static TrafficRecord record(long ts, String verb, long requestBytes) {
+        return new TrafficRecord(ts, "Replay" + verb, "ReplayGroup", verb, "/v1/users/{0}",
+                Collections.singletonList("X-Request-Id"), requestBytes, 200, 2, 1000, "success", null);
+    }
+}
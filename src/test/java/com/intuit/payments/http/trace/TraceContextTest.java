@@ -0,0 +1,82 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.trace;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link TraceContext}.
+ *
+ * @author saung
+ * @since 5/28/18
+ */
+public class TraceContextTest {
+    private static final String TRACEPARENT = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+
+    @Test
+    public void fromHeaders() {
+        TraceContext context = TraceContext.fromHeaders(TRACEPARENT, "congo=t61rcWkgMzE");
+        assertEquals("0af7651916cd43dd8448eb211c80319c", context.traceId());
+        assertEquals("b7ad6b7169203331", context.spanId());
+        assertNull(context.parentSpanId());
+        assertTrue(context.isSampled());
+        assertEquals("congo=t61rcWkgMzE", context.traceState());
+        assertEquals(TRACEPARENT, context.traceparent());
+    }
+
+    @Test
+    public void fromHeaders_invalid() {
+        assertNull(TraceContext.fromHeaders(null, null));
+        assertNull(TraceContext.fromHeaders("garbage", null));
+        assertNull(TraceContext.fromHeaders("00-00000000000000000000000000000000-b7ad6b7169203331-01", null));
+        assertNull(TraceContext.fromHeaders("00-0af7651916cd43dd8448eb211c80319c-0000000000000000-01", null));
+        assertNull(TraceContext.fromHeaders("00-0AF7651916CD43DD8448EB211C80319C-b7ad6b7169203331-01", null));
+        assertNull(TraceContext.fromHeaders("ff-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01", null));
+        assertNull(TraceContext.fromHeaders(TRACEPARENT + "-extra", null));
+        assertFalse(TraceContext.fromHeaders(TRACEPARENT.replace("-01", "-00"), " ").isSampled());
+        assertNull(TraceContext.fromHeaders(TRACEPARENT.replace("-01", "-00"), " ").traceState());
+    }
+
+    @Test
+    public void newChild() {
+        TraceContext parent = TraceContext.fromHeaders(TRACEPARENT, "congo=t61rcWkgMzE");
+        TraceContext child = parent.newChild(true);
+        assertEquals(parent.traceId(), child.traceId());
+        assertEquals(parent.spanId(), child.parentSpanId());
+        assertNotEquals(parent.spanId(), child.spanId());
+        assertEquals(16, child.spanId().length());
+        assertEquals(parent.traceState(), child.traceState());
+    }
+
+    @Test
+    public void newRoot() {
+        TraceContext root = TraceContext.newRoot(false);
+        assertEquals(32, root.traceId().length());
+        assertFalse(root.isSampled());
+        assertTrue(root.traceparent().endsWith("-00"));
+        assertEquals(root.traceId(), TraceContext.fromHeaders(root.traceparent(), null).traceId());
+    }
+
+    @Test
+    public void attach() {
+        TraceContext outer = TraceContext.newRoot(true);
+        try (TraceContext.Scope ignored = TraceContext.attach(outer)) {
+            TraceContext inner = outer.newChild(true);
+            try (TraceContext.Scope ignored2 = TraceContext.attach(inner)) {
+                assertSame(inner, TraceContext.current());
+            }
+            assertSame(outer, TraceContext.current());
+        }
+        assertNull(TraceContext.current());
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.trace;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link Tracer}.
+ *
+ * @author saung
+ * @since 5/28/18
+ */
+public class TracerTest {
+    private final List<Span> spans = new ArrayList<>();
+
+    @Test
+    public void start() {
+        Tracer tracer = new Tracer(spans::add).headSampleRate(1);
+        assertTrue(tracer.start(null).isSampled());
+        assertFalse(tracer.headSampleRate(0).start(null).isSampled());
+
+        TraceContext parent = TraceContext.newRoot(true);
+        TraceContext child = tracer.start(parent);
+        assertTrue(child.isSampled());
+        assertEquals(parent.spanId(), child.parentSpanId());
+    }
+
+    @Test
+    public void end_head_sampled() {
+        Tracer tracer = new Tracer(spans::add);
+        tracer.end(TraceContext.newRoot(true), "GetUsers", "UsersGroup", "http://localhost/v1/users", "GET", 200,
+                "success", false, 1000L, TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(1, spans.size());
+        Span span = spans.get(0);
+        assertEquals("GetUsers", span.name());
+        assertEquals(1000000L, span.startEpochMicros());
+        assertFalse(span.isTailSampled());
+        assertEquals(1, tracer.exportedCount());
+    }
+
+    @Test
+    public void end_tail_sampled() {
+        Tracer tracer = new Tracer(spans::add).headSampleRate(0).keepSlowerThan(100);
+        TraceContext context = tracer.start(null);
+        tracer.end(context, "GetUsers", "UsersGroup", "http://localhost", "GET", 200, "success", false, 0,
+                TimeUnit.MILLISECONDS.toNanos(5));
+        assertTrue(spans.isEmpty());
+
+        tracer.end(context, "GetUsers", "UsersGroup", "http://localhost", "GET", 200, "success", false, 0,
+                TimeUnit.MILLISECONDS.toNanos(100));
+        tracer.end(context, "GetUsers", "UsersGroup", "http://localhost", "GET", 503, "failure", true, 0,
+                TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(2, spans.size());
+        assertTrue(spans.get(0).isTailSampled());
+        assertTrue(spans.get(1).isError());
+
+        tracer.keepErrors(false).end(context, "GetUsers", "UsersGroup", "http://localhost", "GET", 503, "failure",
+                true, 0, TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(2, spans.size());
+    }
+
+    @Test
+    public void end_sink_failure() {
+        Tracer tracer = new Tracer(span -> { throw new IllegalStateException("down"); });
+        tracer.end(TraceContext.newRoot(true), "GetUsers", "UsersGroup", "http://localhost", "GET", 200,
+                "success", false, 0, 0);
+        assertEquals(0, tracer.exportedCount());
+    }
+}
@@ -12,6 +12,7 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author saung
@@ -44,11 +45,12 @@ public class HystrixLogTest {
         final StringBuilder expected = new StringBuilder("type=hystrix;");
         expected.append("response_code=").append(responseCode).append(";")
                 .append("processing_time=").append(String.valueOf(processingTime)).append(";")
-                .append("CommandHelloWorld_is_success=yes;CommandHelloWorld_is_timeout=no;CommandHelloWorld_is_cb_open=no;CommandHelloWorld_exe_time=")
+                .append("CommandHelloWorld_count=1;CommandHelloWorld_is_success=yes;CommandHelloWorld_is_timeout=no;CommandHelloWorld_is_cb_open=no;CommandHelloWorld_exe_time=")
                 .append(hystrixCommand.getExecutionTimeInMilliseconds()).append(";");
         expected.append("num_dependencies=").append(1).append(";");
         expected.append("is_all_dep_successful=").append(true).append(";");
         expected.append("dependencies_exe_time=").append(hystrixCommand.getExecutionTimeInMilliseconds()).append(";");
+        expected.append("critical_path_time=").append(hystrixCommand.getExecutionTimeInMilliseconds()).append(";");
         expected.append("code_exe_time=").append(processingTime - hystrixCommand.getExecutionTimeInMilliseconds()).append(";");
         StringBuilder actual = HystrixLog.logMetrics(responseCode, processingTime);
         context.shutdown();
@@ -71,12 +73,13 @@ public class HystrixLogTest {
         final StringBuilder expected = new StringBuilder("type=hystrix;");
         expected.append("response_code=").append(responseCode).append(";")
                 .append("processing_time=").append(String.valueOf(processingTime)).append(";")
-                .append("CommandHelloWorldFailed_is_success=no;CommandHelloWorldFailed_is_timeout=no;CommandHelloWorldFailed_is_cb_open=no;CommandHelloWorldFailed_exe_time=")
+                .append("CommandHelloWorldFailed_count=1;CommandHelloWorldFailed_is_success=no;CommandHelloWorldFailed_is_timeout=no;CommandHelloWorldFailed_is_cb_open=no;CommandHelloWorldFailed_exe_time=")
                 .append(hystrixCommand.getExecutionTimeInMilliseconds()).append(";")
                 .append("CommandHelloWorldFailed_failed_exception=class java.lang.RuntimeException;");
         expected.append("num_dependencies=").append(1).append(";");
         expected.append("is_all_dep_successful=").append(false).append(";");
         expected.append("dependencies_exe_time=").append(hystrixCommand.getExecutionTimeInMilliseconds()).append(";");
+        expected.append("critical_path_time=").append(hystrixCommand.getExecutionTimeInMilliseconds()).append(";");
         expected.append("code_exe_time=").append(processingTime - hystrixCommand.getExecutionTimeInMilliseconds()).append(";");
         StringBuilder actual = HystrixLog.logMetrics(responseCode, processingTime);
         context.shutdown();
@@ -84,6 +87,33 @@ public class HystrixLogTest {
         assertEquals(expected.toString(), actual.toString());
     }
 
+    @Test
+    public void logMetrics_CacheHit() throws Exception {
+        HystrixRequestContext context = HystrixRequestContext.initializeContext();
+        new CommandHelloWorldCached("foo").execute();
+        new CommandHelloWorldCached("foo").execute();
+
+        String actual = HystrixLog.logMetrics(200, 5000).toString();
+        context.shutdown();
+        assertTrue(actual.contains("CommandHelloWorldCached_count=2;"));
+        assertTrue(actual.contains("CommandHelloWorldCached_cache_hits=1;"));
+        assertTrue(actual.contains("num_dependencies=2;num_cache_hits=1;"));
+    }
+
+    private static class CommandHelloWorldCached extends CommandHelloWorld {
+        private final String name;
+
+        public CommandHelloWorldCached(String name) {
+            super(name);
+            this.name = name;
+        }
+
+        @Override
+        protected String getCacheKey() {
+            return name;
+        }
+    }
+
     private static class CommandHelloWorld extends HystrixCommand<String> {
 
         private final String name;
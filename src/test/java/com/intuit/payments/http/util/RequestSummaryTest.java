@@ -0,0 +1,102 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.util;
+
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.strategy.concurrency.HystrixRequestContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link RequestSummary}.
+ *
+ * @author saung
+ * @since 5/14/18
+ */
+public class RequestSummaryTest {
+    private HystrixRequestContext context;
+
+    @Before
+    public void setUp() {
+        context = HystrixRequestContext.initializeContext();
+    }
+
+    @After
+    public void tearDown() {
+        context.shutdown();
+    }
+
+    @Test
+    public void current_null() {
+        context.shutdown();
+        assertNull(RequestSummary.current());
+        context = HystrixRequestContext.initializeContext();
+    }
+
+    @Test
+    public void grouped() {
+        new SleepCommand("SummaryGetUser", 1).execute();
+        new SleepCommand("SummaryGetUser", 20).execute();
+        new SleepCommand("SummaryGetCompany", 1).execute();
+
+        RequestSummary summary = RequestSummary.current();
+        assertNotNull(summary);
+        assertEquals(3, summary.numDependencies());
+        assertEquals(2, summary.commands().size());
+        assertTrue(summary.isAllSuccessful());
+
+        RequestSummary.CommandSummary getUser = summary.command("SummaryGetUser");
+        assertEquals(2, getUser.count());
+        assertEquals(2, getUser.successCount());
+        assertTrue(getUser.maxExeTime() >= 20);
+        assertEquals(getUser.maxExeTime(), getUser.percentile(99));
+        assertTrue(getUser.percentile(50) < getUser.percentile(99));
+        assertTrue(getUser.sumExeTime() >= getUser.maxExeTime());
+        String text = summary.appendTo(new StringBuilder()).toString();
+        assertTrue(text.startsWith("SummaryGetUser_count=2;SummaryGetUser_is_success=yes;"));
+        assertTrue(text.contains("SummaryGetUser_p50_exe_time=" + getUser.percentile(50)
+                + ";SummaryGetUser_p99_exe_time=" + getUser.maxExeTime() + ";"));
+    }
+
+    @Test
+    public void criticalPathTime_parallel() throws Exception {
+        Future<String> first = new SleepCommand("SummaryParallelA", 100).queue();
+        Future<String> second = new SleepCommand("SummaryParallelB", 100).queue();
+        first.get();
+        second.get();
+
+        RequestSummary summary = RequestSummary.current();
+        assertTrue(summary.dependenciesExeTime() >= 200);
+        assertTrue(summary.criticalPathTime() >= 100);
+        assertTrue(summary.criticalPathTime() < summary.dependenciesExeTime());
+    }
+
+    private static class SleepCommand extends HystrixCommand<String> {
+        private final long sleepInMilliSec;
+
+        SleepCommand(String name, long sleepInMilliSec) {
+            super(Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey("SummaryGroup"))
+                    .andCommandKey(HystrixCommandKey.Factory.asKey(name)));
+            this.sleepInMilliSec = sleepInMilliSec;
+        }
+
+        @Override
+        protected String run() throws Exception {
+            Thread.sleep(sleepInMilliSec);
+            return "ok";
+        }
+    }
+}
@@ -0,0 +1,424 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.testing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A loopback TCP proxy that injects faults between a {@link com.intuit.payments.http.Client} and a backend such as
+ * a {@link StubServer}, to test how Hystrix timeouts, fallbacks and the connection pool behave under failures and
+ * to measure their throughput cost. It works offline, also passes TLS through, and faults can be changed at any
+ * time from a test.
+ *
+ * Faults apply per request, i.e. to the first bytes the client sends after a response, with a configurable
+ * probability:
+ * <ul>
+ *     <li>{@link #latency(long)}: delays the request.</li>
+ *     <li>{@link #dropConnections(boolean)}: closes the connection without a response.</li>
+ *     <li>{@link #resetAfterBytes(long)}: resets the connection after some bytes of the response.</li>
+ *     <li>{@link #slowDrip(int, long)}: sends the response a few bytes at a time.</li>
+ *     <li>{@link #errorBurst(int, int)}: answers the next requests with a Http error.</li>
+ *     <li>{@link #stallHandshake(long)}: holds new connections without a byte, e.g. before the TLS handshake.</li>
+ * </ul>
+ *
+ * Pooled connections keep running through the proxy; {@link #closeConnections()} forces new ones.
+ *
+ * @author saung
+ * @since 5/28/18
+ */
+public class FaultProxy {
+    private final ServerSocket serverSocket;
+
+    private final InetSocketAddress backend;
+
+    private final ExecutorService executor;
+
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder connectionCount = new LongAdder();
+
+    private final LongAdder faultCount = new LongAdder();
+
+    private final AtomicInteger errorBurst = new AtomicInteger();
+
+    private volatile double probability = 1;
+
+    private volatile long latencyInMilliSec;
+
+    private volatile boolean dropConnections;
+
+    private volatile long resetAfterBytes = -1;
+
+    private volatile int dripBytes;
+
+    private volatile long dripIntervalInMilliSec;
+
+    private volatile int errorStatusCode = 503;
+
+    private volatile long stallInMilliSec;
+
+    private volatile boolean running;
+
+    /**
+     * Default constructor. Call {@link #start()} to accept connections.
+     *
+     * @param backendHost - a backend host such as "127.0.0.1".
+     * @param backendPort - a backend port.
+     * @throws IllegalStateException if the proxy port cannot be bound.
+     */
+    public FaultProxy(String backendHost, int backendPort) {
+        try {
+            this.serverSocket = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to bind the fault proxy", e);
+        }
+        this.backend = new InetSocketAddress(backendHost, backendPort);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "fault-proxy-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a proxy in front of a stub server.
+     *
+     * @param server - a {@link StubServer}.
+     */
+    public FaultProxy(StubServer server) {
+        this("127.0.0.1", server.port());
+    }
+
+    /**
+     * Starts accepting connections.
+     *
+     * @return this instance.
+     */
+    public FaultProxy start() {
+        running = true;
+        executor.execute(this::acceptLoop);
+        return this;
+    }
+
+    /**
+     * Stops the proxy and closes all connections.
+     */
+    public void stop() {
+        running = false;
+        closeQuietly(serverSocket);
+        closeConnections();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Closes all open connections, so the client has to open new ones.
+     *
+     * @return this instance.
+     */
+    public FaultProxy closeConnections() {
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+        return this;
+    }
+
+    /**
+     * Removes all faults.
+     *
+     * @return this instance.
+     */
+    public FaultProxy clear() {
+        probability = 1;
+        latencyInMilliSec = 0;
+        dropConnections = false;
+        resetAfterBytes = -1;
+        dripBytes = 0;
+        errorBurst.set(0);
+        stallInMilliSec = 0;
+        return this;
+    }
+
+    /**
+     * @param probability - probability between 0 and 1 that a fault applies to a request or a new connection.
+     * @return this instance.
+     */
+    public FaultProxy probability(double probability) {
+        this.probability = probability;
+        return this;
+    }
+
+    /**
+     * @param latencyInMilliSec - delay before a request is forwarded to the backend; 0 for none.
+     * @return this instance.
+     */
+    public FaultProxy latency(long latencyInMilliSec) {
+        this.latencyInMilliSec = latencyInMilliSec;
+        return this;
+    }
+
+    /**
+     * @param dropConnections - true to close connections as soon as a request arrives, without a response.
+     * @return this instance.
+     */
+    public FaultProxy dropConnections(boolean dropConnections) {
+        this.dropConnections = dropConnections;
+        return this;
+    }
+
+    /**
+     * @param bytes - number of bytes of each response after which the connection is reset (TCP RST), e.g. in the
+     *              middle of the body; -1 for none.
+     * @return this instance.
+     */
+    public FaultProxy resetAfterBytes(long bytes) {
+        this.resetAfterBytes = bytes;
+        return this;
+    }
+
+    /**
+     * @param bytes - number of response bytes per write; 0 for none.
+     * @param intervalInMilliSec - pause between two writes.
+     * @return this instance.
+     */
+    public FaultProxy slowDrip(int bytes, long intervalInMilliSec) {
+        this.dripIntervalInMilliSec = intervalInMilliSec;
+        this.dripBytes = bytes;
+        return this;
+    }
+
+    /**
+     * Answers the next requests with a Http error and "Connection: close" instead of forwarding them.
+     *
+     * @param statusCode - a Http status code such as 503.
+     * @param requests - number of requests to fail.
+     * @return this instance.
+     */
+    public FaultProxy errorBurst(int statusCode, int requests) {
+        this.errorStatusCode = statusCode;
+        this.errorBurst.set(requests);
+        return this;
+    }
+
+    /**
+     * @param stallInMilliSec - time to hold a new connection without reading or writing a byte before it is
+     *                        forwarded, which stalls a TLS handshake; 0 for none.
+     * @return this instance.
+     */
+    public FaultProxy stallHandshake(long stallInMilliSec) {
+        this.stallInMilliSec = stallInMilliSec;
+        return this;
+    }
+
+    /**
+     * @return the proxy port.
+     */
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the base URL of the proxy, e.g. "http://127.0.0.1:54321".
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + port();
+    }
+
+    /**
+     * @return number of accepted connections.
+     */
+    public long connectionCount() {
+        return connectionCount.sum();
+    }
+
+    /**
+     * @return number of faults injected.
+     */
+    public long faultCount() {
+        return faultCount.sum();
+    }
+
+    private boolean inject() {
+        double p = probability;
+        if (p >= 1 || ThreadLocalRandom.current().nextDouble() < p) {
+            faultCount.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket client = serverSocket.accept();
+                connectionCount.increment();
+                executor.execute(() -> handle(client));
+            } catch (IOException e) {
+                // closed by stop()
+            }
+        }
+    }
+
+    /**
+     * State of one proxied connection.
+     */
+    private static class Connection {
+        final Socket client;
+        final Socket backend;
+        volatile boolean awaitingRequest = true;
+        volatile long resetAt = -1;
+        volatile boolean drip;
+        volatile long responseBytes;
+
+        Connection(Socket client, Socket backend) {
+            this.client = client;
+            this.backend = backend;
+        }
+    }
+
+    private void handle(Socket client) {
+        sockets.add(client);
+        Socket backendSocket = new Socket();
+        try {
+            long stall = stallInMilliSec;
+            if (stall > 0 && inject()) {
+                TimeUnit.MILLISECONDS.sleep(stall);
+            }
+            backendSocket.connect(backend);
+            sockets.add(backendSocket);
+            client.setTcpNoDelay(true);
+            backendSocket.setTcpNoDelay(true);
+            Connection connection = new Connection(client, backendSocket);
+            executor.execute(() -> pumpResponses(connection));
+            pumpRequests(connection);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // either side closed the connection
+        } finally {
+            closeQuietly(client);
+            closeQuietly(backendSocket);
+        }
+    }
+
+    private void pumpRequests(Connection connection) throws IOException, InterruptedException {
+        InputStream in = connection.client.getInputStream();
+        OutputStream out = connection.backend.getOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n; (n = in.read(buffer)) != -1; ) {
+            if (connection.awaitingRequest) {
+                connection.awaitingRequest = false;
+                if (!beginRequest(connection)) {
+                    return;
+                }
+            }
+            out.write(buffer, 0, n);
+            out.flush();
+        }
+    }
+
+    /**
+     * Applies the request faults.
+     *
+     * @return false if the connection was closed by a fault.
+     */
+    private boolean beginRequest(Connection connection) throws IOException, InterruptedException {
+        if (errorBurst.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+            faultCount.increment();
+            writeError(connection.client.getOutputStream(), errorStatusCode);
+            return false;
+        }
+        if (dropConnections && inject()) {
+            return false;
+        }
+        long latency = latencyInMilliSec;
+        if (latency > 0 && inject()) {
+            TimeUnit.MILLISECONDS.sleep(latency);
+        }
+        long reset = resetAfterBytes;
+        connection.responseBytes = 0;
+        connection.resetAt = reset >= 0 && inject() ? reset : -1;
+        connection.drip = dripBytes > 0 && inject();
+        return true;
+    }
+
+    private void pumpResponses(Connection connection) {
+        try {
+            InputStream in = connection.backend.getInputStream();
+            OutputStream out = connection.client.getOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                connection.awaitingRequest = true;
+                int length = n;
+                long resetAt = connection.resetAt;
+                if (resetAt >= 0 && connection.responseBytes + length >= resetAt) {
+                    out.write(buffer, 0, (int) (resetAt - connection.responseBytes));
+                    out.flush();
+                    connection.client.setSoLinger(true, 0);
+                    return;
+                }
+                connection.responseBytes += length;
+                if (connection.drip) {
+                    int chunk = Math.max(1, dripBytes);
+                    for (int offset = 0; offset < length; offset += chunk) {
+                        out.write(buffer, offset, Math.min(chunk, length - offset));
+                        out.flush();
+                        TimeUnit.MILLISECONDS.sleep(dripIntervalInMilliSec);
+                    }
+                } else {
+                    out.write(buffer, 0, length);
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // either side closed the connection
+        } finally {
+            closeQuietly(connection.client);
+            closeQuietly(connection.backend);
+        }
+    }
+
+    private static void writeError(OutputStream out, int statusCode) throws IOException {
+        byte[] body = ("{\"error\":\"injected by FaultProxy\",\"status\":" + statusCode + "}")
+                .getBytes(StandardCharsets.UTF_8);
+        String head = "HTTP/1.1 " + statusCode + " Injected Fault\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Connection: close\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.write(body);
+        out.flush();
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        if (closeable instanceof Socket) {
+            sockets.remove(closeable);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.testing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Server-side latency of a {@link StubServer} response.
+ *
+ * @author saung
+ * @since 5/21/18
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+    /**
+     * @return next latency in milliseconds.
+     */
+    long nextMillis();
+
+    /**
+     * @return no latency.
+     */
+    static LatencyDistribution none() {
+        return () -> 0;
+    }
+
+    /**
+     * @param millis - a fixed latency.
+     * @return the same latency for every response.
+     */
+    static LatencyDistribution fixed(long millis) {
+        return () -> millis;
+    }
+
+    /**
+     * @param minMillis - minimum latency.
+     * @param maxMillis - maximum latency.
+     * @return a latency uniformly distributed between min and max.
+     */
+    static LatencyDistribution uniform(long minMillis, long maxMillis) {
+        if (maxMillis < minMillis) {
+            throw new IllegalArgumentException("maxMillis must not be less than minMillis");
+        }
+        return () -> minMillis + ThreadLocalRandom.current().nextLong(maxMillis - minMillis + 1);
+    }
+
+    /**
+     * @param meanMillis - mean latency.
+     * @return an exponentially distributed latency, i.e. mostly fast with a long tail.
+     */
+    static LatencyDistribution exponential(double meanMillis) {
+        return () -> Math.round(-meanMillis * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * @param fastMillis - latency of most responses.
+     * @param slowMillis - latency of the slow responses.
+     * @param slowRatio - ratio of slow responses between 0 and 1, e.g. 0.01 for a slow p99.
+     * @return a latency that is slow for a given ratio of responses, like a GC pause or a cold cache.
+     */
+    static LatencyDistribution bimodal(long fastMillis, long slowMillis, double slowRatio) {
+        return () -> ThreadLocalRandom.current().nextDouble() < slowRatio ? slowMillis : fastMillis;
+    }
+}
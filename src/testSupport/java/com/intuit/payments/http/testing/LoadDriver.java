@@ -0,0 +1,158 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.testing;
+
+import com.intuit.payments.http.Request;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Runs {@link Request}s at an open-loop target rate and reports throughput, latency percentiles, rejections,
+ * timeouts and errors in a {@link LoadReport}.
+ *
+ * Open loop means requests are sent on schedule whether or not earlier ones have completed, like real users, so a
+ * slow server builds up concurrency instead of slowing the load down. Latency is measured from the intended send
+ * time, so time spent queued behind a stalled driver is counted too.
+ *
+ * Example:
+ * <pre>
+ * LoadReport report = new LoadDriver(() -> client.Request("GetUser", "UsersGroup", "/v1/users/1").GET())
+ *         .ratePerSecond(500)
+ *         .warmup(2, TimeUnit.SECONDS)
+ *         .duration(10, TimeUnit.SECONDS)
+ *         .run();
+ * </pre>
+ *
+ * @author saung
+ * @since 5/21/18
+ */
+public class LoadDriver {
+    private final Supplier<Request> requestSupplier;
+
+    private double ratePerSecond = 100;
+
+    private long warmupNanos;
+
+    private long durationNanos = TimeUnit.SECONDS.toNanos(10);
+
+    private long drainTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+
+    private boolean poisson;
+
+    private int maxInFlight = 10000;
+
+    /**
+     * Default constructor.
+     *
+     * @param requestSupplier - creates a new {@link Request} for each send. A Hystrix command runs only once.
+     */
+    public LoadDriver(Supplier<Request> requestSupplier) {
+        if (requestSupplier == null) {
+            throw new IllegalArgumentException("requestSupplier must not be NULL");
+        }
+        this.requestSupplier = requestSupplier;
+    }
+
+    /**
+     * @param ratePerSecond - target requests per second.
+     * @return this instance.
+     */
+    public LoadDriver ratePerSecond(double ratePerSecond) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("ratePerSecond must be positive");
+        }
+        this.ratePerSecond = ratePerSecond;
+        return this;
+    }
+
+    /**
+     * @param warmup - time to send load before measuring, to warm up the JIT, pools and circuit breakers.
+     * @param unit - time unit.
+     * @return this instance.
+     */
+    public LoadDriver warmup(long warmup, TimeUnit unit) {
+        this.warmupNanos = unit.toNanos(warmup);
+        return this;
+    }
+
+    /**
+     * @param duration - measured time to send load, after the warmup.
+     * @param unit - time unit.
+     * @return this instance.
+     */
+    public LoadDriver duration(long duration, TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("duration must be positive");
+        }
+        this.durationNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * @param drainTimeout - time to wait for in-flight requests after the last send.
+     * @param unit - time unit.
+     * @return this instance.
+     */
+    public LoadDriver drainTimeout(long drainTimeout, TimeUnit unit) {
+        this.drainTimeoutNanos = unit.toNanos(drainTimeout);
+        return this;
+    }
+
+    /**
+     * @param poisson - true to send with exponentially distributed gaps like independent users; false (default)
+     *                to send at an exact fixed rate.
+     * @return this instance.
+     */
+    public LoadDriver poisson(boolean poisson) {
+        this.poisson = poisson;
+        return this;
+    }
+
+    /**
+     * @param maxInFlight - sends beyond this many in-flight requests are dropped by the driver and reported, to
+     *                    protect the test JVM when the client stops answering.
+     * @return this instance.
+     */
+    public LoadDriver maxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Sends the load in the calling thread and waits for in-flight requests to complete.
+     *
+     * @return the {@link LoadReport} of the measured period.
+     */
+    public LoadReport run() {
+        LoadStats stats = new LoadStats(maxInFlight);
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        long intended = start;
+        while (intended < end) {
+            long delay = intended - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+                continue;
+            }
+            stats.send(requestSupplier, intended, intended >= measureFrom);
+            intended += poisson ? nextExponential(periodNanos) : periodNanos;
+        }
+        stats.drain(System.nanoTime() + drainTimeoutNanos);
+        return stats.report(ratePerSecond, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+    }
+
+    private static long nextExponential(long meanNanos) {
+        return Math.max(1, Math.round(-meanNanos * Math.log(1 - ThreadLocalRandom.current().nextDouble())));
+    }
+}
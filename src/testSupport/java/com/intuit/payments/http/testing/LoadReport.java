@@ -0,0 +1,170 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.testing;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Result of a {@link LoadDriver} run over the measured period, excluding the warmup.
+ *
+ * @author saung
+ * @since 5/21/18
+ */
+public class LoadReport {
+    private final double targetRatePerSecond;
+    private final long durationInMilliSec;
+    private final long sent;
+    private final long dropped;
+    private final long successes;
+    private final long httpErrors;
+    private final long rejections;
+    private final long timeouts;
+    private final long errors;
+    private final long unfinished;
+    private final Histogram latency;
+
+    LoadReport(double targetRatePerSecond, long durationInMilliSec, long sent, long dropped, long successes,
+               long httpErrors, long rejections, long timeouts, long errors, long unfinished, Histogram latency) {
+        this.targetRatePerSecond = targetRatePerSecond;
+        this.durationInMilliSec = durationInMilliSec;
+        this.sent = sent;
+        this.dropped = dropped;
+        this.successes = successes;
+        this.httpErrors = httpErrors;
+        this.rejections = rejections;
+        this.timeouts = timeouts;
+        this.errors = errors;
+        this.unfinished = unfinished;
+        this.latency = latency;
+    }
+
+    /**
+     * @return the target rate.
+     */
+    public double targetRatePerSecond() {
+        return targetRatePerSecond;
+    }
+
+    /**
+     * @return requests sent in the measured period.
+     */
+    public long sent() {
+        return sent;
+    }
+
+    /**
+     * @return sends skipped by the driver because too many requests were in flight.
+     */
+    public long dropped() {
+        return dropped;
+    }
+
+    /**
+     * @return responses with a status code less than 400.
+     */
+    public long successes() {
+        return successes;
+    }
+
+    /**
+     * @return responses with a status code of 400 or more that were not raised as exceptions.
+     */
+    public long httpErrors() {
+        return httpErrors;
+    }
+
+    /**
+     * @return requests rejected by the Hystrix thread pool or semaphore, an open circuit, the load shedder, the
+     * rate limiter or an exhausted connection pool.
+     */
+    public long rejections() {
+        return rejections;
+    }
+
+    /**
+     * @return requests that timed out in Hystrix.
+     */
+    public long timeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @return other failed requests.
+     */
+    public long errors() {
+        return errors;
+    }
+
+    /**
+     * @return requests still in flight after the drain timeout.
+     */
+    public long unfinished() {
+        return unfinished;
+    }
+
+    /**
+     * @return completed requests per second over the measured period.
+     */
+    public double throughputPerSecond() {
+        return (successes + httpErrors + rejections + timeouts + errors) * 1000.0 / durationInMilliSec;
+    }
+
+    /**
+     * Gets a latency percentile, measured from the intended send time.
+     *
+     * @param percentile - a percentile such as 99.9.
+     * @return latency in microseconds.
+     */
+    public long latencyMicros(double percentile) {
+        return latency.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * @return a copy of the latency histogram in microseconds, e.g. to print a percentile distribution.
+     */
+    public Histogram latencyHistogram() {
+        return latency.copy();
+    }
+
+    /**
+     * Compares the latency percentiles with a baseline, e.g. the recorded latencies of a replayed trace.
+     *
+     * @param baseline - a latency histogram in microseconds.
+     * @return a "key=value" string of the baseline and measured percentiles and their difference in percent.
+     */
+    public String compare(Histogram baseline) {
+        StringBuilder builder = new StringBuilder("type=latency_compare");
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            long expected = baseline.getValueAtPercentile(percentile);
+            long actual = latencyMicros(percentile);
+            String key = percentile == 99.9 ? "p999" : "p" + (int) percentile;
+            builder.append(';').append(key).append("_base_us=").append(expected)
+                    .append(';').append(key).append("_us=").append(actual)
+                    .append(';').append(key).append("_diff_pct=")
+                    .append(expected == 0 ? "n/a" : String.format("%.1f", (actual - expected) * 100.0 / expected));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "type=load_report;target_rps=" + targetRatePerSecond
+                + ";throughput_rps=" + String.format("%.1f", throughputPerSecond())
+                + ";sent=" + sent
+                + ";dropped=" + dropped
+                + ";success=" + successes
+                + ";http_error=" + httpErrors
+                + ";rejected=" + rejections
+                + ";timeout=" + timeouts
+                + ";error=" + errors
+                + ";unfinished=" + unfinished
+                + ";p50_us=" + latencyMicros(50)
+                + ";p90_us=" + latencyMicros(90)
+                + ";p99_us=" + latencyMicros(99)
+                + ";p999_us=" + latencyMicros(99.9)
+                + ";max_us=" + latency.getMaxValue();
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.testing;
+
+import com.intuit.payments.http.Request;
+import com.intuit.payments.http.Response;
+import com.intuit.payments.http.exception.HCCircuitOpenException;
+import com.intuit.payments.http.exception.HCLoadShedException;
+import com.intuit.payments.http.exception.HCPoolExhaustedException;
+import com.intuit.payments.http.exception.HCRateLimitedException;
+import com.netflix.hystrix.exception.HystrixRuntimeException;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Sends requests without waiting for them and tallies the outcomes and latencies of one load run.
+ * Package-level access only.
+ *
+ * @author saung
+ * @since 5/21/18
+ */
+class LoadStats {
+    /** Highest trackable latency: 1 hour in microseconds */
+    private static final long MAX_LATENCY_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final int maxInFlight;
+    private final Recorder latency = new Recorder(MAX_LATENCY_MICROS, 3);
+    private final AtomicLong inFlight = new AtomicLong();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder httpErrors = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    LoadStats(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Subscribes to a new request and records its outcome when it completes.
+     *
+     * @param requestSupplier - creates the request.
+     * @param intendedNanos - when the request should have been sent; latency is measured from it.
+     * @param measured - false during the warmup.
+     */
+    void send(Supplier<Request> requestSupplier, long intendedNanos, boolean measured) {
+        if (inFlight.get() >= maxInFlight) {
+            if (measured) {
+                dropped.increment();
+            }
+            return;
+        }
+        inFlight.incrementAndGet();
+        if (measured) {
+            sent.increment();
+        }
+        try {
+            requestSupplier.get().toObservable().subscribe(
+                    response -> onResponse(intendedNanos, measured, response),
+                    e -> onError(intendedNanos, measured, e));
+        } catch (RuntimeException e) {
+            onError(intendedNanos, measured, e);
+        }
+    }
+
+    private void onResponse(long intendedNanos, boolean measured, Response response) {
+        if (measured) {
+            record(intendedNanos);
+            if (response.statusCode() < 400) {
+                successes.increment();
+            } else {
+                httpErrors.increment();
+            }
+        }
+        inFlight.decrementAndGet();
+    }
+
+    private void onError(long intendedNanos, boolean measured, Throwable e) {
+        if (measured) {
+            record(intendedNanos);
+            classify(e).increment();
+        }
+        inFlight.decrementAndGet();
+    }
+
+    private void record(long intendedNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedNanos);
+        latency.recordValue(Math.min(Math.max(micros, 0), MAX_LATENCY_MICROS));
+    }
+
+    private LongAdder classify(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HCLoadShedException || cause instanceof HCRateLimitedException
+                    || cause instanceof HCCircuitOpenException || cause instanceof HCPoolExhaustedException) {
+                return rejections;
+            }
+            if (cause instanceof HystrixRuntimeException) {
+                switch (((HystrixRuntimeException) cause).getFailureType()) {
+                    case TIMEOUT: return timeouts;
+                    case SHORTCIRCUIT:
+                    case REJECTED_THREAD_EXECUTION:
+                    case REJECTED_SEMAPHORE_EXECUTION:
+                    case REJECTED_SEMAPHORE_FALLBACK: return rejections;
+                    default: break;
+                }
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Waits for in-flight requests.
+     *
+     * @param deadlineNanos - System.nanoTime() to give up at.
+     */
+    void drain(long deadlineNanos) {
+        while (inFlight.get() > 0 && System.nanoTime() < deadlineNanos) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    LoadReport report(double targetRatePerSecond, long durationInMilliSec) {
+        return new LoadReport(targetRatePerSecond, durationInMilliSec, sent.sum(), dropped.sum(),
+                successes.sum(), httpErrors.sum(), rejections.sum(), timeouts.sum(), errors.sum(),
+                inFlight.get(), latency.getIntervalHistogram());
+    }
+}
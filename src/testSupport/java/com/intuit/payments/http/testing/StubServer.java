@@ -0,0 +1,390 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.testing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An embedded loopback Http stub server on the JDK's built-in {@link HttpServer} for repeatable throughput tests
+ * without network access. Each path prefix answers with a configurable {@link Behavior}: latency distribution,
+ * payload size, status mix, connection-close ratio and gzip. The longest matching prefix wins; "/" is the default.
+ *
+ * Latency does not hold a worker thread: responses are delayed on a scheduler, so a few threads can hold
+ * thousands of slow responses open.
+ *
+ * Example:
+ * <pre>
+ * StubServer server = new StubServer().start();
+ * server.stub("/v1/users", new StubServer.Behavior()
+ *         .latency(LatencyDistribution.exponential(20))
+ *         .payloadBytes(2048)
+ *         .status(200, 0.99).status(503, 0.01));
+ * Client client = new Client(server.baseUrl());
+ * </pre>
+ *
+ * @author saung
+ * @since 5/21/18
+ */
+public class StubServer {
+    static {
+        // The JDK server writes the headers and the body separately; without TCP_NODELAY, Nagle's algorithm and
+        // delayed ACKs add about 40 ms to every response. It is read once, when the first HttpServer is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+
+    private final ExecutorService workers;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, Behavior> behaviors = new ConcurrentHashMap<>();
+
+    private final LongAdder requestCount = new LongAdder();
+
+    private final LongAdder requestBytes = new LongAdder();
+
+    private final LongAdder compressedRequestCount = new LongAdder();
+
+    private final LongAdder expectContinueCount = new LongAdder();
+
+    /**
+     * How a path responds.
+     */
+    public static class Behavior {
+        private volatile LatencyDistribution latency = LatencyDistribution.none();
+        private volatile byte[] body = jsonBody(64);
+        private volatile int[] statusCodes = {};
+        private volatile double[] cumulativeWeights = {};
+        private volatile double closeConnectionRatio;
+        private volatile boolean gzip;
+        private volatile String redirectLocation;
+
+        /**
+         * @param latency - server-side latency of each response.
+         * @return this instance.
+         */
+        public Behavior latency(LatencyDistribution latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * @param bytes - approximate size of the JSON response body.
+         * @return this instance.
+         */
+        public Behavior payloadBytes(int bytes) {
+            this.body = jsonBody(bytes);
+            return this;
+        }
+
+        /**
+         * @param body - a fixed response body, e.g. a JSON array.
+         * @return this instance.
+         */
+        public Behavior body(String body) {
+            this.body = body.getBytes(StandardCharsets.UTF_8);
+            return this;
+        }
+
+        /**
+         * Adds a status code to the mix. Without any, every response is Http 200.
+         *
+         * @param statusCode - a Http status code.
+         * @param weight - relative weight of the status code.
+         * @return this instance.
+         */
+        public synchronized Behavior status(int statusCode, double weight) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("weight must be positive");
+            }
+            int n = statusCodes.length;
+            int[] codes = Arrays.copyOf(statusCodes, n + 1);
+            double[] weights = Arrays.copyOf(cumulativeWeights, n + 1);
+            codes[n] = statusCode;
+            weights[n] = (n == 0 ? 0 : weights[n - 1]) + weight;
+            this.cumulativeWeights = weights;
+            this.statusCodes = codes;
+            return this;
+        }
+
+        /**
+         * @param ratio - ratio of responses between 0 and 1 sent with "Connection: close", which forces the client
+         *              to open a new connection for its next request.
+         * @return this instance.
+         */
+        public Behavior closeConnectionRatio(double ratio) {
+            this.closeConnectionRatio = ratio;
+            return this;
+        }
+
+        /**
+         * @param gzip - true to gzip the response body if the request has "Accept-Encoding: gzip".
+         * @return this instance.
+         */
+        public Behavior gzip(boolean gzip) {
+            this.gzip = gzip;
+            return this;
+        }
+
+        /**
+         * @param location - a path or URL every response redirects to with Http 302.
+         * @return this instance.
+         */
+        public Behavior redirect(String location) {
+            this.redirectLocation = location;
+            return this;
+        }
+
+        int nextStatusCode() {
+            int[] codes = statusCodes;
+            double[] weights = cumulativeWeights;
+            if (codes.length == 0 || weights.length < codes.length) {
+                return 200;
+            }
+            double r = ThreadLocalRandom.current().nextDouble() * weights[weights.length - 1];
+            for (int i = 0; i < weights.length; i++) {
+                if (r < weights[i]) {
+                    return codes[i];
+                }
+            }
+            return codes[codes.length - 1];
+        }
+
+        private static byte[] jsonBody(int bytes) {
+            StringBuilder sb = new StringBuilder(Math.max(bytes, 16)).append("{\"data\":\"");
+            while (sb.length() < bytes - 2) {
+                sb.append('x');
+            }
+            return sb.append("\"}").toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Creates a stub server on a free loopback port with 4 worker threads.
+     *
+     * @throws IllegalStateException if the server cannot be created.
+     */
+    public StubServer() {
+        this(0, 4);
+    }
+
+    /**
+     * Default constructor. Call {@link #start()} to accept connections.
+     *
+     * @param port - a loopback port; 0 to pick a free one.
+     * @param workerThreads - threads to read requests and write responses.
+     * @throws IllegalStateException if the server cannot be created.
+     */
+    public StubServer(int port, int workerThreads) {
+        try {
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create the stub server on port " + port, e);
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, r -> {
+            Thread thread = new Thread(r, "stub-server-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler = Executors.newScheduledThreadPool(workerThreads, r -> {
+            Thread thread = new Thread(r, "stub-server-delay-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(workers);
+        this.server.createContext("/", this::handle);
+        this.behaviors.put("/", new Behavior());
+    }
+
+    /**
+     * Starts accepting connections.
+     *
+     * @return this instance.
+     */
+    public StubServer start() {
+        server.start();
+        return this;
+    }
+
+    /**
+     * Stops the server and closes all connections.
+     */
+    public void stop() {
+        server.stop(0);
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Sets the behavior of a path prefix.
+     *
+     * @param pathPrefix - a path prefix such as "/v1/users"; "/" for the default.
+     * @param behavior - the {@link Behavior}.
+     * @return this instance.
+     */
+    public StubServer stub(String pathPrefix, Behavior behavior) {
+        behaviors.put(pathPrefix, behavior);
+        return this;
+    }
+
+    /**
+     * @return the port the server listens on.
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the base URL of the server, e.g. "http://127.0.0.1:54321".
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + port();
+    }
+
+    /**
+     * @return number of requests received.
+     */
+    public long requestCount() {
+        return requestCount.sum();
+    }
+
+    /**
+     * @return number of request body bytes received.
+     */
+    public long requestBytes() {
+        return requestBytes.sum();
+    }
+
+    /**
+     * @return number of requests received with a valid gzip body.
+     */
+    public long compressedRequestCount() {
+        return compressedRequestCount.sum();
+    }
+
+    /**
+     * @return number of requests received with "Expect: 100-continue".
+     */
+    public long expectContinueCount() {
+        return expectContinueCount.sum();
+    }
+
+    private Behavior behavior(String path) {
+        Behavior match = null;
+        int matchLength = -1;
+        for (Map.Entry<String, Behavior> entry : behaviors.entrySet()) {
+            String prefix = entry.getKey();
+            if (path.startsWith(prefix) && prefix.length() > matchLength) {
+                match = entry.getValue();
+                matchLength = prefix.length();
+            }
+        }
+        return match;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.increment();
+        if ("100-continue".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Expect"))) {
+            expectContinueCount.increment();
+        }
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            requestBytes.add(copy(exchange.getRequestBody(), compressed));
+            try {
+                drain(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+                compressedRequestCount.increment();
+            } catch (IOException e) {
+                exchange.sendResponseHeaders(400, -1);
+                exchange.close();
+                return;
+            }
+        } else {
+            requestBytes.add(drain(exchange.getRequestBody()));
+        }
+        Behavior behavior = behavior(exchange.getRequestURI().getPath());
+        long latency = behavior.latency.nextMillis();
+        if (latency <= 0) {
+            respond(exchange, behavior);
+        } else {
+            scheduler.schedule(() -> respond(exchange, behavior), latency, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void respond(HttpExchange exchange, Behavior behavior) {
+        try {
+            if (behavior.redirectLocation != null) {
+                exchange.getResponseHeaders().set("Location", behavior.redirectLocation);
+                exchange.sendResponseHeaders(302, -1);
+                return;
+            }
+            int statusCode = behavior.nextStatusCode();
+            byte[] body = behavior.body;
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (behavior.gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                    out.write(body);
+                }
+                body = compressed.toByteArray();
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            if (behavior.closeConnectionRatio > 0
+                    && ThreadLocalRandom.current().nextDouble() < behavior.closeConnectionRatio) {
+                exchange.getResponseHeaders().set("Connection", "close");
+            }
+            exchange.sendResponseHeaders(statusCode, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // the client went away, e.g. after a socket timeout
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        return copy(in, null);
+    }
+
+    private static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[4096];
+        long total = 0;
+        for (int n; (n = in.read(buffer)) != -1; ) {
+            if (out != null) {
+                out.write(buffer, 0, n);
+            }
+            total += n;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright 2018 Intuit Inc. All rights reserved. Unauthorized reproduction
+ * is a violation of applicable law. This material contains certain
+ * confidential or proprietary information and trade secrets of Intuit Inc.
+ */
+package com.intuit.payments.http.testing;
+
+import com.intuit.payments.http.Client;
+import com.intuit.payments.http.Request;
+import com.intuit.payments.http.record.TrafficRecord;
+import com.intuit.payments.http.record.TrafficRecorder;
+import com.intuit.payments.http.util.Util;
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a JSONL trace written by a {@link TrafficRecorder} through a {@link Client}, e.g. against a
+ * {@link StubServer} or a staging build, with the recorded inter-arrival times, verbs, paths, header names and body
+ * sizes, and reports the result in a {@link LoadReport} that can be compared to the recorded latencies.
+ *
+ * Path template placeholders such as "{0}" are replaced by "0", header values are "replay" and the Authorization
+ * header comes from the client. Recorded bodies are sent as they are; otherwise a JSON body of the recorded size is
+ * sent.
+ *
+ * Example:
+ * <pre>
+ * List&lt;TrafficRecord&gt; trace = TrafficReplayer.read(Paths.get("prod.jsonl"));
+ * LoadReport report = new TrafficReplayer(new Client(stub.baseUrl())).speed(2).replay(trace);
+ * System.out.println(report.compare(TrafficReplayer.recordedLatency(trace)));
+ * </pre>
+ *
+ * @author saung
+ * @since 6/4/18
+ */
+public class TrafficReplayer {
+    /** Highest trackable latency: 1 hour in microseconds */
+    private static final long MAX_LATENCY_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final Client client;
+
+    private double speed = 1;
+
+    private int maxInFlight = 10_000;
+
+    private long drainTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * Default constructor.
+     *
+     * @param client - a {@link Client} pointing to the replay target.
+     */
+    public TrafficReplayer(Client client) {
+        if (client == null) {
+            throw new IllegalArgumentException("client must not be NULL");
+        }
+        this.client = client;
+    }
+
+    /**
+     * @param speed - replay speed factor; 2 sends the trace twice as fast as recorded. Default is 1.
+     * @return this instance.
+     */
+    public TrafficReplayer speed(double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("speed must be positive");
+        }
+        this.speed = speed;
+        return this;
+    }
+
+    /**
+     * @param maxInFlight - maximum number of outstanding requests; further requests are dropped. Default is 10000.
+     * @return this instance.
+     */
+    public TrafficReplayer maxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * @param drainTimeout - time to wait for in-flight requests after the last one is sent. Default is 30 seconds.
+     * @param unit - a time unit.
+     * @return this instance.
+     */
+    public TrafficReplayer drainTimeout(long drainTimeout, TimeUnit unit) {
+        this.drainTimeoutNanos = unit.toNanos(drainTimeout);
+        return this;
+    }
+
+    /**
+     * Reads a JSONL trace.
+     *
+     * @param path - a trace file.
+     * @return the records in file order; blank lines are skipped.
+     * @throws IOException if the file cannot be read.
+     */
+    public static List<TrafficRecord> read(Path path) throws IOException {
+        List<TrafficRecord> records = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (!line.trim().isEmpty()) {
+                    records.add(Util.fromJson(line, TrafficRecord.class));
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Gets the recorded latency distribution of a trace, to compare with a replay.
+     *
+     * @param records - a trace.
+     * @return a histogram of the recorded durations in microseconds.
+     */
+    public static Histogram recordedLatency(List<TrafficRecord> records) {
+        Histogram histogram = new Histogram(MAX_LATENCY_MICROS, 3);
+        for (TrafficRecord record : records) {
+            histogram.recordValue(Math.min(Math.max(record.durationMicros(), 0), MAX_LATENCY_MICROS));
+        }
+        return histogram;
+    }
+
+    /**
+     * Replays a JSONL trace file.
+     *
+     * @param path - a trace file.
+     * @return the {@link LoadReport} of the replay.
+     * @throws IOException if the file cannot be read.
+     */
+    public LoadReport replay(Path path) throws IOException {
+        return replay(read(path));
+    }
+
+    /**
+     * Replays a trace in the calling thread and waits for in-flight requests to complete.
+     *
+     * @param records - a trace, sorted by start time.
+     * @return the {@link LoadReport} of the replay.
+     */
+    public LoadReport replay(List<TrafficRecord> records) {
+        LoadStats stats = new LoadStats(maxInFlight);
+        if (records.isEmpty()) {
+            return stats.report(0, 0);
+        }
+        long firstMillis = records.get(0).startEpochMillis();
+        long start = System.nanoTime();
+        for (TrafficRecord record : records) {
+            long offsetNanos = (long) (TimeUnit.MILLISECONDS.toNanos(record.startEpochMillis() - firstMillis) / speed);
+            long intended = start + Math.max(0, offsetNanos);
+            for (long delay; (delay = intended - System.nanoTime()) > 0; ) {
+                LockSupport.parkNanos(delay);
+            }
+            stats.send(() -> toRequest(record), intended, true);
+        }
+        long durationNanos = Math.max(System.nanoTime() - start, TimeUnit.MILLISECONDS.toNanos(1));
+        stats.drain(System.nanoTime() + drainTimeoutNanos);
+        double ratePerSecond = records.size() * (double) TimeUnit.SECONDS.toNanos(1) / durationNanos;
+        return stats.report(ratePerSecond, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+    }
+
+    /**
+     * Builds the request of a record. Package-level access for tests.
+     *
+     * @param record - a {@link TrafficRecord}.
+     * @return new {@link Request} instance.
+     */
+    Request toRequest(TrafficRecord record) {
+        String path = record.pathTemplate() == null ? "/" : record.pathTemplate().replaceAll("\\{[^}]*}", "0");
+        Request request = client.Request(record.commandName(), record.commandGroup(), path);
+        String verb = record.httpVerb() == null ? "GET" : record.httpVerb();
+        switch (verb) {
+            case "POST":
+            case "FORM_POST": request.POST(); break;
+            case "PUT": request.PUT(); break;
+            case "PATCH": request.PATCH(); break;
+            case "DELETE": request.DELETE(); break;
+            case "HEAD": request.HEAD(); break;
+            default: request.GET(); break;
+        }
+        if (record.headerNames() != null) {
+            for (String name : record.headerNames()) {
+                if (!"Authorization".equalsIgnoreCase(name) && !"Content-Type".equalsIgnoreCase(name)
+                        && !"Accept".equalsIgnoreCase(name)) {
+                    request.header(name, "replay");
+                }
+            }
+        }
+        if (record.body() != null) {
+            request.bodyStr(record.body());
+        } else if (record.requestBytes() > 0) {
+            request.bodyStr(syntheticBody(record.requestBytes()));
+        }
+        return request;
+    }
+
+    /**
+     * Creates a JSON body of a given size.
+     *
+     * @param bytes - body size in bytes.
+     * @return a JSON string of the given size, or the smallest padded JSON object if it is smaller.
+     */
+    static String syntheticBody(long bytes) {
+        int padding = (int) Math.max(0, Math.min(Integer.MAX_VALUE - 16, bytes) - "{\"r\":\"\"}".length());
+        char[] chars = new char[padding];
+        Arrays.fill(chars, 'x');
+        return "{\"r\":\"" + new String(chars) + "\"}";
+    }
+}